@@ -0,0 +1,123 @@
+/**
+ * Copyright (C) 2017 Orbeon, Inc.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU Lesser General Public License as published by the Free Software Foundation; either version
+ * 2.1 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The full text of the license is available at http://www.gnu.org/copyleft/lesser.html
+ */
+package org.orbeon.oxf.fr.persistence.rest
+
+import java.sql.Connection
+
+import org.junit.Test
+import org.orbeon.oxf.fr.persistence.db._
+import org.orbeon.oxf.fr.persistence.relational._
+import org.orbeon.oxf.fr.persistence.relational.index.Index
+import org.orbeon.oxf.test.ResourceManagerTestBase
+import org.orbeon.oxf.util.IOUtils._
+import org.orbeon.oxf.util.{IndentedLogger, LoggerFactory, Logging}
+import org.orbeon.oxf.xml.Dom4j.elemToDocument
+import org.scalatest.junit.AssertionsForJUnit
+
+class ReindexTest extends ResourceManagerTestBase with AssertionsForJUnit with Logging {
+
+  private implicit val Logger = new IndentedLogger(LoggerFactory.createLogger(classOf[ReindexTest]), true)
+
+  private def countRows(connection: Connection, sql: String) =
+    useAndClose(connection.prepareStatement(sql)) { ps ⇒
+      useAndClose(ps.executeQuery()) { rs ⇒
+        rs.next()
+        rs.getInt(1)
+      }
+    }
+
+  // More documents than fit in a chunk, so several chunks are parsed in parallel and written in batches
+  @Test def reindexAllData(): Unit = {
+    Connect.withOrbeonTables("reindex") { (connection, provider) ⇒
+
+      val DocumentCount = 120
+
+      for (i ← 1 to DocumentCount)
+        HttpAssert.put(HttpRequest.crudURLPrefix(provider) + s"data/$i/data.xml", Specific(1), HttpRequest.XML(<gaga>{i}</gaga>), 201)
+
+      // Drafts are indexed separately from the data they are for
+      HttpAssert.put(HttpRequest.crudURLPrefix(provider) + "draft/1/data.xml", Unspecified, HttpRequest.XML(<gaga>draft</gaga>), 201)
+
+      Index.reindex(provider, connection, Index.AllData)
+
+      assert(countRows(connection, "SELECT count(*) FROM orbeon_i_current") === DocumentCount + 1)
+      assert(countRows(connection, "SELECT count(DISTINCT data_id) FROM orbeon_i_current") === DocumentCount + 1)
+      assert(countRows(connection, "SELECT count(*) FROM orbeon_i_current WHERE draft = 'Y'") === 1)
+    }
+  }
+
+  @Test def updateIndexForDocument(): Unit = {
+    Connect.withOrbeonTables("update index for document") { (connection, provider) ⇒
+
+      val DataURL         = HttpRequest.crudURLPrefix(provider) + "data/123/data.xml"
+      val IndexedControls = List(
+        Index.IndexedControl(
+          name      = "name",
+          inSearch  = true,
+          inSummary = true,
+          xpath     = "section/name",
+          xsType    = "xs:string",
+          control   = "input",
+          htmlLabel = false,
+          resources = Nil
+        )
+      )
+
+      def indexedValues =
+        useAndClose(connection.prepareStatement(
+          "SELECT t.pos, t.val FROM orbeon_i_control_text t, orbeon_i_current c WHERE t.data_id = c.data_id ORDER BY t.pos"
+        )) { ps ⇒
+          useAndClose(ps.executeQuery()) { rs ⇒
+            Iterator.continually(rs.next()).takeWhile(identity).map(_ ⇒ rs.getInt(1) → rs.getString(2)).toList
+          }
+        }
+
+      def save(names: String*) = {
+        HttpAssert.put(DataURL, Specific(1), HttpRequest.XML(<form><section>{names map (n ⇒ <name>{n}</name>)}</section></form>), 201)
+        Index.updateIndexForDocument(provider, connection, "123", IndexedControls)
+      }
+
+      def indexedDataId =
+        useAndClose(connection.prepareStatement("SELECT data_id FROM orbeon_i_current")) { ps ⇒
+          useAndClose(ps.executeQuery()) { rs ⇒
+            rs.next()
+            rs.getInt(1)
+          }
+        }
+
+      save("a", "b", "c")
+      assert(indexedValues === List(1 → "a", 2 → "b", 3 → "c"))
+      val firstDataId = indexedDataId
+
+      // Changed, removed, and empty values
+      save("a", "x", "")
+      assert(indexedValues === List(1 → "a", 2 → "x"))
+      assert(countRows(connection, "SELECT count(*) FROM orbeon_i_current") === 1)
+
+      // Unchanged rows are not moved to the new data row
+      assert(indexedDataId === firstDataId)
+
+      // With a duplicate value, the document is indexed again
+      useAndClose(connection.prepareStatement(
+        "INSERT INTO orbeon_i_control_text (data_id, pos, control, val) VALUES (?, 1, 'section/name', 'a')"
+      )) { ps ⇒
+        ps.setInt(1, firstDataId)
+        ps.executeUpdate()
+      }
+      save("a", "y")
+      assert(indexedValues === List(1 → "a", 2 → "y"))
+      assert(indexedDataId !== firstDataId)
+    }
+  }
+}
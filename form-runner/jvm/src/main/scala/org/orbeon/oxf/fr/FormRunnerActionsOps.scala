@@ -155,7 +155,7 @@ trait FormRunnerActionsOps extends FormRunnerBaseOps {
               tree.findRepeatControl(ancestorRepeatPrefixedId + Controls.buildSuffix(commonIndexesLeafToRoot.tail.reverse)) getOrElse
                 (throw new IllegalStateException)
 
-            val iterationBoundNode = repeat.children(commonIndexesLeafToRoot.head - 1).boundNode
+            val iterationBoundNode = repeat.iterationAt(commonIndexesLeafToRoot.head) flatMap (_.boundNode)
 
             // For section templates we must make sure we don't return a node which is not within the template instance
             iterationBoundNode filter (_.root == formInstance.root) orElse Some(formInstance)
@@ -40,6 +40,7 @@ import org.orbeon.oxf.xforms.action.XFormsAPI
 import org.orbeon.oxf.xforms.submission.RelevanceHandling
 import org.orbeon.oxf.xforms.submission.RelevanceHandling._
 import org.orbeon.oxf.xml.{ElementFilterXMLReceiver, TransformerUtils, XMLParsing}
+import org.orbeon.saxon.om.NodeInfo
 import org.orbeon.scaxon.Implicits._
 import org.orbeon.scaxon.SimplePath._
 
@@ -270,6 +271,24 @@ private object FormRunnerPersistenceProxy {
     path     : String
   ): Unit = {
 
+    val filteredFormElements = FormRunner.filterFormsAndAnnotateWithOperations(readPublishedFormsMetadata(request, app, form, path))
+
+    // Aggregate and serialize
+    val documentElement = elementInfo("forms")
+    XFormsAPI.insert(into = documentElement, origin = filteredFormElements)
+
+    response.setContentType("application/xml")
+    TransformerUtils.getXMLIdentityTransformer.transform(documentElement, new StreamResult(response.getOutputStream))
+  }
+
+  // Read the `<form>` elements from every configured persistence layer, without filtering them for the current user
+  def readPublishedFormsMetadata(
+    request  : Request,
+    app      : Option[String],
+    form     : Option[String],
+    path     : String
+  ): List[NodeInfo] = {
+
     val providers = {
       (app, form) match {
         case (Some(appName), Some(formName)) ⇒
@@ -299,14 +318,7 @@ private object FormRunnerPersistenceProxy {
         }
       }
 
-    val filteredFormElements = FormRunner.filterFormsAndAnnotateWithOperations(allFormElements.flatten)
-
-    // Aggregate and serialize
-    val documentElement = elementInfo("forms")
-    XFormsAPI.insert(into = documentElement, origin = filteredFormElements)
-
-    response.setContentType("application/xml")
-    TransformerUtils.getXMLIdentityTransformer.transform(documentElement, new StreamResult(response.getOutputStream))
+    allFormElements.flatten
   }
 
   def proxyReindex(
@@ -0,0 +1,81 @@
+/**
+ * Copyright (C) 2017 Orbeon, Inc.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU Lesser General Public License as published by the Free Software Foundation; either version
+ * 2.1 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The full text of the license is available at http://www.gnu.org/copyleft/lesser.html
+ */
+package org.orbeon.oxf.fr.persistence.relational
+
+import org.orbeon.oxf.cache.{InternalCacheKey, ObjectCache}
+import org.orbeon.oxf.properties.Properties
+import org.orbeon.oxf.util.Logging._
+
+// Cache of what the relational persistence layer reads about published forms through the persistence API
+//
+// Reading form metadata or a form definition is an internal HTTP request followed by parsing, which every data request
+// and search would otherwise do. Entries are for the latest published version of a form. They are removed when a form
+// definition is saved through this persistence layer, and otherwise expire, which covers other servers in a cluster.
+// Entries are shared by all users, so they must only be read from sources which don't depend on the current user, like
+// the published form definition, and not from the form metadata API, which filters forms based on the current user.
+object FormDefinitionCache {
+
+  import Private._
+
+  sealed abstract class EntryType(val name: String)
+  case object FormPermissions extends EntryType("permissions")
+  case object IndexedControls extends EntryType("indexed-controls")
+
+  // Nothing is cached if `read` doesn't find the form
+  def findOrRead[T](entryType: EntryType, app: String, form: String)(read: ⇒ Option[T]): Option[T] = {
+
+    val ttl = timeToLive
+
+    if (ttl <= 0)
+      read
+    else {
+      val key = createCacheKey(entryType, app, form)
+      Option(cache.findValid(key, System.currentTimeMillis).asInstanceOf[T]) match {
+        case found @ Some(_) ⇒
+          found
+        case None ⇒
+          val result = read
+          result foreach { value ⇒
+            debug("caching form information", List("type" → entryType.name, "app" → app, "form" → form))
+            // Entries are valid until they expire
+            cache.add(key, System.currentTimeMillis + ttl, value)
+          }
+          result
+      }
+    }
+  }
+
+  // Called when a form definition is saved or deleted
+  def invalidate(app: String, form: String): Unit =
+    List(FormPermissions, IndexedControls) foreach { entryType ⇒
+      cache.remove(createCacheKey(entryType, app, form))
+    }
+
+  private object Private {
+
+    implicit def logger = RelationalUtils.Logger
+
+    val CacheName          = "fr.persistence.form-definition"
+    val CacheDefaultSize   = 200
+    val TimeToLiveProperty = "oxf.fr.persistence.form-definition-cache.ttl"
+
+    val cache = ObjectCache.instance(CacheName, CacheDefaultSize)
+
+    def timeToLive: Long =
+      Properties.instance.getPropertySet.getInteger(TimeToLiveProperty, 60000).longValue
+
+    def createCacheKey(entryType: EntryType, app: String, form: String) =
+      new InternalCacheKey(CacheName, entryType.name + '/' + app + '/' + form)
+  }
+}
@@ -13,6 +13,7 @@
  */
 package org.orbeon.oxf.fr.persistence.relational
 
+import java.io.StringWriter
 import java.sql.{Connection, ResultSet}
 import javax.xml.transform.stream.StreamSource
 
@@ -78,6 +79,18 @@ object Provider {
     }
   }
 
+  // Read the XML as a string, so it can be parsed after the result set has moved on, possibly by another thread
+  def readXmlColumnAsString(provider: Provider, resultSet: ResultSet): String = {
+    provider match {
+      case PostgreSQL ⇒
+        resultSet.getString("xml")
+      case _ ⇒
+        val writer = new StringWriter
+        copyReader(resultSet.getClob("xml").getCharacterStream, writer)
+        writer.toString
+    }
+  }
+
   def seqNextVal(connection: Connection, provider: Provider): Int = {
     val nextValSql = provider match {
       case _ ⇒
@@ -19,6 +19,7 @@ import javax.sql.DataSource
 
 import org.orbeon.errorified.Exceptions
 import org.orbeon.oxf.common.OXFException
+import org.orbeon.oxf.externalcontext.Credentials
 import org.orbeon.oxf.fr.FormRunner
 import org.orbeon.oxf.util.IOUtils._
 import org.orbeon.oxf.util.{IndentedLogger, LoggerFactory, Logging, NetUtils}
@@ -92,16 +93,24 @@ object RelationalUtils extends Logging {
       connection
     }
 
+  // Read from the published form definition and not through the form metadata API, as the latter filters forms based
+  // on the current user, and what is read here is cached for all users
   def readFormPermissions(app: String, form: String): Option[NodeInfo]=
-    FormRunner
-      .readFormMetadata(app, form)
-      .getOrElse(throw new IllegalStateException)
-      .child("forms").child("form").child("permissions")
-      .headOption
+    FormDefinitionCache.findOrRead(FormDefinitionCache.FormPermissions, app, form) {
+      FormRunner.readPublishedForm(app, form) map permissionsFromFormDefinition
+    } getOrElse {
+      throw new IllegalStateException
+    }
+
+  def permissionsFromFormDefinition(formDefinition: NodeInfo): Option[NodeInfo] =
+    FormRunner.metadataInstanceRootOpt(formDefinition) flatMap (_.child("permissions").headOption)
 
-  def authorizedOperationsBasedOnRoles(permissionsElOpt: Option[NodeInfo]): Set[String] =
+  def authorizedOperationsBasedOnRoles(
+    permissionsElOpt : Option[NodeInfo],
+    currentUser      : Option[Credentials] = NetUtils.getExternalContext.getRequest.credentials
+  ): Set[String] =
     crudOperationsIfNoPermissions(permissionsElOpt, (permissionsEl) ⇒ {
-      FormRunner.authorizedOperationsBasedOnRoles(permissionsEl).toSet
+      FormRunner.authorizedOperationsBasedOnRoles(permissionsEl, currentUser).toSet
     })
 
   private def crudOperationsIfNoPermissions[T](
@@ -13,21 +13,24 @@
  */
 package org.orbeon.oxf.fr.persistence.relational.index
 
-import java.sql.{Connection, PreparedStatement}
+import java.sql.{Connection, PreparedStatement, ResultSet, Timestamp}
+import java.util.concurrent.{Callable, ExecutionException, Executors, Future, FutureTask}
 
 import org.orbeon.oxf.fr.FormRunner
 import org.orbeon.oxf.fr.persistence.relational.Provider.MySQL
 import org.orbeon.oxf.fr.persistence.relational.index.status.{Backend, StatusStore, Stopping}
-import org.orbeon.oxf.fr.persistence.relational.{Provider, RelationalUtils}
+import org.orbeon.oxf.fr.persistence.relational.{FormDefinitionCache, Provider, RelationalUtils}
 import org.orbeon.oxf.util.CoreUtils._
 import org.orbeon.oxf.util.IOUtils._
+import org.orbeon.oxf.util.XPath
 import org.orbeon.oxf.xforms.XFormsConstants
-import org.orbeon.oxf.xml.{NamespaceMapping, XMLConstants}
+import org.orbeon.oxf.xml.{NamespaceMapping, TransformerUtils, XMLConstants}
 import org.orbeon.saxon.om.NodeInfo
 import org.orbeon.scaxon
 import org.orbeon.scaxon.SimplePath._
 
 import scala.collection.JavaConverters._
+import scala.collection.mutable
 
 trait Reindex extends FormDefinition {
 
@@ -42,6 +45,8 @@ trait Reindex extends FormDefinition {
   //   3. For each document:
   //      - add 1 row to orbeon_i_current
   //      - add as many as necessary to orbeon_i_control_text
+  // Documents are parsed and their values extracted by a pool of workers, while this thread reads from and writes to
+  // the database. When reindexing everything, a commit is done every `CommitInterval` documents.
   def reindex(
     provider      : Provider,
     connection    : Connection,
@@ -109,32 +114,10 @@ trait Reindex extends FormDefinition {
         }
       }
 
-      val currentFromWhere =
-        s"""|    FROM
-            |      orbeon_form_data d,
-            |      (
-            |        SELECT
-            |          document_id,
-            |          draft,
-            |          max(last_modified_time) last_modified_time
-            |        FROM
-            |          orbeon_form_data
-            |        ${whereConditions.nonEmpty.string("WHERE")}
-            |          ${whereConditions.mkString(" AND ")}
-            |        GROUP BY
-            |          document_id,
-            |          draft
-            |      ) l
-            |   WHERE
-            |     d.document_id          = l.document_id        AND
-            |     d.last_modified_time   = l.last_modified_time AND
-            |     d.deleted              = 'N'
-            |""".stripMargin
-
       // Count how many documents we'll reindex, and tell progress code
       val countSql =
         s"""|SELECT count(*)
-            |$currentFromWhere
+            |${currentFromWhere(whereConditions)}
             |""".stripMargin
       useAndClose(connection.prepareStatement(countSql)) { ps ⇒
         paramSetter(ps)
@@ -145,143 +128,427 @@ trait Reindex extends FormDefinition {
         }
       }
 
-      // Get all the row from orbeon_form_data that are "latest" and not deleted
-      val xmlCol = Provider.xmlCol(provider, "d")
-      val currentDataSql =
-        s"""  SELECT d.id,
-           |         d.created,
-           |         d.last_modified_time,
-           |         d.last_modified_by,
-           |         d.username,
-           |         d.groupname,
-           |         d.organization_id,
-           |         d.app,
-           |         d.form,
-           |         d.form_version,
-           |         d.document_id,
-           |         d.draft,
-           |         $xmlCol
-           |$currentFromWhere
-           |ORDER BY app, form
-           |""".stripMargin
-
-      useAndClose(connection.prepareStatement(currentDataSql)) { ps ⇒
+      useAndClose(connection.prepareStatement(currentDataSql(provider, whereConditions))) { ps ⇒
         paramSetter(ps)
         useAndClose(ps.executeQuery()) { currentData ⇒
+          useAndClose(new IndexWriter(connection, commitPeriodically = whatToReindex == AllData)) { indexWriter ⇒
 
-          // Info on indexed controls for a given app/form
-          case class FormIndexedControls(
-            app             : String,
-            form            : String,
-            indexedControls : Seq[IndexedControl]
-          )
+            // Reindexing a single document happens as part of a CRUD request, where a thread pool isn't worth it
+            val executorOpt = whatToReindex match {
+              case DataForDocumentId(_) ⇒ None
+              case _                    ⇒ Some(Executors.newFixedThreadPool(WorkerCount))
+            }
+
+            try {
+
+              // Indexed controls are found reading the form definition, which needs to happen on this thread
+              val indexedControlsCache = mutable.Map[(String, String), Seq[IndexedControl]]()
+              def indexedControlsFor(app: String, form: String) =
+                indexedControlsCache.getOrElseUpdate((app, form), indexedControlsForForm(app, form))
 
-          // Go through each data document
-          // - we keep track of the indexed controls along in the iteration, and thus avoid recomputing them
-          var prevIndexedControls: Option[FormIndexedControls] = None
-          while (currentData.next() && StatusStore.getStatus != Stopping) {
-
-            Backend.setProviderDocumentNext()
-            val app = currentData.getString("app")
-            val form = currentData.getString("form")
-
-            // Get indexed controls for current app/form
-            val indexedControls: Seq[IndexedControl] = prevIndexedControls match {
-              case Some(FormIndexedControls(`app`, `form`, indexedControls)) ⇒
-                // Use indexed controls from previous iteration
-                indexedControls
-              case _ ⇒
-                // Compute indexed controls reading the form definition
-                FormRunner.readPublishedForm(app, form)(RelationalUtils.Logger) match {
-                  case None ⇒
-                    RelationalUtils.Logger.logError("", s"Can't index documents for $app/$form as form definition can't be found")
-                    Seq.empty
-                  case Some(formDefinition) ⇒
-                    findIndexedControls(formDefinition, app, form)
+              // Chunks being parsed, in the order in which they were read, so documents are indexed in that order
+              val pendingChunks = mutable.Queue[(Seq[DataRow], Future[Seq[Seq[ControlValue]]])]()
+
+              def writeOldestChunk(): Unit = {
+                val (rows, valuesFuture) = pendingChunks.dequeue()
+                val values =
+                  try valuesFuture.get
+                  catch { case e: ExecutionException ⇒ throw e.getCause }
+                for ((row, rowValues) ← rows zip values) {
+                  indexWriter.add(row, rowValues)
+                  Backend.setProviderDocumentNext()
                 }
-            }
+              }
 
-            // Insert into the "current data" table
-            val position = Iterator.from(1)
-
-            val insertIntoCurrentSql =
-              """INSERT INTO orbeon_i_current
-                |           (data_id,
-                |            created,
-                |            last_modified_time,
-                |            last_modified_by,
-                |            username,
-                |            groupname,
-                |            organization_id,
-                |            app,
-                |            form,
-                |            form_version,
-                |            document_id,
-                |            draft)
-                |    VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
-              """.stripMargin
-
-            useAndClose(connection.prepareStatement(insertIntoCurrentSql)) { ps ⇒
-              ps.setInt      (position.next(), currentData.getInt("id"))
-              ps.setTimestamp(position.next(), currentData.getTimestamp("created"))
-              ps.setTimestamp(position.next(), currentData.getTimestamp("last_modified_time"))
-              ps.setString   (position.next(), currentData.getString("last_modified_by"))
-              ps.setString   (position.next(), currentData.getString("username"))
-              ps.setString   (position.next(), currentData.getString("groupname"))
-              RelationalUtils.getIntOpt(currentData, "organization_id") match {
-                case Some(id) ⇒ ps.setInt(position.next(), id)
-                case None     ⇒ ps.setNull(position.next(), java.sql.Types.INTEGER)
+              // Documents are read in chunks of the same app/form, and each chunk is parsed by a worker
+              var hasNext = currentData.next()
+              while (hasNext && StatusStore.getStatus != Stopping) {
+
+                val rows = mutable.ArrayBuffer[DataRow]()
+                val xmls = mutable.ArrayBuffer[String]()
+                do {
+                  rows += readDataRow(currentData)
+                  xmls += Provider.readXmlColumnAsString(provider, currentData)
+                  hasNext = currentData.next()
+                } while (
+                  hasNext                                         &&
+                  rows.size < ChunkSize                           &&
+                  currentData.getString("app")  == rows.head.app  &&
+                  currentData.getString("form") == rows.head.form
+                )
+
+                val indexedControls = indexedControlsFor(rows.head.app, rows.head.form)
+                val task = new FutureTask(new Callable[Seq[Seq[ControlValue]]] {
+                  def call() = xmls map (extractValues(provider, _, indexedControls))
+                })
+                executorOpt match {
+                  case Some(executor) ⇒ executor.execute(task)
+                  case None           ⇒ task.run()
+                }
+                pendingChunks.enqueue(rows → task)
+
+                // Bound the number of documents held in memory
+                if (pendingChunks.size > WorkerCount * 2)
+                  writeOldestChunk()
               }
-              ps.setString   (position.next(), app)
-              ps.setString   (position.next(), form)
-              ps.setInt      (position.next(), currentData.getInt("form_version"))
-              ps.setString   (position.next(), currentData.getString("document_id"))
-              ps.setString   (position.next(), currentData.getString("draft"))
-              ps.executeUpdate()
-              ps.close()
+
+              while (pendingChunks.nonEmpty && StatusStore.getStatus != Stopping)
+                writeOldestChunk()
+
+              indexWriter.flush()
+
+            } finally {
+              executorOpt foreach (_.shutdownNow())
             }
+          }
+        }
+      }
+    }
+  }
 
-            // Read data (XML)
-            // - using lazy, as we might not need the data, if there are no controls to index
-            // - return root element, as XPath this is the node XPath expressions are relative to
-            lazy val dataRootElement: NodeInfo = {
-              val document = Provider.readXmlColumn(provider, currentData)
-              document.descendant(*).head
+  // Indexed controls of the published form, which is read through the persistence API
+  def indexedControlsForForm(app: String, form: String): Seq[IndexedControl] =
+    FormDefinitionCache.findOrRead(FormDefinitionCache.IndexedControls, app, form) {
+      FormRunner.readPublishedForm(app, form)(RelationalUtils.Logger) map (findIndexedControls(_, app, form))
+    } getOrElse {
+      RelationalUtils.Logger.logError("", s"Can't index documents for $app/$form as form definition can't be found")
+      Seq.empty
+    }
+
+  // Brings the index up to date after a document was saved. Unlike `reindex`, which deletes and inserts all the rows for
+  // the document, only the rows of `orbeon_i_control_text` for values which changed are touched. This doesn't read the
+  // form definition, so it can run in the transaction which saved the document.
+  //
+  // Each save adds a row to `orbeon_form_data`, so the rows of the index keep the id of the data row the document was
+  // first indexed with: `orbeon_i_current.data_id` is the key of the index rows of a document, and not necessarily
+  // the id of its latest data row. The other columns of `orbeon_i_current` are those of the latest data row.
+  def updateIndexForDocument(
+    provider        : Provider,
+    connection      : Connection,
+    documentId      : String,
+    indexedControls : Seq[IndexedControl]
+  ): Unit =
+    if (Index.ProvidersWithIndexSupport.contains(provider)) {
+
+      val latestRows =
+        useAndClose(connection.prepareStatement(currentDataSql(provider, List("document_id = ?")))) { ps ⇒
+          ps.setString(1, documentId)
+          useAndClose(ps.executeQuery()) { rs ⇒
+            Iterator.continually(rs.next()).takeWhile(identity).map { _ ⇒
+              (readDataRow(rs), Provider.readXmlColumnAsString(provider, rs))
+            }.toList
+          }
+        }
+
+      for ((row, xml) ← latestRows) {
+
+        val newValues = extractValues(provider, xml, indexedControls)
+
+        val existingDataIds =
+          useAndClose(connection.prepareStatement(
+            "SELECT data_id FROM orbeon_i_current WHERE document_id = ? AND draft = ?"
+          )) { ps ⇒
+            ps.setString(1, documentId)
+            ps.setString(2, row.draft)
+            useAndClose(ps.executeQuery()) { rs ⇒
+              Iterator.continually(rs.next()).takeWhile(identity).map(_ ⇒ rs.getInt(1)).toList
             }
+          }
 
-            // Extract and insert value for each indexed control
-            for (control ← indexedControls) {
-
-              val nodes = scaxon.XPath.eval(dataRootElement, control.xpath, FbNamespaceMapping).asInstanceOf[Seq[NodeInfo]]
-              for ((node, pos) ← nodes.zipWithIndex) {
-                val nodeValue = truncateValue(provider, node.getStringValue)
-                // For indexing, we are not interested in empty values
-                if (!nodeValue.isEmpty) {
-                  val position = Iterator.from(1)
-                  val insertIntoControlTextSql =
-                    """INSERT INTO orbeon_i_control_text
-                      |           (data_id,
-                      |            pos,
-                      |            control,
-                      |            val)
-                      |    VALUES (? , ? , ? , ? )
-                    """.stripMargin
-                  useAndClose(connection.prepareStatement(insertIntoControlTextSql)) { ps ⇒
-                    ps.setInt   (position.next(), currentData.getInt("id"))
-                    ps.setInt   (position.next(), pos + 1)
-                    ps.setString(position.next(), control.xpath)
-                    ps.setString(position.next(), nodeValue)
-                    ps.executeUpdate()
-                    ps.close()
-                  }
-                }
-              }
+        def existingValuesFor(dataId: Int): List[((String, Int), String)] =
+          useAndClose(connection.prepareStatement(
+            "SELECT control, pos, val FROM orbeon_i_control_text WHERE data_id = ?"
+          )) { ps ⇒
+            ps.setInt(1, dataId)
+            useAndClose(ps.executeQuery()) { rs ⇒
+              Iterator.continually(rs.next()).takeWhile(identity).map { _ ⇒
+                (rs.getString("control"), rs.getInt("pos")) → rs.getString("val")
+              }.toList
             }
-            // Pass current indexed controls to the next iteration
-            prevIndexedControls = Some(FormIndexedControls(app, form, indexedControls))
           }
+
+        // The row in `orbeon_i_current` is small, so it is replaced rather than updated column by column
+        def replaceCurrent(dataId: Int): Unit = {
+          for (existingDataId ← existingDataIds)
+            useAndClose(connection.prepareStatement("DELETE FROM orbeon_i_current WHERE data_id = ? AND draft = ?")) { ps ⇒
+              ps.setInt   (1, existingDataId)
+              ps.setString(2, row.draft)
+              ps.executeUpdate()
+            }
+          executeBatch(connection, InsertIntoCurrentSql, List(row.copy(id = dataId)))(setCurrentParams)
         }
+
+        // A document indexed once, without duplicate values, which would make the comparison ambiguous
+        val existingDataIdAndValuesOpt =
+          existingDataIds match {
+            case List(existingDataId) ⇒
+              val existingValues = existingValuesFor(existingDataId)
+              val existingKeys   = existingValues.map(_._1).toSet
+              (existingKeys.size == existingValues.size) option (existingDataId → existingValues.toMap)
+            case _ ⇒
+              None
+          }
+
+        existingDataIdAndValuesOpt match {
+          case Some((existingDataId, existingValues)) ⇒
+
+            replaceCurrent(existingDataId)
+
+            val newKeys = newValues.map(value ⇒ (value.control, value.pos)).toSet
+
+            val removedKeys   = existingValues.keys filterNot newKeys
+            val changedValues = newValues filter (value ⇒ existingValues.get((value.control, value.pos)) exists (_ != value.value))
+            val addedValues   = newValues filterNot (value ⇒ existingValues.contains((value.control, value.pos)))
+
+            executeBatch(connection, "DELETE FROM orbeon_i_control_text WHERE data_id = ? AND control = ? AND pos = ?", removedKeys) {
+              case (ps, (control, pos)) ⇒
+                ps.setInt   (1, existingDataId)
+                ps.setString(2, control)
+                ps.setInt   (3, pos)
+            }
+            executeBatch(connection, "UPDATE orbeon_i_control_text SET val = ? WHERE data_id = ? AND control = ? AND pos = ?", changedValues) {
+              (ps, value) ⇒
+                ps.setString(1, value.value)
+                ps.setInt   (2, existingDataId)
+                ps.setString(3, value.control)
+                ps.setInt   (4, value.pos)
+            }
+            executeBatch(connection, InsertIntoControlTextSql, addedValues)(setControlTextParams(existingDataId))
+
+          case None ⇒
+            // Not indexed yet, or the index is out of sync: index the document again under the id of its latest row
+            for (dataId ← existingDataIds)
+              useAndClose(connection.prepareStatement("DELETE FROM orbeon_i_control_text WHERE data_id = ?")) { ps ⇒
+                ps.setInt(1, dataId)
+                ps.executeUpdate()
+              }
+            replaceCurrent(row.id)
+            executeBatch(connection, InsertIntoControlTextSql, newValues)(setControlTextParams(row.id))
+        }
+      }
+    }
+
+  // Rows of `orbeon_form_data` that are "latest" and not deleted
+  private def currentFromWhere(whereConditions: List[String]) =
+    s"""|    FROM
+        |      orbeon_form_data d,
+        |      (
+        |        SELECT
+        |          document_id,
+        |          draft,
+        |          max(last_modified_time) last_modified_time
+        |        FROM
+        |          orbeon_form_data
+        |        ${whereConditions.nonEmpty.string("WHERE")}
+        |          ${whereConditions.mkString(" AND ")}
+        |        GROUP BY
+        |          document_id,
+        |          draft
+        |      ) l
+        |   WHERE
+        |     d.document_id          = l.document_id        AND
+        |     d.last_modified_time   = l.last_modified_time AND
+        |     d.deleted              = 'N'
+        |""".stripMargin
+
+  private def currentDataSql(provider: Provider, whereConditions: List[String]) = {
+    val xmlCol = Provider.xmlCol(provider, "d")
+    s"""  SELECT d.id,
+       |         d.created,
+       |         d.last_modified_time,
+       |         d.last_modified_by,
+       |         d.username,
+       |         d.groupname,
+       |         d.organization_id,
+       |         d.app,
+       |         d.form,
+       |         d.form_version,
+       |         d.document_id,
+       |         d.draft,
+       |         $xmlCol
+       |${currentFromWhere(whereConditions)}
+       |ORDER BY app, form
+       |""".stripMargin
+  }
+
+  // Number of threads parsing documents and evaluating the XPath expressions of indexed controls
+  private val WorkerCount = math.max(1, Runtime.getRuntime.availableProcessors - 1)
+
+  // Number of documents of the same app/form handed to a worker at once
+  private val ChunkSize = 50
+
+  // Number of rows sent to the database at once, and number of documents indexed between two commits
+  private val BatchSize      = 500
+  private val CommitInterval = 5000
+
+  // Columns of `orbeon_form_data` copied to `orbeon_i_current`
+  private case class DataRow(
+    id               : Int,
+    created          : Timestamp,
+    lastModifiedTime : Timestamp,
+    lastModifiedBy   : String,
+    username         : String,
+    groupname        : String,
+    organizationId   : Option[Int],
+    app              : String,
+    form             : String,
+    formVersion      : Int,
+    documentId       : String,
+    draft            : String
+  )
+
+  // Value of an indexed control, for a row of `orbeon_i_control_text`
+  private case class ControlValue(
+    control : String,
+    pos     : Int,
+    value   : String
+  )
+
+  private def readDataRow(resultSet: ResultSet): DataRow =
+    DataRow(
+      id               = resultSet.getInt      ("id"),
+      created          = resultSet.getTimestamp("created"),
+      lastModifiedTime = resultSet.getTimestamp("last_modified_time"),
+      lastModifiedBy   = resultSet.getString   ("last_modified_by"),
+      username         = resultSet.getString   ("username"),
+      groupname        = resultSet.getString   ("groupname"),
+      organizationId   = RelationalUtils.getIntOpt(resultSet, "organization_id"),
+      app              = resultSet.getString   ("app"),
+      form             = resultSet.getString   ("form"),
+      formVersion      = resultSet.getInt      ("form_version"),
+      documentId       = resultSet.getString   ("document_id"),
+      draft            = resultSet.getString   ("draft")
+    )
+
+  // Called from worker threads, so must not depend on the request or on the connection
+  private def extractValues(provider: Provider, xml: String, indexedControls: Seq[IndexedControl]): Seq[ControlValue] =
+    if (indexedControls.isEmpty)
+      // Don't parse the data if there are no controls to index
+      Nil
+    else {
+      // XPath expressions are relative to the root element
+      val dataRootElement: NodeInfo = {
+        val document = TransformerUtils.stringToTinyTree(XPath.GlobalConfiguration, xml, false, false)
+        document.descendant(*).head
+      }
+
+      for {
+        control     ← indexedControls
+        nodes       = scaxon.XPath.eval(dataRootElement, control.xpath, FbNamespaceMapping).asInstanceOf[Seq[NodeInfo]]
+        (node, pos) ← nodes.zipWithIndex
+        nodeValue   = truncateValue(provider, node.getStringValue)
+        // For indexing, we are not interested in empty values
+        if nodeValue.nonEmpty
+      } yield
+        ControlValue(control.xpath, pos + 1, nodeValue)
+    }
+
+  private val InsertIntoCurrentSql =
+    """INSERT INTO orbeon_i_current
+      |           (data_id,
+      |            created,
+      |            last_modified_time,
+      |            last_modified_by,
+      |            username,
+      |            groupname,
+      |            organization_id,
+      |            app,
+      |            form,
+      |            form_version,
+      |            document_id,
+      |            draft)
+      |    VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+    """.stripMargin
+
+  private val InsertIntoControlTextSql =
+    """INSERT INTO orbeon_i_control_text
+      |           (data_id,
+      |            pos,
+      |            control,
+      |            val)
+      |    VALUES (? , ? , ? , ? )
+    """.stripMargin
+
+  private def setCurrentParams(ps: PreparedStatement, row: DataRow): Unit = {
+    val position = Iterator.from(1)
+    ps.setInt      (position.next(), row.id)
+    ps.setTimestamp(position.next(), row.created)
+    ps.setTimestamp(position.next(), row.lastModifiedTime)
+    ps.setString   (position.next(), row.lastModifiedBy)
+    ps.setString   (position.next(), row.username)
+    ps.setString   (position.next(), row.groupname)
+    row.organizationId match {
+      case Some(id) ⇒ ps.setInt(position.next(), id)
+      case None     ⇒ ps.setNull(position.next(), java.sql.Types.INTEGER)
+    }
+    ps.setString   (position.next(), row.app)
+    ps.setString   (position.next(), row.form)
+    ps.setInt      (position.next(), row.formVersion)
+    ps.setString   (position.next(), row.documentId)
+    ps.setString   (position.next(), row.draft)
+  }
+
+  private def setControlTextParams(dataId: Int)(ps: PreparedStatement, value: ControlValue): Unit = {
+    val position = Iterator.from(1)
+    ps.setInt   (position.next(), dataId)
+    ps.setInt   (position.next(), value.pos)
+    ps.setString(position.next(), value.control)
+    ps.setString(position.next(), value.value)
+  }
+
+  private def executeBatch[T](connection: Connection, sql: String, items: Iterable[T])(setParams: (PreparedStatement, T) ⇒ Unit): Unit =
+    if (items.nonEmpty)
+      useAndClose(connection.prepareStatement(sql)) { ps ⇒
+        for (item ← items) {
+          setParams(ps, item)
+          ps.addBatch()
+        }
+        ps.executeBatch()
+      }
+
+  // Inserts into the index tables, reusing the same statements and sending rows to the database in batches
+  private class IndexWriter(connection: Connection, commitPeriodically: Boolean) {
+
+    private val insertIntoCurrentPs     = connection.prepareStatement(InsertIntoCurrentSql)
+    private val insertIntoControlTextPs = connection.prepareStatement(InsertIntoControlTextSql)
+
+    private var batchedRows          = 0
+    private var uncommittedDocuments = 0
+
+    def add(row: DataRow, values: Seq[ControlValue]): Unit = {
+
+      setCurrentParams(insertIntoCurrentPs, row)
+      insertIntoCurrentPs.addBatch()
+
+      for (value ← values) {
+        setControlTextParams(row.id)(insertIntoControlTextPs, value)
+        insertIntoControlTextPs.addBatch()
       }
+
+      batchedRows          += 1 + values.size
+      uncommittedDocuments += 1
+
+      if (batchedRows >= BatchSize)
+        flush()
+
+      // So the database doesn't have to keep a transaction with the whole index
+      if (commitPeriodically && uncommittedDocuments >= CommitInterval) {
+        flush()
+        connection.commit()
+        uncommittedDocuments = 0
+      }
+    }
+
+    def flush(): Unit =
+      if (batchedRows > 0) {
+        insertIntoCurrentPs.executeBatch()
+        insertIntoControlTextPs.executeBatch()
+        batchedRows = 0
+      }
+
+    def close(): Unit = {
+      runQuietly(insertIntoCurrentPs.close())
+      runQuietly(insertIntoControlTextPs.close())
     }
   }
 
@@ -22,7 +22,8 @@ import scala.collection.JavaConverters._
 
 object StatusStore {
 
-  private var currentStatus: Status = Stopped
+  // Read by the thread doing the reindexing to find out whether it needs to stop
+  @volatile private var currentStatus: Status = Stopped
 
   def getStatus: Status = currentStatus
 
@@ -296,6 +296,12 @@ trait CreateUpdateDelete
       PermissionsXML.parse(elOpt.orNull)
     }
 
+    // When saving data, the index for the document is updated in the same transaction, so the indexed controls, which
+    // require reading the form definition, are also read before establishing a connection
+    val indexedControlsOpt =
+      (req.forData && ! req.forAttachment && ! delete && Index.ProvidersWithIndexSupport(req.provider)) option
+        Index.indexedControlsForForm(req.app, req.form)
+
     RelationalUtils.withConnection { connection ⇒
 
       // Initial test on version that doesn't rely on accessing the database to read a document; we do this first:
@@ -391,21 +397,31 @@ trait CreateUpdateDelete
       // Update database
       val versionSet = store(connection, req, existing, delete)
 
+      // Data: only update the index rows which changed for this document id
+      for (indexedControls ← indexedControlsOpt; dataPart ← req.dataPart)
+        Index.updateIndexForDocument(req.provider, connection, dataPart.documentId, indexedControls)
+
       // Commit before reindexing, as reindexing will read back the form definition, which can
       // cause a deadlock since we're still in the transaction writing the form definition
       useAndClose(connection.prepareStatement("COMMIT"))(_.execute())
 
+      // Form definition: what was cached about the previously published form is out of date
+      if (req.forForm)
+        FormDefinitionCache.invalidate(req.app, req.form)
+
       // Update index
-      val whatToReindex = req.dataPart match {
-          case Some(dataPart) ⇒
-            // Data: update index for this document id
-            Index.DataForDocumentId(dataPart.documentId)
-          case None ⇒
-            // Form definition: update index for this form version
-            // Re. the asInstanceOf, when updating a form, we must have a specific version specified
-            Index.DataForForm(req.app, req.form, versionSet)
-        }
-      Index.reindex(req.provider, connection, whatToReindex)
+      if (indexedControlsOpt.isEmpty) {
+        val whatToReindex = req.dataPart match {
+            case Some(dataPart) ⇒
+              // Data deleted: update index for this document id
+              Index.DataForDocumentId(dataPart.documentId)
+            case None ⇒
+              // Form definition: update index for this form version
+              // Re. the asInstanceOf, when updating a form, we must have a specific version specified
+              Index.DataForForm(req.app, req.form, versionSet)
+          }
+        Index.reindex(req.provider, connection, whatToReindex)
+      }
 
       // Create flat view if needed
       if (requestFlatView && FlatView.SupportedProviders(req.provider) && req.forForm && ! req.forAttachment && ! delete && req.form != "library")
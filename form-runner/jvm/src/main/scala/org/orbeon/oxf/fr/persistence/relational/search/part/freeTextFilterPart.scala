@@ -26,9 +26,16 @@ object freeTextFilterPart {
         NilPart
 
       case Some(freeTextSearch) ⇒
+        // `orbeon_i_current.data_id` isn't necessarily the id of the latest data row (see `updateIndexForDocument`), so
+        // the latest data row is found the same way as when indexing
         StatementPart(
           sql =
-            s"""|AND d.id = c.data_id
+            s"""|AND d.app                = c.app
+                |AND d.form               = c.form
+                |AND d.document_id        = c.document_id
+                |AND d.draft              = c.draft
+                |AND d.last_modified_time = c.last_modified_time
+                |AND d.deleted            = 'N'
                 |AND ${Provider.xmlContains(request.provider)}
                 |""".stripMargin,
           setters = {
@@ -0,0 +1,196 @@
+/**
+ * Copyright (C) 2017 Orbeon, Inc.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU Lesser General Public License as published by the Free Software Foundation; either version
+ * 2.1 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The full text of the license is available at http://www.gnu.org/copyleft/lesser.html
+ */
+package org.orbeon.oxf.fr.warmup
+
+import java.io.OutputStream
+import java.util.concurrent.{Callable, Executors}
+import javax.servlet.{ServletContextEvent, ServletContextListener}
+
+import org.apache.http.impl.client.BasicCookieStore
+import org.orbeon.oxf.externalcontext.URLRewriter
+import org.orbeon.oxf.fr.FormRunnerPersistenceProxy
+import org.orbeon.oxf.http.HttpMethod.{GET, POST}
+import org.orbeon.oxf.http.{PropertiesApacheHttpClient, StatusCode, StreamedContent}
+import org.orbeon.oxf.pipeline.InitUtils
+import org.orbeon.oxf.pipeline.api.PipelineContext
+import org.orbeon.oxf.properties.Properties
+import org.orbeon.oxf.util.IOUtils._
+import org.orbeon.oxf.util.Logging._
+import org.orbeon.oxf.util.StringUtils._
+import org.orbeon.oxf.util._
+import org.orbeon.oxf.webapp.ProcessorService
+import org.orbeon.oxf.xforms.state.XFormsStaticStateCache
+import org.orbeon.scaxon.SimplePath._
+
+import scala.util.control.NonFatal
+
+// Build the static states of all the published forms ahead of the first user
+//
+// Each form is loaded in new mode with an internal request, in which the XForms engine only creates the static state,
+// which fills the static state cache, the XPath cache, and the pipeline caches as a side effect. No XForms document is
+// created, so no actions or services run, and the document cache and state store are left alone. Requests run on a
+// bounded pool of workers, which share the external context of the request which triggered the warmup.
+object Warmup {
+
+  implicit val Logger = new IndentedLogger(LoggerFactory.createLogger("org.orbeon.fr.warmup"))
+
+  val ServicePath = "/fr/service/warmup"
+
+  private val ThreadsProperty      = "oxf.fr.warmup.threads"
+  private val OnStartupProperty    = "oxf.fr.warmup.on-startup"
+  private val StartupDelayProperty = "oxf.fr.warmup.startup-delay"
+
+  private def propertySet = Properties.instance.getPropertySet
+
+  // Must be called from a request, which is used to read the list of forms and to load each form
+  def warmupPublishedForms(): Unit =
+    if (StatusStore.startIfStopped()) {
+      try {
+        val forms = publishedForms
+        StatusStore.setStatus(WarmingUp(Count(current = 0, total = forms.size), failedCount = 0))
+        warmupForms(forms)
+      } finally
+        StatusStore.setStatus(Stopped)
+    } else
+      info("warmup already in progress")
+
+  // Available forms across all the persistence providers
+  //
+  // The list isn't filtered for the current user, who, when the warmup is triggered on startup, is anonymous. This is
+  // fine as only the static state is built, and it doesn't depend on the user.
+  def publishedForms: List[(String, String)] =
+    for {
+      form ← FormRunnerPersistenceProxy.readPublishedFormsMetadata(NetUtils.getExternalContext.getRequest, None, None, "")
+      if (form elemValue "available") != "false"
+    } yield
+      (form elemValue "application-name") → (form elemValue "form-name")
+
+  private def warmupForms(forms: List[(String, String)]): Unit = {
+
+    // Everything which needs the incoming request, apart from the internal request itself, is done on this thread,
+    // as the external context isn't thread-safe
+    val externalContext  = NetUtils.getExternalContext
+    val request          = externalContext.getRequest
+    val processorService = ProcessorService.currentProcessorService.value
+
+    val headers =
+      Connection.buildConnectionHeadersCapitalizedIfNeeded(
+        scheme           = "http",
+        hasCredentials   = false,
+        customHeaders    = Map(),
+        headersToForward = Connection.headersToForwardFromProperty,
+        cookiesToForward = Connection.cookiesToForwardFromProperty,
+        getHeader        = Connection.getHeaderFromRequest(request)
+      )
+
+    // Use the internal client directly, instead of `Connection`, so that the request runs on the worker thread, which
+    // `XFormsStaticStateCache.withStaticStateOnly` requires, and so that no URL has to be rewritten
+    def warmupForm(app: String, form: String, path: String): Boolean =
+      try {
+        val response =
+          XFormsStaticStateCache.withStaticStateOnly {
+            InternalHttpClient.connect(
+              url         = path,
+              credentials = None,
+              cookieStore = new BasicCookieStore,
+              method      = GET,
+              headers     = headers,
+              content     = None
+            )
+          }
+        try {
+          copyStream(response.content.inputStream, DiscardOutputStream)
+          response.statusCode == StatusCode.Ok
+        } finally
+          response.disconnect()
+      } catch {
+        case NonFatal(t) ⇒
+          warn("error warming up form", List("app" → app, "form" → form, "throwable" → t.toString))
+          false
+      }
+
+    val executor = Executors.newFixedThreadPool(propertySet.getInteger(ThreadsProperty, 4))
+    try {
+      val futures =
+        for {
+          (app, form) ← forms
+          path        = s"/fr/$app/$form/new"
+        } yield
+          executor.submit(new Callable[Unit] {
+            def call() =
+              if (StatusStore.getStatus != Stopping)
+                InitUtils.withPipelineContext { pipelineContext ⇒
+                  // The internal request needs the incoming external context and the current servlet
+                  pipelineContext.setAttribute(PipelineContext.EXTERNAL_CONTEXT, externalContext)
+                  val success =
+                    processorService match {
+                      case Some(service) ⇒ ProcessorService.withProcessorService(service)(warmupForm(app, form, path))
+                      case None          ⇒ warmupForm(app, form, path)
+                    }
+                  if (! success)
+                    warn("unable to warm up form", List("app" → app, "form" → form))
+                  StatusStore.setFormDone(failed = ! success)
+                }
+          })
+
+      // The incoming request must remain valid while the workers use it
+      futures foreach (_.get)
+    } finally
+      executor.shutdownNow()
+  }
+
+  // Trigger the warmup through the service, so that it runs within a request
+  def warmupOnStartupIfNeeded(): Unit =
+    if (propertySet.getBoolean(OnStartupProperty, default = false)) {
+      if (URLRewriterUtils.getServiceBaseURI.trimAllToOpt.isEmpty)
+        warn(s"`$OnStartupProperty` requires `oxf.url-rewriting.service.base-uri` to be set")
+      else {
+        val thread = new Thread(new Runnable {
+          def run() =
+            try {
+              Thread.sleep(propertySet.getInteger(StartupDelayProperty, 30000).longValue)
+              // There is no incoming request, so `Connection` can't be used
+              val url = URLRewriterUtils.rewriteServiceURL(null, ServicePath, URLRewriter.REWRITE_MODE_ABSOLUTE)
+              val response =
+                PropertiesApacheHttpClient.connect(
+                  url         = url,
+                  credentials = None,
+                  cookieStore = new BasicCookieStore,
+                  method      = POST,
+                  headers     = Map(),
+                  content     = Some(StreamedContent.fromBytes(Array(), None))
+                )
+              try
+                info("warmup on startup done", List("status code" → response.statusCode.toString))
+              finally
+                response.disconnect()
+            } catch {
+              case NonFatal(t) ⇒ warn("error triggering warmup on startup", List("throwable" → t.toString))
+            }
+        }, "Form Runner warmup")
+        thread.setDaemon(true)
+        thread.start()
+      }
+    }
+
+  private object DiscardOutputStream extends OutputStream {
+    def write(b: Int) = ()
+    override def write(b: Array[Byte], off: Int, len: Int) = ()
+  }
+}
+
+class WarmupServletContextListener extends ServletContextListener {
+  def contextInitialized(servletContextEvent: ServletContextEvent): Unit = Warmup.warmupOnStartupIfNeeded()
+  def contextDestroyed(servletContextEvent: ServletContextEvent) = ()
+}
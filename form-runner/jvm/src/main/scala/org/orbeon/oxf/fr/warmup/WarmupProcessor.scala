@@ -0,0 +1,28 @@
+/**
+ * Copyright (C) 2017 Orbeon, Inc.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU Lesser General Public License as published by the Free Software Foundation; either version
+ * 2.1 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The full text of the license is available at http://www.gnu.org/copyleft/lesser.html
+ */
+package org.orbeon.oxf.fr.warmup
+
+import org.orbeon.oxf.pipeline.api.PipelineContext
+import org.orbeon.oxf.processor.ProcessorImpl
+
+/**
+ * Processor warming up all the published forms.
+ *
+ * - mapped to `fr:warmup` in `processors.xml`
+ * - mapped to `/fr/service/warmup` in `fr/page-flow.xml`
+ */
+class WarmupProcessor extends ProcessorImpl {
+  override def start(pipelineContext: PipelineContext): Unit =
+    Warmup.warmupPublishedForms()
+}
@@ -0,0 +1,80 @@
+/**
+ * Copyright (C) 2017 Orbeon, Inc.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU Lesser General Public License as published by the Free Software Foundation; either version
+ * 2.1 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The full text of the license is available at http://www.gnu.org/copyleft/lesser.html
+ */
+package org.orbeon.oxf.fr.warmup
+
+// Status of the warmup, along the lines of the reindex status
+
+sealed trait Status                                { val name : String }
+case object  Stopped                               extends { val name = "stopped"  } with Status
+case object  Starting                              extends { val name = "starting" } with Status
+case object  Stopping                              extends { val name = "stopping" } with Status
+case class   WarmingUp(formCount   : Count,
+                       failedCount : Int)          extends { val name = "warming"  } with Status
+
+case class   Count    (current     : Int,
+                       total       : Int)
+
+object StatusStore {
+
+  // Read by the threads doing the warmup to find out whether they need to stop
+  @volatile private var currentStatus: Status = Stopped
+
+  def getStatus: Status = currentStatus
+
+  // Only one warmup runs at a time
+  def startIfStopped(): Boolean = synchronized {
+    val stopped = currentStatus == Stopped
+    if (stopped)
+      setStatus(Starting)
+    stopped
+  }
+
+  def setStatus(status: Status): Unit = synchronized {
+
+    if (Warmup.Logger.isDebugEnabled) {
+      def logInfo (message: String) = Warmup.Logger.logInfo ("Warmup status", message)
+      def logDebug(message: String) = Warmup.Logger.logDebug("Warmup status", message)
+      status match {
+        case Stopped                                     ⇒ logInfo("Stopped")
+        case Starting                                    ⇒ logInfo("Starting")
+        case Stopping                                    ⇒ logInfo("Stopping")
+        case WarmingUp(fc, _) if fc.current == 0         ⇒ logInfo (s"Warming up ${fc.total} forms")
+        case WarmingUp(fc, failed)                       ⇒ logDebug(s"Warming up form ${fc.current}/${fc.total}, $failed failed")
+      }
+    }
+
+    currentStatus = status
+  }
+
+  // Called by the worker threads as each form is done
+  def setFormDone(failed: Boolean): Unit = synchronized {
+    currentStatus match {
+      case WarmingUp(fc, failedCount) ⇒
+        setStatus(WarmingUp(fc.copy(current = fc.current + 1), failedCount + (if (failed) 1 else 0)))
+      case _ ⇒
+    }
+  }
+}
+
+// Functions called by UI
+
+object UI {
+
+  def status : String = StatusStore.getStatus.name
+  def stop() : Unit   = if (StatusStore.getStatus != Stopped) StatusStore.setStatus(Stopping)
+
+  def getFormCurrent = Some(StatusStore.getStatus).collect{ case WarmingUp(c, _) ⇒ c.current }.getOrElse(0)
+  def getFormTotal   = Some(StatusStore.getStatus).collect{ case WarmingUp(c, _) ⇒ c.total   }.getOrElse(0)
+  def getFailedCount = Some(StatusStore.getStatus).collect{ case WarmingUp(_, f) ⇒ f         }.getOrElse(0)
+}
@@ -0,0 +1,64 @@
+/**
+ * Copyright (C) 2017 Orbeon, Inc.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU Lesser General Public License as published by the Free Software Foundation; either version
+ * 2.1 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The full text of the license is available at http://www.gnu.org/copyleft/lesser.html
+ */
+package org.orbeon.oxf.fr
+
+import org.junit.Test
+import org.orbeon.dom
+import org.orbeon.oxf.test.DocumentTestBase
+import org.orbeon.oxf.xforms.XFormsStaticStateImpl
+import org.orbeon.oxf.xforms.state.XFormsInitialDocumentCache
+import org.orbeon.oxf.xml.Dom4j.elemToDocument
+import org.scalatest.junit.AssertionsForJUnit
+
+class InitialDocumentCacheTest extends DocumentTestBase with AssertionsForJUnit {
+
+  private def form(calculate: String): dom.Document =
+    <xh:html xmlns:xf="http://www.w3.org/2002/xforms"
+         xmlns:xh="http://www.w3.org/1999/xhtml"
+         xmlns:xxf="http://orbeon.org/oxf/xml/xforms"
+         xmlns:frf="java:org.orbeon.oxf.fr.FormRunner">
+      <xh:head>
+        <xf:model xxf:initial-document-cache="true">
+          <xf:instance id="instance">
+            <instance>
+              <calculated/>
+            </instance>
+          </xf:instance>
+          <xf:bind ref="calculated" calculate={calculate}/>
+        </xf:model>
+      </xh:head>
+      <xh:body>
+        <xf:input id="calculated-input" ref="calculated"/>
+      </xh:body>
+    </xh:html>
+
+  private def initialStateDigest(xhtml: dom.Document) = {
+    val (_, staticState) = XFormsStaticStateImpl.createFromDocument(xhtml)
+    setupDocument(XFormsInitialDocumentCache.createDocument(staticState, null, null))
+    staticState.digest
+  }
+
+  // Form Runner functions can read the request without being marked as depending on it
+  @Test def requestDependentFunction(): Unit =
+    withTestExternalContext { _ ⇒
+      val digest = initialStateDigest(form("string(frf:isEmbeddable())"))
+      assert(XFormsInitialDocumentCache.findDynamicState(digest).isEmpty)
+    }
+
+  @Test def pureFunction(): Unit =
+    withTestExternalContext { _ ⇒
+      val digest = initialStateDigest(form("frf:controlNameFromId('my-control')"))
+      assert(XFormsInitialDocumentCache.findDynamicState(digest).isDefined)
+    }
+}
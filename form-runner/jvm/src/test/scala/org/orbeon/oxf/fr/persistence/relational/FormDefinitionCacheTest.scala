@@ -0,0 +1,89 @@
+/**
+ * Copyright (C) 2017 Orbeon, Inc.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU Lesser General Public License as published by the Free Software Foundation; either version
+ * 2.1 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The full text of the license is available at http://www.gnu.org/copyleft/lesser.html
+ */
+package org.orbeon.oxf.fr.persistence.relational
+
+import org.orbeon.oxf.externalcontext.{Credentials, SimpleRole}
+import org.orbeon.oxf.test.{DocumentTestBase, ResourceManagerSupport}
+import org.orbeon.saxon.om.NodeInfo
+import org.orbeon.scaxon.NodeConversions._
+import org.scalatest.FunSpecLike
+
+class FormDefinitionCacheTest
+  extends DocumentTestBase
+     with ResourceManagerSupport
+     with FunSpecLike {
+
+  describe("Cached form permissions") {
+
+    val formDefinition =
+      elemToDocumentInfo(
+        <xh:html xmlns:xh="http://www.w3.org/1999/xhtml"
+             xmlns:xf="http://www.w3.org/2002/xforms">
+          <xh:head>
+            <xf:model id="fr-form-model">
+              <xf:instance id="fr-form-instance">
+                <form/>
+              </xf:instance>
+              <xf:instance id="fr-form-metadata" xxf:readonly="true" xmlns:xxf="http://orbeon.org/oxf/xml/xforms">
+                <metadata>
+                  <application-name>acme</application-name>
+                  <form-name>order</form-name>
+                  <permissions>
+                    <permission operations="read update delete">
+                      <user-role any-of="clerk"/>
+                    </permission>
+                    <permission operations="create"/>
+                  </permissions>
+                </metadata>
+              </xf:instance>
+            </xf:model>
+          </xh:head>
+          <xh:body/>
+        </xh:html>
+      )
+
+    def user(username: String, role: String) =
+      Credentials(
+        username      = username,
+        group         = None,
+        roles         = List(SimpleRole(role)),
+        organizations = Nil
+      )
+
+    val clerk = user("jclerk", "clerk")
+    val guest = user("jguest", "guest")
+
+    var reads = 0
+
+    def readPermissions(): Option[NodeInfo] =
+      FormDefinitionCache.findOrRead(FormDefinitionCache.FormPermissions, "acme", "order") {
+        reads += 1
+        Some(RelationalUtils.permissionsFromFormDefinition(formDefinition))
+      } getOrElse {
+        throw new IllegalStateException
+      }
+
+    it("must not depend on the user who first read them") {
+
+      FormDefinitionCache.invalidate("acme", "order")
+
+      // A user without access to the form reads, and caches, the permissions first
+      assert(Set("create") == RelationalUtils.authorizedOperationsBasedOnRoles(readPermissions(), Some(guest)))
+      assert(Set("create", "read", "update", "delete") == RelationalUtils.authorizedOperationsBasedOnRoles(readPermissions(), Some(clerk)))
+      assert(Set("create") == RelationalUtils.authorizedOperationsBasedOnRoles(readPermissions(), Some(guest)))
+
+      assert(1 == reads)
+    }
+  }
+}
@@ -15,7 +15,7 @@ package org.orbeon.oxf.cache;
 
 import java.util.Iterator;
 
-public interface Cache {
+public interface Cache extends CacheStatistics {
     void add(CacheKey key, Object validity, Object object);
     void remove(CacheKey key);
     int removeAll();
@@ -27,4 +27,5 @@ public interface Cache {
     int getCurrentSize();
     int getMaxSize();
     void setMaxSize(int maxSize);
+    void setMaxWeight(long maxWeight);
 }
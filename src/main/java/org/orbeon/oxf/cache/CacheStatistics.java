@@ -25,6 +25,16 @@ public interface CacheStatistics {
      */
     public int getCurrentSize();
 
+    /**
+     * Maximum total weight of the objects the cache can hold, or 0 if the cache is only bounded by size
+     */
+    public long getMaxWeight();
+
+    /**
+     * Total weight of the objects in cache at this time (see Weighted)
+     */
+    public long getCurrentWeight();
+
     /**
      * Number of successful cache read
      */
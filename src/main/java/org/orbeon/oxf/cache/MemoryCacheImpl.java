@@ -25,23 +25,56 @@ import java.util.concurrent.locks.Lock;
 /**
  * Memory cache implementation.
  *
+ * The cache is bounded by entry count and, optionally, by the total weight of its entries (see Weighted). When a
+ * maximum weight is set, least recently used entries are evicted until the total weight fits within it. An object
+ * heavier than the maximum object weight, which is the maximum weight unless specified, is not cached. An object
+ * heavier than the maximum weight but within the maximum object weight is cached alone.
+ *
  * @noinspection SimplifiableIfStatement
  */
 public class MemoryCacheImpl implements Cache {
 
     private int maxSize;
+    private long maxWeight;
+    private long maxObjectWeight;
 
     private Map<CacheKey, CacheEntry> keyToEntryMap = new HashMap<CacheKey, CacheEntry>();
     private CacheLinkedList linkedList = new CacheLinkedList();
     private int currentSize;
+    private long currentWeight;
+
+    private int hitCount;
+    private int missCount;
+    private int addCount;
+    private int expirationCount;
 
     public MemoryCacheImpl(int maxSize) {
+        this(maxSize, 0);
+    }
+
+    public MemoryCacheImpl(int maxSize, long maxWeight) {
+        this(maxSize, maxWeight, maxWeight);
+    }
+
+    public MemoryCacheImpl(int maxSize, long maxWeight, long maxObjectWeight) {
         this.maxSize = maxSize;
+        this.maxWeight = maxWeight;
+        this.maxObjectWeight = maxObjectWeight;
     }
 
     public synchronized void add(CacheKey key, Object validity, Object cacheable) {
         if (key == null || validity == null || maxSize == 0) return;
+
+        final long weight = weightOf(cacheable);
         CacheEntry entry = keyToEntryMap.get(key);
+        if (maxWeight > 0 && weight > Math.max(maxWeight, maxObjectWeight)) {
+            // Object can never fit: don't cache it and remove any previous object for the same key
+            if (entry != null)
+                remove(key, false, true);
+            return;
+        }
+
+        addCount++;
         if (entry == null) {
             // No existing entry found
             if (currentSize == maxSize) {
@@ -56,8 +89,10 @@ public class MemoryCacheImpl implements Cache {
             entry.key = key;
             entry.validity = validity;
             entry.cacheable = cacheable;
+            entry.weight = weight;
             keyToEntryMap.put(key, entry);
             entry.listEntry = linkedList.addFirst(entry);
+            currentWeight += weight;
 
             // Notify object
             notifyAdded(entry.cacheable);
@@ -66,15 +101,31 @@ public class MemoryCacheImpl implements Cache {
             // Update validity and move to the front
             entry.validity = validity;
             entry.cacheable = cacheable;
+            currentWeight += weight - entry.weight;
+            entry.weight = weight;
             linkedList.remove(entry.listEntry);
             entry.listEntry = linkedList.addFirst(entry);
         }
+
+        // Evict other entries until the total weight fits
+        // If some entries can't be evicted (e.g. all were locked), the cache will grow over maxWeight.
+        if (maxWeight > 0)
+            while (currentWeight > maxWeight && tryEvictLast(entry, true));
+    }
+
+    private static long weightOf(Object cacheable) {
+        return (cacheable instanceof Weighted) ? Math.max(((Weighted) cacheable).getWeight(), 0) : 0;
     }
 
     private boolean tryEvictLast() {
+        return tryEvictLast(null, false);
+    }
+
+    // When evicting to reduce weight, entries without weight are skipped as evicting them wouldn't help
+    private boolean tryEvictLast(CacheEntry entryToKeep, boolean weightedOnly) {
         for (final Iterator<CacheEntry> i = linkedList.reverseIterator(); i.hasNext();) {
             final CacheEntry entryToTry = i.next();
-            if (tryEvict(entryToTry)) {
+            if (entryToTry != entryToKeep && (! weightedOnly || entryToTry.weight > 0) && tryEvict(entryToTry)) {
                 return true;
             }
         }
@@ -120,9 +171,11 @@ public class MemoryCacheImpl implements Cache {
             keyToEntryMap.remove(key);
             linkedList.remove(entry.listEntry);
             currentSize--;
+            currentWeight -= entry.weight;
 
             // Notify object
             if (isEvict) {
+                expirationCount++;
                 notifyEvicted(entry.cacheable);
             } else if (isRemove) {
                 notifyRemoved(entry.cacheable);
@@ -159,6 +212,7 @@ public class MemoryCacheImpl implements Cache {
         keyToEntryMap = new HashMap<CacheKey, CacheEntry>();
         linkedList = new CacheLinkedList();
         currentSize = 0;
+        currentWeight = 0;
         return previousSize;
     }
 
@@ -175,6 +229,7 @@ public class MemoryCacheImpl implements Cache {
     private synchronized Object getValid(CacheKey key, Object validity, boolean remove) {
         final CacheEntry entry = keyToEntryMap.get(key);
         if (entry != null && lowerOrEqual(validity, entry.validity)) {
+            hitCount++;
 
             if (remove) {
                 // Remove and notify
@@ -187,7 +242,8 @@ public class MemoryCacheImpl implements Cache {
 
             return entry.cacheable;
         } else {
-            // Not latest validity
+            // Not found or not latest validity
+            missCount++;
             return null;
         }
     }
@@ -221,6 +277,45 @@ public class MemoryCacheImpl implements Cache {
         }
     }
 
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+
+    public long getCurrentWeight() {
+        return currentWeight;
+    }
+
+    public synchronized void setMaxWeight(long maxWeight) {
+        setMaxWeight(maxWeight, maxWeight);
+    }
+
+    public synchronized void setMaxWeight(long maxWeight, long maxObjectWeight) {
+        this.maxObjectWeight = maxObjectWeight;
+        if (maxWeight != this.maxWeight) {
+            this.maxWeight = maxWeight;
+
+            // Decrease weight if necessary
+            if (maxWeight > 0)
+                while (currentWeight > maxWeight && tryEvictLast(null, true));
+        }
+    }
+
+    public int getHitCount() {
+        return hitCount;
+    }
+
+    public int getMissCount() {
+        return missCount;
+    }
+
+    public int getAddCount() {
+        return addCount;
+    }
+
+    public int getExpirationCount() {
+        return expirationCount;
+    }
+
     public Iterator<CacheKey> iterateCacheKeys() {
         return new TransformIterator(linkedList.iterator(), new Transformer() {
             public Object transform(Object o) {
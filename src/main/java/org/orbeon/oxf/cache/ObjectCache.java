@@ -13,10 +13,13 @@
  */
 package org.orbeon.oxf.cache;
 
+import org.orbeon.oxf.common.OXFException;
 import org.orbeon.oxf.properties.Properties;
+import org.orbeon.oxf.properties.PropertySet;
 
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Factory for ObjectCache instances.
@@ -28,8 +31,16 @@ public class ObjectCache {
 
     private static final String CACHE_PROPERTY_NAME_PREFIX = "oxf.";
     private static final String CACHE_PROPERTY_NAME_SIZE_SUFFIX = ".size";
+    private static final String CACHE_PROPERTY_NAME_TYPE_SUFFIX = ".type";
+    private static final String CACHE_PROPERTY_NAME_STRIPES_SUFFIX = ".stripes";
+    private static final String CACHE_PROPERTY_NAME_MAX_BYTES_SUFFIX = ".max-bytes";
 
-    private static final Map<String, Cache> namedObjectCaches = new HashMap<String, Cache>();
+    private static final String CACHE_TYPE_MEMORY = "memory";
+    private static final String CACHE_TYPE_STRIPED = "striped";
+    private static final int DEFAULT_STRIPES = 16;
+
+    // Concurrent so that lookups of existing caches don't need to synchronize
+    private static final Map<String, Cache> namedObjectCaches = new ConcurrentHashMap<String, Cache>();
 
     static {
         namedObjectCaches.put(DEFAULT_CACHE_NAME, new MemoryCacheImpl(DEFAULT_SIZE));
@@ -49,16 +60,51 @@ public class ObjectCache {
     /**
      * Get the instance of the object cache specified.
      *
+     * The cache implementation is selected with the `oxf.[name].type` property:
+     *
+     * - `memory`: single-lock LRU cache (default)
+     * - `striped`: lock-striped approximate LRU cache, with `oxf.[name].stripes` stripes (default 16)
+     *
+     * In addition to `oxf.[name].size`, the optional `oxf.[name].max-bytes` property bounds the approximate memory
+     * used by the cached objects which implement Weighted. Values of 2 GB or more must use `as="xs:long"`.
+     *
      * @param cacheName     name of the cache
      * @param defaultSize   default size if size is not found in properties
      * @return              instance of cache
      */
-    public synchronized static Cache instance(String cacheName, int defaultSize) {
+    public static Cache instance(String cacheName, int defaultSize) {
+        final Cache cache = namedObjectCaches.get(cacheName);
+        return cache != null ? cache : createInstance(cacheName, defaultSize);
+    }
+
+    /**
+     * Get all the object caches created so far, by name.
+     *
+     * @return read-only view of the caches
+     */
+    public static Map<String, Cache> getNamedCaches() {
+        return Collections.unmodifiableMap(namedObjectCaches);
+    }
+
+    private synchronized static Cache createInstance(String cacheName, int defaultSize) {
         Cache cache = namedObjectCaches.get(cacheName);
         if (cache == null) {
-            final String propertyName = CACHE_PROPERTY_NAME_PREFIX + cacheName + CACHE_PROPERTY_NAME_SIZE_SUFFIX;
-            final Integer size = Properties.instance().getPropertySet().getInteger(propertyName, defaultSize);
-            cache = new MemoryCacheImpl(size);
+            final PropertySet propertySet = Properties.instance().getPropertySet();
+            final String propertyPrefix = CACHE_PROPERTY_NAME_PREFIX + cacheName;
+
+            final int size = propertySet.getInteger(propertyPrefix + CACHE_PROPERTY_NAME_SIZE_SUFFIX, defaultSize);
+            final long maxBytes = propertySet.getLong(propertyPrefix + CACHE_PROPERTY_NAME_MAX_BYTES_SUFFIX, 0);
+            final String type = propertySet.getString(propertyPrefix + CACHE_PROPERTY_NAME_TYPE_SUFFIX, CACHE_TYPE_MEMORY);
+
+            if (CACHE_TYPE_STRIPED.equals(type)) {
+                final int stripes = propertySet.getInteger(propertyPrefix + CACHE_PROPERTY_NAME_STRIPES_SUFFIX, DEFAULT_STRIPES);
+                cache = new StripedCacheImpl(size, maxBytes, stripes);
+            } else if (CACHE_TYPE_MEMORY.equals(type)) {
+                cache = new MemoryCacheImpl(size, maxBytes);
+            } else {
+                throw new OXFException("Invalid cache type for cache `" + cacheName + "`: `" + type + "`");
+            }
+
             namedObjectCaches.put(cacheName, cache);
         }
         return cache;
@@ -0,0 +1,196 @@
+/**
+ * Copyright (C) 2017 Orbeon, Inc.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU Lesser General Public License as published by the Free Software Foundation; either version
+ * 2.1 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The full text of the license is available at http://www.gnu.org/copyleft/lesser.html
+ */
+package org.orbeon.oxf.cache;
+
+import org.apache.commons.collections.iterators.IteratorChain;
+
+import java.util.Iterator;
+
+/**
+ * Lock-striped cache implementation.
+ *
+ * Keys are distributed by hash over a number of independent MemoryCacheImpl stripes, each holding a share of the
+ * maximum size. Threads accessing keys in different stripes don't contend on the same monitor. Eviction is LRU within
+ * a stripe, and therefore approximately LRU for the cache as a whole. The Cacheable eviction lock and notifications
+ * behave as with MemoryCacheImpl. The optional maximum weight is also shared between stripes. An object heavier than a
+ * stripe's share of the maximum weight, but not heavier than the maximum weight, is still cached, alone in its stripe.
+ * In that case, the total weight can exceed the maximum weight by up to the weight of that object.
+ *
+ * Unlike MemoryCacheImpl, iteration order is not globally most-recently-used first.
+ */
+public class StripedCacheImpl implements Cache {
+
+    // Below this number of entries per stripe, hash skew would cause too many premature evictions
+    private static final int MIN_ENTRIES_PER_STRIPE = 8;
+
+    private final MemoryCacheImpl[] stripes;
+    private final int stripeMask;
+
+    private volatile int maxSize;
+    private volatile long maxWeight;
+
+    public StripedCacheImpl(int maxSize, int requestedStripes) {
+        this(maxSize, 0, requestedStripes);
+    }
+
+    public StripedCacheImpl(int maxSize, long maxWeight, int requestedStripes) {
+        this.maxSize = maxSize;
+        this.maxWeight = maxWeight;
+
+        final int stripeCount = stripeCount(maxSize, requestedStripes);
+        this.stripes = new MemoryCacheImpl[stripeCount];
+        this.stripeMask = stripeCount - 1;
+
+        for (int i = 0; i < stripeCount; i++)
+            stripes[i] = new MemoryCacheImpl(stripeMaxSize(maxSize, stripeCount, i), stripeMaxWeight(maxWeight, stripeCount), maxWeight);
+    }
+
+    // Largest power of two not above the requested count and leaving enough entries per stripe
+    private static int stripeCount(int maxSize, int requestedStripes) {
+        final int limit = Math.max(1, Math.min(requestedStripes, maxSize / MIN_ENTRIES_PER_STRIPE));
+        return Integer.highestOneBit(limit);
+    }
+
+    // Distribute the remainder over the first stripes so that the stripe sizes add up to maxSize
+    private static int stripeMaxSize(int maxSize, int stripeCount, int stripeIndex) {
+        return maxSize / stripeCount + (stripeIndex < maxSize % stripeCount ? 1 : 0);
+    }
+
+    private static long stripeMaxWeight(long maxWeight, int stripeCount) {
+        return maxWeight > 0 ? Math.max(maxWeight / stripeCount, 1) : 0;
+    }
+
+    private MemoryCacheImpl stripeFor(CacheKey key) {
+        // Spread bits as hash codes of composite keys are often poorly distributed in the low bits
+        int h = key.hashCode();
+        h ^= (h >>> 20) ^ (h >>> 12);
+        h ^= (h >>> 7) ^ (h >>> 4);
+        return stripes[h & stripeMask];
+    }
+
+    public int getStripeCount() {
+        return stripes.length;
+    }
+
+    public void add(CacheKey key, Object validity, Object cacheable) {
+        if (key == null) return;
+        stripeFor(key).add(key, validity, cacheable);
+    }
+
+    public void remove(CacheKey key) {
+        stripeFor(key).remove(key);
+    }
+
+    public int removeAll() {
+        int removed = 0;
+        for (final MemoryCacheImpl stripe : stripes)
+            removed += stripe.removeAll();
+        return removed;
+    }
+
+    public Object findValid(CacheKey key, Object validity) {
+        return stripeFor(key).findValid(key, validity);
+    }
+
+    public Object takeValid(CacheKey key, Object validity) {
+        return stripeFor(key).takeValid(key, validity);
+    }
+
+    public CacheEntry findAny(CacheKey key) {
+        return stripeFor(key).findAny(key);
+    }
+
+    public Iterator<CacheKey> iterateCacheKeys() {
+        final IteratorChain chain = new IteratorChain();
+        for (final MemoryCacheImpl stripe : stripes)
+            chain.addIterator(stripe.iterateCacheKeys());
+        return chain;
+    }
+
+    public Iterator<Object> iterateCacheObjects() {
+        final IteratorChain chain = new IteratorChain();
+        for (final MemoryCacheImpl stripe : stripes)
+            chain.addIterator(stripe.iterateCacheObjects());
+        return chain;
+    }
+
+    public int getCurrentSize() {
+        int size = 0;
+        for (final MemoryCacheImpl stripe : stripes)
+            size += stripe.getCurrentSize();
+        return size;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public synchronized void setMaxSize(int maxSize) {
+        if (maxSize != this.maxSize) {
+            // The number of stripes is fixed at creation, so only their share of the maximum size changes
+            for (int i = 0; i < stripes.length; i++)
+                stripes[i].setMaxSize(stripeMaxSize(maxSize, stripes.length, i));
+
+            this.maxSize = maxSize;
+        }
+    }
+
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+
+    public long getCurrentWeight() {
+        long weight = 0;
+        for (final MemoryCacheImpl stripe : stripes)
+            weight += stripe.getCurrentWeight();
+        return weight;
+    }
+
+    public synchronized void setMaxWeight(long maxWeight) {
+        if (maxWeight != this.maxWeight) {
+            for (final MemoryCacheImpl stripe : stripes)
+                stripe.setMaxWeight(stripeMaxWeight(maxWeight, stripes.length), maxWeight);
+
+            this.maxWeight = maxWeight;
+        }
+    }
+
+    public int getHitCount() {
+        int count = 0;
+        for (final MemoryCacheImpl stripe : stripes)
+            count += stripe.getHitCount();
+        return count;
+    }
+
+    public int getMissCount() {
+        int count = 0;
+        for (final MemoryCacheImpl stripe : stripes)
+            count += stripe.getMissCount();
+        return count;
+    }
+
+    public int getAddCount() {
+        int count = 0;
+        for (final MemoryCacheImpl stripe : stripes)
+            count += stripe.getAddCount();
+        return count;
+    }
+
+    public int getExpirationCount() {
+        int count = 0;
+        for (final MemoryCacheImpl stripe : stripes)
+            count += stripe.getExpirationCount();
+        return count;
+    }
+}
@@ -0,0 +1,27 @@
+/**
+ * Copyright (C) 2017 Orbeon, Inc.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU Lesser General Public License as published by the Free Software Foundation; either version
+ * 2.1 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The full text of the license is available at http://www.gnu.org/copyleft/lesser.html
+ */
+package org.orbeon.oxf.cache;
+
+/**
+ * Interface that cached objects can optionally implement so that caches can bound their approximate memory use.
+ *
+ * Objects which don't implement this interface have a weight of 0 and are only bounded by the cache's entry count.
+ */
+public interface Weighted {
+
+    /**
+     * Approximate size of the object in memory, in bytes.
+     */
+    long getWeight();
+}
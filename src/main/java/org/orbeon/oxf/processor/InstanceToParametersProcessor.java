@@ -20,6 +20,7 @@ import org.orbeon.dom.VisitorSupport;
 import org.orbeon.dom.saxon.DocumentWrapper;
 import org.orbeon.oxf.common.OXFException;
 import org.orbeon.oxf.pipeline.api.PipelineContext;
+import org.orbeon.oxf.util.ContentHandlerWriter;
 import org.orbeon.oxf.util.PooledXPathExpression;
 import org.orbeon.oxf.util.XPathCache;
 import org.orbeon.oxf.xml.EncodeDecode;
@@ -120,7 +121,7 @@ public class InstanceToParametersProcessor extends ProcessorImpl {
                     xmlReceiver.startElement("", PARAMETERS_ELEMENT, PARAMETERS_ELEMENT, SAXUtils.EMPTY_ATTRIBUTES);
                     if (! allMarked[0]) {
                         // If all the nodes of the instance map to parameters, we don't output the instance parameter
-                        outputParameter("$instance", EncodeDecode.encodeXML(instance, true, true, false), xmlReceiver);
+                        outputInstanceParameter(instance, xmlReceiver);
                     }
                     xmlReceiver.endElement("", PARAMETERS_ELEMENT, PARAMETERS_ELEMENT);
                     xmlReceiver.endDocument();
@@ -134,10 +135,13 @@ public class InstanceToParametersProcessor extends ProcessorImpl {
         return output;
     }
 
-    private static void outputParameter(String name, String value, ContentHandler contentHandler) throws SAXException {
+    // Stream the encoded instance rather than building it as a string first, as it can be large
+    private static void outputInstanceParameter(Document instance, ContentHandler contentHandler) throws SAXException {
         contentHandler.startElement("", PARAMETER_ELEMENT, PARAMETER_ELEMENT, SAXUtils.EMPTY_ATTRIBUTES);
-        outputElement(NAME_ELEMENT, name, contentHandler);
-        outputElement(VALUE_ELEMENT, value, contentHandler);
+        outputElement(NAME_ELEMENT, "$instance", contentHandler);
+        contentHandler.startElement("", VALUE_ELEMENT, VALUE_ELEMENT, SAXUtils.EMPTY_ATTRIBUTES);
+        EncodeDecode.encodeXML(instance, true, true, false, new ContentHandlerWriter(contentHandler));
+        contentHandler.endElement("", VALUE_ELEMENT, VALUE_ELEMENT);
         contentHandler.endElement("", PARAMETER_ELEMENT, PARAMETER_ELEMENT);
     }
 
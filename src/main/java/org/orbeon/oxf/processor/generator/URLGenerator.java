@@ -39,6 +39,7 @@ import org.xml.sax.*;
 import scala.Option;
 import scala.Tuple2;
 
+import javax.xml.parsers.SAXParser;
 import javax.xml.transform.dom.DOMSource;
 import java.io.IOException;
 import java.io.InputStream;
@@ -1036,8 +1037,11 @@ public class URLGenerator extends ProcessorImpl {
             checkStatusCode();
 
             final XMLParsing.ParserConfiguration parserConfiguration = new XMLParsing.ParserConfiguration(config.getParserConfiguration(), uriReferences);
+            final SAXParser saxParser = XMLParsing.borrowSAXParser(parserConfiguration);
             try {
-                final XMLReader reader = XMLParsing.newXMLReader(parserConfiguration);
+                final XMLReader reader = saxParser.getXMLReader();
+                reader.setEntityResolver(XMLParsing.ENTITY_RESOLVER);
+                reader.setErrorHandler(XMLParsing.ERROR_HANDLER);
                 reader.setContentHandler(xmlReceiver);
                 reader.setProperty(XMLConstants.SAX_LEXICAL_HANDLER, xmlReceiver);
                 final InputSource inputSource;
@@ -1052,6 +1056,8 @@ public class URLGenerator extends ProcessorImpl {
                 reader.parse(inputSource);
             } catch (SAXException e) {
                 throw new OXFException(e);
+            } finally {
+                XMLParsing.releaseSAXParser(parserConfiguration, saxParser);
             }
         }
 
@@ -34,13 +34,23 @@ public abstract class DependenciesProcessorInput extends DelegatingProcessorInpu
                     protected void readImpl(PipelineContext pipelineContext, final XMLReceiver xmlReceiver) {
                         final boolean[] foundInCache = new boolean[] { false };
                         readCacheInputAsObject(pipelineContext, getInputByName(INPUT_CONFIG), new CacheableInputReader<URIProcessorOutputImpl.URIReferences>() {
+
+                            private URIProcessorOutputImpl.URIReferences uriReferences;
+
                             @Override
                             public URIProcessorOutputImpl.URIReferences read(PipelineContext pipelineContext, ProcessorInput processorInput) {
                                 // Read the input directly into the output
                                 readInputAsSAX(pipelineContext, processorInput, xmlReceiver);
 
                                 // Return dependencies object
-                                return getURIReferences(pipelineContext);
+                                uriReferences = getURIReferences(pipelineContext);
+                                return uriReferences;
+                            }
+
+                            @Override
+                            public boolean allowCaching() {
+                                // No dependencies were gathered, so don't cache
+                                return uriReferences != null;
                             }
 
                             @Override
@@ -77,6 +87,7 @@ public abstract class DependenciesProcessorInput extends DelegatingProcessorInpu
 
     /**
      * Get URI references on which this input depends. This is called right after the original input has been read.
+     * If null is returned, the dependencies are unknown and nothing is cached.
      *
      * @param pipelineContext   current context
      * @return                  URI references
@@ -21,7 +21,7 @@ import org.orbeon.oxf.pipeline.api.PipelineContext;
 import org.orbeon.oxf.xml.XMLReceiver;
 import org.orbeon.oxf.processor.*;
 import org.orbeon.oxf.util.LoggerFactory;
-import org.orbeon.oxf.xml.SAXStore;
+import org.orbeon.oxf.xml.SpillingSAXStore;
 import org.orbeon.oxf.xml.dom4j.LocationData;
 import org.xml.sax.SAXException;
 
@@ -83,8 +83,9 @@ public class TeeProcessor extends ProcessorImpl {
                     }
 
                     // Create SAXStore and read input through it
+                    // NOTE: Above the configured threshold, the store moves events to disk to bound memory use
                     final ProcessorInput input = getInputByName(INPUT_DATA);
-                    state.store = new SAXStore(xmlReceiver);
+                    state.store = new SpillingSAXStore(xmlReceiver, SpillingSAXStore.getSpillThreshold());
                     readInputAsSAX(context, input, state.store);
                 } else {
                     state.store.replay(xmlReceiver);
@@ -116,14 +117,15 @@ public class TeeProcessor extends ProcessorImpl {
 
         private void freeSAXStoreIfNeeded(State state) {
             if (state.readCount == getOutputCount()) {
-                final SAXStore freedStore = state.store;
+                final SpillingSAXStore freedStore = state.store;
                 state.store = null;
                 state.stateWasCleared = true;
+                freedStore.dispose();
 
                 final ProcessorOutput output = getInputByName(INPUT_DATA).getOutput();
                 if (logger.isDebugEnabled()) {
                     final long saxStoreSize = freedStore.getApproximateSize();
-                    logger.debug("Freed SAXStore for output id: " + output.getName() + "; approximate size: " + saxStoreSize + " bytes");
+                    logger.debug("Freed SAXStore for output id: " + output.getName() + "; approximate size: " + saxStoreSize + " bytes; segments spilled to disk: " + freedStore.getSpilledSegmentCount());
                 }
             }
         }
@@ -170,7 +172,7 @@ public class TeeProcessor extends ProcessorImpl {
     }
 
     private static class State {
-        public SAXStore store;
+        public SpillingSAXStore store;
         public int readCount;
         public OutputCacheKey outputCacheKey;
         public Object validity;
@@ -18,6 +18,11 @@
  */
 package org.orbeon.oxf.util;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+
 /**
  * This class provides encode/decode for RFC 2045 Base64 as
  * defined by RFC 2045, N. Freed and N. Borenstein.
@@ -26,9 +31,10 @@ package org.orbeon.oxf.util;
  * 1996 Available at: http://www.ietf.org/rfc/rfc2045.txt
  * This class is used by XML Schema binary format validation
  *
- * This implementation does not encode/decode streaming
+ * The encode/decode methods do not work on streaming
  * data. You need the data that you will encode/decode
- * already on a byte array.
+ * already on a byte array. See EncodingOutputStream and
+ * DecodingInputStream for streaming.
  *
  * @author Jeffrey Rodriguez
  * @author Sandy Gao
@@ -338,4 +344,183 @@ public class Base64 {
         }
         return newSize;
     }
+
+    /**
+     * OutputStream encoding the bytes written to it as Base64 to a Writer, without line breaks.
+     *
+     * The characters written are the same as those returned by encode(bytes, false) for all the bytes written. The
+     * last group and padding are written when the stream is closed. Closing doesn't close the Writer.
+     */
+    public static class EncodingOutputStream extends OutputStream {
+
+        private final Writer writer;
+        private final char[] chars = new char[4 * 1024];
+        private int charCount;
+
+        private int group;
+        private int groupCount;
+        private boolean closed;
+
+        public EncodingOutputStream(Writer writer) {
+            this.writer = writer;
+        }
+
+        public void write(int b) throws IOException {
+            group = (group << 8) | (b & 0xff);
+            if (++groupCount == 3) {
+                if (charCount + 4 > chars.length)
+                    flushChars();
+
+                chars[charCount++] = lookUpBase64Alphabet[(group >>> 18) & 0x3f];
+                chars[charCount++] = lookUpBase64Alphabet[(group >>> 12) & 0x3f];
+                chars[charCount++] = lookUpBase64Alphabet[(group >>>  6) & 0x3f];
+                chars[charCount++] = lookUpBase64Alphabet[ group         & 0x3f];
+
+                group = 0;
+                groupCount = 0;
+            }
+        }
+
+        public void write(byte[] b, int off, int len) throws IOException {
+            final int end = off + len;
+            for (int i = off; i < end; i++)
+                write(b[i]);
+        }
+
+        // Only complete groups are written out before closing
+        public void flush() throws IOException {
+            flushChars();
+            writer.flush();
+        }
+
+        public void close() throws IOException {
+            if (! closed) {
+                if (charCount + 4 > chars.length)
+                    flushChars();
+
+                if (groupCount == 1) {
+                    chars[charCount++] = lookUpBase64Alphabet[(group >>> 2) & 0x3f];
+                    chars[charCount++] = lookUpBase64Alphabet[(group << 4) & 0x3f];
+                    chars[charCount++] = PAD;
+                    chars[charCount++] = PAD;
+                } else if (groupCount == 2) {
+                    chars[charCount++] = lookUpBase64Alphabet[(group >>> 10) & 0x3f];
+                    chars[charCount++] = lookUpBase64Alphabet[(group >>>  4) & 0x3f];
+                    chars[charCount++] = lookUpBase64Alphabet[(group <<   2) & 0x3f];
+                    chars[charCount++] = PAD;
+                }
+                flush();
+                closed = true;
+            }
+        }
+
+        private void flushChars() throws IOException {
+            if (charCount > 0) {
+                writer.write(chars, 0, charCount);
+                charCount = 0;
+            }
+        }
+    }
+
+    /**
+     * InputStream decoding Base64 characters from a CharSequence, starting at the given index.
+     *
+     * As with decode(), whitespace is ignored. Unlike decode(), invalid data causes an IOException.
+     */
+    public static class DecodingInputStream extends InputStream {
+
+        private final CharSequence encoded;
+        private final int end;
+        private int position;
+
+        private final byte[] decoded = new byte[3];
+        private int decodedCount;
+        private int decodedPosition;
+        private boolean done;
+
+        public DecodingInputStream(CharSequence encoded, int start) {
+            this.encoded = encoded;
+            this.end = encoded.length();
+            this.position = start;
+        }
+
+        public int read() throws IOException {
+            if (decodedPosition == decodedCount && ! decodeGroup())
+                return -1;
+            return decoded[decodedPosition++] & 0xff;
+        }
+
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0)
+                return 0;
+
+            int count = 0;
+            while (count < len && (decodedPosition < decodedCount || decodeGroup()))
+                b[off + count++] = decoded[decodedPosition++];
+
+            return count == 0 ? -1 : count;
+        }
+
+        private boolean decodeGroup() throws IOException {
+
+            if (done)
+                return false;
+
+            final int d1 = nextChar();
+            if (d1 == -1) {
+                done = true;
+                return false;
+            }
+            final int d2 = nextChar();
+            final int d3 = nextChar();
+            final int d4 = nextChar();
+
+            if (d4 == -1 || ! isDataChar(d1) || ! isDataChar(d2))
+                throw new IOException("Invalid Base64 data");
+
+            final int b1 = base64Alphabet[d1];
+            final int b2 = base64Alphabet[d2];
+
+            decodedPosition = 0;
+            if (isDataChar(d3) && isDataChar(d4)) {
+                final int b3 = base64Alphabet[d3];
+                final int b4 = base64Alphabet[d4];
+                decoded[0] = (byte) (b1 << 2 | b2 >> 4);
+                decoded[1] = (byte) (((b2 & 0xf) << 4) | ((b3 >> 2) & 0xf));
+                decoded[2] = (byte) (b3 << 6 | b4);
+                decodedCount = 3;
+            } else if (d3 == PAD && d4 == PAD && (b2 & 0xf) == 0) {
+                decoded[0] = (byte) (b1 << 2 | b2 >> 4);
+                decodedCount = 1;
+                done = true;
+            } else if (isDataChar(d3) && d4 == PAD && (base64Alphabet[d3] & 0x3) == 0) {
+                final int b3 = base64Alphabet[d3];
+                decoded[0] = (byte) (b1 << 2 | b2 >> 4);
+                decoded[1] = (byte) (((b2 & 0xf) << 4) | ((b3 >> 2) & 0xf));
+                decodedCount = 2;
+                done = true;
+            } else {
+                throw new IOException("Invalid Base64 data");
+            }
+
+            // Padding must end the data
+            if (done && nextChar() != -1)
+                throw new IOException("Invalid Base64 data");
+
+            return true;
+        }
+
+        private int nextChar() {
+            while (position < end) {
+                final char c = encoded.charAt(position++);
+                if (! isWhiteSpace(c))
+                    return c;
+            }
+            return -1;
+        }
+
+        private static boolean isDataChar(int c) {
+            return c >= 0 && c < BASELENGTH && base64Alphabet[c] != -1;
+        }
+    }
 }
@@ -17,85 +17,113 @@ import org.orbeon.dom.Document;
 import org.orbeon.dom.io.DocumentSource;
 import org.orbeon.oxf.common.OXFException;
 import org.orbeon.oxf.pipeline.api.TransformerXMLReceiver;
+import org.orbeon.oxf.util.Base64;
 import org.orbeon.oxf.util.Compressor;
+import org.orbeon.oxf.util.NetUtils;
 import org.orbeon.oxf.util.SecureUtils;
+import org.orbeon.oxf.util.StringBuilderWriter;
 import org.orbeon.oxf.util.WhitelistObjectInputStream;
 import org.orbeon.oxf.xml.dom4j.LocationDocumentResult;
 import org.orbeon.oxf.xml.dom4j.LocationDocumentSource;
 import org.xml.sax.SAXException;
 
 import javax.xml.transform.Source;
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Writer;
 
 public class EncodeDecode {
 
     // 2016-09-14: `encrypt = false` only when encoding XForms static state when using server-side state handling.
     public static String encodeXML(Document document, boolean compress, boolean encrypt, boolean location) {
+        final StringBuilderWriter writer = new StringBuilderWriter();
+        encodeXML(document, compress, encrypt, location, writer);
+        return writer.toString();
+    }
+
+    public static void encodeXML(Document document, boolean compress, boolean encrypt, boolean location, Writer writer) {
 
         // Get SAXStore
-        // TODO: This is not optimal since we create a second in-memory representation. Should stream instead.
+        // NOTE: The SAXStore is still needed as its serialized form starts with the size of each of its buffers. From
+        // there, bytes go through compression, encryption and Base64 without further copies.
         final SAXStore saxStore = new SAXStore();
         // NOTE: We don't encode XML comments and use only the ContentHandler interface
         final Source source = location ? new LocationDocumentSource(document) : new DocumentSource(document);
         TransformerUtils.sourceToSAX(source, saxStore);
 
-        // Serialize SAXStore to bytes
-        // TODO: This is not optimal since we create a third in-memory representation. Should stream instead.
-        final byte[] bytes;
+        // Serialize and encode SAXStore
         try {
-            final ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-            saxStore.writeExternal(new ObjectOutputStream(byteArrayOutputStream));
-            bytes = byteArrayOutputStream.toByteArray();
+            final OutputStream os = newEncodingOutputStream(writer, compress, encrypt);
+            try {
+                saxStore.writeExternal(new ObjectOutputStream(os));
+            } finally {
+                os.close();
+            }
         } catch (IOException e) {
             throw new OXFException(e);
         }
-
-        // Encode bytes
-        return encodeBytes(bytes, compress, encrypt);
     }
 
     // 2016-09-14: `encrypt = false` only when encoding static state when using server-side state handling, and
     // for some unit tests.
     public static String encodeBytes(byte[] bytesToEncode, boolean compress, boolean encrypt) {
-        // Compress if needed
-        final byte[] gzipByteArray = compress ? Compressor.compressBytes(bytesToEncode) : null;
-
-        // Encrypt if needed
-        if (encrypt) {
-            // Perform encryption
-            if (gzipByteArray == null) {
-                // The data was not compressed above
-                return "X1" + SecureUtils.encrypt(bytesToEncode);
-            } else {
-                // The data was compressed above
-                return "X2" + SecureUtils.encrypt(gzipByteArray);
-            }
-        } else {
-            // No encryption
-            if (gzipByteArray == null) {
-                // The data was not compressed above
-                return "X3" + org.orbeon.oxf.util.Base64.encode(bytesToEncode, false);
-            } else {
-                // The data was compressed above
-                return "X4" + org.orbeon.oxf.util.Base64.encode(gzipByteArray, false);
+        final StringBuilderWriter writer =
+            compress
+                ? new StringBuilderWriter()
+                : new StringBuilderWriter(2 + (bytesToEncode.length + (encrypt ? 2 * SecureUtils.AESIVSize() : 0) + 2) / 3 * 4);
+        encodeBytes(bytesToEncode, compress, encrypt, writer);
+        return writer.toString();
+    }
+
+    public static void encodeBytes(byte[] bytesToEncode, boolean compress, boolean encrypt, Writer writer) {
+        try {
+            final OutputStream os = newEncodingOutputStream(writer, compress, encrypt);
+            try {
+                os.write(bytesToEncode);
+            } finally {
+                os.close();
             }
+        } catch (IOException e) {
+            throw new OXFException(e);
         }
     }
 
-    public static Document decodeXML(String encodedXML, boolean forceEncryption) {
+    // Write the prefix and return a stream compressing, encrypting and Base64-encoding what is written to it
+    private static OutputStream newEncodingOutputStream(Writer writer, boolean compress, boolean encrypt) throws IOException {
+
+        //      | Uncompressed | Compressed
+        // -----+--------------+-----------
+        // Encr | X1           | X2
+        // None | X3           | X4
+        writer.write(encrypt ? (compress ? "X2" : "X1") : (compress ? "X4" : "X3"));
 
-        final byte[] bytes = decodeBytes(encodedXML, forceEncryption);
+        final OutputStream base64OS    = new Base64.EncodingOutputStream(writer);
+        final OutputStream encryptedOS = encrypt  ? SecureUtils.newEncryptingOutputStream(base64OS) : base64OS;
+        return                           compress ? Compressor.newGZIPOutputStream(encryptedOS)     : encryptedOS;
+    }
 
-        // Deserialize bytes to SAXStore
-        // TODO: This is not optimal
-        final ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(bytes);
-        final SAXStore saxStore = new SAXStore(WhitelistObjectInputStream.apply(byteArrayInputStream, SAXStore.class));
+    public static Document decodeXML(String encodedXML, boolean forceEncryption) {
+
+        // Decode and deserialize bytes to SAXStore
+        final SAXStore saxStore;
+        try {
+            final InputStream is = newDecodingInputStream(encodedXML, forceEncryption);
+            try {
+                saxStore = new SAXStore(WhitelistObjectInputStream.apply(is, SAXStore.class));
+                // Read to the end so that the GZIP trailer and the encryption padding are checked
+                if (is.read() != -1)
+                    throw new OXFException("Unexpected data after encoded XML");
+            } finally {
+                is.close();
+            }
+        } catch (IOException e) {
+            throw new OXFException(e);
+        }
 
         // Deserialize SAXStore to dom4j document
-        // TODO: This is not optimal
         final TransformerXMLReceiver identity = TransformerUtils.getIdentityTransformerHandler();
         final LocationDocumentResult result = new LocationDocumentResult();
         identity.setResult(result);
@@ -108,41 +136,61 @@ public class EncodeDecode {
     }
 
     public static byte[] decodeBytes(String encoded, boolean forceEncryption) {
-        // Get raw text
-        byte[] resultBytes;
-        {
-            final String prefix = encoded.substring(0, 2);
-            final String encodedString = encoded.substring(2);
-
-            final byte[] resultBytes1;
-            final byte[] gzipByteArray;
-            if (prefix.equals("X1")) {
-                // Encryption + uncompressed
-                resultBytes1 = SecureUtils.decrypt(encodedString);
-                gzipByteArray = null;
-            } else if (prefix.equals("X2")) {
-                // Encryption + compressed
-                resultBytes1 = null;
-                gzipByteArray = SecureUtils.decrypt(encodedString);
-            } else if (! forceEncryption && prefix.equals("X3")) {
-                // No encryption + uncompressed
-                resultBytes1 = org.orbeon.oxf.util.Base64.decode(encodedString);
-                gzipByteArray = null;
-            } else if (! forceEncryption && prefix.equals("X4")) {
-                // No encryption + compressed
-                resultBytes1 = null;
-                gzipByteArray = org.orbeon.oxf.util.Base64.decode(encodedString);
-            } else {
-                throw new OXFException("Invalid prefix for encoded string: " + prefix);
+        try {
+            final InputStream is = newDecodingInputStream(encoded, forceEncryption);
+            try {
+                final ByteArrayOutputStream os = new ByteArrayOutputStream(encoded.length());
+                NetUtils.copyStream(is, os);
+                return os.toByteArray();
+            } finally {
+                is.close();
             }
+        } catch (IOException e) {
+            throw new OXFException(e);
+        }
+    }
 
-            // Decompress if needed
-            if (gzipByteArray != null) {
-                resultBytes = Compressor.uncompressBytes(gzipByteArray);
-            } else {
-                resultBytes = resultBytes1;
-            }
+    // Check the prefix and return a stream Base64-decoding, decrypting and uncompressing the rest of the string
+    private static InputStream newDecodingInputStream(String encoded, boolean forceEncryption) throws IOException {
+
+        final String prefix = encoded.substring(0, 2);
+
+        final boolean encrypted;
+        final boolean compressed;
+        if (prefix.equals("X1")) {
+            // Encryption + uncompressed
+            encrypted  = true;
+            compressed = false;
+        } else if (prefix.equals("X2")) {
+            // Encryption + compressed
+            encrypted  = true;
+            compressed = true;
+        } else if (! forceEncryption && prefix.equals("X3")) {
+            // No encryption + uncompressed
+            encrypted  = false;
+            compressed = false;
+        } else if (! forceEncryption && prefix.equals("X4")) {
+            // No encryption + compressed
+            encrypted  = false;
+            compressed = true;
+        } else {
+            throw new OXFException("Invalid prefix for encoded string: " + prefix);
+        }
+
+        final InputStream base64IS    = new Base64.DecodingInputStream(encoded, 2);
+        final InputStream decryptedIS = encrypted  ? SecureUtils.newDecryptingInputStream(base64IS) : base64IS;
+        if (! compressed)
+            return decryptedIS;
+
+        // Reading the GZIP header can fail, in which case the decrypting stream must still return its Cipher
+        try {
+            return Compressor.newGZIPInputStream(decryptedIS);
+        } catch (IOException e) {
+            decryptedIS.close();
+            throw e;
+        } catch (RuntimeException e) {
+            decryptedIS.close();
+            throw e;
         }
-        return resultBytes;
     }
 }
@@ -14,6 +14,7 @@
 package org.orbeon.oxf.xml;
 
 import org.orbeon.dom.Document;
+import org.orbeon.oxf.cache.Weighted;
 import org.orbeon.oxf.common.OXFException;
 import org.orbeon.oxf.pipeline.api.TransformerXMLReceiver;
 import org.orbeon.oxf.processor.SAXLoggerProcessor;
@@ -27,8 +28,9 @@ import javax.xml.transform.stream.StreamResult;
 import java.io.*;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Iterator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * SAXStore keeps a compact representation of SAX events sent to the ContentHandler interface.
@@ -36,9 +38,12 @@ import java.util.List;
  * As of June 2009, we increase the size of buffers by 50% instead of 100%. Still not the greatest way. Possibly,
  * passed a threshold, say 10 MB or 20 MB, we could use a linked list of such big blocks.
  *
- * TODO: Handling of system IDs is not optimal in memory as system IDs are unlikely to change much within a document.
+ * Names, namespaces and other strings are stored once in a per-store symbol table, and events refer to them by index.
+ * System IDs are stored as runs, as they are unlikely to change much within a document. The serialized form uses
+ * variable-length integers, and delta-encodes line and column numbers. Location data can be left out entirely with
+ * SAXStore(false).
  */
-public class SAXStore extends ForwardingXMLReceiver implements Externalizable {
+public class SAXStore extends ForwardingXMLReceiver implements Externalizable, Weighted {
 
     public static final byte START_DOCUMENT = 0x00;
     public static final byte END_DOCUMENT = 0x01;
@@ -54,6 +59,9 @@ public class SAXStore extends ForwardingXMLReceiver implements Externalizable {
 
     private static final int INITIAL_SIZE = 10;
 
+    // The legacy serialized form starts with the size of the event buffer, which can't be negative
+    private static final int COMPACT_FORMAT = -1;
+
     private byte[] eventBuffer;
     private int eventBufferPosition;
 
@@ -63,21 +71,33 @@ public class SAXStore extends ForwardingXMLReceiver implements Externalizable {
     private int[] intBuffer;
     private int intBufferPosition;
 
+    // Line and column for each event with location
     private int[] lineBuffer;
     private int lineBufferPosition;
 
-    private String[] systemIdBuffer;
-    private int systemIdBufferPosition;
+    // Runs of identical system IDs: index of the first location of the run, and symbol of the system ID
+    private int[] systemIdRunStartBuffer;
+    private int[] systemIdRunSymbolBuffer;
+    private int systemIdRunBufferPosition;
 
     private int[] attributeCountBuffer;
     private int attributeCountBufferPosition;
     private int attributeCount;
 
-    private List<String> StringBuilder = new ArrayList<String>();
+    // Symbols of names, namespaces, attribute values, etc. in event order
+    private int[] stringBuffer;
+    private int stringBufferPosition;
+
+    // Symbol 0 is always null
+    private String[] symbols;
+    private int symbolCount;
+    private long symbolsSize;
+    private transient Map<String, Integer> symbolIndexes; // used only for recording events, cleared afterwards
 
     private boolean hasDocumentLocator;
     private String publicId;
 
+    private final boolean recordLocations;
     private transient Locator locator; // used only for recording events, MUST be cleared afterwards
 
     private final Mark START_MARK = new Mark();
@@ -90,9 +110,8 @@ public class SAXStore extends ForwardingXMLReceiver implements Externalizable {
         public final int charBufferPosition;
         public final int intBufferPosition;
         public final int lineBufferPosition;
-        public final int systemIdBufferPosition;
         public final int attributeCountBufferPosition;
-        public final int StringBuilderPosition;
+        public final int stringBufferPosition;
 
         private Mark() {
             id = null;
@@ -100,9 +119,8 @@ public class SAXStore extends ForwardingXMLReceiver implements Externalizable {
             this.charBufferPosition = 0;
             this.intBufferPosition = 0;
             this.lineBufferPosition = 0;
-            this.systemIdBufferPosition = 0;
             this.attributeCountBufferPosition = 0;
-            this.StringBuilderPosition = 0;
+            this.stringBufferPosition = 0;
         }
 
         private Mark(final SAXStore store, final String id) {
@@ -111,9 +129,8 @@ public class SAXStore extends ForwardingXMLReceiver implements Externalizable {
             this.charBufferPosition = store.charBufferPosition;
             this.intBufferPosition = store.intBufferPosition;
             this.lineBufferPosition = store.lineBufferPosition;
-            this.systemIdBufferPosition = store.systemIdBufferPosition;
             this.attributeCountBufferPosition = store.attributeCountBufferPosition;
-            this.StringBuilderPosition = store.StringBuilder.size();
+            this.stringBufferPosition = store.stringBufferPosition;
 
             rememberMark();
         }
@@ -125,13 +142,23 @@ public class SAXStore extends ForwardingXMLReceiver implements Externalizable {
             this.charBufferPosition = values[i++];
             this.intBufferPosition = values[i++];
             this.lineBufferPosition = values[i++];
-            this.systemIdBufferPosition = values[i++];
             this.attributeCountBufferPosition = values[i++];
-            this.StringBuilderPosition = values[i++];
+            this.stringBufferPosition = values[i++];
 
             rememberMark();
         }
 
+        private int[] values() {
+            return new int[] {
+                eventBufferPosition,
+                charBufferPosition,
+                intBufferPosition,
+                lineBufferPosition,
+                attributeCountBufferPosition,
+                stringBufferPosition
+            };
+        }
+
         private void rememberMark() {
             // Keep a reference to marks, so that they can be serialized/deserialized along with the SAXStore
             if (marks == null)
@@ -150,47 +177,40 @@ public class SAXStore extends ForwardingXMLReceiver implements Externalizable {
     }
 
     public long getApproximateSize() {
-        long size = eventBufferPosition * 4;
-        size += charBufferPosition;
+        long size = eventBufferPosition;
+        size += charBufferPosition * 2;
         size += intBufferPosition * 4;
         size += lineBufferPosition * 4;
-
-        {
-            String previousId = null;
-            for (int i = 0; i < systemIdBuffer.length; i++) {
-                final String currentId = systemIdBuffer[i];
-                // This is rough, but entries in the list could point to the same string, so we try to detect this case.
-                if (currentId != null && currentId != previousId)
-                    size += currentId.length() * 2;
-                previousId = currentId;
-            }
-        }
-
+        size += systemIdRunBufferPosition * 8;
         size += attributeCountBufferPosition * 4;
-
-        {
-            String previousString = null;
-            for (Iterator<String> i = StringBuilder.iterator(); i.hasNext();) {
-                final String currentString = i.next();
-                // This is rough, but entries in the list could point to the same string, so we try to detect this case.
-                if (currentString != null && currentString != previousString)
-                    size += currentString.length() * 2;
-                previousString = currentString;
-            }
-        }
+        size += stringBufferPosition * 4;
+        size += symbolCount * 4 + symbolsSize;
 
         return size;
     }
 
+    public long getWeight() {
+        return getApproximateSize();
+    }
+
     public int getAttributesCount() {
         return attributeCount;
     }
 
     public SAXStore() {
+        this(true);
+    }
+
+    /**
+     * @param recordLocations  whether to keep location data when a Locator is provided
+     */
+    public SAXStore(boolean recordLocations) {
+        this.recordLocations = recordLocations;
         init();
     }
 
     public SAXStore(ObjectInput input) {
+        this.recordLocations = true;
         try {
             readExternal(input);
         } catch (Exception e) {
@@ -200,6 +220,7 @@ public class SAXStore extends ForwardingXMLReceiver implements Externalizable {
 
     public SAXStore(XMLReceiver xmlReceiver) {
         super.setXMLReceiver(xmlReceiver);
+        this.recordLocations = true;
         init();
     }
 
@@ -220,13 +241,21 @@ public class SAXStore extends ForwardingXMLReceiver implements Externalizable {
         lineBufferPosition = 0;
         lineBuffer = new int[INITIAL_SIZE];
 
-        systemIdBufferPosition = 0;
-        systemIdBuffer = new String[INITIAL_SIZE];
+        systemIdRunBufferPosition = 0;
+        systemIdRunStartBuffer = new int[INITIAL_SIZE];
+        systemIdRunSymbolBuffer = new int[INITIAL_SIZE];
 
         attributeCountBufferPosition = 0;
         attributeCountBuffer = new int[INITIAL_SIZE];
+        attributeCount = 0;
+
+        stringBufferPosition = 0;
+        stringBuffer = new int[INITIAL_SIZE * 4];
 
-        StringBuilder.clear();
+        symbols = new String[INITIAL_SIZE * 2];
+        symbolCount = 1;
+        symbolsSize = 0;
+        symbolIndexes = null;
 
         locator = null;
     }
@@ -238,46 +267,12 @@ public class SAXStore extends ForwardingXMLReceiver implements Externalizable {
     public void replay(XMLReceiver xmlReceiver, Mark mark) throws SAXException {
         int intBufferPos = mark.intBufferPosition;
         int charBufferPos = mark.charBufferPosition;
-        int StringBuilderPos = mark.StringBuilderPosition;
+        int stringBufferPos = mark.stringBufferPosition;
         int attributeCountBufferPos = mark.attributeCountBufferPosition;
-        final int[] lineBufferPos = { mark.lineBufferPosition } ;
-        final int[] systemIdBufferPos = { mark.systemIdBufferPosition } ;
         final AttributesImpl attributes = new AttributesImpl();
         int currentEventPosition = mark.eventBufferPosition;
 
-        final Locator outputLocator = !hasDocumentLocator ? null : new Locator() {
-            public String getPublicId() {
-                return publicId;
-            }
-
-            public String getSystemId() {
-                try {
-                    return systemIdBuffer[systemIdBufferPos[0]];
-                } catch (ArrayIndexOutOfBoundsException e) {
-                    return null;
-                }
-            }
-
-            public int getLineNumber() {
-                try {
-                    return lineBuffer[lineBufferPos[0]];
-                } catch (ArrayIndexOutOfBoundsException e) {// FIXME: sometimes this fails
-//                    System.out.println("Incorrect line number: " + lineBufferPos[0]);
-                    //e.printStackTrace();
-                    return -1;
-                }
-            }
-
-            public int getColumnNumber() {
-                try {
-                    return lineBuffer[lineBufferPos[0] + 1];
-                } catch (ArrayIndexOutOfBoundsException e) {// FIXME: sometimes this fails
-//                    System.out.println("Incorrect line number: " + lineBufferPos[0]);
-                    //e.printStackTrace();
-                    return -1;
-                }
-            }
-        };
+        final ReplayLocator outputLocator = hasDocumentLocator ? new ReplayLocator(mark.lineBufferPosition / 2) : null;
 
         if (hasDocumentLocator) {
             xmlReceiver.setDocumentLocator(outputLocator);
@@ -296,15 +291,15 @@ public class SAXStore extends ForwardingXMLReceiver implements Externalizable {
                     break;
                 }
                 case START_ELEMENT: {
-                    final String namespaceURI = StringBuilder.get(StringBuilderPos++);
-                    final String localName = StringBuilder.get(StringBuilderPos++);
-                    final String qName = StringBuilder.get(StringBuilderPos++);
+                    final String namespaceURI = symbols[stringBuffer[stringBufferPos++]];
+                    final String localName = symbols[stringBuffer[stringBufferPos++]];
+                    final String qName = symbols[stringBuffer[stringBufferPos++]];
                     attributes.clear();
                     final int attributeCount = attributeCountBuffer[attributeCountBufferPos++];
                     for (int i = 0; i < attributeCount; i++) {
-                        attributes.addAttribute(StringBuilder.get(StringBuilderPos++),
-                                StringBuilder.get(StringBuilderPos++), StringBuilder.get(StringBuilderPos++),
-                                StringBuilder.get(StringBuilderPos++), StringBuilder.get(StringBuilderPos++));
+                        attributes.addAttribute(symbols[stringBuffer[stringBufferPos++]],
+                                symbols[stringBuffer[stringBufferPos++]], symbols[stringBuffer[stringBufferPos++]],
+                                symbols[stringBuffer[stringBufferPos++]], symbols[stringBuffer[stringBufferPos++]]);
                     }
                     xmlReceiver.startElement(namespaceURI, localName, qName, attributes);
                     elementLevel++;
@@ -318,9 +313,9 @@ public class SAXStore extends ForwardingXMLReceiver implements Externalizable {
                 }
                 case END_ELEMENT: {
                     elementLevel--;
-                    xmlReceiver.endElement(StringBuilder.get(StringBuilderPos++),
-                            StringBuilder.get(StringBuilderPos++),
-                            StringBuilder.get(StringBuilderPos++));
+                    xmlReceiver.endElement(symbols[stringBuffer[stringBufferPos++]],
+                            symbols[stringBuffer[stringBufferPos++]],
+                            symbols[stringBuffer[stringBufferPos++]]);
 
                     if (handleElementMark && elementLevel == 0) {
                         // Back to ground level, we are done!
@@ -334,7 +329,7 @@ public class SAXStore extends ForwardingXMLReceiver implements Externalizable {
                     break;
                 }
                 case END_PREFIX_MAPPING: {
-                    xmlReceiver.endPrefixMapping(StringBuilder.get(StringBuilderPos++));
+                    xmlReceiver.endPrefixMapping(symbols[stringBuffer[stringBufferPos++]]);
                     break;
                 }
                 case IGN_WHITESPACE: {
@@ -344,17 +339,17 @@ public class SAXStore extends ForwardingXMLReceiver implements Externalizable {
                     break;
                 }
                 case PI: {
-                    xmlReceiver.processingInstruction(StringBuilder.get(StringBuilderPos++),
-                            StringBuilder.get(StringBuilderPos++));
+                    xmlReceiver.processingInstruction(symbols[stringBuffer[stringBufferPos++]],
+                            symbols[stringBuffer[stringBufferPos++]]);
                     break;
                 }
                 case SKIPPED_ENTITY: {
-                    xmlReceiver.skippedEntity(StringBuilder.get(StringBuilderPos++));
+                    xmlReceiver.skippedEntity(symbols[stringBuffer[stringBufferPos++]]);
                     break;
                 }
                 case START_PREFIX_MAPPING: {
-                    xmlReceiver.startPrefixMapping(StringBuilder.get(StringBuilderPos++),
-                            StringBuilder.get(StringBuilderPos++));
+                    xmlReceiver.startPrefixMapping(symbols[stringBuffer[stringBufferPos++]],
+                            symbols[stringBuffer[stringBufferPos++]]);
                     break;
                 }
                 case COMMENT: {
@@ -368,12 +363,66 @@ public class SAXStore extends ForwardingXMLReceiver implements Externalizable {
             }
             currentEventPosition++;
             if (eventHasLocation) {
-                lineBufferPos[0] += 2;
-                systemIdBufferPos[0]++;
+                outputLocator.next();
             }
         }
     }
 
+    // Locator following the events during replay
+    private class ReplayLocator implements Locator {
+
+        private int locationIndex;
+        private int systemIdRunIndex;
+
+        private ReplayLocator(int locationIndex) {
+            this.locationIndex = locationIndex;
+            this.systemIdRunIndex = findSystemIdRun(locationIndex);
+        }
+
+        private void next() {
+            locationIndex++;
+            if (systemIdRunIndex + 1 < systemIdRunBufferPosition && systemIdRunStartBuffer[systemIdRunIndex + 1] <= locationIndex)
+                systemIdRunIndex++;
+        }
+
+        public String getPublicId() {
+            return publicId;
+        }
+
+        public String getSystemId() {
+            return systemIdRunIndex >= 0 && systemIdRunIndex < systemIdRunBufferPosition
+                ? symbols[systemIdRunSymbolBuffer[systemIdRunIndex]]
+                : null;
+        }
+
+        public int getLineNumber() {
+            final int position = locationIndex * 2;
+            return position < lineBufferPosition ? lineBuffer[position] : -1;
+        }
+
+        public int getColumnNumber() {
+            final int position = locationIndex * 2 + 1;
+            return position < lineBufferPosition ? lineBuffer[position] : -1;
+        }
+    }
+
+    // Index of the run containing the given location, or -1
+    private int findSystemIdRun(int locationIndex) {
+        int low = 0;
+        int high = systemIdRunBufferPosition - 1;
+        int result = -1;
+        while (low <= high) {
+            final int middle = (low + high) >>> 1;
+            if (systemIdRunStartBuffer[middle] <= locationIndex) {
+                result = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return result;
+    }
+
     // Create a new mark
     // NOTE: This must be called *before* the startElement() event that will be the first element associated with the mark.
     public Mark getMark(String id) {
@@ -446,6 +495,8 @@ public class SAXStore extends ForwardingXMLReceiver implements Externalizable {
 
         // The resulting SAXStore should never keep references to whoever filled it
         locator = null;
+        // The symbol table index is only needed to record events
+        symbolIndexes = null;
     }
 
     @Override
@@ -453,9 +504,9 @@ public class SAXStore extends ForwardingXMLReceiver implements Externalizable {
 
         addToEventBuffer(END_ELEMENT);
         addLocation();
-        StringBuilder.add(uri);
-        StringBuilder.add(localname);
-        StringBuilder.add(qName);
+        addToStringBuffer(uri);
+        addToStringBuffer(localname);
+        addToStringBuffer(qName);
 
         super.endElement(uri, localname, qName);
     }
@@ -465,7 +516,7 @@ public class SAXStore extends ForwardingXMLReceiver implements Externalizable {
 
         addToEventBuffer(END_PREFIX_MAPPING);
         // NOTE: We don't keep location data for this event as it is very unlikely to be used
-        StringBuilder.add(s);
+        addToStringBuffer(s);
 
         super.endPrefixMapping(s);
     }
@@ -487,16 +538,18 @@ public class SAXStore extends ForwardingXMLReceiver implements Externalizable {
 
         addToEventBuffer(PI);
         addLocation();
-        StringBuilder.add(s);
-        StringBuilder.add(s1);
+        addToStringBuffer(s);
+        addToStringBuffer(s1);
 
         super.processingInstruction(s, s1);
     }
 
     @Override
     public void setDocumentLocator(Locator locator) {
-        this.hasDocumentLocator = locator != null;
-        this.locator = locator;
+        if (recordLocations) {
+            this.hasDocumentLocator = locator != null;
+            this.locator = locator;
+        }
         super.setDocumentLocator(locator);
     }
 
@@ -505,7 +558,7 @@ public class SAXStore extends ForwardingXMLReceiver implements Externalizable {
 
         addToEventBuffer(SKIPPED_ENTITY);
         addLocation();
-        StringBuilder.add(s);
+        addToStringBuffer(s);
 
         super.skippedEntity(s);
     }
@@ -522,16 +575,12 @@ public class SAXStore extends ForwardingXMLReceiver implements Externalizable {
     public void startElement(String uri, String localname, String qName, Attributes attributes) throws SAXException {
 
         addToEventBuffer(START_ELEMENT);
-        if (locator != null) {
-            addToLineBuffer(locator.getLineNumber());
-            addToLineBuffer(locator.getColumnNumber());
-            addToSystemIdBuffer(locator.getSystemId());
-            if (publicId == null && locator.getPublicId() != null)
-                publicId = locator.getPublicId();
-        }
-        StringBuilder.add(uri);
-        StringBuilder.add(localname);
-        StringBuilder.add(qName);
+        addLocation();
+        if (locator != null && publicId == null && locator.getPublicId() != null)
+            publicId = locator.getPublicId();
+        addToStringBuffer(uri);
+        addToStringBuffer(localname);
+        addToStringBuffer(qName);
 
         addToAttributeBuffer(attributes);
 
@@ -543,8 +592,8 @@ public class SAXStore extends ForwardingXMLReceiver implements Externalizable {
 
         addToEventBuffer(START_PREFIX_MAPPING);
         // NOTE: We don't keep location data for this event as it is very unlikely to be used
-        StringBuilder.add(s);
-        StringBuilder.add(s1);
+        addToStringBuffer(s);
+        addToStringBuffer(s1);
 
         super.startPrefixMapping(s, s1);
     }
@@ -563,22 +612,51 @@ public class SAXStore extends ForwardingXMLReceiver implements Externalizable {
 
     private final void addLocation() {
         if (locator != null) {
+            final int locationIndex = lineBufferPosition / 2;
             addToLineBuffer(locator.getLineNumber());
             addToLineBuffer(locator.getColumnNumber());
-            addToSystemIdBuffer(locator.getSystemId());
+            addToSystemIdBuffer(locationIndex, locator.getSystemId());
+        }
+    }
+
+    // Return the index of the string in the symbol table, adding it if needed
+    private int symbol(String s) {
+        if (s == null)
+            return 0;
+
+        if (symbolIndexes == null) {
+            // First string recorded, or recording again after endDocument() or deserialization
+            symbolIndexes = new HashMap<String, Integer>();
+            for (int i = 1; i < symbolCount; i++)
+                symbolIndexes.put(symbols[i], i);
         }
+
+        final Integer existingIndex = symbolIndexes.get(s);
+        if (existingIndex != null)
+            return existingIndex;
+
+        final int newIndex = addSymbol(s);
+        symbolIndexes.put(s, newIndex);
+        return newIndex;
+    }
+
+    private int addSymbol(String s) {
+        if (symbols.length - symbolCount <= 1) {
+            // double the array
+            String[] old = symbols;
+            symbols = new String[old.length * 3 / 2 + 1];
+            System.arraycopy(old, 0, symbols, 0, symbolCount);
+        }
+        symbols[symbolCount] = s;
+        symbolsSize += s.length() * 2;
+        return symbolCount++;
     }
 
     protected void addToCharBuffer(char[] chars, int start, int length) {
         if (charBuffer.length - charBufferPosition <= length) {
             // double the array
             char[] old = charBuffer;
-            try{
-                charBuffer = new char[old.length * 3 / 2 + 1];
-            } catch (Error e) {
-                System.out.println("Out of memory: " + old.length);
-                throw e;
-            }
+            charBuffer = new char[old.length * 3 / 2 + 1];
             System.arraycopy(old, 0, charBuffer, 0, charBufferPosition);
             addToCharBuffer(chars, start, length);
         } else {
@@ -588,15 +666,10 @@ public class SAXStore extends ForwardingXMLReceiver implements Externalizable {
     }
 
     protected void addToIntBuffer(int i) {
-        if (intBuffer.length - intBufferPosition == 1) {
+        if (intBuffer.length - intBufferPosition <= 1) {
             // double the array
             int[] old = intBuffer;
-            try{
-                intBuffer = new int[old.length * 3 / 2 + 1];
-            } catch (Error e) {
-                System.out.println("Out of memory: " + old.length);
-                throw e;
-            }
+            intBuffer = new int[old.length * 3 / 2 + 1];
             System.arraycopy(old, 0, intBuffer, 0, intBufferPosition);
             addToIntBuffer(i);
         } else {
@@ -605,15 +678,10 @@ public class SAXStore extends ForwardingXMLReceiver implements Externalizable {
     }
 
     protected void addToLineBuffer(int i) {
-        if (lineBuffer.length - lineBufferPosition == 1) {
+        if (lineBuffer.length - lineBufferPosition <= 1) {
             // double the array
             int[] old = lineBuffer;
-            try {
-                lineBuffer = new int[old.length * 3 / 2 + 1];
-            } catch (Error e) {
-                System.out.println("Out of memory: " + old.length);
-                throw e;
-            }
+            lineBuffer = new int[old.length * 3 / 2 + 1];
             System.arraycopy(old, 0, lineBuffer, 0, lineBufferPosition);
             addToLineBuffer(i);
         } else {
@@ -621,43 +689,44 @@ public class SAXStore extends ForwardingXMLReceiver implements Externalizable {
         }
     }
 
-    protected void addToSystemIdBuffer(String systemId) {
+    protected void addToSystemIdBuffer(int locationIndex, String systemId) {
 
-        // Try to detect contiguous system ids
-        //
-        // NOTE: This native method won't work during replay, will need to store number of contiguous identical strings
-        // as well, and/or use intern().
-//        if (systemIdBufferPosition > 0 && systemIdBuffer[systemIdBufferPosition] == systemId) {
-//            return;
-//        }
+        // Only start a new run if the system id changes
+        final int symbol = symbol(systemId);
+        if (systemIdRunBufferPosition > 0 && systemIdRunSymbolBuffer[systemIdRunBufferPosition - 1] == symbol)
+            return;
 
-        if (systemIdBuffer.length - systemIdBufferPosition == 1) {
+        if (systemIdRunStartBuffer.length - systemIdRunBufferPosition <= 1) {
+            // double the arrays
+            int[] oldStarts = systemIdRunStartBuffer;
+            int[] oldSymbols = systemIdRunSymbolBuffer;
+            systemIdRunStartBuffer = new int[oldStarts.length * 3 / 2 + 1];
+            systemIdRunSymbolBuffer = new int[oldStarts.length * 3 / 2 + 1];
+            System.arraycopy(oldStarts, 0, systemIdRunStartBuffer, 0, systemIdRunBufferPosition);
+            System.arraycopy(oldSymbols, 0, systemIdRunSymbolBuffer, 0, systemIdRunBufferPosition);
+        }
+        systemIdRunStartBuffer[systemIdRunBufferPosition] = locationIndex;
+        systemIdRunSymbolBuffer[systemIdRunBufferPosition] = symbol;
+        systemIdRunBufferPosition++;
+    }
+
+    protected void addToStringBuffer(String s) {
+        if (stringBuffer.length - stringBufferPosition <= 1) {
             // double the array
-            String[] old = systemIdBuffer;
-            try {
-                systemIdBuffer = new String[old.length * 3 / 2 + 1];
-            } catch (Error e) {
-                System.out.println("Out of memory: " + old.length);
-                throw e;
-            }
-            System.arraycopy(old, 0, systemIdBuffer, 0, systemIdBufferPosition);
-            addToSystemIdBuffer(systemId);
+            int[] old = stringBuffer;
+            stringBuffer = new int[old.length * 3 / 2 + 1];
+            System.arraycopy(old, 0, stringBuffer, 0, stringBufferPosition);
+            addToStringBuffer(s);
         } else {
-            systemIdBuffer[systemIdBufferPosition++] = systemId;
+            stringBuffer[stringBufferPosition++] = symbol(s);
         }
     }
 
-
     protected void addToEventBuffer(byte b) {
-        if (eventBuffer.length - eventBufferPosition == 1) {
+        if (eventBuffer.length - eventBufferPosition <= 1) {
             // double the array
             byte[] old = eventBuffer;
-            try {
-                eventBuffer = new byte[old.length * 3 / 2 + 1];
-            } catch (Error e) {
-                System.out.println("Out of memory: " + old.length);
-                throw e;
-            }
+            eventBuffer = new byte[old.length * 3 / 2 + 1];
             System.arraycopy(old, 0, eventBuffer, 0, eventBufferPosition);
             addToEventBuffer(b);
         } else {
@@ -666,15 +735,10 @@ public class SAXStore extends ForwardingXMLReceiver implements Externalizable {
     }
 
     private void addToAttributeBuffer(Attributes attributes) {
-        if (attributeCountBuffer.length - attributeCountBufferPosition == 1) {
+        if (attributeCountBuffer.length - attributeCountBufferPosition <= 1) {
             // double the array
             int[] old = attributeCountBuffer;
-            try {
-                attributeCountBuffer = new int[old.length * 3 / 2 + 1];
-            } catch (Error e) {
-                System.out.println("Out of memory: " + old.length);
-                throw e;
-            }
+            attributeCountBuffer = new int[old.length * 3 / 2 + 1];
             System.arraycopy(old, 0, attributeCountBuffer, 0, attributeCountBufferPosition);
             addToAttributeBuffer(attributes);
         } else {
@@ -682,62 +746,72 @@ public class SAXStore extends ForwardingXMLReceiver implements Externalizable {
             attributeCountBuffer[attributeCountBufferPosition++] = count;
             attributeCount += count;
             for (int i = 0; i < attributes.getLength(); i++) {
-                StringBuilder.add(attributes.getURI(i));
-                StringBuilder.add(attributes.getLocalName(i));
-                StringBuilder.add(attributes.getQName(i));
-                StringBuilder.add(attributes.getType(i));
-                StringBuilder.add(attributes.getValue(i));
+                addToStringBuffer(attributes.getURI(i));
+                addToStringBuffer(attributes.getLocalName(i));
+                addToStringBuffer(attributes.getQName(i));
+                addToStringBuffer(attributes.getType(i));
+                addToStringBuffer(attributes.getValue(i));
             }
         }
     }
 
     public void writeExternal(ObjectOutput out) throws IOException {
 
-        out.writeInt(eventBufferPosition);
+        out.writeInt(COMPACT_FORMAT);
+
+        writeVarInt(out, eventBufferPosition);
         out.write(eventBuffer, 0, eventBufferPosition);
 
-        out.writeInt(charBufferPosition);
+        writeVarInt(out, charBufferPosition);
         for (int i = 0; i < charBufferPosition; i++)
-            out.writeChar(charBuffer[i]);
+            writeVarInt(out, charBuffer[i]);
 
-        out.writeInt(intBufferPosition);
+        writeVarInt(out, intBufferPosition);
         for (int i = 0; i < intBufferPosition; i++)
-            out.writeInt(intBuffer[i]);
+            writeVarInt(out, intBuffer[i]);
 
-        out.writeInt(lineBufferPosition);
-        for (int i = 0; i < lineBufferPosition; i++)
-            out.writeInt(lineBuffer[i]);
+        // Lines and columns as differences from the previous location
+        writeVarInt(out, lineBufferPosition);
+        {
+            int previousLine = 0;
+            int previousColumn = 0;
+            for (int i = 0; i < lineBufferPosition; i += 2) {
+                writeSignedVarInt(out, lineBuffer[i] - previousLine);
+                writeSignedVarInt(out, lineBuffer[i + 1] - previousColumn);
+                previousLine = lineBuffer[i];
+                previousColumn = lineBuffer[i + 1];
+            }
+        }
 
-        out.writeInt(systemIdBufferPosition);
-        for (int i = 0; i < systemIdBufferPosition; i++) {
-            final String systemId = systemIdBuffer[i];
-            out.writeObject(systemId == null ? "" : systemId);
+        writeVarInt(out, systemIdRunBufferPosition);
+        for (int i = 0; i < systemIdRunBufferPosition; i++) {
+            writeVarInt(out, systemIdRunStartBuffer[i]);
+            writeVarInt(out, systemIdRunSymbolBuffer[i]);
         }
 
-        out.writeInt(attributeCountBufferPosition);
+        writeVarInt(out, attributeCountBufferPosition);
         for (int i = 0; i < attributeCountBufferPosition; i++)
-            out.writeInt(attributeCountBuffer[i]);
+            writeVarInt(out, attributeCountBuffer[i]);
 
-        out.writeInt(StringBuilder.size());
-        for (int i = 0; i < StringBuilder.size(); i++)
-            out.writeObject(StringBuilder.get(i));
+        writeVarInt(out, symbolCount);
+        for (int i = 1; i < symbolCount; i++)
+            writeString(out, symbols[i]);
+
+        writeVarInt(out, stringBufferPosition);
+        for (int i = 0; i < stringBufferPosition; i++)
+            writeVarInt(out, stringBuffer[i]);
 
         out.writeBoolean(hasDocumentLocator);
-        out.writeObject(publicId == null ? "" : publicId);
+        writeString(out, publicId);
 
         if (marks == null || marks.isEmpty()) {
-            out.writeInt(0);
+            writeVarInt(out, 0);
         } else {
-            out.writeInt(marks.size());
+            writeVarInt(out, marks.size());
             for (final Mark mark : marks) {
-                out.writeObject(mark.id);
-                out.writeInt(mark.eventBufferPosition);
-                out.writeInt(mark.charBufferPosition);
-                out.writeInt(mark.intBufferPosition);
-                out.writeInt(mark.lineBufferPosition);
-                out.writeInt(mark.systemIdBufferPosition);
-                out.writeInt(mark.attributeCountBufferPosition);
-                out.writeInt(mark.StringBuilderPosition);
+                writeString(out, mark.id);
+                for (final int value : mark.values())
+                    writeVarInt(out, value);
             }
         }
 
@@ -745,10 +819,89 @@ public class SAXStore extends ForwardingXMLReceiver implements Externalizable {
     }
 
     public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
-        eventBufferPosition = in.readInt();
+
+        final int format = in.readInt();
+        if (format != COMPACT_FORMAT) {
+            readLegacyExternal(format, in);
+            return;
+        }
+
+        eventBufferPosition = readVarInt(in);
         eventBuffer = new byte[eventBufferPosition];
-        for (int i = 0; i < eventBufferPosition; i++)
-            eventBuffer[i] = in.readByte();
+        in.readFully(eventBuffer);
+
+        charBufferPosition = readVarInt(in);
+        charBuffer = new char[charBufferPosition];
+        for (int i = 0; i < charBufferPosition; i++)
+            charBuffer[i] = (char) readVarInt(in);
+
+        intBufferPosition = readVarInt(in);
+        intBuffer = new int[intBufferPosition];
+        for (int i = 0; i < intBufferPosition; i++)
+            intBuffer[i] = readVarInt(in);
+
+        lineBufferPosition = readVarInt(in);
+        lineBuffer = new int[lineBufferPosition];
+        {
+            int previousLine = 0;
+            int previousColumn = 0;
+            for (int i = 0; i < lineBufferPosition; i += 2) {
+                previousLine += readSignedVarInt(in);
+                previousColumn += readSignedVarInt(in);
+                lineBuffer[i] = previousLine;
+                lineBuffer[i + 1] = previousColumn;
+            }
+        }
+
+        systemIdRunBufferPosition = readVarInt(in);
+        systemIdRunStartBuffer = new int[systemIdRunBufferPosition];
+        systemIdRunSymbolBuffer = new int[systemIdRunBufferPosition];
+        for (int i = 0; i < systemIdRunBufferPosition; i++) {
+            systemIdRunStartBuffer[i] = readVarInt(in);
+            systemIdRunSymbolBuffer[i] = readVarInt(in);
+        }
+
+        attributeCountBufferPosition = readVarInt(in);
+        attributeCountBuffer = new int[attributeCountBufferPosition];
+        for (int i = 0; i < attributeCountBufferPosition; i++) {
+            final int count = readVarInt(in);
+            attributeCountBuffer[i] = count;
+            attributeCount += count;
+        }
+
+        symbolCount = readVarInt(in);
+        symbols = new String[symbolCount];
+        for (int i = 1; i < symbolCount; i++) {
+            symbols[i] = readString(in);
+            symbolsSize += symbols[i].length() * 2;
+        }
+
+        stringBufferPosition = readVarInt(in);
+        stringBuffer = new int[stringBufferPosition];
+        for (int i = 0; i < stringBufferPosition; i++)
+            stringBuffer[i] = readVarInt(in);
+
+        hasDocumentLocator = in.readBoolean();
+        publicId = readString(in);
+
+        final int marksCount = readVarInt(in);
+        for (int i = 0; i < marksCount; i++) {
+            final String id = readString(in);
+            final int[] values = new int[6];
+            for (int j = 0; j < values.length; j++)
+                values[j] = readVarInt(in);
+            new Mark(values, id);
+        }
+    }
+
+    // Read the format written before the compact format, converting strings and system ids on the fly
+    private void readLegacyExternal(int eventBufferSize, ObjectInput in) throws IOException, ClassNotFoundException {
+
+        init();
+
+        eventBufferPosition = eventBufferSize;
+        eventBuffer = new byte[eventBufferPosition];
+        in.readFully(eventBuffer);
 
         charBufferPosition = in.readInt();
         charBuffer = new char[charBufferPosition];
@@ -765,12 +918,10 @@ public class SAXStore extends ForwardingXMLReceiver implements Externalizable {
         for (int i = 0; i < lineBufferPosition; i++)
             lineBuffer[i] = in.readInt();
 
-        systemIdBufferPosition = in.readInt();
-        systemIdBuffer = new String[systemIdBufferPosition];
-        for (int i = 0; i < systemIdBufferPosition; i++) {
-            systemIdBuffer[i] = (String) in.readObject();
-            if ("".equals(systemIdBuffer[i]))
-                systemIdBuffer[i] = null;
+        final int systemIdCount = in.readInt();
+        for (int i = 0; i < systemIdCount; i++) {
+            final String systemId = (String) in.readObject();
+            addToSystemIdBuffer(i, "".equals(systemId) ? null : systemId);
         }
 
         attributeCountBufferPosition = in.readInt();
@@ -781,9 +932,9 @@ public class SAXStore extends ForwardingXMLReceiver implements Externalizable {
             attributeCount += count;
         }
 
-        final int StringBuilderSize = in.readInt();
-        for (int i = 0; i < StringBuilderSize; i++)
-            StringBuilder.add((String) in.readObject());
+        final int stringCount = in.readInt();
+        for (int i = 0; i < stringCount; i++)
+            addToStringBuffer((String) in.readObject());
 
         hasDocumentLocator = in.readBoolean();
         publicId = (String) in.readObject();
@@ -791,14 +942,67 @@ public class SAXStore extends ForwardingXMLReceiver implements Externalizable {
             publicId = null;
 
         final int marksCount = in.readInt();
-        if (marksCount > 0) {
-            for (int i = 0; i < marksCount; i++) {
-                final String id = (String) in.readObject();
-                int[] values = new int[7];
-                for (int j = 0; j < 7; j++)
-                    values[j] = in.readInt();
-                new Mark(values, id);
-            }
+        for (int i = 0; i < marksCount; i++) {
+            final String id = (String) in.readObject();
+            final int[] values = new int[7];
+            for (int j = 0; j < 7; j++)
+                values[j] = in.readInt();
+            // Skip the former system id position, which is now derived from the line position
+            new Mark(new int[] { values[0], values[1], values[2], values[3], values[5], values[6] }, id);
         }
+
+        symbolIndexes = null;
+    }
+
+    private static void writeVarInt(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7f) != 0) {
+            out.writeByte((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            final byte b = in.readByte();
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        throw new IOException("Invalid variable-length integer");
+    }
+
+    // Zigzag encoding so that small negative differences remain small
+    private static void writeSignedVarInt(DataOutput out, int value) throws IOException {
+        writeVarInt(out, (value << 1) ^ (value >> 31));
+    }
+
+    private static int readSignedVarInt(DataInput in) throws IOException {
+        final int value = readVarInt(in);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    // Length + 1 so that null can be represented, followed by characters
+    private static void writeString(DataOutput out, String s) throws IOException {
+        if (s == null) {
+            writeVarInt(out, 0);
+        } else {
+            final int length = s.length();
+            writeVarInt(out, length + 1);
+            for (int i = 0; i < length; i++)
+                writeVarInt(out, s.charAt(i));
+        }
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        final int length = readVarInt(in) - 1;
+        if (length == -1)
+            return null;
+
+        final char[] chars = new char[length];
+        for (int i = 0; i < length; i++)
+            chars[i] = (char) readVarInt(in);
+        return new String(chars);
     }
 }
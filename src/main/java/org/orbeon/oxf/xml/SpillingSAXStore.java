@@ -0,0 +1,281 @@
+/**
+ * Copyright (C) 2017 Orbeon, Inc.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU Lesser General Public License as published by the Free Software Foundation; either version
+ * 2.1 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The full text of the license is available at http://www.gnu.org/copyleft/lesser.html
+ */
+package org.orbeon.oxf.xml;
+
+import org.apache.log4j.Logger;
+import org.orbeon.oxf.common.OXFException;
+import org.orbeon.oxf.pipeline.api.PipelineContext;
+import org.orbeon.oxf.properties.Properties;
+import org.orbeon.oxf.util.LoggerFactory;
+import org.orbeon.oxf.util.SystemUtils;
+import org.xml.sax.Attributes;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+
+import java.io.*;
+
+/**
+ * Store of SAX events which moves what it has recorded to a temporary file once it grows above a threshold.
+ *
+ * Events are recorded into a SAXStore segment. When the approximate size of the segment exceeds the threshold, the
+ * segment is serialized to the file and a new segment is started. Replay reads back one segment at a time, so that
+ * memory use is bounded by about twice the threshold whatever the size of the document. With a threshold of 0, this
+ * behaves like a plain SAXStore.
+ *
+ * The file is deleted when the current PipelineContext is destroyed, or before that with dispose(). Marks are not
+ * supported.
+ */
+public class SpillingSAXStore extends ForwardingXMLReceiver {
+
+    public static final String SPILL_THRESHOLD_PROPERTY = "oxf.sax-store.spill-threshold";
+
+    private static final Logger logger = LoggerFactory.createLogger(SpillingSAXStore.class);
+
+    private static final int FILE_BUFFER_SIZE = 64 * 1024;
+
+    private final long threshold;
+
+    private SAXStore segment = new SAXStore();
+    private Locator locator;
+
+    private File file;
+    private ObjectOutputStream fileOutput;
+    private int spilledSegmentCount;
+    private long spilledSize;
+
+    /**
+     * @param xmlReceiver  receiver to forward events to while recording, or null
+     * @param threshold    approximate size in bytes above which events are moved to disk, or 0 to never do so
+     */
+    public SpillingSAXStore(XMLReceiver xmlReceiver, long threshold) {
+        if (xmlReceiver != null)
+            setXMLReceiver(xmlReceiver);
+        this.threshold = threshold;
+    }
+
+    // Threshold configured in properties
+    public static long getSpillThreshold() {
+        return Properties.instance().getPropertySet().getInteger(SPILL_THRESHOLD_PROPERTY, 0).longValue();
+    }
+
+    public long getApproximateSize() {
+        return spilledSize + segment.getApproximateSize();
+    }
+
+    public int getSpilledSegmentCount() {
+        return spilledSegmentCount;
+    }
+
+    public void replay(XMLReceiver xmlReceiver) throws SAXException {
+        final SegmentsXMLReceiver segmentsReceiver = new SegmentsXMLReceiver(xmlReceiver);
+        if (spilledSegmentCount > 0) {
+            try {
+                if (fileOutput != null)
+                    fileOutput.flush();
+
+                final ObjectInputStream fileInput =
+                    new ObjectInputStream(new BufferedInputStream(new FileInputStream(file), FILE_BUFFER_SIZE));
+                try {
+                    for (int i = 0; i < spilledSegmentCount; i++)
+                        new SAXStore(fileInput).replay(segmentsReceiver);
+                } finally {
+                    fileInput.close();
+                }
+            } catch (IOException e) {
+                throw new OXFException(e);
+            }
+        }
+        segment.replay(segmentsReceiver);
+    }
+
+    /**
+     * Release the temporary file, if any. The store must not be used afterwards.
+     */
+    public void dispose() {
+        closeFileOutput();
+        if (file != null) {
+            if (! file.delete() && file.exists())
+                logger.warn("Unable to delete temporary file: " + file.getAbsolutePath());
+            file = null;
+        }
+    }
+
+    private void spillIfNeeded() {
+        if (threshold > 0 && segment.getApproximateSize() > threshold) {
+            try {
+                if (fileOutput == null) {
+                    file = File.createTempFile("sax-store-", ".tmp", SystemUtils.getTemporaryDirectory());
+                    deleteFileOnContextDestroyed();
+                    fileOutput = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(file), FILE_BUFFER_SIZE));
+
+                    if (logger.isDebugEnabled())
+                        logger.debug("Spilling SAX events to temporary file: " + file.getAbsolutePath());
+                }
+
+                spilledSize += segment.getApproximateSize();
+                segment.writeExternal(fileOutput);
+                spilledSegmentCount++;
+            } catch (IOException e) {
+                throw new OXFException(e);
+            }
+
+            segment = new SAXStore();
+            if (locator != null)
+                segment.setDocumentLocator(locator);
+        }
+    }
+
+    private void deleteFileOnContextDestroyed() {
+        final PipelineContext pipelineContext = PipelineContext.get();
+        if (pipelineContext != null) {
+            pipelineContext.addContextListener(new PipelineContext.ContextListenerAdapter() {
+                public void contextDestroyed(boolean success) {
+                    dispose();
+                }
+            });
+        } else {
+            file.deleteOnExit();
+        }
+    }
+
+    private void closeFileOutput() {
+        if (fileOutput != null) {
+            try {
+                fileOutput.close();
+            } catch (IOException e) {
+                logger.warn("Unable to close temporary file: " + file.getAbsolutePath());
+            }
+            fileOutput = null;
+        }
+    }
+
+    @Override
+    public void setDocumentLocator(Locator locator) {
+        this.locator = locator;
+        segment.setDocumentLocator(locator);
+        super.setDocumentLocator(locator);
+    }
+
+    @Override
+    public void startDocument() throws SAXException {
+        segment.startDocument();
+        super.startDocument();
+    }
+
+    @Override
+    public void endDocument() throws SAXException {
+        segment.endDocument();
+        super.endDocument();
+
+        // Recording is done
+        locator = null;
+        closeFileOutput();
+    }
+
+    @Override
+    public void startPrefixMapping(String prefix, String uri) throws SAXException {
+        segment.startPrefixMapping(prefix, uri);
+        super.startPrefixMapping(prefix, uri);
+    }
+
+    @Override
+    public void endPrefixMapping(String prefix) throws SAXException {
+        segment.endPrefixMapping(prefix);
+        super.endPrefixMapping(prefix);
+    }
+
+    @Override
+    public void startElement(String uri, String localname, String qName, Attributes attributes) throws SAXException {
+        segment.startElement(uri, localname, qName, attributes);
+        super.startElement(uri, localname, qName, attributes);
+        spillIfNeeded();
+    }
+
+    @Override
+    public void endElement(String uri, String localname, String qName) throws SAXException {
+        segment.endElement(uri, localname, qName);
+        super.endElement(uri, localname, qName);
+        spillIfNeeded();
+    }
+
+    @Override
+    public void characters(char[] chars, int start, int length) throws SAXException {
+        segment.characters(chars, start, length);
+        super.characters(chars, start, length);
+        spillIfNeeded();
+    }
+
+    @Override
+    public void ignorableWhitespace(char[] chars, int start, int length) throws SAXException {
+        segment.ignorableWhitespace(chars, start, length);
+        super.ignorableWhitespace(chars, start, length);
+        spillIfNeeded();
+    }
+
+    @Override
+    public void processingInstruction(String target, String data) throws SAXException {
+        segment.processingInstruction(target, data);
+        super.processingInstruction(target, data);
+        spillIfNeeded();
+    }
+
+    @Override
+    public void skippedEntity(String name) throws SAXException {
+        segment.skippedEntity(name);
+        super.skippedEntity(name);
+        spillIfNeeded();
+    }
+
+    @Override
+    public void comment(char[] ch, int start, int length) throws SAXException {
+        segment.comment(ch, start, length);
+        super.comment(ch, start, length);
+        spillIfNeeded();
+    }
+
+    // Each segment sets its own locator on replay, but the receiver only sees one locator following the segments
+    private static class SegmentsXMLReceiver extends ForwardingXMLReceiver {
+
+        private Locator segmentLocator;
+
+        private SegmentsXMLReceiver(XMLReceiver xmlReceiver) {
+            super(xmlReceiver);
+        }
+
+        @Override
+        public void setDocumentLocator(Locator locator) {
+            final boolean first = segmentLocator == null;
+            segmentLocator = locator;
+            if (first && locator != null) {
+                super.setDocumentLocator(new Locator() {
+                    public String getPublicId() {
+                        return segmentLocator.getPublicId();
+                    }
+
+                    public String getSystemId() {
+                        return segmentLocator.getSystemId();
+                    }
+
+                    public int getLineNumber() {
+                        return segmentLocator.getLineNumber();
+                    }
+
+                    public int getColumnNumber() {
+                        return segmentLocator.getColumnNumber();
+                    }
+                });
+            }
+        }
+    }
+}
@@ -74,6 +74,7 @@ public class XMLConstants {
     public final static QName XS_NMTOKENS_QNAME = QName.apply("NMTOKENS", XSD_NAMESPACE);
     public final static QName XS_NONNEGATIVEINTEGER_QNAME = QName.apply("nonNegativeInteger", XSD_NAMESPACE);
     public static final QName XS_INT_QNAME = QName.apply("int", XSD_NAMESPACE);
+    public static final QName XS_LONG_QNAME = QName.apply("long", XSD_NAMESPACE);
     public static final QName XS_DECIMAL_QNAME = QName.apply("decimal", XSD_NAMESPACE);
     public static final QName XS_FLOAT_QNAME = QName.apply("float", XSD_NAMESPACE);
     public static final QName XS_DOUBLE_QNAME = QName.apply("double", XSD_NAMESPACE);
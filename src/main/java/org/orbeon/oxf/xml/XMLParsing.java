@@ -39,6 +39,7 @@ import java.net.URL;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class XMLParsing {
 
@@ -52,7 +53,18 @@ public class XMLParsing {
     private static final DocumentBuilderFactory documentBuilderFactory;
     private static Map<Thread, DocumentBuilder> documentBuilders = null;
 
-    private static Map<String, SAXParserFactory> parserFactories = new HashMap<String, SAXParserFactory>();
+    private static final ConcurrentHashMap<String, SAXParserFactory> parserFactories = new ConcurrentHashMap<String, SAXParserFactory>();
+
+    // Parsers kept by each thread for reuse, by configuration key. Creating a Xerces parser means creating a whole
+    // configuration, including symbol table and components, so it's worth reusing them. A parser is removed from the
+    // map while in use, so that a parse started from within another parse on the same thread, for example from a
+    // receiver, gets its own parser. As a parser is only ever used by one thread, its symbol table is not shared.
+    private static final ThreadLocal<Map<String, SAXParser>> threadSAXParsers = new ThreadLocal<Map<String, SAXParser>>() {
+        @Override
+        protected Map<String, SAXParser> initialValue() {
+            return new HashMap<String, SAXParser>();
+        }
+    };
 
     public static class ParserConfiguration {
         public final boolean validating;
@@ -135,7 +147,7 @@ public class XMLParsing {
      * @param parserConfiguration  parser configuration
      * @return                     the SAXParserFactory
      */
-    public static synchronized SAXParserFactory getSAXParserFactory(ParserConfiguration parserConfiguration) {
+    public static SAXParserFactory getSAXParserFactory(ParserConfiguration parserConfiguration) {
 
         final String key = parserConfiguration.getKey();
 
@@ -143,9 +155,10 @@ public class XMLParsing {
         if (existingFactory != null)
             return existingFactory;
 
+        // In case of race, one of the factories is dropped, which is harmless
         final SAXParserFactory newFactory = createSAXParserFactory(parserConfiguration);
-        parserFactories.put(key, newFactory);
-        return newFactory;
+        final SAXParserFactory raceFactory = parserFactories.putIfAbsent(key, newFactory);
+        return raceFactory != null ? raceFactory : newFactory;
     }
 
     /**
@@ -154,7 +167,7 @@ public class XMLParsing {
      * @param parserConfiguration  parser configuration
      * @return                     the SAXParser
      */
-    public static synchronized SAXParser newSAXParser(ParserConfiguration parserConfiguration) {
+    public static SAXParser newSAXParser(ParserConfiguration parserConfiguration) {
         try {
             return getSAXParserFactory(parserConfiguration).newSAXParser();
         } catch (Exception e) {
@@ -162,6 +175,39 @@ public class XMLParsing {
         }
     }
 
+    /**
+     * Get a SAXParser for the current thread, reusing an existing one if possible. The parser must be given back with
+     * releaseSAXParser() once the parse is done, and must not be used after that.
+     *
+     * @param parserConfiguration  parser configuration
+     * @return                     the SAXParser
+     */
+    public static SAXParser borrowSAXParser(ParserConfiguration parserConfiguration) {
+        final SAXParser existingParser = threadSAXParsers.get().remove(parserConfiguration.getKey());
+        return existingParser != null ? existingParser : newSAXParser(parserConfiguration);
+    }
+
+    /**
+     * Give back a parser obtained with borrowSAXParser(), so the current thread can reuse it.
+     *
+     * @param parserConfiguration  parser configuration passed to borrowSAXParser()
+     * @param saxParser            the SAXParser
+     */
+    public static void releaseSAXParser(ParserConfiguration parserConfiguration, SAXParser saxParser) {
+        try {
+            // Don't hold on to handlers, which can reference large structures
+            final XMLReader xmlReader = saxParser.getXMLReader();
+            xmlReader.setContentHandler(NULL_CONTENT_HANDLER);
+            xmlReader.setProperty(XMLConstants.SAX_LEXICAL_HANDLER, null);
+            xmlReader.setEntityResolver(ENTITY_RESOLVER);
+            xmlReader.setErrorHandler(ERROR_HANDLER);
+        } catch (SAXException e) {
+            // Just don't reuse the parser
+            return;
+        }
+        threadSAXParsers.get().put(parserConfiguration.getKey(), saxParser);
+    }
+
     public static XMLReader newXMLReader(ParserConfiguration parserConfiguration) {
         final SAXParser saxParser = XMLParsing.newSAXParser(parserConfiguration);
         try {
@@ -310,8 +356,9 @@ public class XMLParsing {
             resolver = null;
         }
 
+        final SAXParser saxParser = borrowSAXParser(parserConfiguration);
         try {
-            final XMLReader xmlReader = newSAXParser(parserConfiguration).getXMLReader();
+            final XMLReader xmlReader = saxParser.getXMLReader();
             xmlReader.setContentHandler(xmlReceiver);
             if (handleLexical)
                 xmlReader.setProperty(XMLConstants.SAX_LEXICAL_HANDLER, xmlReceiver);
@@ -324,6 +371,7 @@ public class XMLParsing {
         } catch (Exception e) {
             throw new OXFException(e);
         } finally {
+            releaseSAXParser(parserConfiguration, saxParser);
             if (resolver != null)
                 resolver.destroy();
         }
@@ -341,8 +389,9 @@ public class XMLParsing {
         if (StringUtils.trimAllToEmpty(xmlString).length() == 0)
             return false;
 
+        final SAXParser saxParser = borrowSAXParser(ParserConfiguration.PLAIN);
         try {
-            final XMLReader xmlReader = newSAXParser(ParserConfiguration.PLAIN).getXMLReader();
+            final XMLReader xmlReader = saxParser.getXMLReader();
             xmlReader.setContentHandler(NULL_CONTENT_HANDLER);
             xmlReader.setEntityResolver(ENTITY_RESOLVER);
             xmlReader.setErrorHandler(new org.xml.sax.ErrorHandler() {
@@ -362,6 +411,8 @@ public class XMLParsing {
         } catch (Exception e) {
             // Ideally we would like the parser to not throw as this is time-consuming, but not sure how to achieve that
             return false;
+        } finally {
+            releaseSAXParser(ParserConfiguration.PLAIN, saxParser);
         }
     }
 
@@ -391,8 +442,9 @@ public class XMLParsing {
     }
 
     public static void parseDocumentFragment(Reader reader, XMLReceiver xmlReceiver) throws SAXException {
+        final SAXParser saxParser = borrowSAXParser(ParserConfiguration.PLAIN);
         try {
-            final XMLReader xmlReader = newSAXParser(ParserConfiguration.PLAIN).getXMLReader();
+            final XMLReader xmlReader = saxParser.getXMLReader();
             xmlReader.setContentHandler(new XMLFragmentReceiver(xmlReceiver));
             final ArrayList<Reader> readers = new ArrayList<Reader>(3);
             readers.add(new StringReader("<root>"));
@@ -401,17 +453,22 @@ public class XMLParsing {
             xmlReader.parse(new InputSource(new SequenceReader(readers.iterator())));
         } catch (IOException e) {
             throw new OXFException(e);
+        } finally {
+            releaseSAXParser(ParserConfiguration.PLAIN, saxParser);
         }
     }
 
     public static void parseDocumentFragment(String fragment, XMLReceiver xmlReceiver) throws SAXException {
         if (fragment.contains("<") || fragment.contains("&")) {
+            final SAXParser saxParser = borrowSAXParser(ParserConfiguration.PLAIN);
             try {
-                final XMLReader xmlReader = newSAXParser(ParserConfiguration.PLAIN).getXMLReader();
+                final XMLReader xmlReader = saxParser.getXMLReader();
                 xmlReader.setContentHandler(new XMLFragmentReceiver(xmlReceiver));
                 xmlReader.parse(new InputSource(new StringReader("<root>" + fragment + "</root>")));
             } catch (IOException e) {
                 throw new OXFException(e);
+            } finally {
+                releaseSAXParser(ParserConfiguration.PLAIN, saxParser);
             }
         } else {
             // Optimization when fragment looks like text
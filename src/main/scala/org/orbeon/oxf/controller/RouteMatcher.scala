@@ -0,0 +1,162 @@
+/**
+  * Copyright (C) 2017 Orbeon, Inc.
+  *
+  * This program is free software; you can redistribute it and/or modify it under the terms of the
+  * GNU Lesser General Public License as published by the Free Software Foundation; either version
+  * 2.1 of the License, or (at your option) any later version.
+  *
+  * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+  * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+  * See the GNU Lesser General Public License for more details.
+  *
+  * The full text of the license is available at http://www.gnu.org/copyleft/lesser.html
+  */
+package org.orbeon.oxf.controller
+
+import java.util.regex.Pattern
+
+import org.orbeon.oxf.processor.RegexpMatcher.MatchResult
+
+import scala.collection.mutable
+
+// Find the first route matching a path without trying the pattern of every route in turn
+//
+// Each pattern is reduced to the literal prefix which all the paths it matches start with. Patterns which are entirely
+// literal are found with a hash lookup, and the others are indexed in a trie by their literal prefix. Only the patterns
+// whose prefix is a prefix of the path are tried, in the order of the routes, so the result is the same as with a
+// linear scan.
+class RouteMatcher[T](routes: Seq[(T, Pattern)]) {
+
+  import RouteMatcher._
+
+  private val indexedRoutes = routes.toIndexedSeq
+
+  private val (literalIndexes, prefixTrie) = {
+
+    val literalIndexes = mutable.Map[String, Int]()
+    val trieBuilder    = new TrieBuilder
+
+    for (((_, pattern), index) ← indexedRoutes.zipWithIndex)
+      patternPrefix(pattern) match {
+        case LiteralPattern(path) ⇒ if (! literalIndexes.contains(path)) literalIndexes += path → index
+        case PrefixPattern(prefix) ⇒ trieBuilder.add(prefix, index)
+      }
+
+    (literalIndexes.toMap, trieBuilder.result)
+  }
+
+  def findFirst(path: String): Option[(T, MatchResult)] = {
+
+    val candidateIndexes = (literalIndexes.get(path).toList ::: prefixTrie.indexesForPrefixesOf(path)).sorted
+
+    candidateIndexes.iterator map { index ⇒
+      val (route, pattern) = indexedRoutes(index)
+      route → MatchResult(pattern, path)
+    } find (_._2.matches)
+  }
+}
+
+object RouteMatcher {
+
+  sealed trait PatternPrefix
+  case class LiteralPattern(path: String)  extends PatternPrefix
+  case class PrefixPattern(prefix: String) extends PatternPrefix
+
+  private val MetaCharacters = "\\.[]()|^$*+?{}".toSet
+  private val Quantifiers    = "*+?{".toSet
+
+  // Find the literal prefix of a pattern, which is conservatively empty when the pattern is not simple enough
+  def patternPrefix(pattern: Pattern): PatternPrefix = {
+
+    val regexp = pattern.pattern
+
+    if (pattern.flags != 0 || hasTopLevelAlternation(regexp)) {
+      PrefixPattern("")
+    } else {
+
+      val prefix = new StringBuilder
+      var i      = 0
+
+      def isEscapedLiteral =
+        regexp.charAt(i) == '\\' && i + 1 < regexp.length && ! Character.isLetterOrDigit(regexp.charAt(i + 1))
+
+      while (i < regexp.length && (isEscapedLiteral || ! MetaCharacters(regexp.charAt(i)))) {
+        if (isEscapedLiteral) {
+          prefix += regexp.charAt(i + 1)
+          i += 2
+        } else {
+          prefix += regexp.charAt(i)
+          i += 1
+        }
+      }
+
+      if (i == regexp.length) {
+        LiteralPattern(prefix.toString)
+      } else {
+        // A quantifier applies to the last literal character, which might then be absent or repeated
+        if (Quantifiers(regexp.charAt(i)) && prefix.nonEmpty)
+          prefix.setLength(prefix.length - 1)
+        PrefixPattern(prefix.toString)
+      }
+    }
+  }
+
+  // Whether the pattern has a `|` outside of any group, in which case the alternatives don't share the prefix
+  private def hasTopLevelAlternation(regexp: String): Boolean = {
+
+    var groupDepth = 0
+    var classDepth = 0
+    var i          = 0
+
+    while (i < regexp.length) {
+      regexp.charAt(i) match {
+        case '\\' if regexp.startsWith("\\Q", i) ⇒
+          val end = regexp.indexOf("\\E", i + 2)
+          i = if (end == -1) regexp.length else end + 1
+        case '\\'                                ⇒ i += 1
+        case '['                                 ⇒ classDepth += 1
+        case ']' if classDepth > 0               ⇒ classDepth -= 1
+        case '(' if classDepth == 0              ⇒ groupDepth += 1
+        case ')' if classDepth == 0              ⇒ groupDepth -= 1
+        case '|' if classDepth == 0 && groupDepth == 0 ⇒ return true
+        case _                                   ⇒
+      }
+      i += 1
+    }
+
+    false
+  }
+
+  private class TrieNode(val indexes: List[Int], val children: Map[Char, TrieNode]) {
+
+    // Indexes of the routes with a prefix which is a prefix of the path
+    def indexesForPrefixesOf(path: String): List[Int] = {
+      var result = indexes
+      var node   = this
+      var i      = 0
+      while (i < path.length && (node ne null)) {
+        node = node.children.getOrElse(path.charAt(i), null)
+        if (node ne null)
+          result = node.indexes ::: result
+        i += 1
+      }
+      result
+    }
+  }
+
+  private class TrieBuilder {
+
+    private val indexes  = mutable.ListBuffer[Int]()
+    private val children = mutable.Map[Char, TrieBuilder]()
+
+    def add(prefix: String, index: Int): Unit = {
+      var node = this
+      for (c ← prefix)
+        node = node.children.getOrElseUpdate(c, new TrieBuilder)
+      node.indexes += index
+    }
+
+    def result: TrieNode =
+      new TrieNode(indexes.toList, children.map { case (c, builder) ⇒ c → builder.result }.toMap)
+  }
+}
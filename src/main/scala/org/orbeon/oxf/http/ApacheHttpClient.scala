@@ -16,6 +16,8 @@ package org.orbeon.oxf.http
 import java.io.IOException
 import java.net.{CookieStore ⇒ _, _}
 import java.security.KeyStore
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
 import javax.net.ssl.SSLContext
 
 import jcifs.ntlmssp.{Type1Message, Type2Message, Type3Message}
@@ -31,7 +33,8 @@ import org.apache.http.entity.{ContentType, InputStreamEntity}
 import org.apache.http.impl.auth.{BasicScheme, NTLMEngine, NTLMEngineException, NTLMScheme}
 import org.apache.http.impl.client.{BasicCredentialsProvider, DefaultHttpClient}
 import org.apache.http.impl.conn.PoolingClientConnectionManager
-import org.apache.http.params.{BasicHttpParams, HttpConnectionParams}
+import org.apache.http.pool.PoolStats
+import org.apache.http.params.{HttpConnectionParams, SyncBasicHttpParams}
 import org.apache.http.protocol.{BasicHttpContext, ExecutionContext, HttpContext}
 import org.apache.http.util.EntityUtils
 import org.apache.http.{ProtocolException ⇒ _, _}
@@ -56,29 +59,18 @@ class ApacheHttpClient(settings: HttpClientSettings) extends HttpClient {
 
     val uri = URI.create(url)
 
-    val httpClient  = new DefaultHttpClient(connectionManager, newHttpParams)
     val httpContext = new BasicHttpContext
 
+    evictIdleConnectionsIfNeeded()
+
     newProxyAuthState foreach
       (httpContext.setAttribute(ClientContext.PROXY_AUTH_STATE, _)) // Set proxy and host authentication
 
-    // Handle deflate/gzip transparently
-    httpClient.addRequestInterceptor(new RequestAcceptEncoding)
-    httpClient.addResponseInterceptor(new ResponseContentEncoding)
-
-    // Assign route planner for dynamic exclusion of hostnames from proxying
-    routePlanner foreach
-      httpClient.setRoutePlanner
-
     credentials foreach { actualCredentials ⇒
 
-      // Make authentication preemptive when needed. Interceptor is added first, as the Authentication header
-      // is added by HttpClient's RequestTargetAuthentication which is itself an interceptor, so our
-      // interceptor needs to run before RequestTargetAuthentication, otherwise RequestTargetAuthentication
-      // won't find the appropriate AuthState/AuthScheme/Credentials in the HttpContext.
-
+      // Make authentication preemptive when needed
       if (actualCredentials.preemptiveAuth)
-        httpClient.addRequestInterceptor(PreemptiveAuthHttpRequestInterceptor, 0)
+        httpContext.setAttribute(PreemptiveAuthAttribute, java.lang.Boolean.TRUE)
 
       val credentialsProvider = new BasicCredentialsProvider
       httpContext.setAttribute(ClientContext.CREDS_PROVIDER, credentialsProvider)
@@ -94,7 +86,8 @@ class ApacheHttpClient(settings: HttpClientSettings) extends HttpClient {
       )
     }
 
-    httpClient.setCookieStore(cookieStore)
+    // Attributes of the context take precedence over those of the shared client
+    httpContext.setAttribute(ClientContext.COOKIE_STORE, cookieStore)
 
     val requestMethod =
       method match {
@@ -187,13 +180,13 @@ class ApacheHttpClient(settings: HttpClientSettings) extends HttpClient {
   def shutdown() = connectionManager.shutdown()
   def usingProxy = proxyHost.isDefined
 
+  // Statistics of the connection pool, for all routes
+  def connectionPoolStats: PoolStats = connectionManager.getTotalStats
+
   private object Private {
 
-    // BasicHttpParams is not thread-safe per the doc
-    def newHttpParams =
-      new BasicHttpParams |!>
-      (HttpConnectionParams.setStaleCheckingEnabled(_, settings.staleCheckingEnabled)) |!>
-      (HttpConnectionParams.setSoTimeout(_, settings.soTimeout))
+    val PreemptiveAuthAttribute = "orbeon.preemptive-auth"
+    val EvictionInterval        = 5000L
 
     // It seems that credentials and state are not thread-safe, so create every time
     def newProxyAuthState = proxyCredentials map {
@@ -262,12 +255,27 @@ class ApacheHttpClient(settings: HttpClientSettings) extends HttpClient {
 
       schemeRegistry.register(new Scheme("https", 443, sslSocketFactory))
 
-      // Pooling connection manager with limits removed
-      new PoolingClientConnectionManager(schemeRegistry) |!>
-        (_.setMaxTotal(Integer.MAX_VALUE))               |!>
-        (_.setDefaultMaxPerRoute(Integer.MAX_VALUE))
+      def limit(value: Int) = if (value > 0) value else Integer.MAX_VALUE
+
+      // Pooling connection manager, by default with limits removed
+      new PoolingClientConnectionManager(schemeRegistry)                  |!>
+        (_.setMaxTotal(limit(settings.maxConnections)))                   |!>
+        (_.setDefaultMaxPerRoute(limit(settings.maxConnectionsPerRoute)))
     }
 
+    // Close connections which are idle or expired, checking at most every few seconds
+    val lastEviction = new AtomicLong(System.currentTimeMillis)
+
+    def evictIdleConnectionsIfNeeded(): Unit =
+      if (settings.idleConnectionTimeout > 0) {
+        val now  = System.currentTimeMillis
+        val last = lastEviction.get
+        if (now - last > EvictionInterval && lastEviction.compareAndSet(last, now)) {
+          connectionManager.closeExpiredConnections()
+          connectionManager.closeIdleConnections(settings.idleConnectionTimeout, TimeUnit.MILLISECONDS)
+        }
+      }
+
 
     val (proxyHost, proxyExclude, proxyCredentials) = {
       // Set proxy if defined in properties
@@ -309,31 +317,57 @@ class ApacheHttpClient(settings: HttpClientSettings) extends HttpClient {
       }
     }
 
+    // The single client, which is thread-safe as long as it is not modified once in use. Everything which is specific
+    // to a request, like cookies, credentials and proxy authentication state, goes into the request's context.
+    val httpClient = {
+
+      val httpParams =
+        new SyncBasicHttpParams |!>
+        (HttpConnectionParams.setStaleCheckingEnabled(_, settings.staleCheckingEnabled)) |!>
+        (HttpConnectionParams.setSoTimeout(_, settings.soTimeout))
+
+      new DefaultHttpClient(connectionManager, httpParams) |!> { client ⇒
+
+        // Added first, as the Authentication header is added by HttpClient's RequestTargetAuthentication which is
+        // itself an interceptor, so our interceptor needs to run before RequestTargetAuthentication, otherwise
+        // RequestTargetAuthentication won't find the appropriate AuthState/AuthScheme/Credentials in the HttpContext.
+        client.addRequestInterceptor(PreemptiveAuthHttpRequestInterceptor, 0)
+
+        // Handle deflate/gzip transparently
+        client.addRequestInterceptor(new RequestAcceptEncoding)
+        client.addResponseInterceptor(new ResponseContentEncoding)
+
+        // Assign route planner for dynamic exclusion of hostnames from proxying
+        routePlanner foreach
+          client.setRoutePlanner
+      }
+    }
+
     // The Apache folks are afraid we misuse preemptive authentication, and so force us to copy paste some code
     // rather than providing a simple configuration flag. See:
     // http://hc.apache.org/httpcomponents-client-ga/tutorial/html/authentication.html#d4e950
 
     object PreemptiveAuthHttpRequestInterceptor extends HttpRequestInterceptor {
-      def process(request: HttpRequest, context: HttpContext): Unit = {
-
-        val authState           = context.getAttribute(ClientContext.TARGET_AUTH_STATE).asInstanceOf[AuthState]
-        val credentialsProvider = context.getAttribute(ClientContext.CREDS_PROVIDER).asInstanceOf[CredentialsProvider]
-        val targetHost          = context.getAttribute(ExecutionContext.HTTP_TARGET_HOST).asInstanceOf[HttpHost]
-
-        // If not auth scheme has been initialized yet
-        if (authState.getAuthScheme eq null) {
-          val authScope = new AuthScope(targetHost.getHostName, targetHost.getPort)
-          // Obtain credentials matching the target host
-          val credentials = credentialsProvider.getCredentials(authScope)
-          // If found, generate preemptively
-          if (credentials ne null) {
-            authState.update(
-              if (credentials.isInstanceOf[NTCredentials]) new NTLMScheme(JCIFSEngine) else new BasicScheme,
-              credentials
-            )
+      def process(request: HttpRequest, context: HttpContext): Unit =
+        if (context.getAttribute(PreemptiveAuthAttribute) == java.lang.Boolean.TRUE) {
+          val authState           = context.getAttribute(ClientContext.TARGET_AUTH_STATE).asInstanceOf[AuthState]
+          val credentialsProvider = context.getAttribute(ClientContext.CREDS_PROVIDER).asInstanceOf[CredentialsProvider]
+          val targetHost          = context.getAttribute(ExecutionContext.HTTP_TARGET_HOST).asInstanceOf[HttpHost]
+
+          // If not auth scheme has been initialized yet
+          if (authState.getAuthScheme eq null) {
+            val authScope = new AuthScope(targetHost.getHostName, targetHost.getPort)
+            // Obtain credentials matching the target host
+            val credentials = credentialsProvider.getCredentials(authScope)
+            // If found, generate preemptively
+            if (credentials ne null) {
+              authState.update(
+                if (credentials.isInstanceOf[NTCredentials]) new NTLMScheme(JCIFSEngine) else new BasicScheme,
+                credentials
+              )
+            }
           }
         }
-      }
     }
 
     object JCIFSEngine extends NTLMEngine {
@@ -13,9 +13,18 @@
  */
 package org.orbeon.oxf.http
 
+import org.orbeon.oxf.metrics.Metrics
 import org.orbeon.oxf.properties.Properties
 
-object PropertiesApacheHttpClient extends ApacheHttpClient(PropertiesConnectionSettings.apply)
+object PropertiesApacheHttpClient extends ApacheHttpClient(PropertiesConnectionSettings.apply) {
+
+  private val ConnectionsMetricName = "orbeon_http_client_connections"
+  private val ConnectionsMetricHelp = "Number of outgoing HTTP connections in the pool"
+
+  Metrics.gauge(ConnectionsMetricName, ConnectionsMetricHelp, List("state" → "leased"))(connectionPoolStats.getLeased)
+  Metrics.gauge(ConnectionsMetricName, ConnectionsMetricHelp, List("state" → "available"))(connectionPoolStats.getAvailable)
+  Metrics.gauge(ConnectionsMetricName, ConnectionsMetricHelp, List("state" → "pending"))(connectionPoolStats.getPending)
+}
 
 object PropertiesConnectionSettings {
 
@@ -26,24 +35,28 @@ object PropertiesConnectionSettings {
     import HttpClientSettings._
 
     HttpClientSettings(
-      staleCheckingEnabled = props.getBoolean(StaleCheckingEnabledProperty, StaleCheckingEnabledDefault),
-      soTimeout            = props.getInteger(SOTimeoutProperty, SOTimeoutPropertyDefault).toInt,
-      chunkRequests        = props.getBoolean(ChunkRequestsProperty, ChunkRequestsDefault),
-
-      proxyHost            = props.getNonBlankString(ProxyHostProperty),
-      proxyPort            = Option(props.getInteger(ProxyPortProperty)) map (_.toInt),
-      proxyExclude         = props.getNonBlankString(ProxyExcludeProperty),
-
-      sslHostnameVerifier  = props.getString(SSLHostnameVerifierProperty, SSLHostnameVerifierDefault),
-      sslKeystoreURI       = Option(props.getStringOrURIAsString(SSLKeystoreURIProperty, allowEmpty = false)),
-      sslKeystorePassword  = props.getNonBlankString(SSLKeystorePasswordProperty),
-      sslKeystoreType      = props.getNonBlankString(SSLKeystoreTypeProperty),
-
-      proxySSL             = props.getBoolean(ProxySSLProperty, ProxySSLPropertyDefault),
-      proxyUsername        = props.getNonBlankString(ProxyUsernameProperty),
-      proxyPassword        = props.getNonBlankString(ProxyPasswordProperty),
-      proxyNTLMHost        = props.getNonBlankString(ProxyNTLMHostProperty),
-      proxyNTLMDomain      = props.getNonBlankString(ProxyNTLMDomainProperty)
+      staleCheckingEnabled   = props.getBoolean(StaleCheckingEnabledProperty, StaleCheckingEnabledDefault),
+      soTimeout              = props.getInteger(SOTimeoutProperty, SOTimeoutPropertyDefault).toInt,
+      chunkRequests          = props.getBoolean(ChunkRequestsProperty, ChunkRequestsDefault),
+
+      maxConnections         = props.getInteger(MaxConnectionsProperty, MaxConnectionsDefault).toInt,
+      maxConnectionsPerRoute = props.getInteger(MaxConnectionsPerRouteProperty, MaxConnectionsPerRouteDefault).toInt,
+      idleConnectionTimeout  = props.getInteger(IdleConnectionTimeoutProperty, IdleConnectionTimeoutDefault).toInt,
+
+      proxyHost              = props.getNonBlankString(ProxyHostProperty),
+      proxyPort              = Option(props.getInteger(ProxyPortProperty)) map (_.toInt),
+      proxyExclude           = props.getNonBlankString(ProxyExcludeProperty),
+
+      sslHostnameVerifier    = props.getString(SSLHostnameVerifierProperty, SSLHostnameVerifierDefault),
+      sslKeystoreURI         = Option(props.getStringOrURIAsString(SSLKeystoreURIProperty, allowEmpty = false)),
+      sslKeystorePassword    = props.getNonBlankString(SSLKeystorePasswordProperty),
+      sslKeystoreType        = props.getNonBlankString(SSLKeystoreTypeProperty),
+
+      proxySSL               = props.getBoolean(ProxySSLProperty, ProxySSLPropertyDefault),
+      proxyUsername          = props.getNonBlankString(ProxyUsernameProperty),
+      proxyPassword          = props.getNonBlankString(ProxyPasswordProperty),
+      proxyNTLMHost          = props.getNonBlankString(ProxyNTLMHostProperty),
+      proxyNTLMDomain        = props.getNonBlankString(ProxyNTLMDomainProperty)
     )
   }
 }
\ No newline at end of file
@@ -90,24 +90,28 @@ case class Redirect(
 }
 
 case class HttpClientSettings(
-  staleCheckingEnabled : Boolean,
-  soTimeout            : Int,
-  chunkRequests        : Boolean,
-
-  proxyHost            : Option[String],
-  proxyPort            : Option[Int],
-  proxyExclude         : Option[String],
-
-  sslHostnameVerifier  : String,
-  sslKeystoreURI       : Option[String],
-  sslKeystorePassword  : Option[String],
-  sslKeystoreType      : Option[String],
-
-  proxySSL             : Boolean,
-  proxyUsername        : Option[String],
-  proxyPassword        : Option[String],
-  proxyNTLMHost        : Option[String],
-  proxyNTLMDomain      : Option[String]
+  staleCheckingEnabled   : Boolean,
+  soTimeout              : Int,
+  chunkRequests          : Boolean,
+
+  maxConnections         : Int,
+  maxConnectionsPerRoute : Int,
+  idleConnectionTimeout  : Int,
+
+  proxyHost              : Option[String],
+  proxyPort              : Option[Int],
+  proxyExclude           : Option[String],
+
+  sslHostnameVerifier    : String,
+  sslKeystoreURI         : Option[String],
+  sslKeystorePassword    : Option[String],
+  sslKeystoreType        : Option[String],
+
+  proxySSL               : Boolean,
+  proxyUsername          : Option[String],
+  proxyPassword          : Option[String],
+  proxyNTLMHost          : Option[String],
+  proxyNTLMDomain        : Option[String]
 )
 
 object HttpClientSettings {
@@ -130,48 +134,58 @@ object HttpClientSettings {
       stringParam(name) getOrElse default
 
     HttpClientSettings(
-      staleCheckingEnabled = booleanParamWithDefault(StaleCheckingEnabledProperty, StaleCheckingEnabledDefault),
-      soTimeout            = intParamWithDefault(SOTimeoutProperty, SOTimeoutPropertyDefault),
-      chunkRequests        = booleanParamWithDefault(ChunkRequestsProperty, ChunkRequestsDefault),
-
-      proxyHost            = stringParam(ProxyHostProperty),
-      proxyPort            = intParam(ProxyPortProperty),
-      proxyExclude         = stringParam(ProxyExcludeProperty),
-
-      sslHostnameVerifier  = stringParamWithDefault(SSLHostnameVerifierProperty, SSLHostnameVerifierDefault),
-      sslKeystoreURI       = stringParam(SSLKeystoreURIProperty),
-      sslKeystorePassword  = stringParam(SSLKeystorePasswordProperty),
-      sslKeystoreType      = stringParam(SSLKeystoreTypeProperty),
-
-      proxySSL             = booleanParamWithDefault(ProxySSLProperty, ProxySSLPropertyDefault),
-      proxyUsername        = stringParam(ProxyUsernameProperty),
-      proxyPassword        = stringParam(ProxyPasswordProperty),
-      proxyNTLMHost        = stringParam(ProxyNTLMHostProperty),
-      proxyNTLMDomain      = stringParam(ProxyNTLMDomainProperty)
+      staleCheckingEnabled   = booleanParamWithDefault(StaleCheckingEnabledProperty, StaleCheckingEnabledDefault),
+      soTimeout              = intParamWithDefault(SOTimeoutProperty, SOTimeoutPropertyDefault),
+      chunkRequests          = booleanParamWithDefault(ChunkRequestsProperty, ChunkRequestsDefault),
+
+      maxConnections         = intParamWithDefault(MaxConnectionsProperty, MaxConnectionsDefault),
+      maxConnectionsPerRoute = intParamWithDefault(MaxConnectionsPerRouteProperty, MaxConnectionsPerRouteDefault),
+      idleConnectionTimeout  = intParamWithDefault(IdleConnectionTimeoutProperty, IdleConnectionTimeoutDefault),
+
+      proxyHost              = stringParam(ProxyHostProperty),
+      proxyPort              = intParam(ProxyPortProperty),
+      proxyExclude           = stringParam(ProxyExcludeProperty),
+
+      sslHostnameVerifier    = stringParamWithDefault(SSLHostnameVerifierProperty, SSLHostnameVerifierDefault),
+      sslKeystoreURI         = stringParam(SSLKeystoreURIProperty),
+      sslKeystorePassword    = stringParam(SSLKeystorePasswordProperty),
+      sslKeystoreType        = stringParam(SSLKeystoreTypeProperty),
+
+      proxySSL               = booleanParamWithDefault(ProxySSLProperty, ProxySSLPropertyDefault),
+      proxyUsername          = stringParam(ProxyUsernameProperty),
+      proxyPassword          = stringParam(ProxyPasswordProperty),
+      proxyNTLMHost          = stringParam(ProxyNTLMHostProperty),
+      proxyNTLMDomain        = stringParam(ProxyNTLMDomainProperty)
     )
   }
 
-  val StaleCheckingEnabledProperty = "oxf.http.stale-checking-enabled"
-  val SOTimeoutProperty            = "oxf.http.so-timeout"
-  val ChunkRequestsProperty        = "oxf.http.chunk-requests"
-  val ProxyHostProperty            = "oxf.http.proxy.host"
-  val ProxyPortProperty            = "oxf.http.proxy.port"
-  val ProxyExcludeProperty         = "oxf.http.proxy.exclude"
-  val SSLHostnameVerifierProperty  = "oxf.http.ssl.hostname-verifier"
-  val SSLKeystoreURIProperty       = "oxf.http.ssl.keystore.uri"
-  val SSLKeystorePasswordProperty  = "oxf.http.ssl.keystore.password"
-  val SSLKeystoreTypeProperty      = "oxf.http.ssl.keystore.type"
-  val ProxySSLProperty             = "oxf.http.proxy.use-ssl"
-  val ProxyUsernameProperty        = "oxf.http.proxy.username"
-  val ProxyPasswordProperty        = "oxf.http.proxy.password"
-  val ProxyNTLMHostProperty        = "oxf.http.proxy.ntlm.host"
-  val ProxyNTLMDomainProperty      = "oxf.http.proxy.ntlm.domain"
-
-  val StaleCheckingEnabledDefault  = true
-  val SOTimeoutPropertyDefault     = 0
-  val ChunkRequestsDefault         = false
-  val ProxySSLPropertyDefault      = false
-  val SSLHostnameVerifierDefault   = "strict"
+  val StaleCheckingEnabledProperty   = "oxf.http.stale-checking-enabled"
+  val SOTimeoutProperty              = "oxf.http.so-timeout"
+  val ChunkRequestsProperty          = "oxf.http.chunk-requests"
+  val MaxConnectionsProperty         = "oxf.http.max-connections"
+  val MaxConnectionsPerRouteProperty = "oxf.http.max-connections-per-route"
+  val IdleConnectionTimeoutProperty  = "oxf.http.idle-connection-timeout"
+  val ProxyHostProperty              = "oxf.http.proxy.host"
+  val ProxyPortProperty              = "oxf.http.proxy.port"
+  val ProxyExcludeProperty           = "oxf.http.proxy.exclude"
+  val SSLHostnameVerifierProperty    = "oxf.http.ssl.hostname-verifier"
+  val SSLKeystoreURIProperty         = "oxf.http.ssl.keystore.uri"
+  val SSLKeystorePasswordProperty    = "oxf.http.ssl.keystore.password"
+  val SSLKeystoreTypeProperty        = "oxf.http.ssl.keystore.type"
+  val ProxySSLProperty               = "oxf.http.proxy.use-ssl"
+  val ProxyUsernameProperty          = "oxf.http.proxy.username"
+  val ProxyPasswordProperty          = "oxf.http.proxy.password"
+  val ProxyNTLMHostProperty          = "oxf.http.proxy.ntlm.host"
+  val ProxyNTLMDomainProperty        = "oxf.http.proxy.ntlm.domain"
+
+  val StaleCheckingEnabledDefault    = true
+  val SOTimeoutPropertyDefault       = 0
+  val ChunkRequestsDefault           = false
+  val MaxConnectionsDefault          = 0 // no limit
+  val MaxConnectionsPerRouteDefault  = 0 // no limit
+  val IdleConnectionTimeoutDefault   = 60000
+  val ProxySSLPropertyDefault        = false
+  val SSLHostnameVerifierDefault     = "strict"
 }
 
 case class Credentials(username: String, password: Option[String], preemptiveAuth: Boolean, domain: Option[String]) {
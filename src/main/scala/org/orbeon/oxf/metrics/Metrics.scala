@@ -0,0 +1,284 @@
+/**
+  * Copyright (C) 2017 Orbeon, Inc.
+  *
+  * This program is free software; you can redistribute it and/or modify it under the terms of the
+  * GNU Lesser General Public License as published by the Free Software Foundation; either version
+  * 2.1 of the License, or (at your option) any later version.
+  *
+  * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+  * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+  * See the GNU Lesser General Public License for more details.
+  *
+  * The full text of the license is available at http://www.gnu.org/copyleft/lesser.html
+  */
+package org.orbeon.oxf.metrics
+
+import java.io.Writer
+import java.lang.management.ManagementFactory
+import java.util.concurrent.atomic.{AtomicLong, AtomicLongArray}
+import javax.management._
+import javax.servlet.{ServletContextEvent, ServletContextListener}
+
+import org.orbeon.oxf.cache.ObjectCache
+import org.slf4j.LoggerFactory
+
+import scala.collection.JavaConverters._
+import scala.util.control.NonFatal
+
+// Registry of metrics which are cheap enough to be always collected
+//
+// - Histograms record durations into fixed buckets, with one atomic increment per observation.
+// - Gauges are functions evaluated only when metrics are read.
+// - Metrics are read over JMX, as attributes of the `org.orbeon:type=Metrics` MBean, or in the Prometheus text format.
+object Metrics {
+
+  import Private._
+
+  type Labels = List[(String, String)]
+
+  case class Sample(name: String, labels: Labels, value: Double)
+
+  class Histogram private[Metrics] (val name: String, val labels: Labels) {
+
+    private val bucketCounts = new AtomicLongArray(BucketBoundsNanos.length + 1)
+    private val totalNanos   = new AtomicLong
+
+    def record(nanos: Long): Unit = {
+      bucketCounts.incrementAndGet(bucketIndex(nanos))
+      totalNanos.addAndGet(nanos)
+    }
+
+    def time[T](body: ⇒ T): T = {
+      val startTime = System.nanoTime
+      try body
+      finally record(System.nanoTime - startTime)
+    }
+
+    def samples: List[Sample] = {
+
+      val counts      = 0 until bucketCounts.length() map bucketCounts.get
+      val cumulative  = counts.scanLeft(0L)(_ + _).tail
+      val upperBounds = (BucketBoundsNanos map (b ⇒ formatDouble(b / NanosPerSecond))) :+ "+Inf"
+
+      val bucketSamples =
+        upperBounds.zip(cumulative).toList map { case (upperBound, count) ⇒
+          Sample(name + "_bucket", labels :+ ("le" → upperBound), count)
+        }
+
+      bucketSamples :::
+        Sample(name + "_sum",   labels, totalNanos.get / NanosPerSecond) ::
+        Sample(name + "_count", labels, cumulative.last)                 ::
+        Nil
+    }
+  }
+
+  // Return the histogram with the given name and labels, creating it if needed
+  def histogram(name: String, help: String, labels: Labels = Nil): Histogram =
+    Private.synchronized {
+      histograms.getOrElse(name → labels, {
+        val newHistogram = new Histogram(name, labels)
+        histograms += (name → labels) → newHistogram
+        helps      += name → (help, "histogram")
+        newHistogram
+      })
+    }
+
+  // Register or replace a gauge evaluated each time metrics are read
+  def gauge(name: String, help: String, labels: Labels = Nil)(value: ⇒ Double): Unit =
+    Private.synchronized {
+      gauges += (name → labels) → (() ⇒ value)
+      helps  += name → (help, "gauge")
+    }
+
+  // Register a function returning samples for metrics which are only known when reading them
+  def collector(help: Map[String, (String, String)])(collect: () ⇒ List[Sample]): Unit =
+    Private.synchronized {
+      collectors ::= collect
+      helps      ++= help
+    }
+
+  def allSamples: List[Sample] = {
+
+    val (currentHistograms, currentGauges, currentCollectors) =
+      Private.synchronized { (histograms.values.toList, gauges.toList, collectors.reverse) }
+
+    val gaugeSamples =
+      currentGauges flatMap { case ((name, labels), value) ⇒
+        safely(List(Sample(name, labels, value())))
+      }
+
+    (currentHistograms flatMap (_.samples)) ::: gaugeSamples ::: (currentCollectors flatMap (c ⇒ safely(c())))
+  }
+
+  // Write all metrics in the Prometheus text exposition format
+  def writePrometheus(writer: Writer): Unit = {
+
+    val currentHelps = Private.synchronized { helps }
+
+    def familyName(sampleName: String) =
+      if (currentHelps.contains(sampleName))
+        sampleName
+      else
+        HistogramSuffixes collectFirst {
+          case suffix if sampleName.endsWith(suffix) && currentHelps.contains(sampleName.dropRight(suffix.length)) ⇒
+            sampleName.dropRight(suffix.length)
+        } getOrElse sampleName
+
+    val samplesByFamily = allSamples groupBy (s ⇒ familyName(s.name))
+
+    for (family ← samplesByFamily.keys.toList.sorted) {
+      currentHelps.get(family) foreach { case (help, metricType) ⇒
+        writer.write(s"# HELP $family ${escapeHelp(help)}\n")
+        writer.write(s"# TYPE $family $metricType\n")
+      }
+      for (sample ← samplesByFamily(family)) {
+        writer.write(sampleKey(sample))
+        writer.write(' ')
+        writer.write(formatDouble(sample.value))
+        writer.write('\n')
+      }
+    }
+  }
+
+  // Cache statistics of all the named `ObjectCache` instances
+  collector(
+    Map(
+      "orbeon_cache_hits_total"   → ("Number of successful cache reads",     "counter"),
+      "orbeon_cache_misses_total" → ("Number of failed cache reads",         "counter"),
+      "orbeon_cache_hit_ratio"    → ("Ratio of successful cache reads",      "gauge"),
+      "orbeon_cache_size"         → ("Number of objects in cache",           "gauge"),
+      "orbeon_cache_max_size"     → ("Maximum number of objects in cache",   "gauge")
+    )
+  ) { () ⇒
+    ObjectCache.getNamedCaches.asScala.toList flatMap { case (cacheName, cache) ⇒
+
+      val labels = List("cache" → cacheName)
+      val hits   = cache.getHitCount.toDouble
+      val misses = cache.getMissCount.toDouble
+      val reads  = hits + misses
+
+      List(
+        Sample("orbeon_cache_hits_total",   labels, hits),
+        Sample("orbeon_cache_misses_total", labels, misses),
+        Sample("orbeon_cache_hit_ratio",    labels, if (reads > 0) hits / reads else 0),
+        Sample("orbeon_cache_size",         labels, cache.getCurrentSize),
+        Sample("orbeon_cache_max_size",     labels, cache.getMaxSize)
+      )
+    }
+  }
+
+  registerMBean()
+
+  // Unregister the MBean so that it doesn't keep the web app's class loader alive after the web app is undeployed
+  def unregisterMBean(): Unit =
+    try {
+      val server = ManagementFactory.getPlatformMBeanServer
+      val name   = new ObjectName(MBeanName)
+      if (server.isRegistered(name))
+        server.unregisterMBean(name)
+    } catch {
+      case NonFatal(t) ⇒
+        Logger.warn(s"unable to unregister `$MBeanName` MBean: ${t.getMessage}")
+    }
+
+  private object Private {
+
+    val Logger = LoggerFactory.getLogger("org.orbeon.metrics")
+
+    val NanosPerSecond    = 1000000000d
+    val HistogramSuffixes = List("_bucket", "_sum", "_count")
+    val MBeanName         = "org.orbeon:type=Metrics"
+
+    // Upper bounds of the histogram buckets, from 1 ms to 10 s
+    val BucketBoundsNanos =
+      Array(1L, 2L, 5L, 10L, 25L, 50L, 100L, 250L, 500L, 1000L, 2500L, 5000L, 10000L) map (_ * 1000000L)
+
+    var histograms = Map[(String, Labels), Histogram]()
+    var gauges     = Map[(String, Labels), () ⇒ Double]()
+    var collectors = List[() ⇒ List[Sample]]()
+    var helps      = Map[String, (String, String)]()
+
+    def bucketIndex(nanos: Long): Int = {
+      var i = 0
+      while (i < BucketBoundsNanos.length && nanos > BucketBoundsNanos(i))
+        i += 1
+      i
+    }
+
+    def safely(samples: ⇒ List[Sample]): List[Sample] =
+      try samples
+      catch {
+        case NonFatal(t) ⇒
+          Logger.debug("exception while reading metric", t)
+          Nil
+      }
+
+    def formatDouble(value: Double) =
+      if (value == value.toLong) value.toLong.toString else value.toString
+
+    def escapeHelp(help: String) =
+      help.replace("\\", "\\\\").replace("\n", "\\n")
+
+    def escapeLabelValue(value: String) =
+      escapeHelp(value).replace("\"", "\\\"")
+
+    def sampleKey(sample: Sample) =
+      if (sample.labels.isEmpty)
+        sample.name
+      else
+        sample.labels map { case (name, value) ⇒ s"""$name="${escapeLabelValue(value)}"""" } mkString (sample.name + "{", ",", "}")
+
+    // Expose each sample as a read-only attribute, so that the attributes follow metrics as they are created
+    class MetricsMBean extends DynamicMBean {
+
+      private def samplesByKey = (allSamples map (s ⇒ sampleKey(s) → s.value)).toMap
+
+      def getAttribute(attribute: String): AnyRef =
+        Double.box(samplesByKey.getOrElse(attribute, throw new AttributeNotFoundException(attribute)))
+
+      def getAttributes(attributes: Array[String]): AttributeList = {
+        val current = samplesByKey
+        val result  = new AttributeList
+        for (attribute ← attributes; value ← current.get(attribute))
+          result.add(new Attribute(attribute, Double.box(value)))
+        result
+      }
+
+      def getMBeanInfo: MBeanInfo = {
+        val attributes =
+          allSamples map { sample ⇒
+            new MBeanAttributeInfo(sampleKey(sample), "java.lang.Double", sample.name, true, false, false)
+          }
+        new MBeanInfo(getClass.getName, "Orbeon Forms metrics", attributes.toArray, null, null, null)
+      }
+
+      def setAttribute(attribute: Attribute): Unit =
+        throw new AttributeNotFoundException(attribute.getName)
+
+      def setAttributes(attributes: AttributeList): AttributeList =
+        new AttributeList
+
+      // There are no operations
+      def invoke(actionName: String, params: Array[AnyRef], signature: Array[String]): AnyRef =
+        throw new ReflectionException(new NoSuchMethodException(actionName))
+    }
+
+    // Replace any MBean left by a previous deployment of the web app
+    def registerMBean(): Unit =
+      try {
+        val server = ManagementFactory.getPlatformMBeanServer
+        val name   = new ObjectName(MBeanName)
+        if (server.isRegistered(name))
+          server.unregisterMBean(name)
+        server.registerMBean(new MetricsMBean, name)
+      } catch {
+        case NonFatal(t) ⇒
+          Logger.warn(s"unable to register `$MBeanName` MBean: ${t.getMessage}")
+      }
+  }
+}
+
+class MetricsServletContextListener extends ServletContextListener {
+  def contextInitialized(servletContextEvent: ServletContextEvent) = ()
+  def contextDestroyed(servletContextEvent: ServletContextEvent): Unit = Metrics.unregisterMBean()
+}
@@ -0,0 +1,46 @@
+/**
+  * Copyright (C) 2017 Orbeon, Inc.
+  *
+  * This program is free software; you can redistribute it and/or modify it under the terms of the
+  * GNU Lesser General Public License as published by the Free Software Foundation; either version
+  * 2.1 of the License, or (at your option) any later version.
+  *
+  * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+  * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+  * See the GNU Lesser General Public License for more details.
+  *
+  * The full text of the license is available at http://www.gnu.org/copyleft/lesser.html
+  */
+package org.orbeon.oxf.metrics
+
+import java.io.{BufferedWriter, OutputStreamWriter}
+
+import org.orbeon.oxf.http.StatusCode
+import org.orbeon.oxf.pipeline.api.PipelineContext
+import org.orbeon.oxf.processor.ProcessorImpl
+import org.orbeon.oxf.properties.Properties
+import org.orbeon.oxf.util.NetUtils
+
+/**
+ * Processor returning all the metrics in the Prometheus text format.
+ *
+ * - mapped to `oxf:metrics` in `processors.xml`
+ * - mapped to `/metrics` in `page-flow.xml`
+ * - only enabled with the `oxf.metrics.endpoint` property, as metrics are not meant to be public
+ */
+class MetricsProcessor extends ProcessorImpl {
+  override def start(pipelineContext: PipelineContext): Unit = {
+
+    val response = NetUtils.getExternalContext.getResponse
+
+    if (Properties.instance.getPropertySet.getBoolean("oxf.metrics.endpoint", default = false)) {
+      response.setStatus(StatusCode.Ok)
+      response.setContentType("text/plain; version=0.0.4; charset=utf-8")
+
+      val writer = new BufferedWriter(new OutputStreamWriter(response.getOutputStream, "utf-8"))
+      Metrics.writePrometheus(writer)
+      writer.flush()
+    } else
+      response.setStatus(StatusCode.NotFound)
+  }
+}
@@ -251,6 +251,15 @@ class PropertySet {
   def getInteger(name: String, default: Int): jl.Integer =
     Option(getInteger(name)) getOrElse new jl.Integer(default)
 
+  // Also accepts an `xs:integer` property, so that only values which don't fit in an `Int` require `xs:long`
+  def getLong(name: String, default: Long): Long =
+    getObjectOpt(name) match {
+      case Some(value: jl.Long)    ⇒ value.longValue
+      case Some(value: jl.Integer) ⇒ value.longValue
+      case Some(_)                 ⇒ throw new OXFException(s"Invalid attribute type requested for property `$name`: expected `${XMLConstants.XS_LONG_QNAME.qualifiedName}` or `${XMLConstants.XS_INTEGER_QNAME.qualifiedName}`")
+      case None                    ⇒ default
+    }
+
   def getBoolean(name: String): jl.Boolean =
     getPropertyValueOrNull(name, XMLConstants.XS_BOOLEAN_QNAME).asInstanceOf[jl.Boolean]
 
@@ -83,6 +83,7 @@ private object PropertyStore {
   private val SupportedTypes = Map[QName, (String, Element) ⇒ AnyRef](
     XS_STRING_QNAME             → convertString,
     XS_INTEGER_QNAME            → convertInteger,
+    XS_LONG_QNAME               → convertLong,
     XS_BOOLEAN_QNAME            → convertBoolean,
     XS_DATE_QNAME               → convertDate,
     XS_DATETIME_QNAME           → convertDate,
@@ -105,6 +106,7 @@ private object PropertyStore {
 
   def convertString (value: String, element: Element) = value
   def convertInteger(value: String, element: Element) = new jl.Integer(value)
+  def convertLong   (value: String, element: Element) = new jl.Long(value)
   def convertBoolean(value: String, element: Element) = jl.Boolean.valueOf(value)
   def convertDate   (value: String, element: Element) = new ju.Date(DateUtils.parseISODateOrDateTime(value))
 
@@ -13,7 +13,7 @@
  */
 package org.orbeon.oxf.util
 
-import java.io.{ByteArrayInputStream, ByteArrayOutputStream, OutputStream}
+import java.io.{ByteArrayInputStream, ByteArrayOutputStream, InputStream, OutputStream}
 import java.util.zip.{Deflater, GZIPInputStream, GZIPOutputStream}
 
 import org.apache.commons.pool.BasePoolableObjectFactory
@@ -87,6 +87,32 @@ object Compressor extends Logging {
     compressBytes(bytesToEncode, Deflater.BEST_SPEED)
   }
 
+  // Return a stream compressing to the given stream with the same format and level as `compressBytes()`. The pooled
+  // Deflater is returned to the pool when the stream is closed, so the caller must always close it.
+  def newGZIPOutputStream(out: OutputStream): OutputStream = {
+    val deflater = deflaterPool.borrowObject
+    try {
+      deflater.setLevel(Deflater.BEST_SPEED)
+      new DeflaterGZIPOutputStream(deflater, out, BUFFER_SIZE) {
+        private var released = false
+        override def close() =
+          try super.close()
+          finally
+            if (! released) {
+              deflaterPool.returnObject(deflater)
+              released = true
+            }
+      }
+    } catch {
+      case NonFatal(t) ⇒
+        deflaterPool.returnObject(deflater)
+        throw t
+    }
+  }
+
+  def newGZIPInputStream(in: InputStream): InputStream =
+    new GZIPInputStream(in, BUFFER_SIZE)
+
   def uncompressBytes(bytesToDecode: Array[Byte]) = {
     val is = new GZIPInputStream(new ByteArrayInputStream(bytesToDecode))
     val os = new ByteArrayOutputStream(BUFFER_SIZE)
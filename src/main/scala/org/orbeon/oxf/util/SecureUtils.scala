@@ -13,8 +13,9 @@
  */
 package org.orbeon.oxf.util
 
-import java.security.{Security, SecureRandom, MessageDigest}
-import javax.crypto.Cipher
+import java.io.{IOException, InputStream, OutputStream}
+import java.security.{GeneralSecurityException, Security, SecureRandom, MessageDigest}
+import javax.crypto.{Cipher, CipherOutputStream}
 import javax.crypto.Mac
 import javax.crypto.SecretKey
 import javax.crypto.SecretKeyFactory
@@ -23,6 +24,8 @@ import org.apache.commons.pool.BasePoolableObjectFactory
 import org.orbeon.oxf.properties.Properties
 import org.orbeon.oxf.common.OXFException
 
+import scala.util.control.NonFatal
+
 object SecureUtils {
 
   // Properties
@@ -132,6 +135,118 @@ object SecureUtils {
       cipher.doFinal(message)
     }
 
+  // Return a stream encrypting to the given stream. What is written to the given stream is the same as what `encrypt()`
+  // encodes to Base64, that is the IV followed by the ciphertext. The pooled Cipher is returned to the pool when the
+  // stream is closed, so the caller must always close it.
+  def newEncryptingOutputStream(out: OutputStream): OutputStream = {
+    val cipher = pool.borrowObject()
+    try {
+      cipher.init(Cipher.ENCRYPT_MODE, secretKey)
+      out.write(cipher.getParameters.getParameterSpec(classOf[IvParameterSpec]).getIV)
+
+      new CipherOutputStream(out, cipher) {
+        private var released = false
+        override def close() =
+          try super.close()
+          finally
+            if (! released) {
+              pool.returnObject(cipher)
+              released = true
+            }
+      }
+    } catch {
+      case NonFatal(t) ⇒
+        pool.returnObject(cipher)
+        throw t
+    }
+  }
+
+  // Return a stream decrypting what `newEncryptingOutputStream()` produced. The pooled Cipher is returned to the pool
+  // when the stream is closed, so the caller must always close it.
+  def newDecryptingInputStream(in: InputStream): InputStream = {
+
+    val iv = new Array[Byte](AESIVSize)
+    var read = 0
+    while (read < AESIVSize) {
+      val count = in.read(iv, read, AESIVSize - read)
+      if (count == -1)
+        throw new IOException("Missing IV in encrypted data")
+      read += count
+    }
+
+    val cipher = pool.borrowObject()
+    try {
+      cipher.init(Cipher.DECRYPT_MODE, secretKey, new IvParameterSpec(iv))
+      new DecryptingInputStream(cipher, in)
+    } catch {
+      case NonFatal(t) ⇒
+        pool.returnObject(cipher)
+        throw t
+    }
+  }
+
+  // Unlike some versions of `CipherInputStream`, this doesn't ignore padding errors at the end of the data
+  private class DecryptingInputStream(cipher: Cipher, in: InputStream) extends InputStream {
+
+    private val BufferSize = 8 * 1024
+
+    private val inBuffer  = new Array[Byte](BufferSize)
+    private val outBuffer = new Array[Byte](BufferSize + AESIVSize)
+
+    private var outPosition = 0
+    private var outLength   = 0
+    private var finished    = false
+    private var released    = false
+
+    // Return false if there is no more data
+    private def fill(): Boolean = {
+      while (outPosition == outLength && ! finished) {
+        val count = in.read(inBuffer)
+        outPosition = 0
+        outLength =
+          try {
+            if (count == -1) {
+              finished = true
+              cipher.doFinal(outBuffer, 0)
+            } else
+              cipher.update(inBuffer, 0, count, outBuffer, 0)
+          } catch {
+            case e: GeneralSecurityException ⇒ throw new IOException(e)
+          }
+      }
+      outPosition < outLength
+    }
+
+    def read(): Int =
+      if (fill()) {
+        val b = outBuffer(outPosition) & 0xff
+        outPosition += 1
+        b
+      } else
+        -1
+
+    override def read(b: Array[Byte], off: Int, len: Int): Int =
+      if (len == 0)
+        0
+      else if (fill()) {
+        val count = math.min(len, outLength - outPosition)
+        System.arraycopy(outBuffer, outPosition, b, off, count)
+        outPosition += count
+        count
+      } else
+        -1
+
+    override def available(): Int = outLength - outPosition
+
+    override def close(): Unit =
+      try in.close()
+      finally
+        if (! released) {
+          pool.returnObject(cipher)
+          released = true
+        }
+  }
+
   // Compute a digest
   def digestString(text: String, algorithm: String, encoding: String): String =
     digestBytes(text.getBytes("utf-8"), algorithm, encoding)
@@ -14,6 +14,7 @@
 package org.orbeon.oxf.util
 
 import java.util.{List ⇒ JList}
+import java.{util ⇒ ju}
 import javax.xml.transform.sax.SAXSource
 import javax.xml.transform.{Result, Source, TransformerException, URIResolver}
 
@@ -23,15 +24,16 @@ import org.orbeon.oxf.common.{OrbeonLocationException, ValidationException}
 import org.orbeon.oxf.resources.URLFactory
 import org.orbeon.oxf.util.CollectionUtils._
 import org.orbeon.oxf.xml.dom4j.{ExtendedLocationData, LocationData}
-import org.orbeon.oxf.xml.{NamespaceMapping, ShareableXPathStaticContext, XMLParsing}
+import org.orbeon.oxf.xml.{NamespaceMapping, SaxonUtils, ShareableXPathStaticContext, XMLParsing}
 import org.orbeon.saxon.Configuration
 import org.orbeon.saxon.`type`.{AnyItemType, Type}
 import org.orbeon.saxon.event.{PipelineConfiguration, Receiver}
 import org.orbeon.saxon.expr._
-import org.orbeon.saxon.functions.FunctionLibrary
+import org.orbeon.saxon.functions.{ExtensionFunctionCall, FunctionLibrary, SystemFunction}
 import org.orbeon.saxon.om._
 import org.orbeon.saxon.style.AttributeValueTemplate
 import org.orbeon.saxon.sxpath.{XPathEvaluator, XPathExpression, XPathStaticContext}
+import org.orbeon.saxon.trans.XPathException
 import org.orbeon.saxon.value.{AtomicValue, SequenceExtent, Value}
 import org.orbeon.scaxon.Implicits
 import org.xml.sax.InputSource
@@ -63,6 +65,48 @@ object XPath {
     }
   }
 
+  // Whether evaluated expressions may depend on the runtime environment, that is on the request, the session, the
+  // user, the current time, etc.
+  //
+  // Besides functions marked with `RuntimeDependentFunction`, any Orbeon function or Java/Scala extension function can
+  // read the request without saying so, and so is assumed to depend on the runtime environment unless `isPureFunction`
+  // says otherwise. Functions from the Saxon library are trusted to declare their dependencies.
+  class RuntimeDependencyTracker(isPureFunction: FunctionCall ⇒ Boolean) {
+
+    var dependsOnRuntime = false
+
+    def mayDependOnRuntime(expression: Expression): Boolean =
+      (expression.getDependencies & StaticProperty.DEPENDS_ON_RUNTIME_ENVIRONMENT) != 0 ||
+      (SaxonUtils.iterateExpressionTree(expression) exists isImpureCall)
+
+    private def isImpureCall(expression: Expression) = expression match {
+      case call: ExtensionFunctionCall                     ⇒ ! isPureFunction(call)
+      case call: SystemFunction if ! isSaxonFunction(call) ⇒ ! isPureFunction(call)
+      case _                                               ⇒ false
+    }
+  }
+
+  private def isSaxonFunction(call: SystemFunction) =
+    call.getClass.getName.startsWith("org.orbeon.saxon.functions.")
+
+  private val runtimeDependencyTrackerDyn = new DynamicVariable[RuntimeDependencyTracker](isInheritable = false)
+
+  def withRuntimeDependencyTracking[T](tracker: RuntimeDependencyTracker)(thunk: ⇒ T): T =
+    runtimeDependencyTrackerDyn.withValue(tracker) {
+      thunk
+    }
+
+  def withRuntimeDependencyTrackingJava(tracker: RuntimeDependencyTracker, runnable: Runnable): Unit =
+    withRuntimeDependencyTracking(tracker)(runnable.run())
+
+  def trackRuntimeDependency(expression: Expression): Unit =
+    runtimeDependencyTrackerDyn.value match {
+      case Some(tracker) if ! tracker.dependsOnRuntime ⇒
+        if (tracker.mayDependOnRuntime(expression))
+          tracker.dependsOnRuntime = true
+      case _ ⇒
+    }
+
   // Compiled expression with source information
   case class CompiledExpression(expression: XPathExpression, string: String, locationData: LocationData)
 
@@ -311,6 +355,55 @@ object XPath {
     }
   }
 
+  // Return all the items, keeping NodeInfo and AtomicValue instances
+  // The compiled expression is shared and thread-safe: no pool, cache or lock is involved
+  def evaluateKeepItems(
+    contextItems        : JList[Item],
+    contextPosition     : Int,
+    compiledExpression  : CompiledExpression,
+    functionContext     : FunctionContext,
+    variableResolver    : VariableResolver)(implicit
+    reporter            : Reporter
+  ): JList[Item] = {
+
+    withEvaluation(compiledExpression) { xpathExpression ⇒
+
+      val (contextItem, position) =
+        if (contextPosition > 0 && contextPosition <= contextItems.size)
+          (contextItems.get(contextPosition - 1), contextPosition)
+        else
+          (null, 0)
+
+      val dynamicContext = xpathExpression.createDynamicContext(contextItem, position)
+      val xpathContext   = dynamicContext.getXPathContextObject.asInstanceOf[XPathContextMajor]
+
+      xpathContext.getController.setUserData(
+        classOf[ShareableXPathStaticContext].getName,
+        "variableResolver",
+        variableResolver
+      )
+
+      withFunctionContext(functionContext) {
+        val iterator = xpathExpression.iterate(dynamicContext)
+        val result   = new ju.ArrayList[Item]
+        var next     = iterator.next()
+        while (next ne null) {
+          result.add(next)
+          next = iterator.next()
+        }
+        result
+      }
+    }
+  }
+
+  // Resolve variables from a map of in-scope variables, as used by XPathCache
+  def mapVariableResolver(variableToValueMap: ju.Map[String, ValueRepresentation]): VariableResolver =
+    (variableQName: StructuredQName, xpathContext: XPathContext) ⇒
+      (if (variableToValueMap ne null) variableToValueMap.get(variableQName.getLocalName) else null) match {
+        case null  ⇒ throw new XPathException("Undeclared variable in XPath expression: $" + variableQName.getClarkName)
+        case value ⇒ value
+      }
+
   // Return a string, or null if the expression returned an empty sequence
   // TODO: Should always return a string!
   // TODO: Check what we do upon NodeInfo
@@ -336,6 +429,7 @@ object XPath {
 
   private def withEvaluation[T](expression: CompiledExpression)(body: XPathExpression ⇒ T)(implicit reporter: Reporter): T =
     try {
+      trackRuntimeDependency(expression.expression.getInternalExpression)
       if (reporter ne null) {
         val startTime = System.nanoTime
         val result = body(expression.expression)
@@ -698,6 +698,7 @@ object XPathCache {
 
   private def withEvaluation[T](xpathString: String, xpathExpression: PooledXPathExpression, locationData: LocationData, reporter: Reporter)(body: ⇒ T): T =
     try {
+      XPath.trackRuntimeDependency(xpathExpression.internalExpression)
       if (reporter ne null) {
         val startTime = System.nanoTime
         val result = body
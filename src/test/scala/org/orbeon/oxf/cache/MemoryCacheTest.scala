@@ -33,6 +33,8 @@ class MemoryCacheTest extends AssertionsForJUnit {
     def added(): Unit = {}
   }
 
+  class MyWeighted(val getWeight: Long) extends MyCacheable(null) with Weighted
+
   case class Key(key: String) extends InternalCacheKey("test", key)
   val VALIDITY = 0L
 
@@ -219,4 +221,69 @@ class MemoryCacheTest extends AssertionsForJUnit {
     assert(range === keysAsInts)
     assert(range === values)
   }
-}
\ No newline at end of file
+
+  @Test def testWeightEvictsLeastRecentlyUsed(): Unit = {
+    val cache = new MemoryCacheImpl(100, 1000)
+
+    val o1 = new MyWeighted(400)
+    val o2 = new MyWeighted(400)
+    val o3 = new MyWeighted(400)
+
+    cache.add(Key("o1"), VALIDITY, o1)
+    cache.add(Key("o2"), VALIDITY, o2)
+
+    // Make o1 most recently used
+    cache.findValid(Key("o1"), VALIDITY)
+
+    cache.add(Key("o3"), VALIDITY, o3)
+
+    assert(! o1.wasEvicted)
+    assert(o2.wasEvicted)
+    assert(! o3.wasEvicted)
+    assert(cache.getCurrentSize === 2)
+    assert(cache.getCurrentWeight === 800)
+  }
+
+  @Test def testOverweightObjectNotCached(): Unit = {
+    val cache = new MemoryCacheImpl(100, 1000)
+
+    val o1 = new MyWeighted(400)
+    cache.add(Key("o1"), VALIDITY, o1)
+    cache.add(Key("o2"), VALIDITY, new MyWeighted(2000))
+
+    assert(! o1.wasEvicted)
+    assert(cache.findValid(Key("o2"), VALIDITY) eq null)
+    assert(cache.getCurrentWeight === 400)
+  }
+
+  @Test def testWeightUpdatedOnReplaceAndRemove(): Unit = {
+    val cache = new MemoryCacheImpl(100)
+
+    cache.add(Key("o1"), VALIDITY, new MyWeighted(400))
+    cache.add(Key("o1"), VALIDITY, new MyWeighted(100))
+    cache.add(Key("o2"), VALIDITY, new AnyRef)
+    assert(cache.getCurrentWeight === 100)
+
+    cache.remove(Key("o1"))
+    assert(cache.getCurrentWeight === 0)
+
+    cache.setMaxWeight(50)
+    cache.add(Key("o3"), VALIDITY, new MyWeighted(40))
+    cache.add(Key("o4"), VALIDITY, new MyWeighted(40))
+    assert(cache.getCurrentWeight === 40)
+  }
+
+  @Test def testStatistics(): Unit = {
+    val cache = new MemoryCacheImpl(1)
+
+    cache.add(Key("o1"), VALIDITY, new AnyRef)
+    cache.findValid(Key("o1"), VALIDITY)
+    cache.findValid(Key("o2"), VALIDITY)
+    cache.add(Key("o2"), VALIDITY, new AnyRef)
+
+    assert(cache.getHitCount === 1)
+    assert(cache.getMissCount === 1)
+    assert(cache.getAddCount === 2)
+    assert(cache.getExpirationCount === 1)
+  }
+}
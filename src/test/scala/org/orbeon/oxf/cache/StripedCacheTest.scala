@@ -0,0 +1,147 @@
+/**
+ * Copyright (C) 2017 Orbeon, Inc.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU Lesser General Public License as published by the Free Software Foundation; either version
+ * 2.1 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The full text of the license is available at http://www.gnu.org/copyleft/lesser.html
+ */
+package org.orbeon.oxf.cache
+
+import java.util.concurrent.locks.{Lock, ReentrantLock}
+
+import org.junit.Test
+import org.scalatest.junit.AssertionsForJUnit
+
+import scala.collection.JavaConversions._
+import scala.concurrent.ExecutionContext.Implicits.global
+import scala.concurrent.duration._
+import scala.concurrent.{Await, Future}
+
+class StripedCacheTest extends AssertionsForJUnit {
+
+  class MyCacheable(val getEvictionLock: Lock) extends Cacheable {
+
+    @volatile var wasEvicted = false
+    @volatile var wasRemoved = false
+
+    def evicted(): Unit = { wasEvicted = true }
+    def removed(): Unit = { wasRemoved = true }
+    def added(): Unit = {}
+  }
+
+  class MyWeighted(val getWeight: Long) extends MyCacheable(null) with Weighted
+
+  case class Key(key: String) extends InternalCacheKey("test", key)
+  val VALIDITY = 0L
+
+  @Test def testStripeCount(): Unit = {
+    assert(new StripedCacheImpl(1,    16).getStripeCount === 1)
+    assert(new StripedCacheImpl(50,   16).getStripeCount === 4)
+    assert(new StripedCacheImpl(5000, 16).getStripeCount === 16)
+    assert(new StripedCacheImpl(5000, 12).getStripeCount === 8)
+  }
+
+  @Test def testFindTakeRemove(): Unit = {
+    val cache = new StripedCacheImpl(100, 16)
+
+    val objects = 1 to 50 map (i ⇒ Key("o" + i) → new MyCacheable(null))
+
+    for ((key, o) ← objects)
+      cache.add(key, VALIDITY, o)
+
+    assert(cache.getCurrentSize === 50)
+
+    for ((key, o) ← objects)
+      assert(cache.findValid(key, VALIDITY) eq o)
+
+    val (key1, o1) = objects(0)
+    assert(cache.takeValid(key1, VALIDITY) eq o1)
+    assert(o1.wasRemoved)
+
+    val (key2, o2) = objects(1)
+    cache.remove(key2)
+    assert(o2.wasRemoved)
+    assert(! o2.wasEvicted)
+
+    assert(cache.getCurrentSize === 48)
+    assert(cache.iterateCacheKeys.toSet === (objects.drop(2) map (_._1) toSet))
+
+    assert(cache.removeAll() === 48)
+    assert(cache.getCurrentSize === 0)
+    assert(objects forall (_._2.wasRemoved))
+  }
+
+  @Test def testReduceSizeEvicts(): Unit = {
+    val cache = new StripedCacheImpl(64, 8)
+
+    val objects = 1 to 64 map (i ⇒ Key("o" + i) → new MyCacheable(null))
+
+    for ((key, o) ← objects)
+      cache.add(key, VALIDITY, o)
+
+    cache.setMaxSize(0)
+
+    assert(cache.getCurrentSize === 0)
+    assert(objects forall { case (_, o) ⇒ o.wasEvicted && ! o.wasRemoved })
+  }
+
+  @Test def testNotEvictedIfLockUnavailable(): Unit = {
+    val cache = new StripedCacheImpl(1, 16)
+    val lock = new ReentrantLock
+
+    val o1 = new MyCacheable(lock)
+
+    cache.add(Key("o1"), VALIDITY, o1)
+
+    lock.lock()
+    Await.ready(Future(cache.add(Key("o2"), VALIDITY, new AnyRef)), Duration.Inf)
+    lock.unlock()
+
+    assert(! o1.wasEvicted)
+    assert(! o1.wasRemoved)
+    assert(cache.getCurrentSize === 2)
+  }
+
+  @Test def testObjectHeavierThanStripeShare(): Unit = {
+    val cache = new StripedCacheImpl(64, 1000, 8)
+    assert(cache.getStripeCount === 8)
+
+    // Heavier than the 125 share of a stripe, but within the maximum weight
+    val o1 = new MyWeighted(500)
+    cache.add(Key("o1"), VALIDITY, o1)
+    assert(cache.findValid(Key("o1"), VALIDITY) eq o1)
+    assert(cache.getCurrentWeight === 500)
+
+    // Heavier than the maximum weight
+    cache.add(Key("o2"), VALIDITY, new MyWeighted(2000))
+    assert(cache.findValid(Key("o2"), VALIDITY) eq null)
+    assert(cache.getCurrentWeight === 500)
+  }
+
+  @Test def testConcurrentAccess(): Unit = {
+    val maxSize = 256
+    val cache   = new StripedCacheImpl(maxSize, 16)
+
+    val futures =
+      for (thread ← 1 to 8)
+        yield Future {
+          for (i ← 1 to 10000) {
+            val key = Key("o" + (i * thread % 1000))
+            cache.findValid(key, VALIDITY) match {
+              case null ⇒ cache.add(key, VALIDITY, new MyCacheable(null))
+              case _    ⇒
+            }
+          }
+        }
+
+    Await.result(Future.sequence(futures), 1.minute)
+
+    assert(cache.getCurrentSize <= maxSize)
+  }
+}
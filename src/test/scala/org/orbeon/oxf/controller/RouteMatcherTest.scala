@@ -0,0 +1,90 @@
+/**
+  * Copyright (C) 2017 Orbeon, Inc.
+  *
+  * This program is free software; you can redistribute it and/or modify it under the terms of the
+  * GNU Lesser General Public License as published by the Free Software Foundation; either version
+  * 2.1 of the License, or (at your option) any later version.
+  *
+  * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+  * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+  * See the GNU Lesser General Public License for more details.
+  *
+  * The full text of the license is available at http://www.gnu.org/copyleft/lesser.html
+  */
+package org.orbeon.oxf.controller
+
+import java.util.regex.Pattern
+
+import org.junit.Test
+import org.orbeon.oxf.processor.RegexpMatcher
+import org.orbeon.oxf.processor.RegexpMatcher.MatchResult
+import org.scalatest.junit.AssertionsForJUnit
+
+class RouteMatcherTest extends AssertionsForJUnit {
+
+  import RouteMatcher._
+
+  @Test def testPatternPrefix(): Unit = {
+
+    def prefix(regexp: String) = patternPrefix(Pattern.compile(regexp))
+    def glob(glob: String)     = patternPrefix(RegexpMatcher.compilePattern(glob, glob = true))
+
+    assert(LiteralPattern("/fr/service/warmup")     === prefix("/fr/service/warmup"))
+    assert(LiteralPattern("/a.b")                   === prefix("""/a\.b"""))
+    assert(PrefixPattern("/fr/service/")            === prefix("/fr/service/([^/]+)"))
+    assert(PrefixPattern("/")                       === prefix("/([^/]+)/service/.+"))
+    assert(PrefixPattern("/ab")                     === prefix("/abc?"))
+    assert(PrefixPattern("/x")                      === prefix("""/x\d+"""))
+    assert(PrefixPattern("")                        === prefix("(?!/([^/]+)/service/).+\\.(gif|css)"))
+    assert(PrefixPattern("")                        === prefix("/a|/b"))
+    assert(PrefixPattern("/a")                      === prefix("/a(b|c)"))
+    assert(PrefixPattern("")                        === patternPrefix(Pattern.compile("/a", Pattern.CASE_INSENSITIVE)))
+
+    assert(LiteralPattern("/home/")                 === glob("/home/"))
+    assert(PrefixPattern("/apps/")                  === glob("/apps/*"))
+    assert(PrefixPattern("/x")                      === glob("/x?.css"))
+  }
+
+  @Test def testFirstMatchingRoute(): Unit = {
+
+    val regexps = List(
+      "/xforms-server-submit",
+      "/([^/]+)/service/.+",
+      "(?!/([^/]+)/service/).+\\.(gif|css|js)",
+      "/(welcome/?)?",
+      "/home/",
+      "/fr/([^/]+)/([^/]+)/(new|edit)",
+      "/([^/]+)/.*",
+      "/not-found"
+    )
+
+    val routes  = regexps.zipWithIndex map { case (regexp, index) ⇒ index → Pattern.compile(regexp) }
+    val matcher = new RouteMatcher(routes)
+
+    def linearScan(path: String) =
+      routes.iterator map { case (index, pattern) ⇒ index → MatchResult(pattern, path) } find (_._2.matches)
+
+    val paths = List(
+      "/xforms-server-submit",
+      "/fr/service/persistence/crud",
+      "/apps/fr/style/form-runner.css",
+      "/fr/service/x.css",
+      "/",
+      "/welcome",
+      "/welcome/",
+      "/home/",
+      "/fr/acme/order/new",
+      "/fr/acme/order/view",
+      "/not-found",
+      "/unknown",
+      ""
+    )
+
+    for (path ← paths)
+      assert(linearScan(path) === matcher.findFirst(path), path)
+
+    assert(Some(5) === (matcher.findFirst("/fr/acme/order/new") map (_._1)))
+    assert(Some(List("acme", "order", "new")) === (matcher.findFirst("/fr/acme/order/new") map (_._2.groupsWithNulls.toList)))
+    assert(None === matcher.findFirst("/unknown"))
+  }
+}
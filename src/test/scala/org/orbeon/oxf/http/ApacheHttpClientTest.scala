@@ -0,0 +1,104 @@
+/**
+  * Copyright (C) 2017 Orbeon, Inc.
+  *
+  * This program is free software; you can redistribute it and/or modify it under the terms of the
+  * GNU Lesser General Public License as published by the Free Software Foundation; either version
+  * 2.1 of the License, or (at your option) any later version.
+  *
+  * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+  * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+  * See the GNU Lesser General Public License for more details.
+  *
+  * The full text of the license is available at http://www.gnu.org/copyleft/lesser.html
+  */
+package org.orbeon.oxf.http
+
+import java.io.ByteArrayOutputStream
+import java.net.InetSocketAddress
+import java.util.Collections
+import java.util.concurrent.{Callable, ConcurrentHashMap, Executors, TimeUnit}
+
+import com.sun.net.httpserver.{HttpExchange, HttpHandler, HttpServer}
+import org.apache.http.impl.client.BasicCookieStore
+import org.junit.Test
+import org.orbeon.oxf.util.IOUtils._
+import org.scalatest.junit.AssertionsForJUnit
+
+class ApacheHttpClientTest extends AssertionsForJUnit {
+
+  // Local server recording the client port of each request, so we can tell how many connections were opened
+  private def withServer[T](body: (String, collection.Set[Int]) ⇒ T): T = {
+
+    val clientPorts = Collections.newSetFromMap(new ConcurrentHashMap[Int, java.lang.Boolean])
+
+    val serverExecutor = Executors.newFixedThreadPool(8)
+
+    val server = HttpServer.create(new InetSocketAddress("localhost", 0), 0)
+    server.setExecutor(serverExecutor)
+    server.createContext("/", new HttpHandler {
+      def handle(exchange: HttpExchange): Unit = {
+        clientPorts.add(exchange.getRemoteAddress.getPort)
+        val bytes = "ok".getBytes("utf-8")
+        exchange.sendResponseHeaders(StatusCode.Ok, bytes.length)
+        useAndClose(exchange.getResponseBody)(_.write(bytes))
+      }
+    })
+    server.start()
+
+    try {
+      import scala.collection.JavaConverters._
+      body(s"http://localhost:${server.getAddress.getPort}/", clientPorts.asScala)
+    } finally {
+      server.stop(0)
+      serverExecutor.shutdown()
+    }
+  }
+
+  private def get(client: ApacheHttpClient, url: String): String = {
+    val response = client.connect(url, None, new BasicCookieStore, HttpMethod.GET, Map(), None)
+    try {
+      val os = new ByteArrayOutputStream
+      copyStream(response.content.inputStream, os)
+      new String(os.toByteArray, "utf-8")
+    } finally
+      response.disconnect()
+  }
+
+  @Test def reuseConnection(): Unit =
+    withServer { (url, clientPorts) ⇒
+
+      val client = new ApacheHttpClient(HttpClientSettings(_ ⇒ ""))
+
+      try {
+        for (_ ← 1 to 20)
+          assert("ok" === get(client, url))
+
+        assert(1 === clientPorts.size)
+        assert(0 === client.connectionPoolStats.getLeased)
+        assert(1 === client.connectionPoolStats.getAvailable)
+      } finally
+        client.shutdown()
+    }
+
+  @Test def limitConnectionsPerRoute(): Unit =
+    withServer { (url, clientPorts) ⇒
+
+      val client = new ApacheHttpClient(HttpClientSettings(name ⇒
+        if (name == HttpClientSettings.MaxConnectionsPerRouteProperty) "2" else ""
+      ))
+
+      val executor = Executors.newFixedThreadPool(8)
+
+      try {
+        val futures =
+          for (_ ← 1 to 40)
+            yield executor.submit(new Callable[String] { def call() = get(client, url) })
+
+        assert(futures forall (_.get(10, TimeUnit.SECONDS) == "ok"))
+        assert(clientPorts.size <= 2)
+      } finally {
+        executor.shutdown()
+        client.shutdown()
+      }
+    }
+}
@@ -0,0 +1,79 @@
+/**
+  * Copyright (C) 2017 Orbeon, Inc.
+  *
+  * This program is free software; you can redistribute it and/or modify it under the terms of the
+  * GNU Lesser General Public License as published by the Free Software Foundation; either version
+  * 2.1 of the License, or (at your option) any later version.
+  *
+  * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+  * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+  * See the GNU Lesser General Public License for more details.
+  *
+  * The full text of the license is available at http://www.gnu.org/copyleft/lesser.html
+  */
+package org.orbeon.oxf.metrics
+
+import java.io.StringWriter
+import java.lang.management.ManagementFactory
+import javax.management.ObjectName
+
+import org.junit.Test
+import org.scalatest.junit.AssertionsForJUnit
+
+class MetricsTest extends AssertionsForJUnit {
+
+  private val Millis = 1000000L
+
+  @Test def histogramBuckets(): Unit = {
+
+    val histogram = Metrics.histogram("test_buckets_seconds", "Test histogram", List("phase" → "test"))
+
+    histogram.record(500000L)     // 0.5 ms
+    histogram.record(3 * Millis)
+    histogram.record(3 * Millis)
+    histogram.record(20000 * Millis)
+
+    val samples = (histogram.samples map (s ⇒ s.name → s.labels → s.value)).toMap
+
+    def bucket(le: String) = samples("test_buckets_seconds_bucket" → List("phase" → "test", "le" → le))
+
+    assert(1 === bucket("0.001"))
+    assert(1 === bucket("0.002"))
+    assert(3 === bucket("0.005"))
+    assert(3 === bucket("10"))
+    assert(4 === bucket("+Inf"))
+    assert(4 === samples("test_buckets_seconds_count" → List("phase" → "test")))
+    assert(20.0065 === samples("test_buckets_seconds_sum" → List("phase" → "test")))
+
+    // Same name and labels return the same histogram
+    assert(histogram eq Metrics.histogram("test_buckets_seconds", "Test histogram", List("phase" → "test")))
+  }
+
+  @Test def prometheusFormat(): Unit = {
+
+    Metrics.histogram("test_format_seconds", "Test format").record(2 * Millis)
+    Metrics.gauge("test_format_gauge", "Test gauge", List("name" → "a\"b"))(42)
+
+    val writer = new StringWriter
+    Metrics.writePrometheus(writer)
+    val lines = writer.toString.lines.toList
+
+    assert(lines.contains("# HELP test_format_seconds Test format"))
+    assert(lines.contains("# TYPE test_format_seconds histogram"))
+    assert(lines.contains("""test_format_seconds_bucket{le="0.002"} 1"""))
+    assert(lines.contains("test_format_seconds_count 1"))
+    assert(lines.contains("# TYPE test_format_gauge gauge"))
+    assert(lines.contains("""test_format_gauge{name="a\"b"} 42"""))
+
+    // Statistics of the main object cache are always present
+    assert(lines exists (_.startsWith("""orbeon_cache_hit_ratio{cache="cache.main"} """)))
+  }
+
+  @Test def jmxAttributes(): Unit = {
+
+    Metrics.gauge("test_jmx_gauge", "Test JMX")(7)
+
+    val value = ManagementFactory.getPlatformMBeanServer.getAttribute(new ObjectName("org.orbeon:type=Metrics"), "test_jmx_gauge")
+    assert(7.0 === value)
+  }
+}
@@ -0,0 +1,108 @@
+/**
+ * Copyright (C) 2017 Orbeon, Inc.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU Lesser General Public License as published by the Free Software Foundation; either version
+ * 2.1 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The full text of the license is available at http://www.gnu.org/copyleft/lesser.html
+ */
+package org.orbeon.oxf.xml
+
+import java.security.SecureRandom
+
+import org.junit.Test
+import org.orbeon.oxf.common.OXFException
+import org.orbeon.oxf.test.ResourceManagerTestBase
+import org.orbeon.oxf.util.{Base64, Compressor, SecureUtils, StringBuilderWriter}
+import org.orbeon.oxf.xml.dom4j.Dom4jUtils
+import org.scalatest.junit.AssertionsForJUnit
+
+class EncodeDecodeTest extends ResourceManagerTestBase with AssertionsForJUnit {
+
+  private val sizes = Seq(0, 1, 2, 3, 10, 16, 100, 1000, 10000, 100000)
+
+  private val options = for (compress ← Seq(false, true); encrypt ← Seq(false, true)) yield (compress, encrypt)
+
+  @Test def bytesRoundTrip(): Unit =
+    for (size ← sizes; (compress, encrypt) ← options) {
+      val bytes = randomBytes(size)
+      assert(bytes.toList === EncodeDecode.decodeBytes(EncodeDecode.encodeBytes(bytes, compress, encrypt), false).toList)
+    }
+
+  // The streaming encoder must produce what the former array-based encoding produced, or at least what it can decode
+  @Test def compatibleWithArrayEncoding(): Unit =
+    for (size ← sizes) {
+      val bytes = randomBytes(size)
+
+      assert(EncodeDecode.encodeBytes(bytes, false, false) === "X3" + Base64.encode(bytes, false))
+      assert(bytes.toList === Compressor.uncompressBytes(Base64.decode(EncodeDecode.encodeBytes(bytes, true, false).substring(2))).toList)
+      assert(bytes.toList === SecureUtils.decrypt(EncodeDecode.encodeBytes(bytes, false, true).substring(2)).toList)
+      assert(bytes.toList === Compressor.uncompressBytes(SecureUtils.decrypt(EncodeDecode.encodeBytes(bytes, true, true).substring(2))).toList)
+
+      assert(bytes.toList === EncodeDecode.decodeBytes("X3" + Base64.encode(bytes, false), false).toList)
+      assert(bytes.toList === EncodeDecode.decodeBytes("X4" + Base64.encode(Compressor.compressBytes(bytes), false), false).toList)
+      assert(bytes.toList === EncodeDecode.decodeBytes("X1" + SecureUtils.encrypt(bytes), true).toList)
+      assert(bytes.toList === EncodeDecode.decodeBytes("X2" + SecureUtils.encrypt(Compressor.compressBytes(bytes)), true).toList)
+    }
+
+  @Test def xmlRoundTrip(): Unit = {
+
+    val document =
+      Dom4jUtils.readDom4j(
+        <root xmlns:foo="http://example.org/foo">
+          <foo:item id="1">Some text</foo:item>
+          <item id="2">{"Lots of text " * 10000}</item>
+          <empty/>
+        </root>.toString
+      )
+
+    for ((compress, encrypt) ← options)
+      assert(
+        Dom4jUtils.domToString(document) ===
+        Dom4jUtils.domToString(EncodeDecode.decodeXML(EncodeDecode.encodeXML(document, compress, encrypt, false), false))
+      )
+
+    // Without encryption, the output doesn't depend on a random IV
+    for (compress ← Seq(false, true)) {
+      val writer = new StringBuilderWriter
+      EncodeDecode.encodeXML(document, compress, false, false, writer)
+      assert(EncodeDecode.encodeXML(document, compress, false, false) === writer.toString)
+    }
+  }
+
+  @Test def rejectInvalidData(): Unit = {
+
+    val encoded = EncodeDecode.encodeBytes(randomBytes(1000), true, true)
+
+    // Unencrypted data when encryption is required
+    intercept[OXFException] {
+      EncodeDecode.decodeBytes(EncodeDecode.encodeBytes(randomBytes(10), true, false), true)
+    }
+
+    // Truncated data
+    intercept[OXFException] {
+      EncodeDecode.decodeBytes(encoded.substring(0, encoded.length - 8), true)
+    }
+
+    // Invalid Base64
+    intercept[OXFException] {
+      EncodeDecode.decodeBytes(encoded.substring(0, 10) + "!" + encoded.substring(11), true)
+    }
+
+    // Invalid GZIP header after decryption
+    intercept[OXFException] {
+      EncodeDecode.decodeBytes("X2" + SecureUtils.encrypt(randomBytes(1000)), true)
+    }
+  }
+
+  private def randomBytes(n: Int) = {
+    val bytes = new Array[Byte](n)
+    (new SecureRandom).nextBytes(bytes)
+    bytes
+  }
+}
@@ -0,0 +1,150 @@
+/**
+ * Copyright (C) 2017 Orbeon, Inc.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU Lesser General Public License as published by the Free Software Foundation; either version
+ * 2.1 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The full text of the license is available at http://www.gnu.org/copyleft/lesser.html
+ */
+package org.orbeon.oxf.xml
+
+import java.io.{ByteArrayInputStream, ByteArrayOutputStream, ObjectInputStream, ObjectOutputStream}
+
+import org.junit.Test
+import org.scalatest.junit.AssertionsForJUnit
+import org.xml.sax.helpers.{AttributesImpl, LocatorImpl}
+import org.xml.sax.{Attributes, Locator}
+
+class SAXStoreTest extends AssertionsForJUnit {
+
+  // Record events and the location reported for each of them
+  private class EventsReceiver extends ForwardingXMLReceiver {
+
+    val events = collection.mutable.ListBuffer[String]()
+    var locator: Locator = null
+
+    private def location =
+      if (locator eq null) "" else s"@${locator.getSystemId}:${locator.getLineNumber}:${locator.getColumnNumber}"
+
+    override def setDocumentLocator(locator: Locator): Unit = this.locator = locator
+    override def startDocument(): Unit = events += "startDocument" + location
+    override def endDocument(): Unit = events += "endDocument" + location
+    override def startPrefixMapping(prefix: String, uri: String): Unit = events += s"startPrefixMapping($prefix, $uri)"
+    override def endPrefixMapping(prefix: String): Unit = events += s"endPrefixMapping($prefix)"
+    override def characters(ch: Array[Char], start: Int, length: Int): Unit = events += s"characters(${new String(ch, start, length)})$location"
+    override def endElement(uri: String, localname: String, qName: String): Unit = events += s"endElement($uri, $qName)$location"
+    override def startElement(uri: String, localname: String, qName: String, attributes: Attributes): Unit = {
+      val atts = 0 until attributes.getLength map (i ⇒ s"${attributes.getQName(i)}=${attributes.getValue(i)}")
+      events += s"startElement($uri, $qName, ${atts.mkString(" ")})$location"
+    }
+  }
+
+  // Fill a store with repetitive names and values, spanning two system ids
+  private def fill(store: SAXStore): SAXStore = {
+
+    val locator = new LocatorImpl
+    locator.setSystemId("oxf:/main.xhtml")
+    store.setDocumentLocator(locator)
+
+    def at(line: Int, column: Int)(event: ⇒ Unit) = {
+      locator.setLineNumber(line)
+      locator.setColumnNumber(column)
+      event
+    }
+
+    at(1, 1)(store.startDocument())
+    store.startPrefixMapping("xf", "http://www.w3.org/2002/xforms")
+    at(1, 10)(store.startElement("", "root", "root", new AttributesImpl))
+
+    for (i ← 1 to 100) {
+      if (i == 50)
+        locator.setSystemId("oxf:/included.xml")
+
+      val attributes = new AttributesImpl
+      attributes.addAttribute("", "ref", "ref", "CDATA", "instance()/item")
+      attributes.addAttribute("", "id", "id", "CDATA", s"input-$i")
+
+      at(i + 1, 5)(store.startElement("http://www.w3.org/2002/xforms", "input", "xf:input", attributes))
+      at(i + 1, 40)(store.characters(s"value $i".toCharArray, 0, s"value $i".length))
+      at(i + 1, 50)(store.endElement("http://www.w3.org/2002/xforms", "input", "xf:input"))
+    }
+
+    at(102, 1)(store.endElement("", "root", "root"))
+    store.endPrefixMapping("xf")
+    at(102, 8)(store.endDocument())
+
+    store
+  }
+
+  private def events(store: SAXStore) = {
+    val receiver = new EventsReceiver
+    store.replay(receiver)
+    receiver.events.toList
+  }
+
+  private def serialize(store: SAXStore) = {
+    val os = new ByteArrayOutputStream
+    val oos = new ObjectOutputStream(os)
+    store.writeExternal(oos)
+    oos.close()
+    os.toByteArray
+  }
+
+  private def deserialize(bytes: Array[Byte]) =
+    new SAXStore(new ObjectInputStream(new ByteArrayInputStream(bytes)))
+
+  @Test def replayWithLocations(): Unit = {
+    val replayed = events(fill(new SAXStore))
+
+    assert(replayed.head === "startDocument@oxf:/main.xhtml:1:1")
+    assert(replayed contains "startElement(http://www.w3.org/2002/xforms, xf:input, ref=instance()/item id=input-49)@oxf:/main.xhtml:50:5")
+    assert(replayed contains "startElement(http://www.w3.org/2002/xforms, xf:input, ref=instance()/item id=input-50)@oxf:/included.xml:51:5")
+    assert(replayed.last === "endDocument@oxf:/included.xml:102:8")
+  }
+
+  @Test def serializationRoundTrip(): Unit = {
+    val store = fill(new SAXStore)
+    val deserialized = deserialize(serialize(store))
+
+    assert(events(store) === events(deserialized))
+    assert(store.getApproximateSize === deserialized.getApproximateSize)
+    assert(store.getAttributesCount === deserialized.getAttributesCount)
+
+    // A deserialized store can be serialized again
+    assert(events(store) === events(deserialize(serialize(deserialized))))
+  }
+
+  @Test def marks(): Unit = {
+    val store = new SAXStore
+    store.startDocument()
+    store.startElement("", "a", "a", new AttributesImpl)
+    store.getMark("b")
+    store.startElement("", "b", "b", new AttributesImpl)
+    store.characters("text".toCharArray, 0, 4)
+    store.endElement("", "b", "b")
+    store.endElement("", "a", "a")
+    store.endDocument()
+
+    val markEvents = {
+      val receiver = new EventsReceiver
+      deserialize(serialize(store)).getMarks.get(0).replay(receiver)
+      receiver.events.toList
+    }
+
+    assert(markEvents === List("startElement(, b, )", "characters(text)", "endElement(, b)"))
+  }
+
+  @Test def locationStripping(): Unit = {
+    val withLocations    = fill(new SAXStore)
+    val withoutLocations = fill(new SAXStore(false))
+
+    assert(events(withoutLocations) forall (! _.contains("@")))
+    assert(withoutLocations.getApproximateSize < withLocations.getApproximateSize)
+    assert(serialize(withoutLocations).length < serialize(withLocations).length)
+  }
+}
@@ -0,0 +1,79 @@
+/**
+ * Copyright (C) 2017 Orbeon, Inc.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU Lesser General Public License as published by the Free Software Foundation; either version
+ * 2.1 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The full text of the license is available at http://www.gnu.org/copyleft/lesser.html
+ */
+package org.orbeon.oxf.xml
+
+import org.junit.Test
+import org.scalatest.junit.AssertionsForJUnit
+import org.xml.sax.helpers.{AttributesImpl, LocatorImpl}
+
+class SpillingSAXStoreTest extends AssertionsForJUnit {
+
+  private def fill[T <: XMLReceiver](receiver: T): T = {
+
+    val locator = new LocatorImpl
+    locator.setSystemId("oxf:/data.xml")
+    receiver.setDocumentLocator(locator)
+
+    receiver.startDocument()
+    receiver.startElement("", "rows", "rows", new AttributesImpl)
+    for (i ← 1 to 1000) {
+      locator.setLineNumber(i)
+      val attributes = new AttributesImpl
+      attributes.addAttribute("", "id", "id", "CDATA", i.toString)
+      receiver.startElement("", "row", "row", attributes)
+      val text = s"Row number $i"
+      receiver.characters(text.toCharArray, 0, text.length)
+      receiver.endElement("", "row", "row")
+    }
+    receiver.endElement("", "rows", "rows")
+    receiver.endDocument()
+
+    receiver
+  }
+
+  // Serialize a replay, including the location of each element
+  private def replayToString(replay: XMLReceiver ⇒ Unit) = {
+    val builder = new java.lang.StringBuilder
+    replay(new ForwardingXMLReceiver {
+      var locator: org.xml.sax.Locator = null
+      override def setDocumentLocator(locator: org.xml.sax.Locator): Unit = this.locator = locator
+      override def startElement(uri: String, localname: String, qName: String, attributes: org.xml.sax.Attributes): Unit =
+        builder.append(s"<$qName ${attributes.getValue("id")} ${locator.getSystemId}:${locator.getLineNumber}>")
+      override def characters(ch: Array[Char], start: Int, length: Int): Unit =
+        builder.append(ch, start, length)
+    })
+    builder.toString
+  }
+
+  @Test def spillAndReplay(): Unit = {
+
+    val expected = replayToString(fill(new SAXStore).replay(_))
+    val store    = fill(new SpillingSAXStore(null, 4 * 1024))
+
+    try {
+      assert(store.getSpilledSegmentCount > 1)
+      assert(expected === replayToString(store.replay(_)))
+      // Replay can happen more than once
+      assert(expected === replayToString(store.replay(_)))
+    } finally {
+      store.dispose()
+    }
+  }
+
+  @Test def noSpillWithoutThreshold(): Unit = {
+    val store = fill(new SpillingSAXStore(null, 0))
+    assert(store.getSpilledSegmentCount === 0)
+    assert(replayToString(fill(new SAXStore).replay(_)) === replayToString(store.replay(_)))
+  }
+}
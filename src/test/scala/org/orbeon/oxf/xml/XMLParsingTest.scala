@@ -0,0 +1,97 @@
+/**
+ * Copyright (C) 2017 Orbeon, Inc.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU Lesser General Public License as published by the Free Software Foundation; either version
+ * 2.1 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The full text of the license is available at http://www.gnu.org/copyleft/lesser.html
+ */
+package org.orbeon.oxf.xml
+
+import java.util.concurrent.{Callable, Executors}
+
+import org.junit.Test
+import org.orbeon.oxf.common.OXFException
+import org.orbeon.oxf.xml.XMLParsing.ParserConfiguration
+import org.scalatest.junit.AssertionsForJUnit
+import org.xml.sax.Attributes
+
+import scala.collection.JavaConverters._
+
+class XMLParsingTest extends AssertionsForJUnit {
+
+  // Gather element names and text
+  private class StringReceiver extends XMLReceiverAdapter {
+    val builder = new java.lang.StringBuilder
+    override def startElement(uri: String, localname: String, qName: String, attributes: Attributes): Unit =
+      builder.append('<').append(localname).append('>')
+    override def characters(ch: Array[Char], start: Int, length: Int): Unit =
+      builder.append(ch, start, length)
+  }
+
+  private def parse(xml: String) = {
+    val receiver = new StringReceiver
+    XMLParsing.stringToSAX(xml, null, receiver, ParserConfiguration.PLAIN, false)
+    receiver.builder.toString
+  }
+
+  @Test def reuseParserOnSameThread(): Unit = {
+
+    val parser = XMLParsing.borrowSAXParser(ParserConfiguration.PLAIN)
+    XMLParsing.releaseSAXParser(ParserConfiguration.PLAIN, parser)
+
+    assert(XMLParsing.borrowSAXParser(ParserConfiguration.PLAIN) eq parser)
+    // Still in use, so a new parser is created
+    assert(XMLParsing.borrowSAXParser(ParserConfiguration.PLAIN) ne parser)
+
+    XMLParsing.releaseSAXParser(ParserConfiguration.PLAIN, parser)
+  }
+
+  @Test def nestedParse(): Unit = {
+
+    // Parse another document while the outer parse is in progress
+    val receiver = new StringReceiver {
+      override def startElement(uri: String, localname: String, qName: String, attributes: Attributes): Unit = {
+        super.startElement(uri, localname, qName, attributes)
+        if (localname == "outer")
+          builder.append(parse("<inner>i</inner>"))
+      }
+    }
+    XMLParsing.stringToSAX("<outer>o</outer>", null, receiver, ParserConfiguration.PLAIN, false)
+
+    assert(receiver.builder.toString === "<outer><inner>io")
+  }
+
+  @Test def reuseAfterError(): Unit = {
+    intercept[OXFException] {
+      parse("<a>")
+    }
+    assert(parse("<a>b</a>") === "<a>b")
+  }
+
+  @Test def concurrentParses(): Unit = {
+
+    val executor = Executors.newFixedThreadPool(8)
+    try {
+      def document(i: Int) = "<doc>" + ("<item>" + i + "</item>") * (i % 10) + "</doc>"
+      def expected(i: Int) = "<doc>" + ("<item>" + i) * (i % 10)
+
+      val tasks =
+        for (i ← 1 to 200)
+          yield new Callable[String] {
+            def call() = parse(document(i))
+          }
+
+      val results = executor.invokeAll(tasks.asJava).asScala map (_.get)
+
+      for ((result, i) ← results.zip(1 to 200))
+        assert(result === expected(i))
+    } finally
+      executor.shutdown()
+  }
+}
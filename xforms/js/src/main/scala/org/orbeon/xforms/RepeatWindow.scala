@@ -0,0 +1,110 @@
+/**
+ * Copyright (C) 2017 Orbeon, Inc.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU Lesser General Public License as published by the Free Software Foundation; either version
+ * 2.1 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The full text of the license is available at http://www.gnu.org/copyleft/lesser.html
+ */
+package org.orbeon.xforms
+
+import org.orbeon.xforms.EventNames.XXFormsRepeatWindow
+import org.scalajs.dom
+import org.scalajs.dom.html
+
+import scala.scalajs.js
+
+// Move the window of repeats with `xxf:window-size` as the user scrolls
+//
+// The server only outputs the iterations within the window. Iterations outside the window are output as a delimiter
+// only. When the first or last iteration of the window scrolls into view, we ask the server to move the window by half
+// its size in that direction.
+object RepeatWindow {
+
+  private val ScrollDelayMs    = 200
+  private val BeginIdPrefix    = "repeat-begin-"
+
+  private var scrollTimer: Option[js.timers.SetTimeoutHandle] = None
+
+  // Last window start requested, by repeat, so we don't request the same window again while waiting for the server
+  private var requestedStarts = Map[String, Int]()
+
+  def initialize(): Unit =
+    // Capture so that scrolling within any element is handled
+    dom.document.addEventListener("scroll", (_: dom.Event) ⇒ scheduleCheck(), useCapture = true)
+
+  private def scheduleCheck(): Unit = {
+    scrollTimer foreach js.timers.clearTimeout
+    scrollTimer = Some(js.timers.setTimeout(ScrollDelayMs) { scrollTimer = None; checkWindows() })
+  }
+
+  private case class RepeatContent(repeatId: String, built: List[(Int, html.Element)], size: Int)
+
+  private def checkWindows(): Unit = {
+
+    val beginElems = dom.document.querySelectorAll(".xforms-repeat-begin-end.xforms-repeat-window")
+
+    for (i ← 0 until beginElems.length) {
+
+      val beginElem = beginElems(i).asInstanceOf[html.Element]
+      val content   = repeatContent(beginElem)
+
+      content.built.headOption foreach { case (firstIndex, firstElem) ⇒
+
+        val (lastIndex, lastElem) = content.built.last
+        val halfWindow            = math.max(1, (lastIndex - firstIndex + 1) / 2)
+
+        val requestedStartOpt =
+          if (lastIndex < content.size && lastElem.getBoundingClientRect().bottom < dom.window.innerHeight)
+            Some(firstIndex + halfWindow)
+          else if (firstIndex > 1 && firstElem.getBoundingClientRect().top > 0)
+            Some(math.max(1, firstIndex - halfWindow))
+          else
+            None
+
+        requestedStartOpt filterNot (requestedStarts.get(content.repeatId).contains) foreach { requestedStart ⇒
+          requestedStarts += content.repeatId → requestedStart
+          DocumentAPI.dispatchEvent(
+            targetId   = content.repeatId,
+            eventName  = XXFormsRepeatWindow,
+            formElem   = $(beginElem).closest("form")(0).asInstanceOf[html.Element],
+            properties = js.Dictionary("start" → requestedStart.toString)
+          )
+        }
+      }
+    }
+  }
+
+  // Find the iterations between the begin and end delimiters, along with the last element of each built iteration
+  private def repeatContent(beginElem: html.Element): RepeatContent = {
+
+    val repeatId = beginElem.id.substring(BeginIdPrefix.length)
+    val endId    = "repeat-end-" + repeatId
+
+    var position    = 0
+    var hasTemplate = false
+    var built       = List[(Int, html.Element)]()
+
+    var current = beginElem.nextElementSibling
+    while ((current ne null) && current.id != endId) {
+      val elem = current.asInstanceOf[html.Element]
+      if (elem.classList.contains("xforms-repeat-delimiter"))
+        position += 1
+      else if (elem.classList.contains("xforms-repeat-template"))
+        hasTemplate = true
+      else
+        built = built match {
+          case (index, _) :: tail if index == position ⇒ (position, elem) :: tail
+          case _                                       ⇒ (position, elem) :: built
+        }
+      current = current.nextElementSibling
+    }
+
+    RepeatContent(repeatId, built.reverse, if (hasTemplate) position - 1 else position)
+  }
+}
@@ -20,6 +20,7 @@ object XFormsApp {
 
     def initializeOnDomReady(): Unit = {
       Upload
+      RepeatWindow.initialize()
     }
 
     $(initializeOnDomReady _)
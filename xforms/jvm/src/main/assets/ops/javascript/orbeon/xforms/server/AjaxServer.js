@@ -944,13 +944,20 @@
 
                         var recreatedInputs = {};
 
+                        // Itemsets handled so far, by control id, as controls which share an itemset refer to the
+                        // first control of the response that uses it with the `same-as` attribute
+                        var itemsetTrees = {};
+
                         function handleItemset(elem, controlId) {
 
-                            var itemsetTree = JSON.parse(ORBEON.util.Dom.getStringValue(elem));
+                            var sameAs      = ORBEON.util.Dom.getAttribute(elem, "same-as");
+                            var itemsetTree = sameAs != null ? itemsetTrees[sameAs] : JSON.parse(ORBEON.util.Dom.getStringValue(elem));
 
                             if (itemsetTree == null)
                                 itemsetTree = [];
 
+                            itemsetTrees[controlId] = itemsetTree;
+
                             var documentElement = document.getElementById(controlId);
 
                             controlsWithUpdatedItemsets[controlId] = true;
@@ -20,6 +20,7 @@ import org.orbeon.oxf.common.Version;
 import org.orbeon.oxf.externalcontext.ExternalContext;
 import org.orbeon.oxf.logging.LifecycleLogger;
 import org.orbeon.oxf.util.SecureUtils;
+import org.orbeon.oxf.util.XPath;
 import org.orbeon.oxf.xforms.action.XFormsAPI;
 import org.orbeon.oxf.xforms.analysis.DumbXPathDependencies;
 import org.orbeon.oxf.xforms.analysis.PathMapXPathDependencies;
@@ -65,6 +66,9 @@ public class XFormsContainingDocument extends XFormsContainingDocumentSupport {
     // Whether this document is currently being initialized
     private boolean initializing;
 
+    // Whether initialization depends on the request, in which case its result can't be reused for other requests
+    private boolean requestDependentInitialization;
+
     // Transient URI resolver for initialization
     private XFormsURIResolver uriResolver;
 
@@ -148,7 +152,14 @@ public class XFormsContainingDocument extends XFormsContainingDocumentSupport {
             // Initialize the containing document
             if (initialize) {
                 try {
-                    initialize();
+                    final XPath.RuntimeDependencyTracker tracker = XFormsInitialDocumentCache.newRuntimeDependencyTracker();
+                    XPath.withRuntimeDependencyTrackingJava(tracker, new Runnable() {
+                        public void run() {
+                            initialize();
+                        }
+                    });
+                    if (tracker.dependsOnRuntime())
+                        setRequestDependentInitialization();
                 } catch (Exception e) {
                     throw OrbeonLocationException.wrapException(e, new ExtendedLocationData(null, "initializing XForms containing document"));
                 }
@@ -185,6 +196,56 @@ public class XFormsContainingDocument extends XFormsContainingDocumentSupport {
         });
     }
 
+    /**
+     * Create an XFormsContainingDocument from an XFormsStaticState object and the dynamic state of a document just
+     * after its initialization from the same static state, instead of initializing it again.
+     *
+     * Used by XFormsInitialDocumentCache.
+     *
+     * @param staticState         static state object
+     * @param initialDynamicState dynamic state of a document initialized from the same static state
+     * @param uriResolver         URIResolver for loading resources until the initial response
+     * @param response            optional response for handling replace="all" until the initial response
+     */
+    public XFormsContainingDocument(XFormsStaticState staticState, DynamicState initialDynamicState, XFormsURIResolver uriResolver, ExternalContext.Response response) {
+        super(false);
+
+        // Create UUID for this document instance
+        this.uuid = SecureUtils.randomHexId();
+
+        // Initialize request information from the current request, not from the initial dynamic state
+        initializeRequestInformation();
+        initializePathMatchers();
+
+        // Initialize function library
+        this.functionLibrary = staticState.functionLibrary();
+
+        indentedLogger().startHandleOperation("initialization", "creating new ContainingDocument (initial dynamic state provided).", "uuid", this.uuid);
+        {
+            // Remember static state
+            this.staticState = staticState;
+            this.staticOps = new StaticStateGlobalOps(staticState.topLevelPart());
+
+            if (! isNoUpdatesStatic())
+                LifecycleLogger.eventAssumingRequestJava("xforms", "new form session", new String[] { "uuid", uuid });
+
+            this.xpathDependencies =
+                (Version.isPE() && this.staticState.isXPathAnalysis()) ? new PathMapXPathDependencies(this) : new DumbXPathDependencies();
+
+            try {
+                restoreModelsAndControls(initialDynamicState);
+            } catch (Exception e) {
+                throw OrbeonLocationException.wrapException(e, new ExtendedLocationData(null, "restoring initial XForms containing document"));
+            }
+
+            // From now on, behave as if the document had just been initialized
+            this.uriResolver = uriResolver;
+            this.response = response;
+            this.initializing = true;
+        }
+        indentedLogger().endHandleOperation();
+    }
+
     /**
      * Restore an XFormsContainingDocument from XFormsState only.
      *
@@ -259,6 +320,11 @@ public class XFormsContainingDocument extends XFormsContainingDocumentSupport {
         this.pendingUploads = new HashSet<String>(dynamicState.decodePendingUploadsJava()); // make copy as must be mutable
         this.lastAjaxResponse = dynamicState.decodeLastAjaxResponseJava();
 
+        restoreModelsAndControls(dynamicState);
+    }
+
+    private void restoreModelsAndControls(final DynamicState dynamicState) {
+
         // Scope the containing document for the XForms API
         XFormsAPI.withContainingDocumentJava(this, new Runnable() {
             public void run() {
@@ -462,7 +528,44 @@ public class XFormsContainingDocument extends XFormsContainingDocumentSupport {
         this.replaceAllCallable = callable;
     }
 
-    public void setGotSubmission() {}
+    public void setGotSubmission() {
+        setRequestDependentInitialization();
+    }
+
+    /**
+     * Tell the document that initialization did something which depends on the request, such as loading an external
+     * resource. This has no effect after initialization.
+     */
+    public void setRequestDependentInitialization() {
+        if (initializing)
+            this.requestDependentInitialization = true;
+    }
+
+    /**
+     * Whether, just after initialization, the state of this document can be used to create documents for other
+     * requests. This is not the case if initialization depends on the request, or if it left anything to send to the
+     * client or to process later.
+     */
+    public boolean isInitialStateReusable() {
+
+        final AsynchronousSubmissionManager manager = getAsynchronousSubmissionManager(false);
+
+        return
+            initializing                                                          &&
+            ! requestDependentInitialization                                      &&
+            activeSubmissionFirstPass == null                                     &&
+            replaceAllCallable == null                                            &&
+            ! gotSubmissionReplaceAll                                             &&
+            ! gotSubmissionRedirect                                               &&
+            messagesToRun == null                                                 &&
+            loadsToRun == null                                                    &&
+            scriptsToRun == null                                                  &&
+            helpEffectiveControlId == null                                        &&
+            serverErrors == null                                                  &&
+            delayedEvents().isEmpty()                                             &&
+            countPendingUploads() == 0                                            &&
+            (manager == null || ! manager.hasPendingAsynchronousSubmissions());
+    }
 
     public void setGotSubmissionReplaceAll() {
         if (this.gotSubmissionReplaceAll)
@@ -257,6 +257,29 @@ public class XFormsContextStack {
         );
     }
 
+    /**
+     * Push the binding of a statically analyzed element.
+     *
+     * The binding expression, if any, is evaluated with the expression compiled during static analysis instead of
+     * going through the XPath cache.
+     */
+    public void pushBinding(ElementAnalysis staticElement, String sourceEffectiveId, Scope scope) {
+        final Element bindingElement = staticElement.element();
+        pushBinding(
+            bindingElement.attributeValue(XFormsConstants.REF_QNAME),
+            bindingElement.attributeValue(XFormsConstants.CONTEXT_QNAME),
+            bindingElement.attributeValue(XFormsConstants.NODESET_QNAME),
+            bindingElement.attributeValue(XFormsConstants.MODEL_QNAME),
+            bindingElement.attributeValue(XFormsConstants.BIND_QNAME),
+            bindingElement,
+            container.getNamespaceMappings(bindingElement),
+            sourceEffectiveId,
+            scope,
+            true,
+            staticElement.compiledBindingExpressionOrNull()
+        );
+    }
+
     private BindingContext getBindingContext(Scope scope) {
         BindingContext bindingContext = this.head;
         while (bindingContext.scope() != scope) {
@@ -279,6 +302,22 @@ public class XFormsContextStack {
         String sourceEffectiveId,
         Scope scope,
         boolean handleNonFatal) {
+        pushBinding(ref, context, nodeset, modelId, bindId, bindingElement, bindingElementNamespaceMapping, sourceEffectiveId, scope, handleNonFatal, null);
+    }
+
+    // The compiled expression, if not null, must be the compiled form of `ref`, or of `nodeset` if `ref` is null
+    private void pushBinding(
+        String ref,
+        String context,
+        String nodeset,
+        String modelId,
+        String bindId,
+        Element bindingElement,
+        NamespaceMapping bindingElementNamespaceMapping,
+        String sourceEffectiveId,
+        Scope scope,
+        boolean handleNonFatal,
+        XPath.CompiledExpression compiledRefOrNodeset) {
 
         assert scope != null;
 
@@ -483,18 +522,28 @@ public class XFormsContextStack {
 
                             List<Item> result;
                                 try {
-                                    result = XPathCache.evaluateKeepItems(
-                                        evaluationContextBinding.nodeset(),
-                                        evaluationContextBinding.position(),
-                                        ref != null ? ref : nodeset,
-                                        bindingElementNamespaceMapping,
-                                        evaluationContextBinding.getInScopeVariables(),
-                                        containingDocument.getFunctionLibrary(),
-                                        functionContext,
-                                        null,
-                                        locationData,
-                                        containingDocument.getRequestStats().getReporter()
-                                    );
+                                    if (compiledRefOrNodeset != null)
+                                        result = XPath.evaluateKeepItems(
+                                            evaluationContextBinding.nodeset(),
+                                            evaluationContextBinding.position(),
+                                            compiledRefOrNodeset,
+                                            functionContext,
+                                            XPath.mapVariableResolver(evaluationContextBinding.getInScopeVariables()),
+                                            containingDocument.getRequestStats().getReporter()
+                                        );
+                                    else
+                                        result = XPathCache.evaluateKeepItems(
+                                            evaluationContextBinding.nodeset(),
+                                            evaluationContextBinding.position(),
+                                            ref != null ? ref : nodeset,
+                                            bindingElementNamespaceMapping,
+                                            evaluationContextBinding.getInScopeVariables(),
+                                            containingDocument.getFunctionLibrary(),
+                                            functionContext,
+                                            null,
+                                            locationData,
+                                            containingDocument.getRequestStats().getReporter()
+                                        );
                                 } catch (Exception e) {
                                     if (handleNonFatal) {
                                         XFormsError.handleNonFatalXPathError(container, e);
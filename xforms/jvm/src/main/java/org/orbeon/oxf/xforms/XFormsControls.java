@@ -18,6 +18,7 @@ import org.orbeon.oxf.common.OXFException;
 import org.orbeon.oxf.util.IndentedLogger;
 import org.orbeon.oxf.util.LoggerFactory;
 import org.orbeon.oxf.xforms.analysis.XPathDependencies;
+import org.orbeon.oxf.xforms.analytics.XFormsMetrics;
 import org.orbeon.oxf.xforms.control.*;
 import org.orbeon.oxf.xforms.control.controls.XFormsRepeatControl;
 import org.orbeon.oxf.xforms.control.controls.XFormsRepeatIterationControl;
@@ -59,6 +60,9 @@ public class XFormsControls {
 
     private Map<String, Itemset> constantItems;
 
+    // Itemsets shared by all the iterations of repeats, cleared whenever instance data or the control tree may change
+    private Map<String, Itemset> sharedItemsets;
+
     private final XPathDependencies xpathDependencies;
 
     public XFormsControls(XFormsContainingDocument containingDocument) {
@@ -86,8 +90,10 @@ public class XFormsControls {
 
     public void markDirtySinceLastRequest(boolean bindingsAffected) {
         dirtySinceLastRequest = true;
-        if (bindingsAffected)
+        if (bindingsAffected) {
             currentControlTree.markBindingsDirty();
+            sharedItemsets = null;
+        }
     }
 
     private void markCleanSinceLastRequest() {
@@ -111,6 +117,7 @@ public class XFormsControls {
     public void refreshStart() {
         requireRefresh = false;
         inRefresh = true;
+        sharedItemsets = null;
 
         xpathDependencies.refreshStart();
     }
@@ -166,6 +173,7 @@ public class XFormsControls {
             Controls.visitAllControls(containingDocument, new Controls.XFormsControlVisitorAdapter() {
                 public boolean startVisitControl(XFormsControl control) {
                     control.resetLocal();
+                    control.clearChanged();
                     return true;
                 }
             });
@@ -282,6 +290,31 @@ public class XFormsControls {
         constantItems.put(controlId, itemset);
     }
 
+    /**
+     * Get an itemset shared by the iterations of repeats, if it was evaluated since the last change.
+     *
+     * @param key           prefixed id of the control, with the repeat iterations of its XBL container
+     * @return              itemset, or null if not found
+     */
+    public Itemset getSharedItemset(String key) {
+        if (sharedItemsets == null)
+            return null;
+        else
+            return sharedItemsets.get(key);
+    }
+
+    /**
+     * Set an itemset shared by the iterations of repeats. The itemset must not be modified after this.
+     *
+     * @param key           prefixed id of the control, with the repeat iterations of its XBL container
+     * @param itemset       itemset
+     */
+    public void setSharedItemset(String key, Itemset itemset) {
+        if (sharedItemsets == null)
+            sharedItemsets = new HashMap<String, Itemset>();
+        sharedItemsets.put(key, itemset);
+    }
+
     public void doRefresh() {
 
         if (inRefresh) {
@@ -308,6 +341,7 @@ public class XFormsControls {
 
                 // Notify dependencies
                 refreshStart();
+                final long refreshStartTime = System.nanoTime();
                 try {
 
                     // Focused control before updating bindings
@@ -332,6 +366,7 @@ public class XFormsControls {
                     // "Actions that directly invoke rebuild, recalculate, revalidate, or refresh always have an immediate
                     // effect, and clear the corresponding flag."
                     refreshDone();
+                    XFormsMetrics.Refresh().record(System.nanoTime() - refreshStartTime);
                 }
 
                 if (updater != null) {
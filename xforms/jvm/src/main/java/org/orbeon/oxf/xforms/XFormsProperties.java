@@ -78,7 +78,9 @@ public class XFormsProperties {
 
     public static final String EXPOSE_XPATH_TYPES_PROPERTY = "expose-xpath-types";
     public static final String AJAX_UPDATE_FULL_THRESHOLD = "ajax.update.full.threshold";
+    public static final String AJAX_UPDATE_INCREMENTAL = "ajax.update.incremental";
     public static final String NO_UPDATES = "no-updates";
+    public static final String INITIAL_DOCUMENT_CACHE_PROPERTY = "initial-document-cache";
 
     public static final String TYPE_OUTPUT_FORMAT_PROPERTY_PREFIX = "format.output.";
     public static final String TYPE_INPUT_FORMAT_PROPERTY_PREFIX = "format.input.";
@@ -128,6 +130,8 @@ public class XFormsProperties {
     public static final String ENCRYPT_ITEM_VALUES_PROPERTY = "encrypt-item-values";
     public static final String XPATH_ANALYSIS_PROPERTY = "xpath-analysis";
     public static final String CALCULATE_ANALYSIS_PROPERTY = "analysis.calculate";
+    public static final String REBUILD_ANALYSIS_PROPERTY = "analysis.rebuild";
+    public static final String VALUE_CHANGES_ANALYSIS_PROPERTY = "analysis.value-changes";
 
     public static final String SANITIZE_PROPERTY = "sanitize";
 
@@ -261,10 +265,14 @@ public class XFormsProperties {
             new PropertyDefinition(ENCRYPT_ITEM_VALUES_PROPERTY                  , true,                           false),
             new PropertyDefinition(ASYNC_SUBMISSION_POLL_DELAY                   , 10 * 1000,                      false),
             new PropertyDefinition(AJAX_UPDATE_FULL_THRESHOLD                    , 20,                             false),
+            new PropertyDefinition(AJAX_UPDATE_INCREMENTAL                       , false,                          false),
             new PropertyDefinition(NO_UPDATES                                    , false,                          false),
+            new PropertyDefinition(INITIAL_DOCUMENT_CACHE_PROPERTY               , false,                          false),
             new PropertyDefinition(XFORMS11_SWITCH_PROPERTY                      , false,                          false),
             new PropertyDefinition(XPATH_ANALYSIS_PROPERTY                       , false,                          false),
             new PropertyDefinition(CALCULATE_ANALYSIS_PROPERTY                   , false,                          false),
+            new PropertyDefinition(REBUILD_ANALYSIS_PROPERTY                     , false,                          false),
+            new PropertyDefinition(VALUE_CHANGES_ANALYSIS_PROPERTY               , false,                          false),
             new PropertyDefinition(SANITIZE_PROPERTY                             , "",                             false),
             new PropertyDefinition(ASSETS_BASELINE_EXCLUDES_PROPERTY             , "",                             false),
 
@@ -323,6 +331,7 @@ public class XFormsProperties {
 
     public static final String DEBUG_LOG_XPATH_ANALYSIS_PROPERTY = XFORMS_PROPERTY_PREFIX + "debug.log-xpath-analysis";
     public static final String DEBUG_REQUEST_STATS_PROPERTY      = XFORMS_PROPERTY_PREFIX + "debug.log-request-stats";
+    public static final String DEBUG_CHECK_REBUILD_PROPERTY      = XFORMS_PROPERTY_PREFIX + "debug.check-partial-rebuild";
 
     public static final String LOCATION_MODE_PROPERTY = XFORMS_PROPERTY_PREFIX + "location-mode";
 
@@ -403,6 +412,10 @@ public class XFormsProperties {
         return Properties.instance().getPropertySet().getBoolean(DEBUG_REQUEST_STATS_PROPERTY, false);
     }
 
+    public static boolean getDebugCheckPartialRebuild() {
+        return Properties.instance().getPropertySet().getBoolean(DEBUG_CHECK_REBUILD_PROPERTY, false);
+    }
+
     public static long getAjaxTimeout() {
         return (long) Properties.instance().getPropertySet().getInteger(XFORMS_PROPERTY_PREFIX + DELAY_BEFORE_AJAX_TIMEOUT_PROPERTY, 30000);
     }
@@ -48,6 +48,7 @@ import javax.xml.transform.dom.DOMResult;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.sax.TransformerHandler;
 import java.io.StringReader;
+import java.io.Writer;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.*;
@@ -67,6 +68,10 @@ public class XFormsUtils {
         return EncodeDecode.encodeXML(documentToEncode, XFormsProperties.isGZIPState(), true, encodeLocationData);
     }
 
+    public static void encodeXML(Document documentToEncode, boolean encodeLocationData, Writer writer) {
+        EncodeDecode.encodeXML(documentToEncode, XFormsProperties.isGZIPState(), true, encodeLocationData, writer);
+    }
+
     private static final HTMLSchema TAGSOUP_HTML_SCHEMA = new HTMLSchema();
 
     private static void htmlStringToResult(String value, LocationData locationData, Result result) {
@@ -469,16 +469,6 @@ public class XFormsInsertAction extends XFormsAction {
                 indentedLogger.logDebug("xf:insert", "no node inserted");
         }
 
-        // "XForms Actions that change the tree structure of instance data result in setting all four flags to true"
-        if (didInsertNodes && modifiedInstanceOrNull != null) {
-            // NOTE: Can be null if document into which delete is performed is not in an instance, e.g. in a variable
-            modifiedInstanceOrNull.markModified();
-            modifiedInstanceOrNull.model().markStructuralChange(
-                scala.Option.<XFormsInstance>apply(modifiedInstanceOrNull),
-                FlaggedDefaultsStrategy$.MODULE$
-            );
-        }
-
         // Gather list of modified nodes
         final List<NodeInfo> insertedNodeInfos;
         if (didInsertNodes && modifiedInstanceOrNull != null) {
@@ -491,6 +481,17 @@ public class XFormsInsertAction extends XFormsAction {
             insertedNodeInfos = Collections.emptyList();
         }
 
+        // "XForms Actions that change the tree structure of instance data result in setting all four flags to true"
+        if (didInsertNodes && modifiedInstanceOrNull != null) {
+            // NOTE: Can be null if document into which delete is performed is not in an instance, e.g. in a variable
+            modifiedInstanceOrNull.markModified();
+            modifiedInstanceOrNull.model().markNodesInserted(
+                modifiedInstanceOrNull,
+                FlaggedDefaultsStrategy$.MODULE$,
+                insertedNodeInfos
+            );
+        }
+
         // "4. If the insert is successful, the event xforms-insert is dispatched."
         // XFormsInstance handles index and repeat items updates
         if (doDispatch && didInsertNodes && modifiedInstanceOrNull != null) {
@@ -220,6 +220,10 @@ public class XFormsAnnotator extends XFormsAnnotatorBase implements XMLReceiver
                         putMark(xformsElementId);
                         // Add a class to help the client
                         attributes = SAXUtils.appendToClassAttribute(attributes, "xforms-update-full");
+                    } else if (XFormsConstants.XFORMS_NAMESPACE_URI.equals(uri) && "repeat".equals(localname)
+                            && attributes.getValue(XFormsConstants.XXFORMS_WINDOW_SIZE_QNAME.namespace().uri(), XFormsConstants.XXFORMS_WINDOW_SIZE_QNAME.name()) != null) {
+                        // The content of a windowed repeat is updated in full when its window moves
+                        putMark(xformsElementId);
                     }
                 }
 
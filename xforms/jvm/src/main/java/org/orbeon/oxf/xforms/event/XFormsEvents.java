@@ -50,6 +50,7 @@ public class XFormsEvents {
     public static final String XXFORMS_INSTANCE_INVALIDATE = "xxforms-instance-invalidate";
 
     public static final String XXFORMS_DND = "xxforms-dnd";
+    public static final String XXFORMS_REPEAT_WINDOW = "xxforms-repeat-window";
 
     public static final String XXFORMS_VALID = "xxforms-valid";
     public static final String XXFORMS_INVALID = "xxforms-invalid";
@@ -78,6 +78,25 @@ public class InstanceData {// rename to DataNodeProperties once done
         }
     }
 
+    // Used when a node is no longer in the nodeset of a bind after a partial rebuild
+    public static void removeBindNode(NodeInfo nodeInfo, BindNode bindNode) {
+        final InstanceData instanceData = getLocalInstanceData(nodeInfo, false);
+        if (instanceData != null && instanceData != READONLY_LOCAL_INSTANCE_DATA && instanceData.bindNodes != null) {
+            final List<BindNode> remainingBindNodes = new ArrayList<BindNode>(instanceData.bindNodes.size());
+            QName bindType = null;
+            for (final BindNode currentBindNode : instanceData.bindNodes) {
+                if (currentBindNode != bindNode) {
+                    remainingBindNodes.add(currentBindNode);
+                    // The last type wins
+                    if (currentBindNode.staticBind().dataType().isDefined())
+                        bindType = currentBindNode.staticBind().dataType().get();
+                }
+            }
+            instanceData.bindNodes = remainingBindNodes.isEmpty() ? null : remainingBindNodes;
+            instanceData.bindType = bindType;
+        }
+    }
+
     private static final InstanceData READONLY_LOCAL_INSTANCE_DATA = new InstanceData() {
         @Override
         public boolean getLocalRelevant() {
@@ -394,6 +413,14 @@ public class InstanceData {// rename to DataNodeProperties once done
         }
     }
 
+    public static void clearSchemaState(Node node) {
+        final InstanceData existingInstanceData = getLocalInstanceData(node);
+        if (existingInstanceData != null) {
+            existingInstanceData.schemaType = null;
+            existingInstanceData.schemaInvalid = false;
+        }
+    }
+
     public static void clearSchemaState(NodeInfo nodeInfo) {
         final InstanceData existingInstanceData =
             getLocalInstanceData(nodeInfo, false);// not really an update since for read-only nothing changes
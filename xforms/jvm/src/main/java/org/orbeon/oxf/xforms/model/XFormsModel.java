@@ -631,6 +631,9 @@ public class XFormsModel extends XFormsModelBase implements XFormsEventObserver
      */
     private void loadNonCachedExternalInstance(final Instance instance) {
 
+        // The instance might differ for each request
+        containingDocument().setRequestDependentInitialization();
+
         final String absoluteURLString = resolveInstanceURL(instance);
 
         // Connect using external protocol
@@ -711,8 +714,20 @@ public class XFormsModel extends XFormsModelBase implements XFormsEventObserver
         deferredActionContext().markValueChange(isCalculate);
 
         // Notify dependencies of the change
-        if (nodeInfo != null)
+        if (nodeInfo != null) {
             containingDocument().getXPathDependencies().markValueChanged(this, nodeInfo);
+
+            // Nodesets of binds can depend on values
+            if (_modelBindsOpt.isDefined())
+                _modelBindsOpt.get().markValueChanged(nodeInfo);
+
+            // Tell the schema validator which element to validate again
+            if (hasSchema() && nodeInfo instanceof VirtualNode) {
+                final XFormsInstance instance = getInstanceForNode(nodeInfo);
+                if (instance != null)
+                    schemaValidator().markValueChanged(instance, XFormsUtils.getNodeFromNodeInfo(nodeInfo, ""));
+            }
+        }
     }
 
 //    public void markMipChange(NodeInfo nodeInfo) {
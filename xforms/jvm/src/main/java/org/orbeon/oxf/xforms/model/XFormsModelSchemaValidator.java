@@ -64,9 +64,7 @@ import scala.Option;
 
 import javax.xml.parsers.SAXParserFactory;
 import java.net.URL;
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.List;
+import java.util.*;
 
 /**
  * Provides XML Schema validation services for the XForms model.
@@ -91,6 +89,26 @@ public class XFormsModelSchemaValidator {
     // REDocumentDeclaration is not reentrant, but the validator is used by a single thread
     private REDocumentDeclaration documentDeclaration;
 
+    // Incremental validation state by instance effective id, kept across requests until the instance structure changes
+    private final Map<String, IncrementalState> incrementalStates = new HashMap<String, IncrementalState>();
+
+    // State of the instance being validated, if any
+    private IncrementalState currentIncrementalState;
+
+    /**
+     * What is needed to validate again only the elements of an instance whose value changed since the last validation.
+     * This assumes that the structure of the instance didn't change, so that the content model of the ancestors of the
+     * changed elements remains satisfied.
+     */
+    private static class IncrementalState {
+        // Acceptor of the parent element, positioned right before each element
+        final Map<Element, Acceptor> acceptorsBeforeElements = new IdentityHashMap<Element, Acceptor>();
+        // Elements and attributes which have schema errors
+        final Set<Node> invalidNodes = Collections.newSetFromMap(new IdentityHashMap<Node, Boolean>());
+        // Elements whose value or attributes changed since the last validation
+        final Set<Element> changedElements = Collections.newSetFromMap(new IdentityHashMap<Element, Boolean>());
+    }
+
     public XFormsModelSchemaValidator(Element modelElement, IndentedLogger indentedLogger) {
         this.modelElement = modelElement;
         this.indentedLogger = indentedLogger;
@@ -159,12 +177,16 @@ public class XFormsModelSchemaValidator {
         if (indentedLogger.isDebugEnabled())
             indentedLogger.logDebug("schema", "validation error", "error", newErrorMessage);
         InstanceData.addSchemaError(element);
+        if (currentIncrementalState != null)
+            currentIncrementalState.invalidNodes.add(element);
     }
 
     private void addSchemaError(final Attribute attribute, final String schemaError) {
         if (indentedLogger.isDebugEnabled())
             indentedLogger.logDebug("schema", "validation error", "error", schemaError);
         InstanceData.addSchemaError(attribute);
+        if (currentIncrementalState != null)
+            currentIncrementalState.invalidNodes.add(attribute);
     }
 
     private boolean handleIDErrors(final IDConstraintChecker icc) {
@@ -182,6 +204,10 @@ public class XFormsModelSchemaValidator {
 
         boolean isElementValid = true;
 
+        // Remember the parent acceptor state so that this element can be validated again on its own
+        if (currentIncrementalState != null && isReportErrors)
+            currentIncrementalState.acceptorsBeforeElements.put(element, acceptor.createClone());
+
         // Create StartTagInfo
         final StartTagInfo startTagInfo;
         {
@@ -623,6 +649,9 @@ public class XFormsModelSchemaValidator {
      * Apply schema validation to an instance. The instance may content a hint specifying whether to perform "lax",
      * "strict", or "skip" validation.
      *
+     * If only values changed since the last validation of the instance, only the elements holding these values are
+     * validated again.
+     *
      * @param instance          instance to validate
      */
     public boolean validateInstance(XFormsInstance instance) {
@@ -633,30 +662,146 @@ public class XFormsModelSchemaValidator {
                 documentDeclaration = createDocumentDeclaration(schemaGrammar);
             }
 
+            final Element instanceRootElement = instance.underlyingDocumentOpt().get().getRootElement();
+            final boolean isLax = instance.instance().isLaxValidation();
+
             // Get validation mode ("lax" is the default)
-            boolean isValid = true;
-            if (instance.instance().isLaxValidation()) {
-                // Lax validation
-                final Element instanceRootElement = instance.underlyingDocumentOpt().get().getRootElement();
-                isValid &= validateElementLax(instanceRootElement);
-            } else if (instance.instance().isStrictValidation()) {
-                // Strict validation
-                final Acceptor acceptor = documentDeclaration.createAcceptor();
-                final Element instanceRootElement = instance.underlyingDocumentOpt().get().getRootElement();
-                final IDConstraintChecker idConstraintChecker = new IDConstraintChecker();
+            if (isLax || instance.instance().isStrictValidation()) {
+
+                final IncrementalState existingState = incrementalStates.get(instance.getEffectiveId());
+                if (existingState != null) {
+                    currentIncrementalState = existingState;
+                    try {
+                        if (validateChangedElements(instanceRootElement, isLax))
+                            return existingState.invalidNodes.isEmpty();
+                    } finally {
+                        currentIncrementalState = null;
+                    }
+                }
+
+                final IncrementalState newState = new IncrementalState();
+                incrementalStates.put(instance.getEffectiveId(), newState);
+
+                clearSchemaState(instanceRootElement, null);
 
-                isValid &= validateElement(instanceRootElement, acceptor, idConstraintChecker, true);
-                idConstraintChecker.endDocument();
-                isValid &= handleIDErrors(idConstraintChecker);
+                boolean isValid = true;
+                currentIncrementalState = newState;
+                try {
+                    if (isLax) {
+                        // Lax validation
+                        isValid &= validateElementLax(instanceRootElement);
+                    } else {
+                        // Strict validation
+                        final Acceptor acceptor = documentDeclaration.createAcceptor();
+                        final IDConstraintChecker idConstraintChecker = new IDConstraintChecker();
+
+                        isValid &= validateElement(instanceRootElement, acceptor, idConstraintChecker, true);
+                        idConstraintChecker.endDocument();
+                        isValid &= handleIDErrors(idConstraintChecker);
+
+                        // Identity constraints span the whole instance
+                        if (idConstraintChecker.hasIdentityConstraints())
+                            incrementalStates.remove(instance.getEffectiveId());
+                    }
+                } finally {
+                    currentIncrementalState = null;
+                }
+                return isValid;
             } else {
                 // Skip validation
+                incrementalStates.remove(instance.getEffectiveId());
+                return true;
             }
-            return isValid;
         } else {
             return true;
         }
     }
 
+    /**
+     * Remember that the value of an instance node changed, so that the next validation of the instance can be limited
+     * to the element holding the value.
+     *
+     * @param instance          instance containing the node
+     * @param node              element, attribute, or text node
+     */
+    public void markValueChanged(XFormsInstance instance, Node node) {
+        final IncrementalState state = incrementalStates.get(instance.getEffectiveId());
+        if (state != null) {
+            if (node instanceof Attribute && ((Attribute) node).getQName().equals(XMLConstants.XSI_TYPE_QNAME)) {
+                // The type of the element changes, which in lax mode can change which elements are validated at all
+                incrementalStates.remove(instance.getEffectiveId());
+            } else {
+                final Element element = (node instanceof Element) ? (Element) node : node.getParent();
+                if (element != null)
+                    state.changedElements.add(element);
+            }
+        }
+    }
+
+    /**
+     * Forget incremental validation state, so that instances are validated entirely the next time. This must be called
+     * when the structure of instances changes.
+     */
+    public void markStructuralChange() {
+        incrementalStates.clear();
+    }
+
+    // Validate the changed elements again, and return false if the instance must be validated entirely instead
+    private boolean validateChangedElements(final Element instanceRootElement, final boolean isLax) {
+
+        final IncrementalState state = currentIncrementalState;
+
+        // Elements within changed elements are validated along with them
+        final List<Element> elementsToValidate = new ArrayList<Element>();
+        for (final Element changedElement : state.changedElements) {
+            if (changedElement.getDocument() != instanceRootElement.getDocument())
+                return false;
+
+            boolean hasChangedAncestor = false;
+            for (Element ancestor = changedElement.getParent(); ancestor != null && ! hasChangedAncestor; ancestor = ancestor.getParent())
+                hasChangedAncestor = state.changedElements.contains(ancestor);
+
+            if (! hasChangedAncestor) {
+                if (! isLax && ! state.acceptorsBeforeElements.containsKey(changedElement))
+                    return false;
+                elementsToValidate.add(changedElement);
+            }
+        }
+
+        if (indentedLogger.isDebugEnabled())
+            indentedLogger.logDebug("schema", "validating changed elements", "count", Integer.toString(elementsToValidate.size()));
+
+        state.changedElements.clear();
+
+        for (final Element element : elementsToValidate) {
+            clearSchemaState(element, state.invalidNodes);
+
+            final Acceptor acceptor = state.acceptorsBeforeElements.get(element);
+            if (acceptor != null)
+                validateElement(element, acceptor.createClone(), null, true);
+            else
+                // In lax mode, the element is not within an element with a known type
+                validateElementLax(element);
+        }
+
+        return true;
+    }
+
+    private static void clearSchemaState(final Element element, final Set<Node> invalidNodes) {
+        InstanceData.clearSchemaState(element);
+        if (invalidNodes != null)
+            invalidNodes.remove(element);
+
+        for (final Attribute attribute : element.attributes()) {
+            InstanceData.clearSchemaState(attribute);
+            if (invalidNodes != null)
+                invalidNodes.remove(attribute);
+        }
+
+        for (final Iterator<Element> iterator = element.elementIterator(); iterator.hasNext();)
+            clearSchemaState(iterator.next(), invalidNodes);
+    }
+
     /**
      * Check whether a node's value satisfies a simple schema type definition given by namespace URI and local name.
      *
@@ -48,8 +48,17 @@ public class IDConstraintChecker implements ValidationContext {
     /** active mathcers. */
     protected final java.util.ArrayList matchers = new java.util.ArrayList();
 
+    /** whether any identity constraint was found so far. */
+    private boolean hasIdentityConstraints = false;
+
+    public boolean hasIdentityConstraints() {
+        return hasIdentityConstraints;
+    }
+
     protected void add( Matcher matcher ) {
         matchers.add(matcher);
+        if (matcher instanceof SelectorMatcher)
+            hasIdentityConstraints = true;
     }
     protected void remove( Matcher matcher ) {
         matchers.remove(matcher);
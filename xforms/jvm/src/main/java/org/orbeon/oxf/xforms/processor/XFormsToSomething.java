@@ -30,6 +30,7 @@ import org.orbeon.oxf.xforms.analysis.model.Instance;
 import org.orbeon.oxf.xforms.analysis.model.Model;
 import org.orbeon.oxf.xforms.model.XFormsModel;
 import org.orbeon.oxf.xforms.state.AnnotatedTemplate;
+import org.orbeon.oxf.xforms.state.XFormsInitialDocumentCache;
 import org.orbeon.oxf.xforms.state.XFormsStateManager;
 import org.orbeon.oxf.xforms.state.XFormsStaticStateCache;
 import org.orbeon.oxf.xml.*;
@@ -145,6 +146,23 @@ abstract public class XFormsToSomething extends ProcessorImpl {
             initializeXFormsDocument = initializeXFormsDocumentOrNull != null ? initializeXFormsDocumentOrNull : true;
         }
 
+        // Only create and cache the static state, see XFormsStaticStateCache.withStaticStateOnly()
+        // NOTE: Nothing is stored in the processor cache, as no input dependencies are gathered without a document.
+        if (XFormsStaticStateCache.isStaticStateOnly()) {
+            readStaticState(pipelineContext, cachingLogger, cacheTracer, new XFormsStaticState[1]);
+
+            final XMLReceiverHelper helper = new XMLReceiverHelper(xmlReceiver);
+            helper.startDocument();
+            helper.startPrefixMapping("xh", XMLConstants.XHTML_NAMESPACE_URI);
+            helper.startElement("xh", XMLConstants.XHTML_NAMESPACE_URI, "html");
+            helper.element("xh", XMLConstants.XHTML_NAMESPACE_URI, "head", new String[] {});
+            helper.element("xh", XMLConstants.XHTML_NAMESPACE_URI, "body", new String[] {});
+            helper.endElement();
+            helper.endPrefixMapping("xh");
+            helper.endDocument();
+            return;
+        }
+
         // ContainingDocument and XFormsState created below
         final XFormsContainingDocument[] containingDocument = new XFormsContainingDocument[1];
         final boolean[] cachedStatus = new boolean[] { false } ;
@@ -173,12 +191,7 @@ abstract public class XFormsToSomething extends ProcessorImpl {
                                 pipelineContext, INPUT_ANNOTATED_DOCUMENT, XMLParsing.ParserConfiguration.PLAIN);
 
                         containingDocument[0] =
-                            new XFormsContainingDocument(
-                                staticState[0],
-                                uriResolver,
-                                PipelineResponse.getResponse(xmlReceiver, externalContext),
-                                initializeXFormsDocument
-                            );
+                            createContainingDocument(staticState[0], uriResolver, PipelineResponse.getResponse(xmlReceiver, externalContext), initializeXFormsDocument);
 
                         // Gather set caching dependencies
                         gatherInputDependencies(containingDocument[0], cachingLogger, stage1CacheableState);
@@ -230,12 +243,7 @@ abstract public class XFormsToSomething extends ProcessorImpl {
                     new XFormsURIResolver(XFormsToSomething.this, processorOutput, pipelineContext, INPUT_ANNOTATED_DOCUMENT, XMLParsing.ParserConfiguration.PLAIN);
 
                 containingDocument[0] =
-                    new XFormsContainingDocument(
-                        staticState,
-                        uriResolver,
-                        PipelineResponse.getResponse(xmlReceiver, externalContext),
-                        initializeXFormsDocument
-                    );
+                    createContainingDocument(staticState, uriResolver, PipelineResponse.getResponse(xmlReceiver, externalContext), initializeXFormsDocument);
             } else {
                 assert !cachedStatus[0];
                 cacheTracer.digestAndTemplateStatus(Option.<String>apply(null));
@@ -410,6 +418,15 @@ abstract public class XFormsToSomething extends ProcessorImpl {
         }
     }
 
+    // The initial document cache only applies when the document is initialized
+    private static XFormsContainingDocument createContainingDocument(XFormsStaticState staticState, XFormsURIResolver uriResolver,
+                                                                     ExternalContext.Response response, boolean initializeXFormsDocument) {
+        if (initializeXFormsDocument)
+            return XFormsInitialDocumentCache.createDocument(staticState, uriResolver, response);
+        else
+            return new XFormsContainingDocument(staticState, uriResolver, response, false);
+    }
+
     private void gatherInputDependencies(XFormsContainingDocument containingDocument, IndentedLogger logger, Stage1CacheableState stage1CacheableState) {
 
         // Add static instance source dependencies for top-level models
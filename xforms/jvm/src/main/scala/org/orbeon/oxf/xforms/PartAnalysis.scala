@@ -38,6 +38,9 @@ trait PartAnalysis extends PartGlobalOps with PartStaticAnalysisOps {
   def observerHasHandlerForEvent(observerPrefixedId: String, eventName: String): Boolean
 
   def hasControls: Boolean
+
+  // Whether the XPath analysis shows that instance values can't change control bindings, or `relevant` and `readonly`
+  def bindingsIndependentFromValues: Boolean
   def getTopLevelControls: Seq[ElementAnalysis]
   def getTopLevelControlElements: JList[Element]
 
@@ -32,6 +32,9 @@ class StaticStateGlobalOps(topLevelPart: PartAnalysis) extends PartGlobalOps {
   def removePart(part: PartAnalysis) =
     parts = parts filterNot (_ eq part)
 
+  // Whether parts were added for `xxf:dynamic`
+  def hasNestedParts = parts.tail.nonEmpty
+
   // Find in all parts
   private def findInParts[T <: AnyRef](get: PartAnalysis ⇒ T) =
     parts map get find (_ ne null)
@@ -13,6 +13,7 @@
  */
 package org.orbeon.oxf.xforms
 
+import java.io.Writer
 import java.{util ⇒ ju}
 
 import org.apache.commons.lang3.StringUtils
@@ -33,7 +34,7 @@ import org.orbeon.oxf.xforms.XFormsConstants._
 import org.orbeon.oxf.xforms.XFormsContainingDocumentSupport._
 import org.orbeon.oxf.xforms.XFormsProperties._
 import org.orbeon.oxf.xforms.analysis.controls.LHHA
-import org.orbeon.oxf.xforms.analytics.{RequestStats, RequestStatsImpl}
+import org.orbeon.oxf.xforms.analytics.{RequestStats, RequestStatsImpl, XFormsMetrics}
 import org.orbeon.oxf.xforms.control.XFormsSingleNodeControl
 import org.orbeon.oxf.xforms.event.ClientEvents._
 import org.orbeon.oxf.xforms.event.XFormsEvent._
@@ -70,7 +71,7 @@ object XFormsContainingDocumentSupport {
 
     LifecycleLogger.eventAssumingRequest("xforms", "before document lock", List("uuid" → params.uuid))
 
-    XFormsStateManager.acquireDocumentLock(params.uuid, timeout) match {
+    XFormsMetrics.LockWait.time(XFormsStateManager.acquireDocumentLock(params.uuid, timeout)) match {
       case Some(lock) ⇒
         try {
 
@@ -416,6 +417,7 @@ trait ContainingDocumentProperties {
   def getShowMaxRecoverableErrors           = staticIntProperty(SHOW_RECOVERABLE_ERRORS_PROPERTY)
   def getSubmissionPollDelay                = staticIntProperty(ASYNC_SUBMISSION_POLL_DELAY)
   def getAjaxFullUpdateThreshold            = staticIntProperty(AJAX_UPDATE_FULL_THRESHOLD)
+  def isAjaxUpdateIncremental               = staticBooleanProperty(AJAX_UPDATE_INCREMENTAL)
 
   def isLocalSubmissionForward =
     staticBooleanProperty(LOCAL_SUBMISSION_FORWARD_PROPERTY) &&
@@ -671,7 +673,7 @@ case class DelayedEvent(
   showProgress      : Boolean  // whether to show the progress indicator when submitting the event
 ) {
 
-  private def asEncodedDocument: String = {
+  private def writeEncodedDocument(writer: Writer): Unit = {
 
     import org.orbeon.oxf.xml.Dom4j._
 
@@ -683,7 +685,8 @@ case class DelayedEvent(
           bubbles={bubbles.toString}
           cancelable={cancelable.toString}/>
       </xxf:events>,
-      false
+      false,
+      writer
     )
   }
 
@@ -691,7 +694,7 @@ case class DelayedEvent(
 
     import XMLReceiverSupport._
 
-    element(
+    withElement(
       localName = "server-events",
       prefix    = "xxf",
       uri       = XXFORMS_NAMESPACE_URI,
@@ -699,9 +702,10 @@ case class DelayedEvent(
         "delay"         → (time - currentTime).toString,
         "discardable"   → discardable.toString,
         "show-progress" → showProgress.toString
-      ),
-      text      = asEncodedDocument
-    )
+      )
+    ) {
+      writeEncodedDocument(new ContentHandlerWriter(receiver))
+    }
   }
 
   def writeAsJSON(sb: java.lang.StringBuilder, currentTime: Long): Unit = {
@@ -714,7 +718,8 @@ case class DelayedEvent(
     sb.append(",\"show-progress\":")
     sb.append(showProgress)
     sb.append(",\"event\":\"")
-    sb.append(asEncodedDocument)
+    // Base64 characters don't need escaping
+    writeEncodedDocument(new StringBuilderWriter(sb))
     sb.append('"')
     sb.append("}")
   }
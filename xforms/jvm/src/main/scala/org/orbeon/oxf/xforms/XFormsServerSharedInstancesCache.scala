@@ -13,12 +13,20 @@
  */
 package org.orbeon.oxf.xforms
 
-import org.orbeon.oxf.cache.{InternalCacheKey, ObjectCache}
+import java.util.concurrent.ConcurrentHashMap
+
+import org.orbeon.oxf.cache.{InternalCacheKey, ObjectCache, Weighted}
+import org.orbeon.oxf.properties.Properties
 import org.orbeon.oxf.util.IndentedLogger
 import org.orbeon.oxf.xforms.analysis.model.Instance
 import org.orbeon.oxf.xforms.model.InstanceCaching
 import org.orbeon.oxf.xforms.model.XFormsInstance._
 import org.orbeon.saxon.om.{DocumentInfo, VirtualNode}
+import org.orbeon.saxon.tinytree.TinyDocumentImpl
+
+import scala.concurrent.duration._
+import scala.concurrent.{Await, Promise}
+import scala.util.Try
 
 /**
  * Cache for shared and immutable XForms instances.
@@ -39,8 +47,8 @@ object XFormsServerSharedInstancesCache {
       readonly        : Boolean)(implicit
       indentedLogger  : IndentedLogger
   ): DocumentInfo =
-    find(instanceCaching)(indentedLogger) map
-      (wrapDocumentInfo(_, readonly, instance.exposeXPathTypes)) orNull
+    find(instanceCaching)(indentedLogger) collect
+      { case Fresh(documentInfo) ⇒ wrapDocumentInfo(documentInfo, readonly, instance.exposeXPathTypes) } orNull
 
   // Try to find instance content in the cache or load it
   def findContentOrLoad(
@@ -64,12 +72,9 @@ object XFormsServerSharedInstancesCache {
 
     // Load and cache new instance content
     def loadAndCache() = {
-      // Note that this method is not synchronized. Scenario: if the method is synchronized, the resource URI may
-      // reach an XForms page which itself needs to load a shared resource. The result would be a deadlock.
-      // Without synchronization, what can happen is that two concurrent requests load the same URI at the same
-      // time. In the worst case scenario, the results will be different, and the two requesting XForms instances
-      // will be different. The instance that is retrieved first will be stored in the cache for a very short
-      // amount of time, and the one retrieved last will win and be stored in the cache for a longer time.
+      // Not synchronized, as the URI may reach an XForms page which itself loads a shared instance. Concurrent loads
+      // of the same URI are coalesced by `loadOnce()`, but only for a bounded time, so two loads can still overlap,
+      // in which case the last one to complete wins in the cache.
       debug("loading instance into cache", instanceCaching.debugPairs)
 
       val instanceContent = loader.load(instanceCaching.pathOrAbsoluteURI, instanceCaching.handleXInclude)
@@ -77,12 +82,63 @@ object XFormsServerSharedInstancesCache {
       assert(! instanceContent.isInstanceOf[VirtualNode], "load() must return a TinyTree")
 
       add(InstanceContent(instanceContent), instanceCaching.timeToLive)
-      Some(instanceContent)
+      instanceContent
     }
 
-    find(instanceCaching) orElse
-      loadAndCache map
-      (wrapDocumentInfo(_, readonly, instance.exposeXPathTypes)) get
+    def loadOnceAndCache(staleOpt: Option[DocumentInfo]) =
+      loadOnce(createCacheKey(instanceCaching), staleOpt, loadTimeout, instanceCaching.debugPairs)(loadAndCache())
+
+    val documentInfo =
+      find(instanceCaching) match {
+        case Some(Fresh(content)) ⇒ content
+        case Some(Stale(content)) ⇒ loadOnceAndCache(Some(content))
+        case None                 ⇒ loadOnceAndCache(None)
+      }
+
+    wrapDocumentInfo(documentInfo, readonly, instance.exposeXPathTypes)
+  }
+
+  // Load the instance unless another thread is already loading it, in which case wait for its result. To avoid
+  // deadlocks (see `loadAndCache()`), waiting is bounded by `timeout`, after which this thread loads the instance
+  // itself. If stale content is available, return it instead of waiting.
+  private[xforms] def loadOnce(
+    cacheKey       : InternalCacheKey,
+    staleOpt       : Option[DocumentInfo],
+    timeout        : Long,
+    debugPairs     : ⇒ Seq[(String, String)])(
+    load           : ⇒ DocumentInfo)(implicit
+    indentedLogger : IndentedLogger
+  ): DocumentInfo = {
+
+    val newLoad = new InFlightLoad
+
+    inFlightLoads.putIfAbsent(cacheKey, newLoad) match {
+      case null ⇒
+        try {
+          val documentInfo = load
+          newLoad.succeed(documentInfo)
+          documentInfo
+        } finally {
+          // Also upon fatal errors, so that waiting threads load the instance themselves without waiting any longer
+          newLoad.failIfPending()
+          inFlightLoads.remove(cacheKey, newLoad)
+        }
+      case existingLoad if existingLoad.thread eq Thread.currentThread ⇒
+        // Loading the instance requires the instance itself: waiting would only time out
+        load
+      case existingLoad ⇒
+        staleOpt match {
+          case Some(stale) ⇒
+            debug("instance is being reloaded, using stale cached instance", debugPairs)
+            stale
+          case None ⇒
+            debug("waiting for concurrent load of instance", debugPairs)
+            existingLoad.await(timeout) getOrElse {
+              debug("concurrent load failed or timed out, loading instance", debugPairs)
+              load
+            }
+        }
+    }
   }
 
   // Remove the given entry from the cache if present
@@ -114,11 +170,53 @@ object XFormsServerSharedInstancesCache {
     val ConstantValidity                      = 0L
     val SharedInstanceKeyType                 = XFormsSharedInstancesCacheName
 
+    val LoadTimeoutProperty                   = "oxf." + XFormsSharedInstancesCacheName + ".load-timeout"
+    val ServeStaleProperty                    = "oxf." + XFormsSharedInstancesCacheName + ".serve-stale"
+    val DefaultLoadTimeout                    = 2000
+
+    def loadTimeout = Properties.instance.getPropertySet.getInteger(LoadTimeoutProperty, DefaultLoadTimeout).longValue
+    def serveStale  = Properties.instance.getPropertySet.getBoolean(ServeStaleProperty, default = false)
+
+    // Result of a load in progress, which other threads can wait for
+    class InFlightLoad {
+
+      val thread = Thread.currentThread
+      private val promise = Promise[DocumentInfo]()
+
+      def succeed(documentInfo: DocumentInfo): Unit = promise.success(documentInfo)
+      def failIfPending(): Unit = promise.tryFailure(new IllegalStateException("instance load failed"))
+
+      // `None` if the load failed or didn't complete in time
+      def await(timeout: Long): Option[DocumentInfo] =
+        Try(Await.result(promise.future, timeout.millis)).toOption
+    }
+
+    val inFlightLoads = new ConcurrentHashMap[InternalCacheKey, InFlightLoad]
+
+    sealed trait FindResult
+    case class Fresh(documentInfo: DocumentInfo) extends FindResult
+    case class Stale(documentInfo: DocumentInfo) extends FindResult
+
     case class InstanceContent(documentInfo: DocumentInfo) { require(! documentInfo.isInstanceOf[VirtualNode]) }
     case class CacheEntry(instanceContent: InstanceContent, timeToLive: Long, timestamp: Long = System.currentTimeMillis)
+      extends Weighted {
+      lazy val getWeight = approximateTinyTreeSize(instanceContent.documentInfo)
+    }
+
+    // Rough size of the TinyTree arrays: per node kind, depth, next, alpha, beta and name code, plus attribute and
+    // namespace arrays and the character buffer
+    def approximateTinyTreeSize(documentInfo: DocumentInfo): Long = documentInfo match {
+      case tinyDocument: TinyDocumentImpl ⇒
+        val tree = tinyDocument.getTree
+        tree.getNumberOfNodes * 19L + tree.getNumberOfAttributes * 16L + tree.getNumberOfNamespaces * 8L +
+          tree.getCharacterBuffer.length * 2L
+      case _ ⇒
+        0L
+    }
 
     // Find instance content in cache
-    def find(instanceCaching: InstanceCaching)(implicit logger: IndentedLogger) = {
+    // Expired content is returned as `Stale` if stale content can be served while reloading, and removed otherwise.
+    def find(instanceCaching: InstanceCaching)(implicit logger: IndentedLogger): Option[FindResult] = {
 
       val cache = ObjectCache.instance(XFormsSharedInstancesCacheName, XFormsSharedInstancesCacheDefaultSize)
       val cacheKey = createCacheKey(instanceCaching)
@@ -127,6 +225,10 @@ object XFormsServerSharedInstancesCache {
         cacheEntry.timeToLive >= 0 && ((cacheEntry.timestamp + cacheEntry.timeToLive) < System.currentTimeMillis)
 
       Option(cache.findValid(cacheKey, ConstantValidity).asInstanceOf[CacheEntry]) match {
+        case Some(cacheEntry) if isExpired(cacheEntry) && serveStale ⇒
+          // Keep expired entry until it is replaced
+          debug("found stale cached instance", instanceCaching.debugPairs)
+          Some(Stale(cacheEntry.instanceContent.documentInfo))
         case Some(cacheEntry) if isExpired(cacheEntry) ⇒
           // Remove expired entry
           debug("expiring cached instance", instanceCaching.debugPairs)
@@ -135,7 +237,7 @@ object XFormsServerSharedInstancesCache {
         case Some(cacheEntry) ⇒
           // Instance was found
           debug("found cached instance", instanceCaching.debugPairs)
-          Some(cacheEntry.instanceContent.documentInfo)
+          Some(Fresh(cacheEntry.instanceContent.documentInfo))
         case _ ⇒
           // Not found
           debug("cached instance not found", instanceCaching.debugPairs)
@@ -37,6 +37,8 @@ trait XFormsStaticState {
 
   def isXPathAnalysis                         : Boolean
   def isCalculateDependencies                 : Boolean
+  def isPartialRebuild                        : Boolean
+  def isCoalesceValueChanges                  : Boolean
 
   def functionLibrary                         : FunctionLibrary
   def sanitizeInput                           : String ⇒ String
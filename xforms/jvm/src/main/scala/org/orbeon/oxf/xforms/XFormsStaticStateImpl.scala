@@ -16,6 +16,7 @@ package org.orbeon.oxf.xforms
 import org.orbeon.datatypes.MaximumSize
 import org.orbeon.dom.Document
 import org.orbeon.dom.saxon.DocumentWrapper
+import org.orbeon.oxf.cache.Weighted
 import org.orbeon.oxf.common.{OXFException, Version}
 import org.orbeon.oxf.processor.generator.RequestGenerator
 import org.orbeon.oxf.util.CoreUtils._
@@ -48,11 +49,15 @@ class XFormsStaticStateImpl(
   metadata                : Metadata,
   val template            : Option[AnnotatedTemplate],
   val staticStateDocument : StaticStateDocument
-) extends XFormsStaticState {
+) extends XFormsStaticState with Weighted {
 
   require(encodedState ne null)
   require(digest ne null)
 
+  // For cache bounds: the analysis itself is not measured but grows along with the encoded state
+  lazy val getWeight: Long =
+    encodedState.length * 2L + (template map (_.saxStore.getApproximateSize) getOrElse 0L)
+
   implicit val getIndentedLogger = Loggers.getIndentedLogger("analysis")
 
   // Create top-level part once `val`s are all initialized
@@ -72,6 +77,8 @@ class XFormsStaticStateImpl(
   lazy val isHTMLDocument          = staticStateDocument.isHTMLDocument
   lazy val isXPathAnalysis         = Version.instance.isPEFeatureEnabled(staticBooleanProperty(P.XPATH_ANALYSIS_PROPERTY),     P.XPATH_ANALYSIS_PROPERTY)
   lazy val isCalculateDependencies = Version.instance.isPEFeatureEnabled(staticBooleanProperty(P.CALCULATE_ANALYSIS_PROPERTY), P.CALCULATE_ANALYSIS_PROPERTY)
+  lazy val isPartialRebuild        = staticBooleanProperty(P.REBUILD_ANALYSIS_PROPERTY)
+  lazy val isCoalesceValueChanges  = staticBooleanProperty(P.VALUE_CHANGES_ANALYSIS_PROPERTY) && isXPathAnalysis && topLevelPart.bindingsIndependentFromValues
 
   lazy val sanitizeInput           = StringReplacer(staticStringProperty(P.SANITIZE_PROPERTY))
 
@@ -26,7 +26,11 @@ trait RRRFunctions {
 }
 
 trait XFormsRebuildFunctions extends RRRFunctions {
-  def setFlag(model: XFormsModel, applyDefaults: Boolean) = model.deferredActionContext.markRebuild()
+  def setFlag(model: XFormsModel, applyDefaults: Boolean) = {
+    // An explicit rebuild always rebuilds the entire bind tree
+    model.modelBindsOpt foreach (_.markFullRebuild())
+    model.deferredActionContext.markRebuild()
+  }
   def createEvent(model: XFormsModel) = new XFormsRebuildEvent(model)
 }
 
@@ -154,7 +154,7 @@ object XFormsDeleteAction extends Logging {
 
           // "XForms Actions that change the tree structure of instance data result in setting all four flags to true"
           modifiedInstance.markModified()
-          modifiedInstance.model.markStructuralChange(modifiedInstanceOpt, NoDefaultsStrategy)
+          modifiedInstance.model.markChildrenChanged(modifiedInstance, NoDefaultsStrategy, deletionDescriptors map (_.parent))
 
           // "4. If the delete is successful, the event xforms-delete is dispatched."
           if (doDispatch)
@@ -0,0 +1,119 @@
+/**
+  * Copyright (C) 2017 Orbeon, Inc.
+  *
+  * This program is free software; you can redistribute it and/or modify it under the terms of the
+  * GNU Lesser General Public License as published by the Free Software Foundation; either version
+  * 2.1 of the License, or (at your option) any later version.
+  *
+  * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+  * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+  * See the GNU Lesser General Public License for more details.
+  *
+  * The full text of the license is available at http://www.gnu.org/copyleft/lesser.html
+  */
+package org.orbeon.oxf.xforms.analysis
+
+import org.orbeon.saxon.expr._
+import org.orbeon.saxon.functions.SystemFunction
+import org.orbeon.saxon.om.Axis
+
+import scala.collection.JavaConverters._
+
+// Find whether an expression only reaches nodes in the subtree of an ancestor-or-self of its context node
+//
+// This is the case when the expression only navigates from the context node, and not from the root, an instance,
+// or a variable. The result is then a function of that subtree only. Levels are counted relative to the context
+// node, and descendant steps are counted as going down a single level, which can only overestimate how far up the
+// expression goes.
+object ContextRelativeAnalysis {
+
+  import Private._
+
+  // Return the number of levels above the context node which the expression can reach, if it is context-relative
+  def ancestorLevels(expression: Expression): Option[Int] =
+    reach(expression, Reach(top = 0, current = 0), Map.empty) map (_.top)
+
+  private object Private {
+
+    // All the nodes reached so far are in the subtree of the ancestor at level `top`, and the nodes returned are at
+    // most at level `current`
+    case class Reach(top: Int, current: Int) {
+      def up      = Reach(top max (current + 1), current + 1)
+      def sibling = Reach(top max (current + 1), current)
+      def down    = Reach(top, current - 1)
+      def include(other: Reach) = Reach(top max other.top, current)
+    }
+
+    // Saxon functions which reach nodes outside of their arguments or depend on ancestors
+    val NonRelativeSaxonFunctions =
+      Set("root", "id", "idref", "element-with-id", "lang", "doc", "doc-available", "collection", "current")
+
+    val SaxonFunctionsPackage = classOf[SystemFunction].getPackage.getName
+
+    def reach(expression: Expression, context: Reach, variables: Map[Binding, Reach]): Option[Reach] = {
+
+      // Subexpressions evaluated with the same focus as their parent
+      def withSubExpressions =
+        expression.iterateSubExpressions.asScala.foldLeft(Option(context)) {
+          case (Some(result), subExpression) ⇒
+            reach(subExpression.asInstanceOf[Expression], context, variables) map { subReach ⇒
+              Reach(result.top max subReach.top, result.current max subReach.current)
+            }
+          case (None, _) ⇒
+            None
+        }
+
+      expression match {
+        case _: RootExpression | _: CurrentItemExpression ⇒
+          None
+        case _: ContextItemExpression ⇒
+          Some(context)
+        case _: ParentNodeExpression ⇒
+          Some(context.up)
+        case axisExpression: AxisExpression ⇒
+          axisExpression.getAxis match {
+            case Axis.PARENT                                                    ⇒ Some(context.up)
+            case Axis.FOLLOWING_SIBLING | Axis.PRECEDING_SIBLING                ⇒ Some(context.sibling)
+            case Axis.CHILD | Axis.ATTRIBUTE | Axis.NAMESPACE | Axis.DESCENDANT ⇒ Some(context.down)
+            case Axis.SELF | Axis.DESCENDANT_OR_SELF                            ⇒ Some(context)
+            case _                                                              ⇒ None
+          }
+        case slash: SlashExpression ⇒
+          // Also covers `PathExpression`: the step is evaluated with each item of the start as context
+          for {
+            start ← reach(slash.getStartExpression, context, variables)
+            step  ← reach(slash.getStepExpression, start, variables)
+          } yield
+            step.include(start)
+        case filter: FilterExpression ⇒
+          for {
+            base      ← reach(filter.getBaseExpression, context, variables)
+            predicate ← reach(filter.getFilter, base, variables)
+          } yield
+            base.include(predicate)
+        case assignation: Assignation ⇒
+          // `for`, `let`, `some` and `every`
+          for {
+            sequence ← reach(assignation.getSequence, context, variables)
+            action   ← reach(assignation.getAction, context, variables + (assignation → sequence))
+          } yield
+            action.include(sequence)
+        case variableReference: LocalVariableReference ⇒
+          variables.get(variableReference.getBinding) map (_.include(context))
+        case _: VariableReference ⇒
+          None
+        case function: SystemFunction ⇒
+          // XForms and extension functions are also `SystemFunction`s, so only allow Saxon's own functions
+          if (function.getClass.getPackage.getName == SaxonFunctionsPackage &&
+              ! NonRelativeSaxonFunctions(function.getFunctionName.getLocalName))
+            withSubExpressions
+          else
+            None
+        case _: FunctionCall ⇒
+          None
+        case _ ⇒
+          withSubExpressions
+      }
+    }
+  }
+}
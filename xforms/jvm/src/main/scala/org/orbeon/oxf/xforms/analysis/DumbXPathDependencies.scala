@@ -44,6 +44,7 @@ class DumbXPathDependencies extends XPathDependencies {
   def requireLHHAUpdate(control: ElementAnalysis, lhha: LHHA, controlEffectiveId: String) = true
   def requireItemsetUpdate(control: SelectionControlTrait, controlPrefixedId: String) = true
   def requireModelMIPUpdate(model: XFormsModel, bind: StaticBind, mip: MIP, level: ValidationLevel) = true
+  def requireModelMIPUpdateForNode(model: XFormsModel, bind: StaticBind, mip: MIP, node: NodeInfo) = true
   def hasAnyCalculationBind(model: Model, instancePrefixedId: String) = true
   def hasAnyValidationBind(model: Model, instancePrefixedId: String) = true
 }
\ No newline at end of file
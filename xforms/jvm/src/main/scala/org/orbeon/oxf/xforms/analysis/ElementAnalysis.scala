@@ -15,6 +15,8 @@ package org.orbeon.oxf.xforms.analysis
 
 import org.orbeon.dom.{Element, QName}
 import org.orbeon.oxf.util.StringUtils._
+import org.orbeon.oxf.util.XPath
+import org.orbeon.oxf.util.XPath.CompiledExpression
 import org.orbeon.oxf.xforms.XFormsConstants._
 import org.orbeon.oxf.xforms.XFormsUtils.{getElementId, maybeAVT}
 import org.orbeon.oxf.xforms.analysis.controls.{AttributeControl, RepeatControl, ValueTrait}
@@ -30,6 +32,7 @@ import org.orbeon.xforms.XFormsId
 
 import scala.collection.JavaConverters._
 import scala.collection.mutable
+import scala.util.Try
 import scala.util.control.Breaks
 
 // xml:lang reference
@@ -141,6 +144,24 @@ abstract class ElementAnalysis(
   def refJava = ref.orNull
   def bindJava = bind.orNull
 
+  // Binding expression compiled once for the static state, so that evaluating the binding doesn't go through the XPath
+  // cache and its pools. `None` if the expression doesn't compile: the binding is then evaluated the usual way, which
+  // reports the error.
+  lazy val compiledBindingExpression: Option[CompiledExpression] =
+    ref flatMap { xpathString ⇒
+      Try(
+        XPath.compileExpression(
+          xpathString      = xpathString,
+          namespaceMapping = namespaceMapping,
+          locationData     = locationData,
+          functionLibrary  = part.staticState.functionLibrary,
+          avt              = false
+        )
+      ).toOption
+    }
+
+  def compiledBindingExpressionOrNull = compiledBindingExpression.orNull
+
   // Other
   def hasBinding = ref.isDefined || bind.isDefined
   val bindingXPathEvaluations = (if (context.isDefined) 1 else 0) + (if (ref.isDefined) 1 else 0)// 0, 1, or 2: number of XPath evaluations used to resolve the binding if no optimization is taking place
@@ -15,6 +15,7 @@ package org.orbeon.oxf.xforms.analysis
 
 import org.orbeon.oxf.xforms.analysis.controls._
 import org.orbeon.oxf.xforms.analysis.model.Model
+import org.orbeon.oxf.xforms.analysis.model.Model.{Readonly, Relevant}
 import org.orbeon.oxf.xforms.event.EventHandlerImpl
 
 import scala.collection.JavaConverters._
@@ -135,6 +136,29 @@ trait PartControlsAnalysis extends TransientState {
 
   def hasControls = getTopLevelControlElements.size > 0
 
+  // NOTE: Only meaningful once the XPath analysis has run, which is only the case for the top-level part.
+  lazy val bindingsIndependentFromValues = {
+
+    def independent(analysis: XPathAnalysis) =
+      analysis.figuredOutDependencies && analysis.valueDependentPaths.isEmpty
+
+    def controlBindingsIndependent =
+      iterateControls forall {
+        case control @ (_: CoreControl | _: ContainerControl) ⇒ control.getBindingAnalysis forall independent
+        case _                                                ⇒ true
+      }
+
+    def bindsIndependent =
+      iterateControls collect { case model: Model ⇒ model } forall { model ⇒
+        model.bindsById.values forall { bind ⇒
+          (bind.getBindingAnalysis forall independent) &&
+            ((bind.getXPathMIPs(Relevant.name) ++ bind.getXPathMIPs(Readonly.name)) forall (mip ⇒ independent(mip.analysis)))
+        }
+      }
+
+    isTopLevel && staticState.isXPathAnalysis && controlBindingsIndependent && bindsIndependent
+  }
+
   override def freeTransientState() = {
     super.freeTransientState()
 
@@ -13,6 +13,8 @@
  */
 package org.orbeon.oxf.xforms.analysis
 
+import java.{util ⇒ ju}
+
 import org.orbeon.oxf.common.OXFException
 import org.orbeon.oxf.util.CollectionUtils._
 import org.orbeon.oxf.util.Logging
@@ -52,6 +54,10 @@ class PathMapXPathDependencies(
     var recalculateChangeset = new MapSet[ModelOrInstanceKey, String]   // changeset for recalculate MIPs
     var revalidateChangeset  = recalculateChangeset                     // changeset for revalidate MIPs
 
+    // Changed nodes and their ancestors since the last recalculate, by identity of the underlying nodes
+    val recalculateChangedNodes = ju.Collections.newSetFromMap(new ju.IdentityHashMap[AnyRef, java.lang.Boolean])
+    var hasUntrackedNodeChanges = false
+
     def markValueChangedForTests(instance: XFormsInstance, path: String): Unit = {
       if (! hasStructuralChanges) {
 
@@ -64,6 +70,8 @@ class PathMapXPathDependencies(
 
         RefreshState.instancesByKey   += instanceKey → instance
         RefreshState.refreshChangeset += instancePath
+
+        hasUntrackedNodeChanges = true
       }
     }
 
@@ -83,6 +91,7 @@ class PathMapXPathDependencies(
 
           // Update model and view changesets
           recalculateChangeset += instancePath
+          recalculateChangedNodes.add(underlyingNode(n))
           if (revalidateChangeset ne recalculateChangeset)
             revalidateChangeset += instancePath // also add to revalidate changeset if it is different
 
@@ -122,12 +131,20 @@ class PathMapXPathDependencies(
       // Changesets won't be used
       recalculateChangeset.clear()
       revalidateChangeset = recalculateChangeset
+
+      clearChangedNodes()
     }
 
     // Say that for this model, calculate binds are clean and can be checked for modifications based on value changes
     def recalculateDone(): Unit = {
       calculateMIPsEvaluatedOnce = true
       recalculateChangeset = clearChangeset(recalculateChangeset, revalidateChangeset)
+      clearChangedNodes()
+    }
+
+    private def clearChangedNodes(): Unit = {
+      recalculateChangedNodes.clear()
+      hasUntrackedNodeChanges = false
     }
 
     // Say that for this model, validate binds are clean and can be checked for modifications based on value changes
@@ -296,6 +313,8 @@ class PathMapXPathDependencies(
   private object Stats {
     var mipUpdateCount             = 0
     var mipXPathOptimizedCount     = 0
+    var mipNodeHitCount            = 0
+    var mipNodeMissCount           = 0
 
     var lhhaEvaluationCount        = 0
     var lhhaOptimizedCount         = 0
@@ -353,6 +372,8 @@ class PathMapXPathDependencies(
         "Binding XPath optimized" → bindingXPathOptimizedCount.toString,
         "Value XPath optimized"   → valueXPathOptimizedCount.toString,
         "MIP XPath optimized"     → mipXPathOptimizedCount.toString,
+        "MIP node intersections"  → mipNodeHitCount.toString,
+        "MIP node disjoints"      → mipNodeMissCount.toString,
         "Total XPath optimized"   → (bindingXPathOptimizedCount + valueXPathOptimizedCount + mipXPathOptimizedCount).toString
       )
     )
@@ -364,6 +385,8 @@ class PathMapXPathDependencies(
 
     mipUpdateCount = 0
     mipXPathOptimizedCount = 0
+    mipNodeHitCount = 0
+    mipNodeMissCount = 0
 
     inRefresh = false
   }
@@ -733,6 +756,39 @@ class PathMapXPathDependencies(
         false
     }
   }
+
+  // When the MIP only depends on nodes close to the bound node, which is the case for most binds within repeated
+  // content, it only needs to be evaluated again if a node under the highest ancestor it can reach has changed.
+  // This way, a change in one iteration doesn't cause evaluating the MIP for all the iterations.
+  def requireModelMIPUpdateForNode(model: XFormsModel, bind: StaticBind, mip: MIP, node: NodeInfo): Boolean = {
+
+    val modelState = getOrCreateModelState(model)
+
+    def ancestorOrSelf(levels: Int) = {
+      var current = node
+      var i       = 0
+      while (i < levels && (current ne null)) {
+        current = current.getParent
+        i += 1
+      }
+      Option(current) filter (n ⇒ n.isInstanceOf[VirtualNode] && n.getNodeKind != DOCUMENT_NODE)
+    }
+
+    val requireUpdate =
+      bind.getXPathMIPs(mip.name) match {
+        case List(xpathMIP) if ! modelState.isMIPInitiallyDirty(xpathMIP) && ! modelState.hasUntrackedNodeChanges ⇒
+          xpathMIP.contextAncestorLevels flatMap ancestorOrSelf match {
+            case Some(ancestor) ⇒ modelState.recalculateChangedNodes.contains(underlyingNode(ancestor))
+            case None           ⇒ true
+          }
+        case _ ⇒
+          true
+      }
+
+    if (requireUpdate) mipNodeHitCount += 1 else mipNodeMissCount += 1
+
+    requireUpdate
+  }
 }
 
 private object PathMapXPathDependencies {
@@ -753,6 +809,12 @@ private object PathMapXPathDependencies {
       ModelOrInstanceKey(instance.getPrefixedId, instance.model.sequenceNumber)
   }
 
+  def underlyingNode(node: NodeInfo): AnyRef =
+    node match {
+      case virtualNode: VirtualNode ⇒ virtualNode.getUnderlyingNode
+      case _                        ⇒ node
+    }
+
   // Create a fingerprinted path of the form: `3142/1425/@1232` from a node.
   def createFingerprintedPath(node: NodeInfo): String = {
 
@@ -54,6 +54,9 @@ trait XPathDependencies {
 
   def requireModelMIPUpdate(model: XFormsModel, bind: StaticBind, mip: MIP, level: ValidationLevel): Boolean
 
+  // Whether a MIP must be updated for one of the nodes of a bind, after `requireModelMIPUpdate()` returned `true`
+  def requireModelMIPUpdateForNode(model: XFormsModel, bind: StaticBind, mip: MIP, node: NodeInfo): Boolean
+
   def hasAnyCalculationBind(model: Model, instancePrefixedId: String): Boolean
   def hasAnyValidationBind(model: Model, instancePrefixedId: String): Boolean
 }
\ No newline at end of file
@@ -14,11 +14,14 @@
 package org.orbeon.oxf.xforms.analysis.controls
 
 import org.orbeon.dom.Element
+import org.orbeon.oxf.util.StringUtils._
 import org.orbeon.oxf.xforms.analysis._
 import org.orbeon.oxf.xforms.xbl.Scope
 import org.orbeon.oxf.xforms.XFormsConstants._
 import org.orbeon.oxf.xforms.event.XFormsEvents._
 
+import scala.util.Try
+
 class RepeatControl(
   staticStateContext : StaticStateContext,
   element            : Element,
@@ -36,6 +39,11 @@ class RepeatControl(
 
   val isAroundTableOrListElement = appearances(XXFORMS_SEPARATOR_APPEARANCE_QNAME)
 
-  override protected def externalEventsDef = super.externalEventsDef + XXFORMS_DND
+  // With `xxf:window-size`, only that many iterations are built as controls at any given time
+  val windowSize =
+    element.attributeValueOpt(XXFORMS_WINDOW_SIZE_QNAME) flatMap (_.trimAllToOpt) flatMap (s ⇒ Try(s.toInt).toOption) filter (_ > 0)
+  def isWindowed = windowSize.isDefined
+
+  override protected def externalEventsDef = super.externalEventsDef + XXFORMS_DND + XXFORMS_REPEAT_WINDOW
   override val externalEvents              = externalEventsDef
 }
@@ -15,7 +15,7 @@ package org.orbeon.oxf.xforms.analysis.controls
 
 import org.apache.commons.lang3.StringUtils
 import org.orbeon.dom.saxon.DocumentWrapper
-import org.orbeon.dom.{Element, QName, Text}
+import org.orbeon.dom.{Attribute, Element, QName, Text}
 import org.orbeon.oxf.common.ValidationException
 import org.orbeon.oxf.util.CoreUtils._
 import org.orbeon.oxf.util.StringUtils._
@@ -25,9 +25,16 @@ import org.orbeon.oxf.xforms._
 import org.orbeon.oxf.xforms.analysis.ControlAnalysisFactory.InputValueControl
 import org.orbeon.oxf.xforms.analysis._
 import org.orbeon.oxf.xforms.control.LHHAValue
+import org.orbeon.oxf.xforms.function.xxforms.XXFormsInstance
+import org.orbeon.oxf.xforms.function.{Instance, XFormsFunction}
 import org.orbeon.oxf.xforms.itemset.{Item, ItemContainer, Itemset}
-import org.orbeon.oxf.xml.XMLReceiverHelper
 import org.orbeon.oxf.xml.dom4j.Dom4jUtils
+import org.orbeon.oxf.xml.{SaxonUtils, XMLReceiverHelper}
+import org.orbeon.saxon.expr.{Expression, FunctionCall, LocalVariableReference, StaticProperty, VariableReference}
+import org.orbeon.xforms.XFormsId
+
+import scala.collection.JavaConverters._
+import scala.util.Try
 
 trait SelectionControlTrait
 extends InputValueControl
@@ -73,6 +80,69 @@ extends InputValueControl
   val isNorefresh      = element.attributeValue(XXFORMS_REFRESH_ITEMS_QNAME) == "false"
   val mustEncodeValues = Option(element.attributeValue(ENCRYPT_ITEM_VALUES)) map (_.toBoolean)
 
+  // Whether the itemset evaluates the same in all the iterations of the enclosing repeats, so that all the iterations
+  // can share a single evaluation. This is the case when the expressions evaluated in the control's context don't
+  // depend on the focus, and when no expression uses variables, binds, or XForms functions other than `instance()`,
+  // as those can resolve differently in each iteration. Expressions nested within `xf:itemset` are evaluated
+  // relative to the itemset's nodes and can depend on the focus.
+  lazy val isItemsetSharedByIterations =
+    isWithinRepeat && ! hasStaticItemset && ! isNorefresh && {
+
+      def isIterationIndependent(elem: Element, xpathString: String, avt: Boolean, focusAllowed: Boolean) = {
+
+        def isAllowedFunction(e: Expression) = e match {
+          case _: Instance | _: XXFormsInstance ⇒ true
+          case _: XFormsFunction                ⇒ false
+          case f: FunctionCall                  ⇒ f.getClass.getName.startsWith("org.orbeon.saxon.functions.")
+          case _                                ⇒ true
+        }
+
+        val elemPrefixedId = XFormsId.getRelatedEffectiveId(prefixedId, XFormsUtils.getElementId(elem))
+
+        Try(
+          XPath.compileExpression(
+            xpathString      = xpathString,
+            namespaceMapping = Option(part.metadata.getNamespaceMapping(elemPrefixedId)) getOrElse namespaceMapping,
+            locationData     = ElementAnalysis.createLocationData(elem),
+            functionLibrary  = part.staticState.functionLibrary,
+            avt              = avt
+          )
+        ).toOption exists { compiledExpression ⇒
+
+          val expr = compiledExpression.expression.getInternalExpression
+
+          (focusAllowed || (expr.getDependencies & StaticProperty.DEPENDS_ON_FOCUS) == 0) &&
+            (SaxonUtils.iterateExpressionTree(expr) forall {
+              case _: LocalVariableReference ⇒ true
+              case _: VariableReference      ⇒ false
+              case e                         ⇒ isAllowedFunction(e)
+            })
+        }
+      }
+
+      def isElementIterationIndependent(elem: Element, focusAllowed: Boolean): Boolean = {
+
+        val isItemset = elem.getQName == XFORMS_ITEMSET_QNAME
+
+        def isAttributeIterationIndependent(att: Attribute) = att.getQName match {
+          case BIND_QNAME ⇒
+            false
+          case REF_QNAME | NODESET_QNAME | CONTEXT_QNAME | VALUE_QNAME ⇒
+            isIterationIndependent(elem, att.getValue, avt = false, focusAllowed = focusAllowed)
+          case _ if XFormsUtils.maybeAVT(att.getValue) ⇒
+            isIterationIndependent(elem, att.getValue, avt = true, focusAllowed = focusAllowed || isItemset)
+          case _ ⇒
+            true
+        }
+
+        (elem.attributes.asScala forall isAttributeIterationIndependent) &&
+          (elem.elements.asScala forall (isElementIterationIndependent(_, focusAllowed || isItemset)))
+      }
+
+      element.elements.asScala filter SelectionControlUtil.isTopLevelItemsetElement forall
+        (isElementIterationIndependent(_, focusAllowed = false))
+    }
+
   private var itemsetAnalysis: Option[XPathAnalysis] = None
   private var _itemsetAnalyzed = false
   def itemsetAnalyzed = _itemsetAnalyzed
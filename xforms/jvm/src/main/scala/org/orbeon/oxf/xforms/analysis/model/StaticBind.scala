@@ -13,6 +13,7 @@ import org.orbeon.oxf.xforms.analysis.model.ValidationLevel._
 import org.orbeon.oxf.xml.dom4j.Dom4jUtils
 import org.orbeon.oxf.xml.{Dom4j, ShareableXPathStaticContext, XMLReceiverHelper}
 import org.orbeon.oxf.{util ⇒ u}
+import org.orbeon.saxon.expr.StaticProperty
 
 import scala.collection.immutable.List
 import scala.util.Try
@@ -45,6 +46,20 @@ class StaticBind(
 
   val ancestorOrSelfBinds: List[StaticBind] = staticBind :: ancestorBinds
 
+  // If the nodeset only depends on the subtree of an ancestor-or-self of the context item, the number of levels above
+  // the context item. The position and size of the context are excluded, as they change when iterations are inserted
+  // or deleted.
+  lazy val bindingAncestorLevels: Option[Int] =
+    if (context.isDefined)
+      None
+    else if (ref.isEmpty)
+      Some(0)
+    else
+      compiledBindingExpression map (_.expression.getInternalExpression) filter { expression ⇒
+        (expression.getDependencies & (StaticProperty.DEPENDS_ON_POSITION | StaticProperty.DEPENDS_ON_LAST)) == 0
+      } flatMap
+        ContextRelativeAnalysis.ancestorLevels
+
   // Represent an individual MIP on an <xf:bind> element
   trait MIP {
     val id    : String
@@ -85,6 +100,10 @@ class StaticBind(
     // Default to negative, analyzeXPath() can change that
     var analysis: XPathAnalysis = NegativeAnalysis(expression)
 
+    // If the expression only navigates from the bound node, the number of levels above it which it can reach
+    lazy val contextAncestorLevels: Option[Int] =
+      ContextRelativeAnalysis.ancestorLevels(compiledExpression.expression.getInternalExpression)
+
     def analyzeXPath(): Unit = {
 
       val allBindVariablesInScope = bindTree.allBindVariables
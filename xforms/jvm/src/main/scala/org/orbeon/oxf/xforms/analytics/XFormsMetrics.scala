@@ -0,0 +1,59 @@
+/**
+  * Copyright (C) 2017 Orbeon, Inc.
+  *
+  * This program is free software; you can redistribute it and/or modify it under the terms of the
+  * GNU Lesser General Public License as published by the Free Software Foundation; either version
+  * 2.1 of the License, or (at your option) any later version.
+  *
+  * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+  * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+  * See the GNU Lesser General Public License for more details.
+  *
+  * The full text of the license is available at http://www.gnu.org/copyleft/lesser.html
+  */
+package org.orbeon.oxf.xforms.analytics
+
+import java.util.concurrent.atomic.AtomicLong
+
+import org.orbeon.oxf.metrics.Metrics
+import org.orbeon.oxf.xforms.state.EhcacheStateStore
+
+// Metrics for the phases of the XForms engine, unlike `RequestStats` always collected
+object XFormsMetrics {
+
+  private val PhaseMetricName = "orbeon_xforms_phase_seconds"
+
+  private def phase(name: String) =
+    Metrics.histogram(PhaseMetricName, "Time spent in each phase of the XForms engine", List("phase" → name))
+
+  val AjaxRequest   = Metrics.histogram("orbeon_xforms_ajax_request_seconds", "Time to handle Ajax requests")
+
+  val LockWait      = phase("lock-wait")
+  val StateRestore  = phase("state-restore")
+  val EventDispatch = phase("event-dispatch")
+  val Rebuild       = phase("rebuild")
+  val Recalculate   = phase("recalculate")
+  val Revalidate    = phase("revalidate")
+  val Refresh       = phase("refresh")
+  val ControlsDiff  = phase("controls-diff")
+  val StateStore    = phase("state-store")
+
+  // Client value changes applied after another value change without deferred updates in between
+  val CoalescedValueChanges = new AtomicLong
+
+  private val CoalescedValueChangesName = "orbeon_xforms_coalesced_value_changes_total"
+
+  Metrics.collector(
+    Map(CoalescedValueChangesName → ("Number of client value changes sharing deferred updates with a previous one", "counter"))
+  ) { () ⇒
+    List(Metrics.Sample(CoalescedValueChangesName, Nil, CoalescedValueChanges.get))
+  }
+
+  Metrics.gauge("orbeon_xforms_state_store_entries", "Number of entries in the XForms state store")(
+    EhcacheStateStore.getCurrentSize
+  )
+
+  Metrics.gauge("orbeon_xforms_state_store_max_entries", "Maximum number of entries in the XForms state store")(
+    EhcacheStateStore.getMaxSize
+  )
+}
@@ -63,6 +63,10 @@ trait ControlBindingSupport {
     restoreState  : Boolean,
     state         : Option[ControlState]
   ): Unit = {
+    // The binding is re-evaluated when dependencies say it might have changed
+    if (update)
+      markChanged()
+
     // Evaluate and set binding context as needed
     val pr = parentContentRelevant
     setBindingContext(
@@ -94,7 +98,7 @@ trait ControlBindingSupport {
   protected def computeBinding(parentContext: BindingContext) = {
     val contextStack = container.getContextStack
     contextStack.setBinding(parentContext)
-    contextStack.pushBinding(element, effectiveId, staticControl.scope)
+    contextStack.pushBinding(staticControl, effectiveId, staticControl.scope)
     contextStack.getCurrentBindingContext
   }
 
@@ -126,6 +130,7 @@ trait ControlBindingSupport {
     if (! oldRelevant && newRelevant) {
       // Control becomes relevant
       this._isRelevant = true
+      markChanged()
       onCreate(restoreState, state)
       if (update)
         markDirtyImpl()
@@ -134,6 +139,7 @@ trait ControlBindingSupport {
       // Control becomes non-relevant
       onDestroy()
       this._isRelevant = false
+      markChanged()
       evaluateNonRelevant(parentRelevant)
     } else if (newRelevant) {
       // Control remains relevant
@@ -17,6 +17,7 @@ import org.orbeon.dom.QName
 import org.orbeon.oxf.xml.XMLReceiverHelper
 import org.xml.sax.helpers.AttributesImpl
 import org.orbeon.oxf.xforms.XFormsConstants._
+import org.orbeon.oxf.xforms.XFormsUtils
 
 trait ControlExtensionAttributesSupport {
 
@@ -48,8 +49,12 @@ trait ControlExtensionAttributesSupport {
   final def evaluateNonRelevantExtensionAttribute(): Unit =
     _extensionAttributes = None
 
-  final def markExtensionAttributesDirty() =
+  final def markExtensionAttributesDirty() = {
+    // There are no dependencies for AVTs, so assume that evaluated ones have changed
+    if (_extensionAttributes.isDefined && (staticControl ne null) && (staticControl.extensionAttributes.values exists XFormsUtils.maybeAVT))
+      markChanged()
     _extensionAttributes = None
+  }
 
   final def compareExtensionAttributes(other: XFormsControl) =
     evaluatedExtensionAttributes == other.evaluatedExtensionAttributes
@@ -35,16 +35,16 @@ trait ControlLHHASupport {
 
   def markLHHADirty(): Unit =
     for (currentLHHA ← lhhaArray)
-      if (currentLHHA ne null)
-        currentLHHA.handleMarkDirty()
+      if ((currentLHHA ne null) && currentLHHA.handleMarkDirty())
+        markChanged()
 
   // This is needed because, unlike the other LHH, the alert doesn't only depend on its expressions: it also depends
   // on the control's current validity and validations. Because we don't have yet a way of taking those in as
   // dependencies, we force dirty alerts whenever such validations change upon refresh.
   def forceDirtyAlert(): Unit = {
     val alert = lhhaArray(LHHA.valuesToIndex(LHHA.Alert))
-    if (alert ne null)
-      alert.handleMarkDirty(force = true)
+    if ((alert ne null) && alert.handleMarkDirty(force = true))
+      markChanged()
   }
 
   def evaluateNonRelevantLHHA(): Unit =
@@ -67,6 +67,8 @@ trait ControlLocalSupport {
   }
 
   final def getLocalForUpdate = {
+    markChanged()
+
     if (containingDocument.isHandleDifferences) {
       // Happening during a client request where we need to handle diffs
       val controls = containingDocument.getControls
@@ -43,6 +43,7 @@ trait VisitableTrait extends XFormsControl {
 
       containingDocument.requireRefresh()
       _visited = visited
+      markChanged()
     }
 
   override def onCreate(restoreState: Boolean, state: Option[ControlState]) = {
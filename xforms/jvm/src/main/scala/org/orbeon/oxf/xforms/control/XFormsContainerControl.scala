@@ -33,6 +33,7 @@ trait XFormsContainerControl extends VisitableTrait {
     if (_children eq null)
       _children = mutable.Buffer[XFormsControl]()
     _children += control
+    markChanged()
   }
 
   // Number of direct children control
@@ -42,11 +43,14 @@ trait XFormsContainerControl extends VisitableTrait {
   protected def setChildren(children: mutable.Buffer[XFormsControl]) = {
     require(children ne null)
     this._children = children
+    markChanged()
   }
 
   // Remove all children at once
-  def clearChildren() =
+  def clearChildren() = {
     this._children = null
+    markChanged()
+  }
 
   // Update this control's effective id and its descendants based on the parent's effective id
   override def updateEffectiveId(): Unit = {
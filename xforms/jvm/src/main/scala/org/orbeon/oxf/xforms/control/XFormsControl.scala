@@ -106,7 +106,11 @@ class XFormsControl(
     if (staticControl.isWithinRepeat) {
       val parentEffectiveId = parent.getEffectiveId
       val parentSuffix = XFormsId.getEffectiveIdSuffix(parentEffectiveId)
-      effectiveId = XFormsId.getPrefixedId(effectiveId) + XFormsConstants.REPEAT_SEPARATOR + parentSuffix
+      val newEffectiveId = XFormsId.getPrefixedId(effectiveId) + XFormsConstants.REPEAT_SEPARATOR + parentSuffix
+      if (newEffectiveId != effectiveId) {
+        effectiveId = newEffectiveId
+        markChanged()
+      }
       if (_childrenActions.nonEmpty)
         for (actionControl ← _childrenActions)
           actionControl.updateEffectiveId()
@@ -117,7 +121,10 @@ class XFormsControl(
 
   // Used by repeat iterations
   def setEffectiveId(effectiveId: String) =
-    this.effectiveId = effectiveId
+    if (effectiveId != this.effectiveId) {
+      this.effectiveId = effectiveId
+      markChanged()
+    }
 
   final def getLocationData =
     if (staticControl ne null) staticControl.locationData else if (element ne null) element.getData.asInstanceOf[LocationData] else null
@@ -128,6 +135,30 @@ class XFormsControl(
   // Dynamic information (changes depending on the content of XForms instances)
   private var previousEffectiveId: String = null
 
+  // Whether this control, or one of its descendants, might have changed since the last update response. New controls
+  // are considered changed. This allows the difference engine to skip entire subtrees of unchanged controls.
+  private var _changed = true
+  private var _descendantChanged = true
+
+  final def changed = _changed
+  final def changedOrDescendantChanged = _changed || _descendantChanged
+
+  // Called when an aspect of the control which is visible to the client might have changed
+  final def markChanged(): Unit = {
+    _changed = true
+    // Ancestors of a control with `_descendantChanged` set have it set as well
+    var current = parent
+    while ((current ne null) && ! current._descendantChanged) {
+      current._descendantChanged = true
+      current = current.parent
+    }
+  }
+
+  final def clearChanged(): Unit = {
+    _changed = false
+    _descendantChanged = false
+  }
+
   // NOP, can be overridden
   def iterationRemoved(): Unit = ()
 
@@ -322,13 +353,14 @@ object XFormsControl {
   // Base trait for a control property (label, itemset, etc.)
   trait ControlProperty[T >: Null] {
     def value(): T
-    def handleMarkDirty(force: Boolean = false)
+    // Return whether an evaluated value was discarded and must be evaluated again
+    def handleMarkDirty(force: Boolean = false): Boolean
     def copy: ControlProperty[T]
   }
 
   // Immutable control property
   class ImmutableControlProperty[T >: Null](val value: T) extends ControlProperty[T] {
-    override def handleMarkDirty(force: Boolean) = ()
+    override def handleMarkDirty(force: Boolean) = false
     override def copy = this
   }
 
@@ -371,7 +403,7 @@ object XFormsControl {
       _value
     }
 
-    def handleMarkDirty(force: Boolean): Unit = {
+    def handleMarkDirty(force: Boolean): Boolean = {
 
       def isDirty = ! isEvaluated
       def markOptimized() = isOptimized = true
@@ -388,7 +420,9 @@ object XFormsControl {
           else
             markOptimized() // for statistics only
         }
-      }
+        isDirty
+      } else
+        false
     }
 
     protected def markDirty(): Unit = {
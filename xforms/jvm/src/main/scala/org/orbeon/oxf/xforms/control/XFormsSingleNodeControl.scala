@@ -108,6 +108,11 @@ abstract class XFormsSingleNodeControl(container: XBLContainer, parent: XFormsCo
   }
 
   private def readBinding(): Unit = {
+
+    val previousBoundItem = _boundItem
+    def currentMIPs       = (_readonly, _required, _valueType, _customMIPs, _valid, _alertLevel, _failedValidations)
+    val previousMIPs      = currentMIPs
+
     // Set bound item, only considering actual bindings (with @bind, @ref or @nodeset)
     val bc = bindingContext
     if (bc.newBind)
@@ -135,6 +140,15 @@ abstract class XFormsSingleNodeControl(container: XBLContainer, parent: XFormsCo
         // Control is not bound to a node because it doesn't have a binding (group, trigger, dialog, etc. without @ref)
         setDefaultMIPs()
     }
+
+    val sameBoundItem =
+      (previousBoundItem, _boundItem) match {
+        case (n1: NodeInfo, n2: NodeInfo) ⇒ n1.isSameNodeInfo(n2)
+        case (i1, i2)                     ⇒ i1 eq i2
+      }
+
+    if (! sameBoundItem || currentMIPs != previousMIPs)
+      markChanged()
   }
 
   def getValidation: Option[(Boolean, Option[ValidationLevel], List[StaticBind#MIP])] =
@@ -144,6 +158,9 @@ abstract class XFormsSingleNodeControl(container: XBLContainer, parent: XFormsCo
     }
 
   def setValidation(validation: (Boolean, Option[ValidationLevel], List[StaticBind#MIP])): Unit = {
+    if (validation != ((_valid, _alertLevel, _failedValidations)))
+      markChanged()
+
     this._valid             = validation._1
     this._alertLevel        = validation._2
     this._failedValidations = validation._3
@@ -71,6 +71,8 @@ trait XFormsValueControl extends XFormsSingleNodeControl {
       }
     } else {
       // Control is not relevant
+      if (_value ne null)
+        markChanged()
       isExternalValueEvaluated = true
       externalValue = null
       _value = null
@@ -88,6 +90,7 @@ trait XFormsValueControl extends XFormsSingleNodeControl {
     setExternalValue(getValue)
 
   protected def markExternalValueDirty(): Unit = {
+    markChanged()
     isExternalValueEvaluated = false
     externalValue = null
   }
@@ -112,6 +115,9 @@ trait XFormsValueControl extends XFormsSingleNodeControl {
     // NOTE: Standard value controls should be bound to simple content only. Is there anything we should / can do
     // about this? See: https://github.com/orbeon/orbeon-forms/issues/13
 
+    // The client value must be compared with the control value even if the latter doesn't change
+    markChanged()
+
     val boundItem = getBoundItem
     if (! boundItem.isInstanceOf[NodeInfo])// this should not happen
       throw new OXFException("Control is no longer bound to a node. Cannot set external value.")
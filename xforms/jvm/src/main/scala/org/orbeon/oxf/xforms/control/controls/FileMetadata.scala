@@ -67,9 +67,17 @@ trait FileMetadata extends XFormsValueControl {
   def evaluateFileMetadata(relevant: Boolean) =
     props.values foreach (_.value)
 
+  // Only nested elements and upload progress can change independently from the control's value
+  private lazy val hasIndependentMetadata =
+    mediatypeElement.isDefined || filenameElement.isDefined || sizeElement.isDefined ||
+    supportedFileMetadata.contains("progress-state")
+
   // Mark all properties dirty
-  def markFileMetadataDirty() =
-    props.values foreach (_.handleMarkDirty())
+  def markFileMetadataDirty() = {
+    val dirty = props.values.foldLeft(false)(_ | _.handleMarkDirty())
+    if (dirty && hasIndependentMetadata)
+      markChanged()
+  }
 
   // Getters
   def state                 = props("state")    .value
@@ -25,7 +25,7 @@ import org.orbeon.oxf.xforms.analysis.ElementAnalysis
 import org.orbeon.oxf.xforms.analysis.controls.{RepeatControl, RepeatIterationControl}
 import org.orbeon.oxf.xforms.control._
 import org.orbeon.oxf.xforms.control.controls.XFormsRepeatControl._
-import org.orbeon.oxf.xforms.event.events.{XXFormsDndEvent, XXFormsIndexChangedEvent, XXFormsNodesetChangedEvent, XXFormsSetindexEvent}
+import org.orbeon.oxf.xforms.event.events._
 import org.orbeon.oxf.xforms.event.{Dispatch, XFormsEvent}
 import org.orbeon.oxf.xforms.state.ControlState
 import org.orbeon.oxf.xforms.xbl.XBLContainer
@@ -67,6 +67,8 @@ class XFormsRepeatControl(
   def getStartIndex = startIndex
 
   override def supportsRefreshEvents = true
+
+  // With a windowed repeat, this only contains the iterations within the window
   override def children = super.children.asInstanceOf[Seq[XFormsRepeatIterationControl]]
 
   override def onCreate(restoreState: Boolean, state: Option[ControlState]): Unit = {
@@ -75,13 +77,20 @@ class XFormsRepeatControl(
     // Ensure that the initial state is set, either from default value, or for state deserialization.
     state match {
       case Some(state) ⇒
-        setLocal(new XFormsRepeatControlLocal(state.keyValues("index").toInt))
+        setLocal(
+          new XFormsRepeatControlLocal(
+            state.keyValues("index").toInt,
+            state.keyValues.get("window-start") map (_.toInt) getOrElse 1
+          )
+        )
       case None if restoreState ⇒
         // This can happen with xxf:dynamic, which does not guarantee the stability of ids, therefore state for
         // a particular control might not be found.
-        setLocal(new XFormsRepeatControlLocal(ensureIndexBounds(getStartIndex)))
+        val index = ensureIndexBounds(getStartIndex)
+        setLocal(new XFormsRepeatControlLocal(index, windowStartContaining(index, 1, getSize)))
       case None ⇒
         setIndexInternal(getStartIndex)
+        setWindowStartInternal(windowStartContaining(getIndex, 1, getSize))
     }
 
     // Reset refresh information
@@ -96,6 +105,10 @@ class XFormsRepeatControl(
     // Set index
     setIndexInternal(index)
     if (oldRepeatIndex != getIndex) {
+      // The window follows the index
+      if (getIndex > 0 && iterationAt(getIndex).isEmpty)
+        moveWindow(windowStartContaining(getIndex, getWindowStart, getSize))
+
       // Dispatch custom event to notify that the repeat index has changed
       Dispatch.dispatchEvent(new XXFormsIndexChangedEvent(this, oldRepeatIndex, getIndex))
     }
@@ -113,6 +126,48 @@ class XFormsRepeatControl(
   private def ensureIndexBounds(index: Int) =
     math.min(math.max(index, if (getSize > 0) 1 else 0), getSize)
 
+  private def setWindowStartInternal(windowStart: Int): Unit =
+    if (isWindowed && windowStart != getWindowStart) {
+      val local = getLocalForUpdate.asInstanceOf[XFormsRepeatControl.XFormsRepeatControlLocal]
+      local.windowStart = windowStart
+    }
+
+  def isWindowed = staticControl.isWindowed
+
+  // First iteration of the window, 1-based
+  def getWindowStart =
+    if (isWindowed)
+      getCurrentLocal.asInstanceOf[XFormsRepeatControl.XFormsRepeatControlLocal].windowStart
+    else
+      1
+
+  // Adjust the start of the window so that the window doesn't go past the end of the sequence
+  private def ensureWindowStartBounds(windowStart: Int, size: Int) =
+    staticControl.windowSize match {
+      case Some(windowSize) ⇒ math.max(1, math.min(windowStart, size - windowSize + 1))
+      case None             ⇒ 1
+    }
+
+  // Start of the window closest to the given start which contains the given index
+  private def windowStartContaining(index: Int, windowStart: Int, size: Int) =
+    staticControl.windowSize match {
+      case Some(windowSize) if index > 0 ⇒
+        ensureWindowStartBounds(math.min(math.max(windowStart, index - windowSize + 1), index), size)
+      case _ ⇒
+        ensureWindowStartBounds(windowStart, size)
+    }
+
+  // Indexes of the iterations which are built given the window start and the repeat size
+  private def windowRange(windowStart: Int, size: Int) =
+    staticControl.windowSize match {
+      case Some(windowSize) ⇒ windowStart to math.min(windowStart + windowSize - 1, size)
+      case None             ⇒ 1 to size
+    }
+
+  // Return the iteration at the given index if it is built
+  def iterationAt(index: Int): Option[XFormsRepeatIterationControl] =
+    if (index > 0) children.lift(index - getWindowStart) else None
+
   // Return the size based on the nodeset size, so we can call this before all iterations have been added.
   // Scenario:
   // - call index() or xxf:index() from within a variable within the iteration:
@@ -132,10 +187,25 @@ class XFormsRepeatControl(
 
   // Return the iteration corresponding to the current index if any, null otherwise
   def getIndexIteration =
-    if (children.isEmpty || getIndex < 1)
-      null
-    else
-      children(getIndex - 1)
+    iterationAt(getIndex).orNull
+
+  // Move the window of a windowed repeat, building the iterations which come into view and removing the others
+  def moveWindow(windowStart: Int): Unit =
+    if (isWindowed && isRelevant && ensureWindowStartBounds(windowStart, getSize) != getWindowStart) {
+
+      val focusedBefore = containingDocument.getControls.getFocusedControl
+
+      val (newIterations, partialFocusRepeatOption) =
+        updateIterations(bindingContext.nodeset.asScala, null, isInsertDelete = false, Some(windowStart))
+
+      val currentControlTree = containingDocument.getControls.getCurrentControlTree
+      for (newIteration ← newIterations)
+        currentControlTree.initializeSubTree(newIteration, includeCurrent = true)
+
+      currentControlTree.dispatchRefreshEvents(List(getEffectiveId))
+
+      Focus.updateFocusWithEvents(focusedBefore, partialFocusRepeatOption)
+    }
 
   def doDnD(dndEvent: XXFormsDndEvent): Unit = {
 
@@ -219,7 +289,7 @@ class XFormsRepeatControl(
   override protected def computeBinding(parentContext: BindingContext) = {
     val contextStack = container.getContextStack
     contextStack.setBinding(parentContext)
-    contextStack.pushBinding(element, effectiveId, staticControl.scope)
+    contextStack.pushBinding(staticControl, effectiveId, staticControl.scope)
 
     // Keep only the relevant items
     import XFormsSingleNodeControl.isRelevantItem
@@ -300,14 +370,19 @@ class XFormsRepeatControl(
    *
    * NOTE: The new binding context must have been set on this control before calling.
    *
+   * With a windowed repeat, only the iterations within the new window are kept or created. The window follows the
+   * index if the index changes.
+   *
    * @param oldRepeatItems        old items
    * @param insertedItems         items just inserted by xf:insert if any, or null
+   * @param windowStartOpt        requested start of the window, if the window must move
    * @return                      new iterations if any, or an empty list
    */
   def updateIterations(
     oldRepeatItems : Seq[Item],
     insertedItems  : Seq[NodeInfo],
-    isInsertDelete : Boolean
+    isInsertDelete : Boolean,
+    windowStartOpt : Option[Int] = None
   ): (Seq[XFormsRepeatIterationControl], Option[XFormsRepeatControl]) = {
 
     // NOTE: The following assumes the nodesets have changed
@@ -322,9 +397,10 @@ class XFormsRepeatControl(
     val currentControlTree = controls.getCurrentControlTree
 
     val oldRepeatIndex = getIndex// 1-based
+    val oldWindowStart = getWindowStart
     var updated = false
 
-    val (newIterations, movedIterationsOldPositions, movedIterationsNewPositions, partialFocusRepeatOption) =
+    val (newIterations, insertedIterations, movedIterationsOldPositions, movedIterationsNewPositions, partialFocusRepeatOption) =
       if (newRepeatNodeset.nonEmpty) {
 
         // This may be set to this repeat or to a nested repeat if focus was within a removed iteration
@@ -339,36 +415,43 @@ class XFormsRepeatControl(
         // Remove control information for iterations that move or just disappear
         val oldChildren = children
 
+        // Old iteration at the given 0-based position, if it was built
+        def oldIteration(i: Int) =
+          if (i >= 0) oldChildren.lift(i - oldWindowStart + 1) else None
+
+        def removeIteration(removedIteration: XFormsRepeatIterationControl, i: Int): Unit =
+          withDebug("removing iteration", Seq("id" → getEffectiveId, "index" → (i + 1).toString)) {
+
+            // If focused control is in removed iteration, remember this repeat and partially remove
+            // focus before deindexing the iteration. The idea here is that we don't want to dispatch
+            // events to controls that have been removed from the index. So we dispatch all the
+            // possible focus out events here.
+            if (partialFocusRepeatOption.isEmpty && Focus.isFocusWithinContainer(removedIteration)) {
+              partialFocusRepeatOption = Some(XFormsRepeatControl.this)
+              Focus.removeFocusPartially(containingDocument, boundary = partialFocusRepeatOption)
+            }
+
+            // Dispatch destruction events
+            currentControlTree.dispatchDestructionEventsForRemovedContainer(removedIteration, includeCurrent = true)
+
+            // Indicate to iteration that it is being removed
+            // As of 2012-03-07, only used by XFormsComponentControl to destroy the XBL container
+            // This also removes the nested models from XPath dependencies
+            removedIteration.iterationRemoved()
+          }
+
         for (i ← newIndexes.indices) {
           val currentNewIndex = newIndexes(i)
           if (currentNewIndex != i) {
             // Node has moved or is removed
             val isRemoved = currentNewIndex == -1
-            val movedOrRemovedIteration = oldChildren(i)
-            if (isRemoved) {
-              withDebug("removing iteration", Seq("id" → getEffectiveId, "index" → (i + 1).toString)) {
-
-                // If focused control is in removed iteration, remember this repeat and partially remove
-                // focus before deindexing the iteration. The idea here is that we don't want to dispatch
-                // events to controls that have been removed from the index. So we dispatch all the
-                // possible focus out events here.
-                if (partialFocusRepeatOption.isEmpty && Focus.isFocusWithinContainer(movedOrRemovedIteration)) {
-                  partialFocusRepeatOption = Some(XFormsRepeatControl.this)
-                  Focus.removeFocusPartially(containingDocument, boundary = partialFocusRepeatOption)
-                }
-
-                // Dispatch destruction events
-                currentControlTree.dispatchDestructionEventsForRemovedContainer(movedOrRemovedIteration, includeCurrent = true)
-
-                // Indicate to iteration that it is being removed
-                // As of 2012-03-07, only used by XFormsComponentControl to destroy the XBL container
-                // This also removes the nested models from XPath dependencies
-                movedOrRemovedIteration.iterationRemoved()
-              }
-            }
+            for (movedOrRemovedIteration ← oldIteration(i)) {
+              if (isRemoved)
+                removeIteration(movedOrRemovedIteration, i)
 
-            // Deindex old iteration
-            currentControlTree.deindexSubtree(movedOrRemovedIteration, includeCurrent = true)
+              // Deindex old iteration
+              currentControlTree.deindexSubtree(movedOrRemovedIteration, includeCurrent = true)
+            }
             updated = true
           }
         }
@@ -439,15 +522,46 @@ class XFormsRepeatControl(
 
         // Iterate over new nodeset to move or add iterations
         val newSize = newRepeatNodeset.size
-        val newChildren = new ArrayBuffer[XFormsControl](newSize)
+
+        // The window follows the index if the index has changed
+        val newWindowStart =
+          windowStartOpt match {
+            case Some(windowStart)                  ⇒ ensureWindowStartBounds(windowStart, newSize)
+            case None if oldRepeatIndex != getIndex ⇒ windowStartContaining(getIndex, oldWindowStart, newSize)
+            case None                               ⇒ ensureWindowStartBounds(oldWindowStart, newSize)
+          }
+
+        val newWindow = windowRange(newWindowStart, newSize)
+        setWindowStartInternal(newWindowStart)
+
+        // New nodes, including those outside the window
+        if (oldIndexes contains -1)
+          updated = true
+
+        // Remove iterations which are still in the nodeset but are no longer within the window
+        for {
+          i                    ← newIndexes.indices
+          currentNewIndex      = newIndexes(i)
+          if currentNewIndex != -1 && ! newWindow.contains(currentNewIndex + 1)
+          outOfWindowIteration ← oldIteration(i)
+        } locally {
+          removeIteration(outOfWindowIteration, i)
+          // Iterations which have moved are already deindexed
+          if (currentNewIndex == i)
+            currentControlTree.deindexSubtree(outOfWindowIteration, includeCurrent = true)
+        }
+
+        val newChildren = new ArrayBuffer[XFormsControl](newWindow.size)
         val newIterations = ListBuffer[XFormsRepeatIterationControl]()
+        val insertedIterations = ListBuffer[XFormsRepeatIterationControl]()
         val movedIterationsOldPositions = ListBuffer[Int]()
         val movedIterationsNewPositions = ListBuffer[Int]()
 
-        for (repeatIndex ← 1 to newSize) {
+        for (repeatIndex ← newWindow) {
           val currentOldIndex = oldIndexes(repeatIndex - 1)
-          if (currentOldIndex == -1) {
-            // This new node was not in the old nodeset so create a new one
+          val existingIterationOpt = oldIteration(currentOldIndex)
+          if (existingIterationOpt.isEmpty) {
+            // This new node was not in the old nodeset, or it was outside the window, so create a new one
 
             // Add new iteration
             newChildren +=
@@ -458,16 +572,19 @@ class XFormsRepeatControl(
 
                 // Create repeat iteration
                 val newIteration = controls.createRepeatIterationTree(this, repeatIndex)
-                updated = true
 
                 newIterations += newIteration
 
+                // Iterations which just come into the window don't count as changes to the nodeset
+                if (currentOldIndex == -1)
+                  insertedIterations += newIteration
+
                 newIteration
               }
           } else {
             // This new node was in the old nodeset so keep it
 
-            val existingIteration = oldChildren(currentOldIndex)
+            val existingIteration = existingIterationOpt.get
             val newIterationOldIndex = existingIteration.iterationIndex
 
             def updateBindingsIfNeeded(): Unit = {
@@ -517,6 +634,7 @@ class XFormsRepeatControl(
 
         (
           newIterations,
+          insertedIterations,
           movedIterationsOldPositions.toList,
           movedIterationsNewPositions.toList,
           partialFocusRepeatOption
@@ -548,8 +666,9 @@ class XFormsRepeatControl(
 
         clearChildren()
         setIndexInternal(0)
+        setWindowStartInternal(1)
 
-        (Nil, Nil, Nil, None)
+        (Nil, Nil, Nil, Nil, None)
       }
 
     // Keep information available until refresh events are dispatched, which must happen soon after this method was
@@ -558,7 +677,7 @@ class XFormsRepeatControl(
       if (updated || oldRepeatIndex != getIndex)
         RefreshInfo(
           updated,
-          if (updated) newIterations else Nil,
+          if (updated) insertedIterations else Nil,
           if (updated) movedIterationsOldPositions else Nil,
           if (updated) movedIterationsNewPositions else Nil,
           oldRepeatIndex
@@ -585,23 +704,44 @@ class XFormsRepeatControl(
       }
     }
 
+  // For each item of `nodeset1`, find its index in `nodeset2`, or -1
+  //
+  // Items are usually at the same position as before, or shifted by the same offset as the preceding item after an
+  // insertion or deletion, so try that position first. This avoids a quadratic search with large repeats.
   private def findNodeIndexes(nodeset1: Seq[Item], nodeset2: Seq[Item]) = {
 
-    def indexOfItem(otherItem: Item) =
-      nodeset2 indexWhere (SaxonUtils.compareItems(_, otherItem))
+    val items2 = nodeset2.toIndexedSeq
+    var offset = 0
+
+    def indexOfItem(otherItem: Item, position: Int) = {
+      val guess = position + offset
+      val index =
+        if (guess >= 0 && guess < items2.size && SaxonUtils.compareItems(items2(guess), otherItem))
+          guess
+        else
+          items2 indexWhere (SaxonUtils.compareItems(_, otherItem))
 
-    nodeset1 map indexOfItem toArray
+      if (index != -1)
+        offset = index - position
+
+      index
+    }
+
+    nodeset1.iterator.zipWithIndex map (indexOfItem _).tupled toArray
   }
 
-  // Serialize index
+  // Serialize index, and window start if needed
   override def serializeLocal: ju.Map[String, String] =
-    ju.Collections.singletonMap("index", Integer.toString(getIndex))
+    if (isWindowed)
+      Map("index" → getIndex.toString, "window-start" → getWindowStart.toString).asJava
+    else
+      ju.Collections.singletonMap("index", Integer.toString(getIndex))
 
   // "4.3.7 The xforms-focus Event [...] Setting focus to a repeat container form control sets the focus to the
   // repeat object associated with the repeat index"
   override def focusableControls =
-    if (isRelevant && getIndex > 0)
-      children(getIndex - 1).focusableControls
+    if (isRelevant)
+      iterationAt(getIndex) map (_.focusableControls) getOrElse Iterator.empty
     else
       Iterator.empty
 
@@ -609,9 +749,10 @@ class XFormsRepeatControl(
   override def computeRelevant = super.computeRelevant && getSize > 0
 
   override def performDefaultAction(event: XFormsEvent) = event match {
-    case e: XXFormsSetindexEvent ⇒ setIndex(e.index)
-    case e: XXFormsDndEvent      ⇒ doDnD(e)
-    case _                       ⇒ super.performDefaultAction(event)
+    case e: XXFormsSetindexEvent     ⇒ setIndex(e.index)
+    case e: XXFormsDndEvent          ⇒ doDnD(e)
+    case e: XXFormsRepeatWindowEvent ⇒ e.start foreach moveWindow
+    case _                           ⇒ super.performDefaultAction(event)
   }
 
   override def buildChildren(
@@ -627,10 +768,10 @@ class XFormsRepeatControl(
       idSuffix
     )
 
-    // Build one sub-tree per repeat iteration (iteration itself handles its own binding with pushBinding,
-    // depending on its index/suffix)
+    // Build one sub-tree per repeat iteration within the window (iteration itself handles its own binding with
+    // pushBinding, depending on its index/suffix)
     val iterationAnalysis = staticControl.iteration.get
-    for (iterationIndex ← 1 to bindingContext.nodeset.size)
+    for (iterationIndex ← windowRange(getWindowStart, bindingContext.nodeset.size))
       buildTree(container, bindingContext, iterationAnalysis, idSuffix :+ iterationIndex)
 
     // TODO LATER: handle isOptimizeRelevance()
@@ -639,7 +780,7 @@ class XFormsRepeatControl(
 
 object XFormsRepeatControl {
 
-  class XFormsRepeatControlLocal(var index: Int = -1)
+  class XFormsRepeatControlLocal(var index: Int = -1, var windowStart: Int = 1)
     extends ControlLocalSupport.XFormsControlLocal
 
   case class RefreshInfo(
@@ -706,13 +847,11 @@ object XFormsRepeatControl {
 
           val repeatEffectiveId = addSuffix(head.prefixedId, suffix)
 
-          val repeatControl =
-            tree.findRepeatControl(repeatEffectiveId) getOrElse
-              (throw new IllegalStateException)
-
+          // Nested repeats are not built within iterations outside the window of a windowed repeat
           for {
-            index ← Iterator.from(1).take(repeatControl.getSize)
-            i     ← search(tail, suffix + (if (suffix.isEmpty) "" else REPEAT_INDEX_SEPARATOR) + index)
+            repeatControl ← tree.findRepeatControl(repeatEffectiveId).iterator
+            index         ← Iterator.from(1).take(repeatControl.getSize)
+            i             ← search(tail, suffix + (if (suffix.isEmpty) "" else REPEAT_INDEX_SEPARATOR) + index)
           } yield
             i
       }
@@ -16,8 +16,9 @@ package org.orbeon.oxf.xforms.control.controls
 import org.orbeon.dom.Element
 import org.orbeon.oxf.common.{OXFException, OrbeonLocationException}
 import org.orbeon.oxf.util.CoreUtils._
+import org.orbeon.oxf.util.DynamicVariable
 import org.orbeon.oxf.xforms.XFormsConstants._
-import org.orbeon.oxf.xforms.XFormsContainingDocument
+import org.orbeon.oxf.xforms.{XFormsContainingDocument, XFormsUtils}
 import org.orbeon.oxf.xforms.analysis.ControlAnalysisFactory.SelectionControl
 import org.orbeon.oxf.xforms.analysis.controls.SelectionControlTrait
 import org.orbeon.oxf.xforms.control.XFormsControl.{ControlProperty, ImmutableControlProperty}
@@ -30,6 +31,7 @@ import org.orbeon.oxf.xforms.state.ControlState
 import org.orbeon.oxf.xforms.xbl.XBLContainer
 import org.orbeon.oxf.xml.XMLReceiverHelper
 import org.orbeon.oxf.xml.dom4j.ExtendedLocationData
+import org.orbeon.xforms.XFormsId
 
 import scala.collection.mutable
 import scala.util.control.NonFatal
@@ -75,7 +77,8 @@ class XFormsSelect1Control(
 
   override def markDirtyImpl(): Unit = {
     super.markDirtyImpl()
-    itemsetProperty.handleMarkDirty()
+    if (itemsetProperty.handleMarkDirty())
+      markChanged()
   }
 
   // Get this control's itemset
@@ -101,6 +104,22 @@ class XFormsSelect1Control(
         throw OrbeonLocationException.wrapException(t, new ExtendedLocationData(getLocationData, "evaluating itemset", element))
     }
 
+  // Evaluate the itemset, reusing the evaluation of another iteration if the itemset is shared by repeat iterations
+  def evaluateItemset(): Itemset =
+    if (staticControl.isItemsetSharedByIterations) {
+      val controls = containingDocument.getControls
+      Option(controls.getSharedItemset(sharedItemsetKey)) getOrElse {
+        val newItemset = XFormsItemUtils.evaluateItemset(XFormsSelect1Control.this)
+        controls.setSharedItemset(sharedItemsetKey, newItemset)
+        newItemset
+      }
+    } else
+      XFormsItemUtils.evaluateItemset(XFormsSelect1Control.this)
+
+  // Iterations of the XBL container are part of the key as a container within a repeat has its own models
+  private def sharedItemsetKey =
+    getPrefixedId + XFormsId.getEffectiveIdSuffixWithSeparator(container.getEffectiveId)
+
   override def evaluateExternalValue(): Unit = {
 
     // If the control is relevant, its internal value and itemset must be defined
@@ -244,13 +263,27 @@ class XFormsSelect1Control(
       mustSendItemsetUpdate(previousControl map (_.asInstanceOf[XFormsSelect1Control]) orNull)
 
     val outputNestedContent = (ch: XMLReceiverHelper) ⇒ {
-      ch.startElement("xxf", XXFORMS_NAMESPACE_URI, "itemset", Array[String]())
 
       val itemset = getItemset
-      if (itemset ne null) {
-        val result = itemset.asJSON(null, mustEncodeValues, getLocationData)
-        if (result.nonEmpty)
-          ch.text(result)
+
+      // A shared itemset already output by another iteration is only referred to
+      val sameAsOpt =
+        if ((itemset ne null) && staticControl.isItemsetSharedByIterations)
+          XFormsSelect1Control.sharedItemsetsOutput.value flatMap (_.findOrAdd(sharedItemsetKey, itemset, this))
+        else
+          None
+
+      sameAsOpt match {
+        case Some(sameAsEffectiveId) ⇒
+          ch.startElement("xxf", XXFORMS_NAMESPACE_URI, "itemset", Array("same-as", XFormsUtils.namespaceId(containingDocument, sameAsEffectiveId)))
+        case None ⇒
+          ch.startElement("xxf", XXFORMS_NAMESPACE_URI, "itemset", Array[String]())
+
+          if (itemset ne null) {
+            val result = itemset.asJSON(null, mustEncodeValues, getLocationData)
+            if (result.nonEmpty)
+              ch.text(result)
+          }
       }
 
       ch.endElement()
@@ -298,4 +331,22 @@ object XFormsSelect1Control {
 
   def mustEncodeValues(containingDocument: XFormsContainingDocument, control: SelectionControlTrait) =
     control.mustEncodeValues getOrElse containingDocument.encodeItemValues
+
+  // Shared itemsets output so far in an Ajax response, with the effective id of the control which output each of them
+  class SharedItemsetsOutput {
+
+    var output = Map[String, (Itemset, String)]()
+
+    // Return the effective id of the control which already output the itemset, or remember the given control
+    def findOrAdd(key: String, itemset: Itemset, control: XFormsSelect1Control): Option[String] =
+      output.get(key) collect { case (`itemset`, effectiveId) ⇒ effectiveId } orElse {
+        output += key → (itemset, control.getEffectiveId)
+        None
+      }
+  }
+
+  val sharedItemsetsOutput = new DynamicVariable[SharedItemsetsOutput]
+
+  def withSharedItemsetsOutput[T](body: ⇒ T): T =
+    sharedItemsetsOutput.withValue(new SharedItemsetsOutput)(body)
 }
\ No newline at end of file
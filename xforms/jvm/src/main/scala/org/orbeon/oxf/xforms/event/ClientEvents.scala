@@ -25,17 +25,22 @@ import org.orbeon.oxf.xforms.XFormsConstants._
 import org.orbeon.oxf.xforms.XFormsContainingDocument
 import org.orbeon.oxf.xforms.XFormsUtils._
 import org.orbeon.oxf.xforms.analysis.controls.RepeatControl
+import org.orbeon.oxf.xforms.analytics.XFormsMetrics
+import org.orbeon.oxf.xforms.control.Controls.AncestorOrSelfIterator
 import org.orbeon.oxf.xforms.control._
 import org.orbeon.oxf.xforms.control.controls._
 import org.orbeon.oxf.xforms.event.XFormsEvent._
 import org.orbeon.oxf.xforms.event.XFormsEvents._
 import org.orbeon.oxf.xforms.event.events._
+import org.orbeon.oxf.xforms.model.RuntimeBind.underlyingNodeOpt
 import org.orbeon.oxf.xforms.state.XFormsStateManager
 import org.orbeon.oxf.xforms.upload.UploaderServer
 import org.orbeon.oxf.xml._
 import org.orbeon.oxf.xml.dom4j.{Dom4jUtils, LocationSAXContentHandler}
 import org.orbeon.xforms.XFormsId
 
+import scala.collection.mutable.ListBuffer
+
 // Process events sent by the client, including sorting, filtering, and security
 object ClientEvents extends Logging with XMLReceiverSupport {
 
@@ -141,8 +146,11 @@ object ClientEvents extends Logging with XMLReceiverSupport {
     }
 
     // Combine and process events
-    for (event ← combineValueEvents(filterEvents(allClientAndServerEvents)))
-      processEvent(doc, event)
+    for (events ← groupIndependentValueEvents(doc, combineValueEvents(filterEvents(allClientAndServerEvents))))
+      events match {
+        case List(event) ⇒ processEvent(doc, event)
+        case _           ⇒ processValueEvents(doc, events)
+      }
 
     // Gather some metadata about the events received to help with the response to the client
 
@@ -368,7 +376,25 @@ object ClientEvents extends Logging with XMLReceiverSupport {
   // Process an incoming client event. Preprocessing for noscript and encrypted events is assumed to have taken place.
   // This handles checking for stale controls, relevance, readonly, and special cases like xf:output.
   // NOTE: Leave public for unit tests
-  def processEvent(doc: XFormsContainingDocument, event: XFormsEvent): Unit = {
+  def processEvent(doc: XFormsContainingDocument, event: XFormsEvent): Unit =
+    processEvent(doc, event, deferUpdates = false)
+
+  // Process value change events which can't observe each other with a single round of deferred updates
+  private def processValueEvents(doc: XFormsContainingDocument, events: List[XFormsEvent]): Unit = {
+
+    implicit val CurrentLogger = doc.getIndentedLogger(LOGGING_CATEGORY)
+
+    withDebug("handling external value events together", Seq("count" → events.size.toString)) {
+      doc.startOutermostActionHandler()
+      events foreach (processEvent(doc, _, deferUpdates = true))
+      doc.endOutermostActionHandler()
+    }
+
+    XFormsMetrics.CoalescedValueChanges.addAndGet(events.size - 1)
+  }
+
+  // With `deferUpdates`, the caller runs the outermost action handler, and therefore deferred updates
+  private def processEvent(doc: XFormsContainingDocument, event: XFormsEvent, deferUpdates: Boolean): Unit = {
 
     // Check whether an event can be be dispatched to the given object. This only checks:
     // - the the target is still live
@@ -476,8 +502,9 @@ object ClientEvents extends Logging with XMLReceiverSupport {
       //    xforms-focus. We would translate that into DOMActivate. As of 2012-03-09 there doesn't seem to be a
       //    need for this so we are removing this behavior.
 
-      // Each event is within its own start/end outermost action handler
-      doc.startOutermostActionHandler()
+      // Each event is within its own start/end outermost action handler, unless the caller handles it
+      if (! deferUpdates)
+        doc.startOutermostActionHandler()
 
       // Handle repeat iteration if the event target is in a repeat
       if (XFormsId.hasEffectiveIdSuffix(targetEffectiveId))
@@ -485,7 +512,9 @@ object ClientEvents extends Logging with XMLReceiverSupport {
 
       // Interpret event
       dispatchEventCheckTarget(event)
-      doc.endOutermostActionHandler()
+
+      if (! deferUpdates)
+        doc.endOutermostActionHandler()
     }
   }
 
@@ -502,6 +531,113 @@ object ClientEvents extends Logging with XMLReceiverSupport {
 
     val QuickResponseEventNames = Set(XXFORMS_SESSION_HEARTBEAT, XXFORMS_UPLOAD_PROGRESS)
 
+    // Events which, if handled, could observe the state between two value changes, or the number of deferred updates
+    val ValueChangesObservingEventNames = List(
+      XXFORMS_VALUE,
+      XXFORMS_REPEAT_ACTIVATE,
+      XXFORMS_VALUE_CHANGED,
+      XFORMS_VALUE_CHANGED,
+      XFORMS_SELECT,
+      XFORMS_DESELECT,
+      XFORMS_REBUILD,
+      XFORMS_RECALCULATE,
+      XFORMS_REVALIDATE,
+      XFORMS_REFRESH,
+      XFORMS_VALID,
+      XFORMS_INVALID,
+      XFORMS_REQUIRED,
+      XFORMS_OPTIONAL,
+      XFORMS_READWRITE,
+      XFORMS_READONLY,
+      XFORMS_ENABLED,
+      XFORMS_DISABLED,
+      XXFORMS_CONSTRAINTS_CHANGED,
+      XXFORMS_VALID,
+      XXFORMS_INVALID,
+      XXFORMS_VISITED,
+      XXFORMS_UNVISITED,
+      XXFORMS_NODESET_CHANGED,
+      XXFORMS_INDEX_CHANGED,
+      XXFORMS_ITERATION_MOVED
+    )
+
+    // Whether value change events can be grouped
+    //
+    // Between grouped value changes, there is no recalculate and no refresh. So nothing must be able to observe the
+    // intermediate state:
+    //
+    // - no handler for value change, MIP, or deferred update events
+    // - no control binding, `relevant` or `readonly` MIP which depends on values, as value changes could then
+    //   make a later event in the group go to a non-relevant or readonly control
+    // - no repeat index change, which bindings can depend on through `index()`
+    def canGroupValueEvents(doc: XFormsContainingDocument) = {
+      val staticOps = doc.getStaticOps
+      doc.getStaticState.isCoalesceValueChanges &&
+        ! staticOps.hasNestedParts              &&
+        ! (ValueChangesObservingEventNames exists (staticOps.hasHandlerForEvent(_)))
+    }
+
+    // Whether dispatching `xxforms-repeat-activate` to the control changes a repeat index
+    def changesRepeatIndex(control: XFormsControl) =
+      new AncestorOrSelfIterator(control) exists {
+        case iteration: XFormsRepeatIterationControl ⇒ ! iteration.isCurrentIteration
+        case _                                       ⇒ false
+      }
+
+    // The node a value event sets, followed by its ancestors, if the event can be grouped with other value events
+    def valueEventNodes(event: XFormsEvent): Option[List[AnyRef]] =
+      (event, event.targetObject) match {
+        case (_: XXFormsValueEvent, _: XFormsUploadControl | _: XFormsValueComponentControl) ⇒
+          None
+        case (_: XXFormsValueEvent, control: XFormsValueControl) if ! changesRepeatIndex(control) ⇒
+          control.boundNode flatMap { node ⇒
+            val ancestorOrSelf = Iterator.iterate(node)(_.getParent) takeWhile (_ ne null)
+            underlyingNodeOpt(node) map (_ :: (ancestorOrSelf.drop(1) flatMap (n ⇒ underlyingNodeOpt(n))).toList)
+          }
+        case _ ⇒
+          None
+      }
+
+    // Group consecutive value events which set unrelated nodes, and leave all other events on their own
+    def groupIndependentValueEvents(doc: XFormsContainingDocument, events: List[XFormsEvent]): List[List[XFormsEvent]] =
+      if (events.size < 2 || ! canGroupValueEvents(doc))
+        events map (List(_))
+      else {
+
+        val groups        = ListBuffer[List[XFormsEvent]]()
+        val currentGroup  = ListBuffer[XFormsEvent]()
+        val setNodes      = newIdentitySet
+        val ancestorNodes = newIdentitySet
+
+        def closeCurrentGroup(): Unit =
+          if (currentGroup.nonEmpty) {
+            groups += currentGroup.toList
+            currentGroup.clear()
+            setNodes.clear()
+            ancestorNodes.clear()
+          }
+
+        for (event ← events)
+          valueEventNodes(event) match {
+            case Some(node :: ancestors) ⇒
+              // A node set by the group, or one of its ancestors or descendants, must be set after a refresh
+              if (setNodes.contains(node) || ancestorNodes.contains(node) || (ancestors exists setNodes.contains))
+                closeCurrentGroup()
+
+              currentGroup += event
+              setNodes.add(node)
+              ancestors foreach ancestorNodes.add
+            case _ ⇒
+              closeCurrentGroup()
+              groups += List(event)
+          }
+
+        closeCurrentGroup()
+        groups.toList
+      }
+
+    def newIdentitySet: ju.Set[AnyRef] = ju.Collections.newSetFromMap(new ju.IdentityHashMap[AnyRef, java.lang.Boolean])
+
     def safelyCreateAndMapEvent(doc: XFormsContainingDocument, event: LocalEvent): Option[XFormsEvent] = {
 
       implicit val CurrentLogger = doc.getIndentedLogger(LOGGING_CATEGORY)
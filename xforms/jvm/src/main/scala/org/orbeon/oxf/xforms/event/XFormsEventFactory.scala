@@ -82,6 +82,7 @@ object XFormsEventFactory {
     XFORMS_SUBMIT_SERIALIZE     → (new XFormsSubmitSerializeEvent(_, _)),
     XXFORMS_DIALOG_OPEN         → (new XXFormsDialogOpenEvent(_, _)),
     XXFORMS_DND                 → (new XXFormsDndEvent(_, _)),
+    XXFORMS_REPEAT_WINDOW       → (new XXFormsRepeatWindowEvent(_, _)),
     XXFORMS_INDEX_CHANGED       → (new XXFormsIndexChangedEvent(_, _)),
     XXFORMS_LOAD                → (new XXFormsLoadEvent(_, _)),
     XXFORMS_ACTION_ERROR        → (new XXFormsActionErrorEvent(_, _)),
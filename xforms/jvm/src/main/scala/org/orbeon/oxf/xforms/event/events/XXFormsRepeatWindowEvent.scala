@@ -0,0 +1,31 @@
+/**
+ *  Copyright (C) 2017 Orbeon, Inc.
+ *
+ *  This program is free software; you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation; either version
+ *  2.1 of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ *  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *  See the GNU Lesser General Public License for more details.
+ *
+ *  The full text of the license is available at http://www.gnu.org/copyleft/lesser.html
+ */
+package org.orbeon.oxf.xforms.event.events
+
+import org.orbeon.oxf.xforms.event.XFormsEvent._
+import org.orbeon.oxf.xforms.event.XFormsEvents._
+import org.orbeon.oxf.xforms.event.{XFormsEvent, XFormsEventTarget}
+
+import scala.util.Try
+
+// Request to move the window of a windowed repeat so that it starts at the given iteration
+class XXFormsRepeatWindowEvent(target: XFormsEventTarget, properties: PropertyGetter)
+  extends XFormsEvent(XXFORMS_REPEAT_WINDOW, target, properties, bubbles = false, cancelable = false) {
+
+  def this(target: XFormsEventTarget, start: Int) =
+    this(target, Map("start" → Option(start.toString)))
+
+  // The client sends the iteration as a string
+  def start = property[Any]("start") flatMap (value ⇒ Try(value.toString.toInt).toOption)
+}
@@ -20,7 +20,7 @@ import org.orbeon.oxf.cache
 import org.orbeon.oxf.common.Version
 import org.orbeon.oxf.servlet.ServletSessionImpl
 import org.orbeon.oxf.util.SLF4JLogging._
-import org.orbeon.oxf.xforms.state.XFormsStateManager
+import org.orbeon.oxf.xforms.state.{XFormsStateManager, XFormsStaticStateStore}
 
 class ReplicationServletContextListener extends ServletContextListener {
 
@@ -33,6 +33,14 @@ class ReplicationServletContextListener extends ServletContextListener {
   def contextDestroyed(servletContextEvent: ServletContextEvent) = ()
 }
 
+class StaticStateStoreServletContextListener extends ServletContextListener {
+
+  def contextInitialized(servletContextEvent: ServletContextEvent): Unit =
+    XFormsStaticStateStore.warmupInBackground()
+
+  def contextDestroyed(servletContextEvent: ServletContextEvent) = ()
+}
+
 class XFormsServletContextListener extends HttpSessionListener {
 
   def sessionCreated(httpSessionEvent: HttpSessionEvent): Unit =
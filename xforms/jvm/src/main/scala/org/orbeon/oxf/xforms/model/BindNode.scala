@@ -28,8 +28,9 @@ import scala.collection.JavaConverters._
 import scala.collection.{breakOut, mutable}
 
 // Holds MIPs associated with a given RuntimeBind iteration
-// The constructor automatically adds the BindNode to the instance data node if any.
-class BindNode(val parentBind: RuntimeBind, val position: Int, val item: Item) {
+// The constructor automatically adds the BindNode to the instance data node if any. The position changes when the
+// BindNode is kept by a partial rebuild.
+class BindNode(val parentBind: RuntimeBind, var position: Int, val item: Item) {
 
   import BindNode._
 
@@ -115,6 +116,11 @@ class BindNode(val parentBind: RuntimeBind, val position: Int, val item: Item) {
 
   def ancestorOrSelfBindNodes =
     Iterator.iterate(this)(_.parentBind.parentIteration) takeWhile (_ ne null)
+
+  // Called when the BindNode is removed from the bind tree by a partial rebuild
+  def detach(): Unit =
+    if (node ne null)
+      InstanceData.removeBindNode(node, this)
 }
 
 object BindNode {
@@ -248,4 +254,18 @@ class BindIteration(
 
   def findChildBindByStaticId(bindId: String) =
     childrenBinds find (_.staticBind.staticId == bindId)
+
+  override def detach(): Unit = {
+    super.detach()
+
+    if (! childrenBindsHaveSingleNodeContext) {
+      val iterations = parentBind.model.modelBindsOpt.get.iterationsForContextItem
+      iterations.get(item) map (_ filterNot (_ eq this)) foreach {
+        case Nil       ⇒ iterations -= item
+        case remaining ⇒ iterations += item → remaining
+      }
+    }
+
+    childrenBinds foreach (_.detach())
+  }
 }
\ No newline at end of file
@@ -201,9 +201,10 @@ trait CalculateBindOps {
         case None ⇒
           iterateBinds(topLevelBinds, bindNode ⇒
             if (
-              bindNode.staticBind.hasXPathMIP(mip)                                            &&
-              dependencies.requireModelMIPUpdate(model, bindNode.staticBind, mip, null) &&
-              mustEvaluateNode(bindNode.node, defaultsStrategy)
+              bindNode.staticBind.hasXPathMIP(mip)                                                      &&
+              dependencies.requireModelMIPUpdate(model, bindNode.staticBind, mip, null)                 &&
+              mustEvaluateNode(bindNode.node, defaultsStrategy)                                         &&
+              dependencies.requireModelMIPUpdateForNode(model, bindNode.staticBind, mip, bindNode.node)
             ) {
               evaluateAndSetCalculatedBind(bindNode, mip, collector)
             }
@@ -225,8 +226,12 @@ trait CalculateBindOps {
           BindVariableResolver.resolveNotAncestorOrSelf(self, None, staticBind) foreach { runtimeBindIt ⇒
             runtimeBindIt flatMap (_.bindNodes) foreach { bindNode ⇒
 
-              // Skip if we must process only flagged nodes and the node is not flagged
-              if (mustEvaluateNode(bindNode.node, defaultsStrategy)) {
+              // Skip if we must process only flagged nodes and the node is not flagged, or if nothing the MIP depends
+              // on has changed for this node
+              if (
+                mustEvaluateNode(bindNode.node, defaultsStrategy) &&
+                dependencies.requireModelMIPUpdateForNode(model, staticBind, mip, bindNode.node)
+              ) {
                 evaluationCount += 1
                 evaluateAndSetCalculatedBind(bindNode, mip, collector)
               }
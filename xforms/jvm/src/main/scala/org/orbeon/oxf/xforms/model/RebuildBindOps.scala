@@ -13,8 +13,12 @@
   */
 package org.orbeon.oxf.xforms.model
 
+import java.{util ⇒ ju}
+
 import org.orbeon.oxf.util.CollectionUtils._
-import org.orbeon.saxon.om.Item
+import org.orbeon.oxf.xforms.XFormsProperties
+import org.orbeon.oxf.xforms.model.RuntimeBind.underlyingNodeOpt
+import org.orbeon.saxon.om.{Item, NodeInfo}
 
 import scala.collection.JavaConverters._
 import scala.collection.{mutable ⇒ m}
@@ -31,7 +35,53 @@ trait RebuildBindOps {
   final val iterationsForContextItem = m.HashMap[Item, List[BindIteration]]()
 
   // Rebuild all binds, computing all bind nodesets (but not computing the MIPs)
+  //
+  // When enabled, and when instances only changed through insertions, deletions and value changes since the last
+  // rebuild, the existing bind tree is updated instead. Iterations are then only created for inserted nodes and
+  // removed for deleted nodes.
   def rebuild(): Unit =
+    _changedNodesOpt match {
+      case Some(changedNodes) ⇒
+        withDebug("performing partial rebuild", List("model id" → model.getEffectiveId)) {
+          updateBinds(changedNodes)
+        }
+        if (XFormsProperties.getDebugCheckPartialRebuild)
+          findDifferenceWithFullRebuild foreach { bindId ⇒
+            error("partial rebuild differs from full rebuild, performing full rebuild", List("bind id" → bindId))
+            fullRebuild()
+          }
+        _changedNodesOpt = Some(newIdentitySet)
+      case None ⇒
+        fullRebuild()
+        if (containingDocument.getStaticState.isPartialRebuild)
+          _changedNodesOpt = Some(newIdentitySet)
+    }
+
+  // Called when nodes are inserted into or deleted from the given parents, or when the values of the given nodes
+  // change. Changes under a node, including changes to the values of descendants, can change which nodes the binds
+  // select under it, so the nodes and their ancestors are recorded.
+  def markNodesChanged(nodes: Seq[NodeInfo]): Unit =
+    _changedNodesOpt foreach { changedNodes ⇒
+      for (node ← nodes) {
+        // Stop at the first node already recorded, as its ancestors are recorded as well
+        var current = node
+        while (current ne null)
+          underlyingNodeOpt(current) match {
+            case Some(underlyingNode) if changedNodes.add(underlyingNode) ⇒ current = current.getParent
+            case Some(_)                                                  ⇒ current = null
+            case None                                                     ⇒ markFullRebuild(); current = null
+          }
+      }
+    }
+
+  def markValueChanged(node: NodeInfo): Unit =
+    markNodesChanged(List(node))
+
+  // Called when instances change in ways which are not recorded, so that the next rebuild is a full rebuild
+  def markFullRebuild(): Unit =
+    _changedNodesOpt = None
+
+  private def fullRebuild(): Unit =
     withDebug("performing rebuild", List("model id" → model.getEffectiveId)) {
 
       // NOTE: Assume that model.getContextStack().resetBindingContext(model) was called
@@ -59,8 +109,6 @@ trait RebuildBindOps {
       iterationsForContextItem.clear()
 
       // Iterate through all top-level bind elements to create new bind tree
-      // TODO: In the future, XPath dependencies must allow for partial rebuild of the tree as is the case with controls
-      // Even before that, the bind tree could be modified more dynamically as is the case with controls
       _topLevelBinds =
         for (staticBind ← staticModel.topLevelBinds)
           yield new RuntimeBind(model, staticBind, null, isSingleNodeContext = true)
@@ -111,5 +159,128 @@ trait RebuildBindOps {
   private object Private {
     var _topLevelBinds          : List[RuntimeBind] = Nil
     var _isFirstRebuildForModel : Boolean           = model.containingDocument.isInitializing
+
+    // Changed nodes and their ancestors since the last rebuild, by identity of the underlying nodes, or `None` if
+    // the next rebuild must be a full rebuild
+    var _changedNodesOpt        : Option[ju.Set[AnyRef]] = None
+
+    def newIdentitySet: ju.Set[AnyRef] = ju.Collections.newSetFromMap(new ju.IdentityHashMap[AnyRef, java.lang.Boolean])
+
+    def contextStack = model.getContextStack
+
+    // Update the existing bind tree after insertions and deletions
+    //
+    // A nested bind is evaluated again only if the subtree its nodeset depends on contains changes. The other binds
+    // keep their nodeset, but the binds nested within them are checked in turn. Evaluating a bind requires the context
+    // of its ancestor binds on the context stack, which is pushed only when needed.
+    def updateBinds(changedNodes: ju.Set[AnyRef]): Unit = {
+
+      var evaluatedCount = 0
+      var keptCount      = 0
+
+      def ancestorOrSelf(item: Item, levels: Int): Option[NodeInfo] =
+        item match {
+          case node: NodeInfo if levels == 0 ⇒ Some(node)
+          case node: NodeInfo                ⇒ ancestorOrSelf(node.getParent, levels - 1)
+          case _                             ⇒ None
+        }
+
+      def mustEvaluate(bind: RuntimeBind, contextItem: Item) =
+        bind.staticBind.bindingAncestorLevels match {
+          case Some(levels) ⇒ ancestorOrSelf(contextItem, levels) flatMap underlyingNodeOpt forall changedNodes.contains
+          case None         ⇒ true
+        }
+
+      def updateNestedBinds(bind: RuntimeBind, iterations: Seq[BindNode], pushBindContext: () ⇒ Unit): Unit =
+        iterations foreach {
+          case iteration: BindIteration ⇒
+
+            var pushed = false
+
+            def pushIterationContext(): Unit =
+              if (! pushed) {
+                pushBindContext()
+                contextStack.pushBinding(bind.staticBind, model.getEffectiveId, model.getResolutionScope)
+                contextStack.pushIteration(iteration.position)
+                pushed = true
+              }
+
+            for (childBind ← iteration.childrenBinds) {
+
+              val keptIterations =
+                if (mustEvaluate(childBind, iteration.item)) {
+                  pushIterationContext()
+                  evaluatedCount += 1
+                  childBind.update()
+                } else {
+                  keptCount += 1
+                  childBind.bindNodes
+                }
+
+              updateNestedBinds(childBind, keptIterations, pushIterationContext)
+            }
+
+            if (pushed) {
+              contextStack.popBinding()
+              contextStack.popBinding()
+            }
+          case _ ⇒
+        }
+
+      // Top-level binds are always evaluated again, as there are few of them and their context is not an iteration
+      for (bind ← _topLevelBinds) {
+        evaluatedCount += 1
+        updateNestedBinds(bind, bind.update(), () ⇒ ())
+      }
+
+      debug("updated binds", List("evaluated" → evaluatedCount.toString, "kept" → keptCount.toString))
+    }
+
+    // Compare the bind tree with the one a full rebuild would create, and return the id of the first bind which
+    // differs, if any
+    def findDifferenceWithFullRebuild: Option[String] = {
+
+      def sameItem(item1: Item, item2: Item) =
+        (item1, item2) match {
+          case (node1: NodeInfo, node2: NodeInfo) ⇒ node1.isSameNodeInfo(node2)
+          case _                                  ⇒ item1 == item2
+        }
+
+      def findDifference(bind: RuntimeBind): Option[String] = {
+
+        contextStack.pushBinding(bind.staticBind, model.getEffectiveId, model.getResolutionScope)
+        try {
+          val expectedItems     = RuntimeBind.bindingItems(contextStack.getCurrentBindingContext).asScala
+          val hasChildrenBinds  = bind.staticBind.children.nonEmpty
+          val expectedBindNodes = if (hasChildrenBinds || bind.staticBind.hasMIPs) expectedItems else Nil
+
+          def sameItems =
+            bind.items.size == expectedItems.size &&
+            (bind.items.asScala.zip(expectedItems) forall { case (item1, item2) ⇒ sameItem(item1, item2) })
+
+          def sameBindNodes =
+            bind.bindNodes.size == expectedBindNodes.size &&
+            (bind.bindNodes.zip(expectedBindNodes).zipWithIndex forall { case ((bindNode, item), index) ⇒
+              bindNode.position == index + 1                          &&
+              sameItem(bindNode.item, item)                           &&
+              bindNode.isInstanceOf[BindIteration] == hasChildrenBinds
+            })
+
+          if (! sameItems || ! sameBindNodes)
+            Some(bind.staticId)
+          else
+            bind.bindNodes.iterator collect { case iteration: BindIteration ⇒ iteration } map { iteration ⇒
+              contextStack.pushIteration(iteration.position)
+              try (iteration.childrenBinds.iterator flatMap findDifference).nextOption()
+              finally contextStack.popBinding()
+            } collectFirst {
+              case Some(bindId) ⇒ bindId
+            }
+        } finally
+          contextStack.popBinding()
+      }
+
+      (_topLevelBinds.iterator flatMap findDifference).nextOption()
+    }
   }
 }
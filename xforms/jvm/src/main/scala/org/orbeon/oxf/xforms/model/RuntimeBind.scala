@@ -13,9 +13,11 @@
  */
 package org.orbeon.oxf.xforms.model
 
+import java.{util ⇒ ju}
+
 import org.orbeon.oxf.xforms._
 import org.orbeon.oxf.xforms.analysis.model.StaticBind
-import org.orbeon.saxon.om.Item
+import org.orbeon.saxon.om.{Item, VirtualNode}
 import org.orbeon.xforms.XFormsId
 
 import scala.collection.JavaConverters._
@@ -32,26 +34,43 @@ class RuntimeBind(
   def getEffectiveId     = XFormsId.getRelatedEffectiveId(model.getEffectiveId, staticId)
   def staticId           = staticBind.staticId
 
-  val (items, bindNodes) = {
+  private var _items                              : ju.List[Item] = ju.Collections.emptyList()
+  private var _bindNodes                          : Seq[BindNode] = Nil
+  private var _childrenBindsHaveSingleNodeContext : Boolean       = false
+
+  def items     = _items
+  def bindNodes = _bindNodes
+
+  evaluateAndCreateBindNodes(Nil)
+
+  // Evaluate the nodeset again after a structural change, keeping the existing `BindNode`s for the nodes which are
+  // still in the nodeset, and return them. The context must be the same as when the bind was created.
+  def update(): Seq[BindNode] = {
+    val existingBindNodes = _bindNodes
+    val keptBindNodes     = evaluateAndCreateBindNodes(existingBindNodes)
+    val isKept            = keptBindNodes.toSet
+
+    existingBindNodes filterNot isKept foreach (_.detach())
+
+    keptBindNodes
+  }
+
+  // Called when the bind is removed from the bind tree by a partial rebuild
+  def detach(): Unit = {
+    val binds = model.modelBindsOpt.get
+    if (binds.singleNodeContextBinds.get(staticId) exists (_ eq this))
+      binds.singleNodeContextBinds -= staticId
+
+    _bindNodes foreach (_.detach())
+  }
+
+  // Return the existing `BindNode`s which were reused
+  private def evaluateAndCreateBindNodes(existingBindNodes: Seq[BindNode]): Seq[BindNode] = {
+
     val contextStack = model.getContextStack
-    contextStack.pushBinding(staticBind.element, model.getEffectiveId, model.getResolutionScope)
-
-    // NOTE: This should probably go into XFormsContextStack
-    val bindingContext = contextStack.getCurrentBindingContext
-
-    import java.{util ⇒ ju}
-
-    // @ref can be missing and defaults to the context item
-    val items: ju.List[Item] =
-      if (bindingContext.newBind)
-        // Case where a @ref attribute is present → a current nodeset is therefore available
-        bindingContext.nodeset
-      else {
-        // Case where of missing @ref attribute (it is optional in XForms 1.1 and defaults to the context item)
-        // 2016-10-05: XForms 2.0 specifies something different for a missing `ref` or `bind`. Check.
-        val contextItem = bindingContext.contextItem
-        if (contextItem eq null) ju.Collections.emptyList() else ju.Collections.singletonList(contextItem)
-      }
+    contextStack.pushBinding(staticBind, model.getEffectiveId, model.getResolutionScope)
+
+    val items = RuntimeBind.bindingItems(contextStack.getCurrentBindingContext)
 
     // We know we have binds since we are passed a `StaticBind`
     val binds = model.modelBindsOpt getOrElse (throw new IllegalStateException)
@@ -66,6 +85,24 @@ class RuntimeBind(
     val itemsAsScala = items.asScala
     val itemsSize    = itemsAsScala.size
 
+    val childrenBindsHaveSingleNodeContext = isSingleNodeContext && itemsSize == 1
+
+    // Existing `BindNode`s by underlying node, removed once reused in case a node appears more than once
+    // Iterations can't be reused if their children binds change from having a single-node context or not.
+    val reusableBindNodes = new ju.IdentityHashMap[AnyRef, BindNode]
+    if (childrenBindsHaveSingleNodeContext == _childrenBindsHaveSingleNodeContext)
+      for (bindNode ← existingBindNodes; underlyingNode ← RuntimeBind.underlyingNodeOpt(bindNode.item))
+        reusableBindNodes.put(underlyingNode, bindNode)
+
+    val keptBindNodes = m.ArrayBuffer[BindNode]()
+
+    def reuseBindNode(item: Item, position: Int): Option[BindNode] =
+      RuntimeBind.underlyingNodeOpt(item) flatMap (n ⇒ Option(reusableBindNodes.remove(n))) map { bindNode ⇒
+        bindNode.position = position
+        keptBindNodes += bindNode
+        bindNode
+      }
+
     val bindNodes: Seq[BindNode] =
       if (itemsAsScala.nonEmpty) {
         // Only then does it make sense to create BindNodes
@@ -74,35 +111,35 @@ class RuntimeBind(
           // There are children binds (and maybe MIPs)
           val result = new m.ArrayBuffer[BindNode](itemsSize)
 
-          val childrenBindsHaveSingleNodeContext = isSingleNodeContext && itemsSize == 1
-
           // Iterate over nodeset and produce child iterations
           var currentPosition = 1
           for (item ← itemsAsScala) {
-            contextStack.pushIteration(currentPosition)
-
-            // Create iteration and remember it
-            val currentBindIteration =
-              new BindIteration(
-                this,
-                currentPosition,
-                item,
-                childrenBindsHaveSingleNodeContext,
-                childrenStaticBinds
-              )
-
-            result += currentBindIteration
-
-            // Create mapping context item → iteration
-            // NOTE: There might already be a mapping.
-            // NOTE: Indexing nodes is probably not efficient with Dom4j, as nodes don't implement hashCode!
-            // 2017-10-19:We have our own DOM, can we improve on this?
-            if (! childrenBindsHaveSingleNodeContext) {
-              val existingIterations = binds.iterationsForContextItem.getOrElseUpdate(item, Nil)
-              binds.iterationsForContextItem += item → (currentBindIteration :: existingIterations)
+            result += reuseBindNode(item, currentPosition).getOrElse {
+
+              contextStack.pushIteration(currentPosition)
+
+              // Create iteration and remember it
+              val currentBindIteration =
+                new BindIteration(
+                  this,
+                  currentPosition,
+                  item,
+                  childrenBindsHaveSingleNodeContext,
+                  childrenStaticBinds
+                )
+
+              // Create mapping context item → iteration
+              // NOTE: There might already be a mapping.
+              // NOTE: Indexing nodes is probably not efficient with Dom4j, as nodes don't implement hashCode!
+              // 2017-10-19:We have our own DOM, can we improve on this?
+              if (! childrenBindsHaveSingleNodeContext) {
+                val existingIterations = binds.iterationsForContextItem.getOrElseUpdate(item, Nil)
+                binds.iterationsForContextItem += item → (currentBindIteration :: existingIterations)
+              }
+
+              contextStack.popBinding
+              currentBindIteration
             }
-
-            contextStack.popBinding
             currentPosition += 1
           }
           result
@@ -111,7 +148,7 @@ class RuntimeBind(
           val result = new m.ArrayBuffer[BindNode](itemsSize)
           var currentPosition = 1
           for (item ← itemsAsScala) {
-            result += new BindNode(this, currentPosition, item)
+            result += reuseBindNode(item, currentPosition).getOrElse(new BindNode(this, currentPosition, item))
             currentPosition += 1
           }
           result
@@ -122,7 +159,11 @@ class RuntimeBind(
 
     contextStack.popBinding
 
-    (items, bindNodes)
+    _items                              = items
+    _bindNodes                          = bindNodes
+    _childrenBindsHaveSingleNodeContext = childrenBindsHaveSingleNodeContext
+
+    keptBindNodes
   }
 
   def applyBinds(fn: BindNode ⇒ Unit): Unit =
@@ -141,4 +182,26 @@ class RuntimeBind(
   // The RuntimeBind might not have BindNodes, so create one when needed
   def getOrCreateBindNode(position: Int) =
     bindNodes.lift(position - 1) getOrElse new BindNode(this, position, items.get(position - 1))
-}
\ No newline at end of file
+}
+
+object RuntimeBind {
+
+  // @ref can be missing and defaults to the context item
+  def bindingItems(bindingContext: BindingContext): ju.List[Item] =
+    if (bindingContext.newBind)
+      // Case where a @ref attribute is present → a current nodeset is therefore available
+      bindingContext.nodeset
+    else {
+      // Case where of missing @ref attribute (it is optional in XForms 1.1 and defaults to the context item)
+      // 2016-10-05: XForms 2.0 specifies something different for a missing `ref` or `bind`. Check.
+      val contextItem = bindingContext.contextItem
+      if (contextItem eq null) ju.Collections.emptyList() else ju.Collections.singletonList(contextItem)
+    }
+
+  // Nodes are identified by their underlying node, as evaluating the same expression again can return new wrappers
+  def underlyingNodeOpt(item: Item): Option[AnyRef] =
+    item match {
+      case virtualNode: VirtualNode ⇒ Some(virtualNode.getUnderlyingNode)
+      case _                        ⇒ None
+    }
+}
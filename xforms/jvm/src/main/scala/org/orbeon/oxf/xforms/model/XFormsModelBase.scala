@@ -20,12 +20,13 @@ import org.orbeon.oxf.util.CoreUtils._
 import org.orbeon.oxf.util.Logging
 import org.orbeon.oxf.xforms._
 import org.orbeon.oxf.xforms.analysis.model.Model
+import org.orbeon.oxf.xforms.analytics.XFormsMetrics
 import org.orbeon.oxf.xforms.event.events.{XXFormsInvalidEvent, XXFormsValidEvent}
 import org.orbeon.oxf.xforms.event.{Dispatch, ListenersTrait, XFormsEvent}
 import org.orbeon.oxf.xforms.function.XFormsFunction
 import org.orbeon.oxf.xforms.xbl.XBLContainer
 import org.orbeon.saxon.expr.XPathContext
-import org.orbeon.saxon.om.{StructuredQName, ValueRepresentation}
+import org.orbeon.saxon.om.{NodeInfo, StructuredQName, ValueRepresentation}
 
 import scala.collection.JavaConverters._
 import scala.collection.{mutable ⇒ m}
@@ -61,14 +62,35 @@ abstract class XFormsModelBase(val container: XBLContainer, val effectiveId: Str
       null
 
   def markStructuralChange(instanceOpt: Option[XFormsInstance], defaultsStrategy: DefaultsStrategy): Unit = {
+    modelBindsOpt foreach (_.markFullRebuild())
+    markStructuralChangeImpl(instanceOpt, defaultsStrategy)
+  }
+
+  // Structural change limited to inserting nodes into, or deleting nodes from, the given parents, which allows the next
+  // rebuild to only update the affected parts of the bind tree
+  def markChildrenChanged(instance: XFormsInstance, defaultsStrategy: DefaultsStrategy, parents: Seq[NodeInfo]): Unit = {
+    modelBindsOpt foreach (_.markNodesChanged(parents))
+    markStructuralChangeImpl(Some(instance), defaultsStrategy)
+  }
+
+  def markNodesInserted(instance: XFormsInstance, defaultsStrategy: DefaultsStrategy, insertedNodes: ju.List[NodeInfo]): Unit =
+    markChildrenChanged(instance, defaultsStrategy, insertedNodes.asScala map (_.getParent))
+
+  private def markStructuralChangeImpl(instanceOpt: Option[XFormsInstance], defaultsStrategy: DefaultsStrategy): Unit = {
     deferredActionContext.markStructuralChange(defaultsStrategy, instanceOpt map (_.getId))
     // NOTE: PathMapXPathDependencies doesn't yet make use of the `instance` parameter.
     containingDocument.getXPathDependencies.markStructuralChange(selfModel, instanceOpt)
+    if (hasSchema)
+      _schemaValidator.markStructuralChange()
   }
 
   def doRebuild(): Unit = {
     if (deferredActionContext.rebuild) {
-      try {
+      try XFormsMetrics.Rebuild.time {
+        // The structure of instances may have changed without a call to `markStructuralChange()`
+        if (hasSchema)
+          _schemaValidator.markStructuralChange()
+
         resetAndEvaluateVariables()
         bindsIfInstance foreach { binds ⇒
           // NOTE: contextStack.resetBindingContext(this) called in evaluateVariables()
@@ -101,7 +123,9 @@ abstract class XFormsModelBase(val container: XBLContainer, val effectiveId: Str
       if (deferredActionContext.recalculateRevalidate) {
         try {
 
-          doRecalculate(deferredActionContext.defaultsStrategy, collector)
+          XFormsMetrics.Recalculate.time {
+            doRecalculate(deferredActionContext.defaultsStrategy, collector)
+          }
           containingDocument.getXPathDependencies.recalculateDone(selfModel)
 
           // Validate only if needed, including checking the flags, because if validation state is clean, validation
@@ -109,7 +133,7 @@ abstract class XFormsModelBase(val container: XBLContainer, val effectiveId: Str
           val mustRevalidate = bindsIfInstance.isDefined || hasSchema
 
           mustRevalidate option {
-            val invalidInstances = doRevalidate(collector)
+            val invalidInstances = XFormsMetrics.Revalidate.time(doRevalidate(collector))
             containingDocument.getXPathDependencies.revalidateDone(selfModel)
             invalidInstances
           }
@@ -219,17 +243,8 @@ abstract class XFormsModelBase(val container: XBLContainer, val effectiveId: Str
         val instances = getInstances.asScala
         val invalidInstancesIds = m.LinkedHashSet[String]()
 
-        // Clear schema validation state
-        // NOTE: This could possibly be moved to rebuild(), but we must be careful about the presence of a schema
-        for {
-          instance ← instances
-          instanceMightBeSchemaValidated = hasSchema && instance.isSchemaValidation
-          if instanceMightBeSchemaValidated
-        } locally {
-          DataModel.visitElement(instance.rootElement, InstanceData.clearSchemaState)
-        }
-
         // Validate using schemas if needed
+        // NOTE: The validator clears the schema validation state of the nodes it validates.
         if (hasSchema)
           for {
             instance ← instances
@@ -0,0 +1,124 @@
+/**
+  * Copyright (C) 2017 Orbeon, Inc.
+  *
+  * This program is free software; you can redistribute it and/or modify it under the terms of the
+  * GNU Lesser General Public License as published by the Free Software Foundation; either version
+  * 2.1 of the License, or (at your option) any later version.
+  *
+  * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+  * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+  * See the GNU Lesser General Public License for more details.
+  *
+  * The full text of the license is available at http://www.gnu.org/copyleft/lesser.html
+  */
+package org.orbeon.oxf.xforms.processor
+
+import java.io.ByteArrayOutputStream
+import java.util.zip.GZIPOutputStream
+
+import org.orbeon.oxf.cache.{InternalCacheKey, ObjectCache, Weighted}
+import org.orbeon.oxf.util.IOUtils._
+import org.orbeon.oxf.util.Logging._
+import org.orbeon.oxf.util.{IndentedLogger, SecureUtils, URLRewriterUtils}
+import org.orbeon.oxf.xforms.AssetPath
+
+// Combined CSS and JavaScript assets, generated once and kept in memory along with a gzipped variant
+//
+// The resources hash in the path of a combined asset identifies the assets it combines. When resources are versioned,
+// the content for a given path only changes with the version, so entries are reused without checking the assets on
+// disk. Otherwise, entries are generated again when the last modification date of an asset changes.
+object CombinedAssetCache {
+
+  import Private._
+
+  case class CombinedAsset(
+    bytes        : Array[Byte],
+    gzippedBytes : Array[Byte],
+    etag         : String,
+    gzippedETag  : String,
+    lastModified : Long
+  ) extends Weighted {
+    def getWeight: Long = bytes.length + gzippedBytes.length
+  }
+
+  def findOrGenerate(
+    assetPaths   : List[AssetPath],
+    requestPath  : String,
+    namespaceOpt : Option[String],
+    isCSS        : Boolean,
+    isMinimal    : Boolean)(implicit
+    logger       : IndentedLogger
+  ): CombinedAsset = {
+
+    val key = createCacheKey(requestPath, namespaceOpt)
+
+    val (validity, lastModifiedOpt) =
+      if (URLRewriterUtils.isResourcesVersioned) {
+        (ConstantValidity, None)
+      } else {
+        val lastModified = XFormsResourceRewriter.computeCombinedLastModified(assetPaths, isMinimal)
+        (lastModified, Some(lastModified))
+      }
+
+    Option(cache.findValid(key, validity).asInstanceOf[CombinedAsset]) match {
+      case Some(asset) ⇒
+        asset
+      case None ⇒
+        debug("generating combined asset", List("request path" → requestPath, "namespace" → namespaceOpt.orNull))
+
+        val lastModified = lastModifiedOpt getOrElse XFormsResourceRewriter.computeCombinedLastModified(assetPaths, isMinimal)
+        val asset        = generate(assetPaths, namespaceOpt, isCSS, isMinimal, lastModified)
+
+        cache.add(key, validity, asset)
+        asset
+    }
+  }
+
+  private object Private {
+
+    val CombinedAssetCacheName        = "xforms.cache.combined-assets"
+    val CombinedAssetCacheDefaultSize = 100
+    val ConstantValidity              = 0L
+    val CombinedAssetKeyType          = CombinedAssetCacheName
+
+    val cache = ObjectCache.instance(CombinedAssetCacheName, CombinedAssetCacheDefaultSize)
+
+    def createCacheKey(requestPath: String, namespaceOpt: Option[String]) =
+      new InternalCacheKey(CombinedAssetKeyType, requestPath + (namespaceOpt map ("?ns=" + _) getOrElse ""))
+
+    def generate(
+      assetPaths   : List[AssetPath],
+      namespaceOpt : Option[String],
+      isCSS        : Boolean,
+      isMinimal    : Boolean,
+      lastModified : Long)(implicit
+      logger       : IndentedLogger
+    ): CombinedAsset = {
+
+      val bytes = {
+        val os = new ByteArrayOutputStream
+        XFormsResourceRewriter.generateAndClose(assetPaths, namespaceOpt, os, isCSS, isMinimal)
+        os.toByteArray
+      }
+
+      val gzippedBytes = {
+        val os = new ByteArrayOutputStream
+        useAndClose(new GZIPOutputStream(os)) { gzipOS ⇒
+          gzipOS.write(bytes)
+        }
+        os.toByteArray
+      }
+
+      // Strong validators must differ between content codings
+      val digest = SecureUtils.digestBytes(bytes, "hex")
+
+      CombinedAsset(
+        bytes        = bytes,
+        gzippedBytes = gzippedBytes,
+        etag         = "\"" + digest + "\"",
+        gzippedETag  = "\"" + digest + "-gzip\"",
+        lastModified = lastModified
+      )
+    }
+  }
+}
@@ -20,7 +20,7 @@ import org.orbeon.oxf.util.{ContentHandlerWriter, NetUtils}
 import org.orbeon.oxf.xforms.XFormsConstants._
 import org.orbeon.oxf.xforms.XFormsUtils.namespaceId
 import org.orbeon.oxf.xforms.control._
-import org.orbeon.oxf.xforms.control.controls.{XFormsRepeatControl, XXFormsDynamicControl}
+import org.orbeon.oxf.xforms.control.controls.{XFormsRepeatControl, XFormsSelect1Control, XXFormsDynamicControl}
 import org.orbeon.oxf.xforms.processor.handlers._
 import org.orbeon.oxf.xforms.processor.handlers.xhtml.{XHTMLBodyHandler, XHTMLElementHandler, XHTMLHeadHandler, XXFormsAttributeHandler}
 import org.orbeon.oxf.xforms.{XFormsContainingDocument, XFormsProperties}
@@ -29,14 +29,25 @@ import org.orbeon.oxf.xml._
 import scala.collection.{immutable ⇒ i}
 import scala.util.control.Breaks
 
+// When `isIncremental` is set, subtrees of controls which have not changed since the last update response are
+// skipped. Otherwise all the controls are compared, which is required when the trees don't come from the same
+// sequence of updates.
 class ControlsComparator(
   document                       : XFormsContainingDocument,
   valueChangeControlIdsAndValues : i.Map[String, String],
-  isTestMode                     : Boolean
+  isTestMode                     : Boolean,
+  isIncremental                  : Boolean
 ) extends XMLReceiverSupport {
 
   private val FullUpdateThreshold = document.getAjaxFullUpdateThreshold
 
+  // The client value of these controls must be compared with the control value even if the control didn't change
+  if (isIncremental)
+    for {
+      effectiveId ← valueChangeControlIdsAndValues.keys
+      control     ← Option(document.getControlByEffectiveId(effectiveId))
+    } control.markChanged()
+
   private val breaks = new Breaks
   import breaks._
 
@@ -54,6 +65,7 @@ class ControlsComparator(
       for {
         (control1OrNull, control2) ← left.iterator.zipAll(right.iterator, null, null)
         control1Opt                = Option(control1OrNull)
+        if ! isIncremental || control2.changedOrDescendantChanged
       } locally {
 
         // 1: Diffs for current control
@@ -97,6 +109,8 @@ class ControlsComparator(
               } else
                 false
             case c @ ControlWithMark(mark) ⇒
+              val sharedItemsetsOutputOpt = XFormsSelect1Control.sharedItemsetsOutput.value
+              val sharedItemsetsBefore    = sharedItemsetsOutputOpt map (_.output)
               tryBreakable {
                 // Output to buffer
                 val buffer = new SAXStore
@@ -104,6 +118,9 @@ class ControlsComparator(
                 // Incremental updates did not trigger full updates, replay the output
                 buffer.replay(receiver)
               } catchBreak {
+                // Shared itemsets output to the discarded buffer must be output again by subsequent controls
+                for (output ← sharedItemsetsOutputOpt; before ← sharedItemsetsBefore)
+                  output.output = before
                 // Incremental updates did trigger full updates
                 processFullUpdateForContent(c, mark.replay)
               }
@@ -159,6 +176,11 @@ class ControlsComparator(
         val children2 = containerControl2.children
 
         control2 match {
+          case repeatControl: XFormsRepeatControl if repeatControl.isWindowed && windowChanged(control1Opt, repeatControl) ⇒
+            // Iterations can't be added or removed incrementally as the window doesn't start at the first iteration
+            // NOTE: Windowed repeats have a mark, so a full update buffer is always present.
+            assert(fullUpdateBuffer.isDefined, "missing full update buffer for windowed repeat")
+            break()
           case repeatControl: XFormsRepeatControl if children1.nonEmpty ⇒
             val size1 = children1.size
             val size2 = children2.size
@@ -201,6 +223,16 @@ class ControlsComparator(
     }
   }
 
+  private def windowChanged(control1Opt: Option[XFormsControl], repeatControl2: XFormsRepeatControl) =
+    control1Opt match {
+      case Some(repeatControl1: XFormsRepeatControl) ⇒
+        repeatControl1.getSize        != repeatControl2.getSize        ||
+        repeatControl1.getWindowStart != repeatControl2.getWindowStart ||
+        repeatControl1.children.size  != repeatControl2.children.size
+      case _ ⇒
+        true
+    }
+
   private def processFullUpdateForContent(
     control  : XFormsControl,
     replay   : XMLReceiver ⇒ Unit)(implicit
@@ -21,8 +21,10 @@ import org.orbeon.oxf.processor.ProcessorImpl
 import org.orbeon.oxf.processor.generator.RequestGenerator
 import org.orbeon.oxf.util.StringUtils._
 import org.orbeon.oxf.util._
+import org.orbeon.oxf.xforms.XFormsConstants.XXFORMS_NAMESPACE_URI
 import org.orbeon.oxf.xforms.XFormsProperties
 import org.orbeon.oxf.xforms.upload.UploaderServer
+import org.orbeon.oxf.xml.XMLReceiverSupport._
 import org.orbeon.oxf.xml.{EncodeDecode, XMLReceiver}
 import org.orbeon.scaxon.NodeConversions
 
@@ -70,16 +72,25 @@ class UploaderProcessor extends ProcessorImpl {
                 }</xxf:events>
 
               // Encode successful response
-              val response =
-                <xxf:event-response xmlns:xxf="http://orbeon.org/oxf/xml/xforms">
-                  <xxf:action>
-                    <xxf:server-events delay="0">{
-                      EncodeDecode.encodeXML(NodeConversions.elemToDom4j(serverEvents), XFormsProperties.isGZIPState, true, false)
-                    }</xxf:server-events>
-                  </xxf:action>
-                </xxf:event-response>
+              implicit val receiver = xmlReceiver
 
-              NodeConversions.elemToSAX(response, xmlReceiver)
+              withDocument {
+                xmlReceiver.startPrefixMapping("xxf", XXFORMS_NAMESPACE_URI)
+                withElement(localName = "event-response", prefix = "xxf", uri = XXFORMS_NAMESPACE_URI) {
+                  withElement(localName = "action", prefix = "xxf", uri = XXFORMS_NAMESPACE_URI) {
+                    withElement(localName = "server-events", prefix = "xxf", uri = XXFORMS_NAMESPACE_URI, atts = List("delay" → "0")) {
+                      EncodeDecode.encodeXML(
+                        NodeConversions.elemToDom4j(serverEvents),
+                        XFormsProperties.isGZIPState,
+                        true,
+                        false,
+                        new ContentHandlerWriter(xmlReceiver)
+                      )
+                    }
+                  }
+                }
+                xmlReceiver.endPrefixMapping("xxf")
+              }
 
             case (nameValues, someThrowable @ Some(t)) ⇒
               // NOTE: There is no point sending a response, see:
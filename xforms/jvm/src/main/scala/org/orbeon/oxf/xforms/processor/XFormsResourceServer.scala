@@ -27,7 +27,7 @@ import org.orbeon.oxf.processor.{ProcessorImpl, ResourceServer}
 import org.orbeon.oxf.util.IOUtils._
 import org.orbeon.oxf.util.PathUtils._
 import org.orbeon.oxf.util._
-import org.orbeon.oxf.xforms.{AssetPath, Caches, Loggers, XFormsProperties}
+import org.orbeon.oxf.xforms.{AssetPath, Caches, Loggers}
 
 import scala.util.Try
 import scala.util.control.NonFatal
@@ -163,61 +163,59 @@ class XFormsResourceServer extends ProcessorImpl with Logging {
 
     val isMinimal = false
 
-    // Get last modified date
-    val combinedLastModified = XFormsResourceRewriter.computeCombinedLastModified(resources, isMinimal)
+    // Namespace to use, must be None if empty
+    def namespaceOpt = {
+      def nsFromParameters = Option(externalContext.getRequest.getParameterMap.get(NamespaceParameter)) map (_(0).asInstanceOf[String])
+      def nsFromContainer  = Some(response.getNamespacePrefix)
+
+      nsFromParameters orElse nsFromContainer filter (_.nonEmpty)
+    }
+
+    // Generated at most once per path and namespace, and served from memory afterwards
+    val asset = CombinedAssetCache.findOrGenerate(resources, requestPath, namespaceOpt, isCSS, isMinimal)
+
+    val request = externalContext.getRequest
+    val gzip    = acceptsGzip(request.getFirstHeader("accept-encoding"))
+    val etag    = if (gzip) asset.gzippedETag else asset.etag
 
     // Set Last-Modified, required for caching and conditional get
-    if (URLRewriterUtils.isResourcesVersioned)
-      // Use expiration far in the future
-      response.setResourceCaching(combinedLastModified, System.currentTimeMillis + ResourceServer.ONE_YEAR_IN_MILLISECONDS)
-    else
+    if (URLRewriterUtils.isResourcesVersioned) {
+      // Use expiration far in the future, and tell clients not to revalidate as the path changes with the content
+      response.setResourceCaching(asset.lastModified, System.currentTimeMillis + ResourceServer.ONE_YEAR_IN_MILLISECONDS)
+      response.setHeader("Cache-Control", s"public, max-age=${ResourceServer.ONE_YEAR_IN_MILLISECONDS / 1000}, immutable")
+    } else
       // Use standard expiration policy
-      response.setResourceCaching(combinedLastModified, 0)
+      response.setResourceCaching(asset.lastModified, 0)
+
+    response.setHeader("ETag", etag)
+    response.setHeader("Vary", "Accept-Encoding")
+
+    // Check If-None-Match and If-Modified-Since and don't return content if condition is met
+    val notModified =
+      request.getFirstHeader("if-none-match") match {
+        case Some(ifNoneMatch) ⇒ etagMatches(ifNoneMatch, etag)
+        case None              ⇒ ! response.checkIfModifiedSince(request, asset.lastModified)
+      }
 
-    // Check If-Modified-Since and don't return content if condition is met
-    if (! response.checkIfModifiedSince(externalContext.getRequest, combinedLastModified)) {
+    if (notModified) {
       response.setStatus(StatusCode.NotModified)
       return
     }
 
     response.setContentType(if (isCSS) "text/css; charset=UTF-8" else "application/x-javascript")
 
-    // Namespace to use, must be None if empty
-    def namespaceOpt = {
-      def nsFromParameters = Option(externalContext.getRequest.getParameterMap.get(NamespaceParameter)) map (_(0).asInstanceOf[String])
-      def nsFromContainer  = Some(response.getNamespacePrefix)
+    val bytes =
+      if (gzip) {
+        response.setHeader("Content-Encoding", "gzip")
+        asset.gzippedBytes
+      } else
+        asset.bytes
 
-      nsFromParameters orElse nsFromContainer filter (_.nonEmpty)
-    }
+    debug("serving combined asset", Seq("request path" → requestPath, "gzip" → gzip.toString))
 
-    def debugParameters = Seq("request path" → requestPath)
-
-    if (XFormsProperties.isCacheCombinedResources) {
-
-      // Caching requested
-      XFormsResourceRewriter.cacheAssets(
-        resources,
-        requestPath,
-        namespaceOpt,
-        combinedLastModified,
-        isCSS,
-        isMinimal
-      ) match {
-        case Some(resourceFile) ⇒
-          // Caching could take place, send out cached result
-          debug("serving from cache ", debugParameters)
-          useAndClose(response.getOutputStream) { os ⇒
-            copyStream(new FileInputStream(resourceFile), os)
-          }
-        case None ⇒
-          // Was unable to cache, just serve
-          debug("caching requested but not possible, serving directly", debugParameters)
-          XFormsResourceRewriter.generateAndClose(resources, namespaceOpt, response.getOutputStream, isCSS, isMinimal)
-      }
-    } else {
-      // Should not cache, just serve
-      debug("caching not requested, serving directly", debugParameters)
-      XFormsResourceRewriter.generateAndClose(resources, namespaceOpt, response.getOutputStream, isCSS, isMinimal)
+    response.setContentLength(bytes.length)
+    useAndClose(response.getOutputStream) { os ⇒
+      os.write(bytes)
     }
   }
 }
@@ -380,6 +378,36 @@ object XFormsResourceServer {
     }
   }
 
+  // Whether the client accepts gzip, ignoring codings refused with `q=0`
+  // As per RFC 7231, `*` only applies if gzip isn't listed explicitly, so `gzip;q=0, *` refuses gzip.
+  def acceptsGzip(acceptEncodingOpt: Option[String]): Boolean =
+    acceptEncodingOpt exists { acceptEncoding ⇒
+
+      val codings =
+        acceptEncoding split ',' map { coding ⇒
+          val parts = coding split ';' map (_.trim)
+          val name  = parts(0).toLowerCase
+          val q     = parts.tail collectFirst { case p if p.startsWith("q=") ⇒ Try(p.substring(2).toDouble) getOrElse 0.0 }
+
+          name → (q forall (_ > 0.0))
+        }
+
+      def accepts(names: Set[String]) = codings collect { case (name, accepted) if names(name) ⇒ accepted }
+
+      val gzipCodings = accepts(Set("gzip", "x-gzip"))
+
+      if (gzipCodings.nonEmpty)
+        gzipCodings exists identity
+      else
+        accepts(Set("*")) exists identity
+    }
+
+  // Whether an `If-None-Match` header matches the given strong entity tag
+  def etagMatches(ifNoneMatch: String, etag: String): Boolean =
+    ifNoneMatch split ',' map (_.trim) exists { tag ⇒
+      tag == "*" || tag == etag || tag == "W/" + etag
+    }
+
   private def filename(requestPath: String) =
     requestPath.substring(requestPath.lastIndexOf('/') + 1)
 }
\ No newline at end of file
@@ -30,13 +30,14 @@ import org.orbeon.oxf.servlet.OrbeonXFormsFilter
 import org.orbeon.oxf.util.CoreUtils._
 import org.orbeon.oxf.util.Logging._
 import org.orbeon.oxf.util.StringUtils._
-import org.orbeon.oxf.util.{ContentTypes, IndentedLogger, LoggerFactory, NetUtils}
+import org.orbeon.oxf.util.{ContentHandlerWriter, ContentTypes, IndentedLogger, LoggerFactory, NetUtils}
 import org.orbeon.oxf.xforms.XFormsConstants.XXFORMS_NAMESPACE_URI
 import org.orbeon.oxf.xforms.XFormsContainingDocumentSupport._
 import org.orbeon.oxf.xforms._
 import org.orbeon.oxf.xforms.action.XFormsAPI
+import org.orbeon.oxf.xforms.analytics.XFormsMetrics
 import org.orbeon.oxf.xforms.control.XFormsControl
-import org.orbeon.oxf.xforms.control.controls.{XFormsRepeatControl, XFormsUploadControl}
+import org.orbeon.oxf.xforms.control.controls.{XFormsRepeatControl, XFormsSelect1Control, XFormsUploadControl}
 import org.orbeon.oxf.xforms.event.{ClientEvents, XFormsEvents}
 import org.orbeon.oxf.xforms.state.{RequestParameters, XFormsStateManager}
 import org.orbeon.oxf.xforms.submission.{SubmissionResult, XFormsModelSubmission}
@@ -83,7 +84,7 @@ object XFormsServer {
 
         // Compute server events
         var requireClientSubmission = false
-        var submissionServerEventsOpt: Option[String] = None
+        var submissionServerEventsOpt: Option[Document] = None
 
         locally {
           val activeSubmissionOpt = Option(containingDocument.getClientActiveSubmissionFirstPass)
@@ -117,19 +118,19 @@ object XFormsServer {
 
             // Encode events so that the client cannot send back arbitrary events
             if (requireClientSubmission)
-              submissionServerEventsOpt = Some(XFormsUtils.encodeXML(eventsDocument, false))
+              submissionServerEventsOpt = Some(eventsDocument)
           }
         }
 
         // Output dynamic state
-        XFormsStateManager.getClientEncodedDynamicState(containingDocument) foreach { dynamicState ⇒
-          element(
+        if (containingDocument.getStaticState.isClientStateHandling)
+          withElement(
             localName = "dynamic-state",
             prefix    = "xxf",
-            uri       = XFormsConstants.XXFORMS_NAMESPACE_URI,
-            text      = dynamicState
-          )
-        }
+            uri       = XFormsConstants.XXFORMS_NAMESPACE_URI
+          ) {
+            XFormsStateManager.writeClientEncodedDynamicState(containingDocument, new ContentHandlerWriter(xmlReceiver))
+          }
 
         // Output action
         locally {
@@ -172,7 +173,8 @@ object XFormsServer {
                     state1                         = initialControlTree.children,
                     state2                         = currentControlTree.children,
                     valueChangeControlIdsAndValues = Map.empty,
-                    isTestMode                     = testOutputAllActions
+                    isTestMode                     = testOutputAllActions,
+                    isIncremental                  = false
                   )
                 case None if testOutputAllActions || containingDocument.isDirtySinceLastRequest ⇒
                   val currentControlTree = controls.getCurrentControlTree
@@ -181,7 +183,10 @@ object XFormsServer {
                     state1                         = controls.getInitialControlTree.children,
                     state2                         = currentControlTree.children,
                     valueChangeControlIdsAndValues = eventFindings.valueChangeControlIdsAndValues,
-                    isTestMode                     = testOutputAllActions
+                    isTestMode                     = testOutputAllActions,
+                    isIncremental                  =
+                      containingDocument.isAjaxUpdateIncremental && ! testOutputAllActions &&
+                      containingDocument.getControlsStructuralChanges.isEmpty
                   )
                 case _ ⇒ // NOP
               }
@@ -222,12 +227,13 @@ object XFormsServer {
 
             // Output server events
             submissionServerEventsOpt foreach { submissionServerEvents ⇒
-              element(
+              withElement(
                 localName = "server-events",
                 prefix    = "xxf",
-                uri       = XFormsConstants.XXFORMS_NAMESPACE_URI,
-                text      = submissionServerEvents
-              )
+                uri       = XFormsConstants.XXFORMS_NAMESPACE_URI
+              ) {
+                XFormsUtils.encodeXML(submissionServerEvents, false, new ContentHandlerWriter(xmlReceiver))
+              }
             }
 
             val delayedEvents = containingDocument.delayedEvents
@@ -376,24 +382,31 @@ object XFormsServer {
       state1                         : Seq[XFormsControl],
       state2                         : Seq[XFormsControl],
       valueChangeControlIdsAndValues : Map[String, String],
-      isTestMode                     : Boolean)(implicit
+      isTestMode                     : Boolean,
+      isIncremental                  : Boolean)(implicit
       xmlReceiver                    : XMLReceiver,
       indentedLogger                 : IndentedLogger
     ): Unit =
       withDebug("computing differences") {
-        XFormsAPI.withContainingDocument(containingDocument) { // scope because dynamic properties can cause lazy XPath evaluations
-
-          val comparator = new ControlsComparator(
-            containingDocument,
-            valueChangeControlIdsAndValues,
-            isTestMode
-          )
+        XFormsMetrics.ControlsDiff.time {
+          XFormsAPI.withContainingDocument(containingDocument) { // scope because dynamic properties can cause lazy XPath evaluations
+
+            val comparator = new ControlsComparator(
+              containingDocument,
+              valueChangeControlIdsAndValues,
+              isTestMode,
+              isIncremental
+            )
 
-          comparator.diffChildren(
-            left             = if (isTestMode) Nil else state1, // in test mode, ignore first tree
-            right            = state2,
-            fullUpdateBuffer = None
-          )
+            // Controls which share an itemset across repeat iterations only output it once
+            XFormsSelect1Control.withSharedItemsetsOutput {
+              comparator.diffChildren(
+                left             = if (isTestMode) Nil else state1, // in test mode, ignore first tree
+                right            = state2,
+                fullUpdateBuffer = None
+              )
+            }
+          }
         }
       }
 
@@ -598,6 +611,8 @@ class XFormsServer extends ProcessorImpl {
 
   private def doIt(pipelineContext: PipelineContext, xmlReceiverOpt: Option[XMLReceiver]): Unit = {
 
+    val requestStartTime = System.nanoTime
+
     // Use request input provided by client
     val requestDocument = readInputAsOrbeonDom(pipelineContext, XFormsServer.InputRequest)
     val externalContext = NetUtils.getExternalContext
@@ -721,8 +736,9 @@ class XFormsServer extends ProcessorImpl {
 
                       // Dispatch the events
                       val result =
-                        hasEvents option
+                        hasEvents option XFormsMetrics.EventDispatch.time {
                           ClientEvents.processEvents(containingDocument, remainingClientEvents, serverEventsElements)
+                        }
 
                       // End external events
                       containingDocument.afterExternalEvents()
@@ -752,7 +768,7 @@ class XFormsServer extends ProcessorImpl {
                             withDebug("handling regular Ajax response") {
                               // Hook-up debug content handler if we must log the response document
                               // Buffer for retries
-                              val responseStore = new SAXStore
+                              val responseStore = new SAXStore(false) // location data is not needed to replay the response
                               // Two receivers possible
                               val receivers = new ju.ArrayList[XMLReceiver]
                               receivers.add(responseStore)
@@ -857,6 +873,10 @@ class XFormsServer extends ProcessorImpl {
           Success(None)
       }
 
+    // Heartbeats and upload progress returned above are not counted
+    if (isAjaxRequest)
+      XFormsMetrics.AjaxRequest.record(System.nanoTime - requestStartTime)
+
     // Throw the exception if there was any
     lockResult match {
       case Success(Some(replaceAllCallable)) ⇒
@@ -59,6 +59,7 @@ class XFormsRepeatHandler(
 
     val repeatControl = if (xformsHandlerContext.isTemplate) null else containingDocument.getObjectByEffectiveId(getEffectiveId).asInstanceOf[XFormsRepeatControl]
     val isConcreteControl = repeatControl != null
+    val staticRepeat = elementAnalysis.asInstanceOf[RepeatControl]
 
     val xhtmlPrefix = xformsHandlerContext.findXHTMLPrefix
     val spanQName = XMLUtils.buildQName(xhtmlPrefix, "span")
@@ -80,18 +81,23 @@ class XFormsRepeatHandler(
             def generateFirstDelimiter(outputInterceptor: OutputInterceptor): Unit = {
               if (isMustGenerateBeginEndDelimiters) {
 
-                def firstDelimiterClasses = "xforms-repeat-begin-end" + (if (userClasses.nonEmpty) " " + userClasses else "")
+                def firstDelimiterClasses =
+                  "xforms-repeat-begin-end" +
+                  (if (staticRepeat.isWindowed) " xforms-repeat-window" else "") +
+                  (if (userClasses.nonEmpty) " " + userClasses else "")
 
                 // Delimiter: begin repeat
                 outputDelimiter(firstDelimiterClasses, "repeat-begin-" + namespacedId)
-
-                // Delimiter: before repeat entries, unless disabled (disabled in case the repeat is completely empty)
-                if (mustOutputFirstDelimiter)
-                  outputDelimiter("xforms-repeat-delimiter", null)
               }
+
+              // Delimiter: before repeat entries, unless disabled (disabled in case the repeat is completely empty)
+              // NOTE: Also output with a full update of the repeat, as the client counts delimiters from the begin
+              // delimiter.
+              if (mustOutputFirstDelimiter)
+                outputDelimiter("xforms-repeat-delimiter", null)
             }
           },
-          elementAnalysis.asInstanceOf[RepeatControl].isAroundTableOrListElement
+          staticRepeat.isAroundTableOrListElement
         )
 
     // Shortcut function to output the delimiter
@@ -151,28 +157,39 @@ class XFormsRepeatHandler(
       val selectedClass = "xforms-repeat-selected-item-" + ((xformsHandlerContext.countParentRepeats % 4) + 1)
       val staticReadonly = XFormsBaseHandler.isStaticReadonly(repeatControl)
 
+      // With a windowed repeat, iterations outside the window are output as delimiters only, so that the client
+      // can still find iterations by position. If the first iteration is not built, replay the body to /dev/null in
+      // order to find and output the begin and first delimiters, as in step 3 below.
+      if (isMustGenerateDelimiters && repeatControl.getSize > 0 && repeatControl.iterationAt(1).isEmpty) {
+        outputInterceptor.setForward(false)
+        repeatBody(0, generateTemplate = true, repeatSelected = false)(new jl.StringBuilder)
+        outputInterceptor.setForward(true)
+      }
+
       implicit val addedClasses = new jl.StringBuilder(200)
       for (i ← 1 to repeatControl.getSize) {
         // Delimiter: before repeat entries, except the first one which is output by generateFirstDelimiter()
         if (isMustGenerateDelimiters && i > 1)
           outputDelimiter("xforms-repeat-delimiter", null)
 
-        // Determine classes to add on root elements and around root characters
-        addedClasses.setLength(0)
+        repeatControl.iterationAt(i) foreach { iteration ⇒
+
+          // Determine classes to add on root elements and around root characters
+          addedClasses.setLength(0)
 
-        // Selected iteration
-        val selected = isRepeatSelected && i == repeatIndex && ! staticReadonly
-        if (selected)
-          addedClasses append selectedClass
+          // Selected iteration
+          val selected = isRepeatSelected && i == repeatIndex && ! staticReadonly
+          if (selected)
+            addedClasses append selectedClass
 
-        // MIP classes
-        // Q: Could use handleMIPClasses()?
-        val relevant = repeatControl.children(i - 1).isRelevant
-        if (! relevant)
-          appendClasses("xforms-disabled")
+          // MIP classes
+          // Q: Could use handleMIPClasses()?
+          if (! iteration.isRelevant)
+            appendClasses("xforms-disabled")
 
-        // Apply the content of the body for this iteration
-        repeatBody(i, generateTemplate = false, repeatSelected = selected)
+          // Apply the content of the body for this iteration
+          repeatBody(i, generateTemplate = false, repeatSelected = selected)
+        }
       }
     }
 
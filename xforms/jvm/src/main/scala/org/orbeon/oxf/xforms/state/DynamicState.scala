@@ -13,6 +13,8 @@
  */
 package org.orbeon.oxf.xforms.state
 
+import java.io.Writer
+
 import collection.JavaConverters._
 import sbinary.Operations._
 import XFormsOperations._
@@ -77,6 +79,15 @@ case class DynamicState(
       isForceEncryption
     )
 
+  // Encode the string representation to a writer
+  def encode(compress: Boolean, isForceEncryption: Boolean, writer: Writer): Unit =
+    EncodeDecode.encodeBytes(
+      toByteArray(this),
+      compress,
+      isForceEncryption,
+      writer
+    )
+
   // Encode to an XML representation (as of 2012-02-05, used only by unit tests)
   def toXML = {
 
@@ -295,6 +306,9 @@ object DynamicState {
   def encodeDocumentToString(document: XFormsContainingDocument, compress: Boolean, isForceEncryption: Boolean): String =
     DynamicState(document).encodeToString(compress, isForceEncryption || document.isClientStateHandling)
 
+  def encodeDocument(document: XFormsContainingDocument, compress: Boolean, isForceEncryption: Boolean, writer: Writer): Unit =
+    DynamicState(document).encode(compress, isForceEncryption || document.isClientStateHandling, writer)
+
   // For unit tests only
   def decodeDynamicStateString(dynamicState: String): Document =
     DynamicState(dynamicState).toXML
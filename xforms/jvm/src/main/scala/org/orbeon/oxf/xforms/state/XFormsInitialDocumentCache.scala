@@ -0,0 +1,172 @@
+/**
+ * Copyright (C) 2017 Orbeon, Inc.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU Lesser General Public License as published by the Free Software Foundation; either version
+ * 2.1 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The full text of the license is available at http://www.gnu.org/copyleft/lesser.html
+ */
+package org.orbeon.oxf.xforms.state
+
+import java.lang.reflect.Method
+
+import org.orbeon.oxf.cache._
+import org.orbeon.oxf.externalcontext.ExternalContext
+import org.orbeon.oxf.util.Logging._
+import org.orbeon.oxf.util.XPath
+import org.orbeon.oxf.xforms.XFormsProperties.INITIAL_DOCUMENT_CACHE_PROPERTY
+import org.orbeon.oxf.xforms.action.XFormsAPI
+import org.orbeon.oxf.xforms.function._
+import org.orbeon.oxf.xforms.function.exforms.EXFormsMIP
+import org.orbeon.oxf.xforms.function.xxforms._
+import org.orbeon.oxf.xforms.processor.XFormsURIResolver
+import org.orbeon.oxf.xforms.{XFormsContainingDocument, XFormsStaticState}
+import org.orbeon.saxon.expr.FunctionCall
+import org.orbeon.saxon.function._
+import org.orbeon.saxon.functions.ExtensionFunctionCall
+import org.orbeon.saxon.{ArrayAppend, ArrayGet, ArrayJoin, ArrayPut, ArraySize, MapEntry, MapGet, MapMerge}
+
+// Cache of the dynamic state of documents just after initialization, by static state digest
+//
+// Initializing a document runs model construction, instance loading, the initial recalculate and revalidate, events
+// handlers, and control tree creation. When none of this depends on the request, the result is the same for each new
+// document created from the same static state, and it is cheaper to restore it than to compute it again.
+//
+// Initialization is considered to depend on the request as soon as it calls a function which doesn't declare itself
+// as depending on the runtime environment, but which might still read the request, for example the language, the
+// credentials, the roles, or headers. Only the functions listed in `Private` are known not to.
+object XFormsInitialDocumentCache {
+
+  import Private._
+
+  def newRuntimeDependencyTracker: XPath.RuntimeDependencyTracker =
+    new XPath.RuntimeDependencyTracker(isPureFunction)
+
+  // Create and initialize a new document, from the initial state of an earlier document if possible
+  def createDocument(
+    staticState : XFormsStaticState,
+    uriResolver : XFormsURIResolver,
+    response    : ExternalContext.Response
+  ): XFormsContainingDocument =
+    if (! staticState.staticBooleanProperty(INITIAL_DOCUMENT_CACHE_PROPERTY))
+      new XFormsContainingDocument(staticState, uriResolver, response, true)
+    else
+      findDynamicState(staticState.digest) match {
+        case Some(initialDynamicState) ⇒
+          new XFormsContainingDocument(staticState, initialDynamicState, uriResolver, response)
+        case None ⇒
+          val document = new XFormsContainingDocument(staticState, uriResolver, response, true)
+
+          implicit val logger = document.getIndentedLogger("state")
+
+          if (document.isInitialStateReusable) {
+            debug("storing initial document state", List("digest" → staticState.digest))
+            // Scope the document as dynamic properties can cause lazy XPath evaluations
+            val dynamicState = XFormsAPI.withContainingDocument(document)(DynamicState(document))
+            cache.add(createCacheKey(staticState.digest), ConstantValidity, dynamicState)
+          } else
+            debug("not storing initial document state as initialization may depend on the request", List("digest" → staticState.digest))
+
+          document
+      }
+
+  def findDynamicState(digest: String): Option[DynamicState] =
+    Option(cache.findValid(createCacheKey(digest), ConstantValidity).asInstanceOf[DynamicState])
+
+  private object Private {
+
+    def createCacheKey(digest: String) =
+      new InternalCacheKey(InitialDocumentKeyType, digest ensuring (_ ne null))
+
+    val XFormsInitialDocumentCache            = "xforms.cache.initial-document"
+    val XFormsInitialDocumentCacheDefaultSize = 50
+    val ConstantValidity                      = 0L
+    val InitialDocumentKeyType                = XFormsInitialDocumentCache
+
+    val cache = ObjectCache.instance(XFormsInitialDocumentCache, XFormsInitialDocumentCacheDefaultSize)
+
+    // Functions which only depend on their arguments and on the document
+    val PureFunctionClasses: Set[Class[_]] = Set(
+      // XForms
+      classOf[Aggregate],
+      classOf[Bind],
+      classOf[BooleanFromString],
+      classOf[Choose],
+      classOf[Context],
+      classOf[CountNonEmpty],
+      classOf[Current],
+      classOf[DaysFromDate],
+      classOf[DaysToDate],
+      classOf[If],
+      classOf[Index],
+      classOf[Instance],
+      classOf[IsCardNumber],
+      classOf[Last],
+      classOf[Months],
+      classOf[Power],
+      classOf[Seconds],
+      classOf[SecondsToDateTime],
+      classOf[XFormsAttribute],
+      classOf[XFormsElement],
+      classOf[XFormsValid],
+      // Extensions
+      classOf[EXFormsMIP],
+      classOf[XXFormsBinding],
+      classOf[XXFormsBindingContext],
+      classOf[XXFormsCustomMIP],
+      classOf[XXFormsInstance],
+      classOf[XXFormsRepeatCurrent],
+      classOf[XXFormsRepeatPosition],
+      classOf[XXFormsType],
+      classOf[XXFormsValid],
+      classOf[XXFormsValue],
+      classOf[MaxFractionDigitsValidation],
+      classOf[MaxLengthValidation],
+      classOf[MinLengthValidation],
+      classOf[NegativeValidation],
+      classOf[NonNegativeValidation],
+      classOf[NonPositiveValidation],
+      classOf[PositiveValidation],
+      // Independent
+      classOf[Classes],
+      classOf[Exists],
+      classOf[Forall],
+      classOf[HasClass],
+      classOf[IsBlank],
+      classOf[NonBlank],
+      classOf[Split],
+      classOf[Trim],
+      classOf[ArrayAppend],
+      classOf[ArrayGet],
+      classOf[ArrayJoin],
+      classOf[ArrayPut],
+      classOf[ArraySize],
+      classOf[MapEntry],
+      classOf[MapGet],
+      classOf[MapMerge]
+    )
+
+    // Java/Scala extension functions which only depend on their arguments, by class and method name
+    val PureExtensionMethods: Set[(String, String)] = Set(
+      "org.orbeon.oxf.xml.SaxonUtils"  → "makeNCName",
+      "org.orbeon.oxf.fr.FormRunner"   → "controlNameFromId",
+      "org.orbeon.oxf.fr.FormRunner"   → "controlNameFromIdOpt",
+      "org.orbeon.oxf.fr.FormRunner"   → "isRepeat"
+    )
+
+    def isPureFunction(call: FunctionCall): Boolean = call match {
+      case call: ExtensionFunctionCall ⇒
+        call.getTargetMethod match {
+          case method: Method ⇒ PureExtensionMethods(call.getTargetClass.getName → method.getName)
+          case _              ⇒ false
+        }
+      case call ⇒
+        PureFunctionClasses(call.getClass)
+    }
+  }
+}
@@ -13,6 +13,7 @@
   */
 package org.orbeon.oxf.xforms.state
 
+import java.io.Writer
 import java.util.concurrent.locks.{Lock, ReentrantLock}
 import java.util.concurrent.{ConcurrentLinkedQueue, TimeUnit}
 
@@ -25,6 +26,7 @@ import org.orbeon.oxf.util.CoreUtils._
 import org.orbeon.oxf.util.NetUtils
 import org.orbeon.oxf.util.StringUtils._
 import org.orbeon.oxf.xforms.action.XFormsAPI
+import org.orbeon.oxf.xforms.analytics.XFormsMetrics
 import org.orbeon.oxf.xforms.event.events.XXFormsStateRestoredEvent
 import org.orbeon.oxf.xforms.event.{Dispatch, XFormsEvent}
 import org.orbeon.oxf.xforms.{Loggers, XFormsConstants, XFormsContainingDocument, XFormsProperties}
@@ -251,6 +253,13 @@ object XFormsStateManager extends XFormsStateLifecycle {
     containingDocument.getStaticState.isClientStateHandling option
       DynamicState.encodeDocumentToString(containingDocument, XFormsProperties.isGZIPState, isForceEncryption = true)
 
+  // Write the dynamic state to send to the client in an Ajax response, without building it as a string first.
+  // Only call with client state handling.
+  def writeClientEncodedDynamicState(containingDocument: XFormsContainingDocument, writer: Writer): Unit = {
+    require(containingDocument.getStaticState.isClientStateHandling)
+    DynamicState.encodeDocument(containingDocument, XFormsProperties.isGZIPState, isForceEncryption = true, writer)
+  }
+
   // Update the document's change sequence.
   def beforeUpdateResponse(containingDocument: XFormsContainingDocument, ignoreSequence: Boolean): Unit = {
     if (containingDocument.isDirtySinceLastRequest) {
@@ -341,7 +350,7 @@ object XFormsStateManager extends XFormsStateLifecycle {
       parameters     : RequestParameters,
       isInitialState : Boolean,
       disableUpdates : Boolean
-    ): XFormsContainingDocument = {
+    ): XFormsContainingDocument = XFormsMetrics.StateRestore.time {
 
       val isServerState = parameters.encodedClientStaticStateOpt.isEmpty
 
@@ -403,11 +412,13 @@ object XFormsStateManager extends XFormsStateLifecycle {
 
     def storeDocumentState(containingDocument: XFormsContainingDocument, isInitialState: Boolean): Unit = {
       require(containingDocument.getStaticState.isServerStateHandling)
-      EhcacheStateStore.storeDocumentState(
-        containingDocument,
-        NetUtils.getExternalContext.getRequest.getSession(ForceSessionCreation),
-        isInitialState
-      )
+      XFormsMetrics.StateStore.time {
+        EhcacheStateStore.storeDocumentState(
+          containingDocument,
+          NetUtils.getExternalContext.getRequest.getSession(ForceSessionCreation),
+          isInitialState
+        )
+      }
     }
   }
 }
\ No newline at end of file
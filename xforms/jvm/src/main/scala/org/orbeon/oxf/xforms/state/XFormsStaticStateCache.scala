@@ -14,6 +14,7 @@
 package org.orbeon.oxf.xforms.state
 
 import org.orbeon.oxf.cache._
+import org.orbeon.oxf.util.DynamicVariable
 import org.orbeon.oxf.xforms.XFormsStaticState
 
 object XFormsStaticStateCache {
@@ -25,13 +26,28 @@ object XFormsStaticStateCache {
     def staticStateStatus(found: Boolean, digest: String)
   }
 
-  def storeDocument(staticState: XFormsStaticState): Unit =
+  def storeDocument(staticState: XFormsStaticState): Unit = {
+    cacheDocument(staticState)
+    XFormsStaticStateStore.storeDocument(staticState)
+  }
+
+  // Add to the in-memory cache only, for static states restored from the persistent store
+  def cacheDocument(staticState: XFormsStaticState): Unit =
     cache.add(createCacheKey(staticState.digest), ConstantValidity, staticState)
 
+  // Within `body`, XForms pages only create and cache their static state, without creating and initializing an
+  // XForms document, so that no actions run and the document and state caches are left alone. This is used to warm up
+  // the cache with internal requests, which run on the current thread.
+  def withStaticStateOnly[T](body: ⇒ T): T =
+    staticStateOnlyVariable.withValue(true)(body)
+
+  def isStaticStateOnly: Boolean =
+    staticStateOnlyVariable.value contains true
+
   def getDocumentJava(digest: String) =
     findDocument(digest).orNull
 
-  def findDocument(digest: String) =
+  def findDocument(digest: String): Option[XFormsStaticState] =
     Option(cache.findValid(createCacheKey(digest), ConstantValidity).asInstanceOf[XFormsStaticState])
 
   private object Private {
@@ -45,5 +61,7 @@ object XFormsStaticStateCache {
     val ContainingDocumentKeyType      = XFormsDocumentCache
 
     val cache = ObjectCache.instance(XFormsDocumentCache, XFormsDocumentCacheDefaultSize)
+
+    val staticStateOnlyVariable = new DynamicVariable[Boolean](isInheritable = false)
   }
 }
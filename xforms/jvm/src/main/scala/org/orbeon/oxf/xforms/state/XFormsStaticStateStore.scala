@@ -0,0 +1,228 @@
+/**
+ * Copyright (C) 2017 Orbeon, Inc.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU Lesser General Public License as published by the Free Software Foundation; either version
+ * 2.1 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The full text of the license is available at http://www.gnu.org/copyleft/lesser.html
+ */
+package org.orbeon.oxf.xforms.state
+
+import java.io._
+import java.util.concurrent._
+
+import org.orbeon.oxf.pipeline.InitUtils
+import org.orbeon.oxf.properties.Properties
+import org.orbeon.oxf.util.IOUtils._
+import org.orbeon.oxf.util.Logging._
+import org.orbeon.oxf.xforms.{Loggers, XFormsStaticState, XFormsStaticStateImpl}
+
+import scala.collection.JavaConverters._
+import scala.util.control.NonFatal
+
+// Optional persistent store of static states, by static state digest
+//
+// The in-memory static state cache is empty after a restart. With a configured directory, static states are also
+// written to disk, and the most recently stored ones are restored in the background at startup. Restoring decodes and
+// analyzes the static state again, which costs about as much as creating it from the page, so requests never read from
+// the store. The binding includes are stored along with the encoded state, so that an entry which is out of date with
+// respect to XBL components is ignored.
+//
+// Entries are written on a background thread, and the oldest entries are removed when there are more than the
+// configured maximum.
+object XFormsStaticStateStore {
+
+  import Private._
+
+  def isEnabled = directoryOpt.isDefined
+
+  def storeDocument(staticState: XFormsStaticState): Unit =
+    directoryOpt foreach { directory ⇒
+      // If the queue is full, the entry is not stored, which is fine as the store is only an optimization
+      writeExecutor.execute(new Runnable {
+        def run() =
+          try {
+            val metadata = staticState.topLevelPart.metadata
+            writeEntry(
+              directory,
+              StoredStaticState(
+                staticState.digest,
+                staticState.encodedState,
+                metadata.getBindingIncludesJava.asScala.toList,
+                metadata.bindingsIncludesLastModified
+              )
+            )
+            pruneEntries(directory)
+          } catch {
+            case NonFatal(t) ⇒
+              warn("unable to store static state", List("digest" → staticState.digest, "throwable" → t.toString))
+          }
+      })
+    }
+
+  // Restore the most recently stored static states in the background and add them to the static state cache
+  def warmupInBackground(): Unit =
+    directoryOpt foreach { directory ⇒
+
+      val files = entryFiles(directory) sortBy (- _.lastModified) take propertySet.getInteger(WarmupCountProperty, 20)
+
+      if (files.nonEmpty) {
+        val executor = Executors.newFixedThreadPool(propertySet.getInteger(WarmupThreadsProperty, 2), DaemonThreadFactory)
+        for (file ← files)
+          executor.submit(new Callable[Unit] {
+            def call() =
+              InitUtils.withPipelineContext { _ ⇒
+                val digest = file.getName.stripSuffix(FileExtension)
+                if (XFormsStaticStateCache.findDocument(digest).isEmpty)
+                  restoreDocument(file, digest) match {
+                    case Some(staticState) ⇒ XFormsStaticStateCache.cacheDocument(staticState)
+                    case None              ⇒ warn("unable to warm up static state", List("digest" → digest))
+                  }
+              }
+          })
+        executor.shutdown()
+
+        info("warming up static states from store", List("count" → files.size.toString))
+      }
+    }
+
+  private object Private {
+
+    implicit def logger = Loggers.getIndentedLogger("cache")
+
+    val DirectoryProperty     = "oxf.xforms.cache.static-state.store.directory"
+    val MaxEntriesProperty    = "oxf.xforms.cache.static-state.store.max-entries"
+    val WarmupCountProperty   = "oxf.xforms.cache.static-state.store.warmup-count"
+    val WarmupThreadsProperty = "oxf.xforms.cache.static-state.store.warmup-threads"
+
+    val FileExtension         = ".static-state"
+    val FormatVersion         = 1
+    val WriteQueueSize        = 100
+
+    case class StoredStaticState(
+      digest          : String,
+      encodedState    : String,
+      bindingIncludes : List[String],
+      lastModified    : Long
+    )
+
+    def propertySet = Properties.instance.getPropertySet
+
+    // The directory is read and created once
+    lazy val directoryOpt: Option[File] =
+      propertySet.getNonBlankString(DirectoryProperty) map { path ⇒
+        val directory = new File(path)
+        directory.mkdirs()
+        directory
+      } filter { directory ⇒
+        if (! directory.isDirectory)
+          warn("static state store directory is not a directory", List("directory" → directory.getAbsolutePath))
+        directory.isDirectory
+      }
+
+    // A single thread, so that entries are written and pruned one at a time
+    lazy val writeExecutor =
+      new ThreadPoolExecutor(
+        1,
+        1,
+        0L,
+        TimeUnit.MILLISECONDS,
+        new LinkedBlockingQueue[Runnable](WriteQueueSize),
+        DaemonThreadFactory,
+        new ThreadPoolExecutor.DiscardPolicy
+      )
+
+    def entryFile(directory: File, digest: String) =
+      new File(directory, digest + FileExtension)
+
+    def entryFiles(directory: File): List[File] =
+      Option(directory.listFiles(new FileFilter {
+        def accept(file: File) = file.isFile && file.getName.endsWith(FileExtension)
+      })).toList flatMap (_.toList)
+
+    // Write to a temporary file first, so that a concurrent reader never sees a partial entry
+    def writeEntry(directory: File, entry: StoredStaticState): Unit = {
+      val tempFile = File.createTempFile("static-state-", ".tmp", directory)
+      try {
+        useAndClose(new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) { os ⇒
+          os.writeInt(FormatVersion)
+          os.writeUTF(entry.digest)
+          os.writeObject(entry.encodedState) // can be larger than what `writeUTF()` supports
+          os.writeInt(entry.bindingIncludes.size)
+          entry.bindingIncludes foreach os.writeUTF
+          os.writeLong(entry.lastModified)
+        }
+        val file = entryFile(directory, entry.digest)
+        if (! tempFile.renameTo(file)) {
+          file.delete()
+          tempFile.renameTo(file)
+        }
+      } finally {
+        if (tempFile.exists)
+          tempFile.delete()
+      }
+    }
+
+    // Remove the least recently stored entries above the maximum number of entries
+    def pruneEntries(directory: File): Unit = {
+      val maxEntries = propertySet.getInteger(MaxEntriesProperty, 200)
+      val files      = entryFiles(directory)
+      if (files.size > maxEntries) {
+        val filesToDelete = files sortBy (- _.lastModified) drop maxEntries
+        debug("pruning static state store", List("count" → filesToDelete.size.toString))
+        filesToDelete foreach (_.delete())
+      }
+    }
+
+    def restoreDocument(file: File, digest: String): Option[XFormsStaticState] =
+      try {
+        val staticState = restoreEntry(readEntry(file))
+        if (staticState.topLevelPart.metadata.bindingsIncludesAreUpToDate) {
+          debug("restored static state from store", List("digest" → digest))
+          Some(staticState)
+        } else {
+          debug(
+            "out-of-date static state in store due to: " + staticState.topLevelPart.metadata.debugOutOfDateBindingsIncludesJava,
+            List("digest" → digest)
+          )
+          file.delete()
+          None
+        }
+      } catch {
+        case NonFatal(t) ⇒
+          warn("unable to restore static state from store", List("digest" → digest, "throwable" → t.toString))
+          file.delete()
+          None
+      }
+
+    def readEntry(file: File): StoredStaticState =
+      useAndClose(new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)))) { is ⇒
+        require(is.readInt() == FormatVersion)
+        StoredStaticState(
+          digest          = is.readUTF(),
+          encodedState    = is.readObject().asInstanceOf[String],
+          bindingIncludes = List.fill(is.readInt())(is.readUTF()),
+          lastModified    = is.readLong()
+        )
+      }
+
+    def restoreEntry(entry: StoredStaticState): XFormsStaticState = {
+      val staticState = XFormsStaticStateImpl.restore(Some(entry.digest), entry.encodedState, forceEncryption = false)
+      staticState.topLevelPart.metadata.restoreBindingsIncludes(entry.bindingIncludes.toSet, entry.lastModified)
+      staticState
+    }
+
+    object DaemonThreadFactory extends ThreadFactory {
+      def newThread(runnable: Runnable) = {
+        val thread = Executors.defaultThreadFactory.newThread(runnable)
+        thread.setDaemon(true)
+        thread
+      }
+    }
+  }
+}
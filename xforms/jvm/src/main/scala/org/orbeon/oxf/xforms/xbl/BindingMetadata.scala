@@ -195,6 +195,13 @@ trait BindingMetadata extends Logging {
   def allBindingsMaybeDuplicates = bindingsByControlPrefixedId.values collect { case b: AbstractBinding ⇒ b }
 
   def getBindingIncludesJava = bindingsPaths.asJava
+  def bindingsIncludesLastModified = maxLastModified
+
+  // When restoring a static state from a persistent store, the bindings are not looked up again
+  def restoreBindingsIncludes(paths: Set[String], lastModified: Long): Unit = {
+    bindingsPaths   = paths
+    maxLastModified = lastModified
+  }
 
   private def pathExistsAndIsUpToDate(path: String)(implicit rm: ResourceManager) = {
     val last = rm.lastModified(path, true)
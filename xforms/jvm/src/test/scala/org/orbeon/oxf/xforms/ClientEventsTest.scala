@@ -23,6 +23,7 @@ import org.orbeon.dom.Element
 import org.orbeon.oxf.xml.Dom4j.elemToDocument
 import org.orbeon.oxf.xml.Dom4j.elemToElement
 import org.orbeon.oxf.xforms.event.ClientEvents.LocalEvent
+import org.orbeon.oxf.xforms.analytics.XFormsMetrics
 
 class ClientEventsTest extends DocumentTestBase with AssertionsForJUnit {
 
@@ -65,6 +66,79 @@ class ClientEventsTest extends DocumentTestBase with AssertionsForJUnit {
       assert(Dom4j.compareElementsIgnoreNamespacesInScopeCollapse(left, right.elementForDebug))
   }
 
+  @Test def coalesceValueChanges(): Unit = {
+
+    Assume.assumeTrue(Version.isPE) // XPath analysis is a PE feature
+
+    setupValueChangesDocument(handler = false)
+
+    assert(document.getStaticState.isCoalesceValueChanges)
+
+    val coalescedBefore   = XFormsMetrics.CoalescedValueChanges.get
+    val recalculateBefore = recalculateCount
+
+    ClientEvents.processEvents(document, List(valueEvent("a", "10"), valueEvent("b", "20")), Nil)
+
+    // Both value changes share a single recalculate
+    assert("30" === getControlValue("total"))
+    assert(1L   === XFormsMetrics.CoalescedValueChanges.get - coalescedBefore)
+    assert(1.0  === recalculateCount - recalculateBefore)
+  }
+
+  @Test def noCoalescingWithValueChangeHandler(): Unit = {
+
+    Assume.assumeTrue(Version.isPE) // XPath analysis is a PE feature
+
+    setupValueChangesDocument(handler = true)
+
+    val coalescedBefore = XFormsMetrics.CoalescedValueChanges.get
+
+    ClientEvents.processEvents(document, List(valueEvent("a", "10"), valueEvent("b", "20")), Nil)
+
+    assert("30" === getControlValue("total"))
+    assert(0L   === XFormsMetrics.CoalescedValueChanges.get - coalescedBefore)
+  }
+
+  private def valueEvent(controlId: String, value: String) =
+    LocalEvent(
+      <xxf:event xmlns:xxf="http://orbeon.org/oxf/xml/xforms" name={XFormsEvents.XXFORMS_VALUE} source-control-id={controlId}>{value}</xxf:event>,
+      trusted = false
+    )
+
+  private def recalculateCount =
+    XFormsMetrics.Recalculate.samples.last.value
+
+  private def setupValueChangesDocument(handler: Boolean) =
+    this setupDocument
+      <xh:html xmlns:xf="http://www.w3.org/2002/xforms"
+           xmlns:xh="http://www.w3.org/1999/xhtml"
+           xmlns:xxf="http://orbeon.org/oxf/xml/xforms"
+           xmlns:ev="http://www.w3.org/2001/xml-events">
+        <xh:head>
+          <xf:model xxf:xpath-analysis="true" xxf:analysis.value-changes="true">
+            <xf:instance id="instance">
+              <instance>
+                <a>1</a>
+                <b>2</b>
+                <total/>
+              </instance>
+            </xf:instance>
+            <xf:bind ref="total" calculate="../a + ../b"/>
+          </xf:model>
+        </xh:head>
+        <xh:body>
+          <xf:input id="a" ref="a"/>
+          <xf:input id="b" ref="b"/>
+          <xf:output id="total" ref="total"/>
+          {
+            if (handler)
+              <xf:action ev:event="xforms-value-changed" ev:observer="a"/>
+            else
+              Nil
+          }
+        </xh:body>
+      </xh:html>
+
   @Test def adjustIdForRepeatIteration(): Unit = {
 
     this setupDocument
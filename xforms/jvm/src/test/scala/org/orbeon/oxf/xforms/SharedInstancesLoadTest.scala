@@ -0,0 +1,180 @@
+/**
+ * Copyright (C) 2017 Orbeon, Inc.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU Lesser General Public License as published by the Free Software Foundation; either version
+ * 2.1 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The full text of the license is available at http://www.gnu.org/copyleft/lesser.html
+ */
+package org.orbeon.oxf.xforms
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.atomic.AtomicInteger
+
+import org.orbeon.oxf.cache.InternalCacheKey
+import org.orbeon.oxf.test.ResourceManagerSupport
+import org.orbeon.saxon.om.DocumentInfo
+import org.orbeon.scaxon.NodeConversions._
+import org.scalatest.FunSpecLike
+
+import scala.concurrent.duration._
+import scala.concurrent.{Await, Future, Promise}
+import scala.util.Try
+
+class SharedInstancesLoadTest
+  extends ResourceManagerSupport
+     with FunSpecLike {
+
+  implicit val indentedLogger = ResourceManagerSupport.newIndentedLogger
+
+  val LongTimeout = 60000L
+  val Waiters     = 4
+
+  def newDocument = elemToDocumentInfo(<instance/>)
+
+  def inThread(body: ⇒ DocumentInfo): (Thread, Future[DocumentInfo]) = {
+    val promise = Promise[DocumentInfo]()
+    val thread  = new Thread(new Runnable { def run() = promise.complete(Try(body)) })
+    thread.start()
+    (thread, promise.future)
+  }
+
+  // Waiting for a concurrent load is the only timed wait of a waiter
+  def waitUntilWaiting(thread: Thread) =
+    while (thread.getState != Thread.State.TIMED_WAITING)
+      Thread.sleep(1)
+
+  def result(future: Future[DocumentInfo]) =
+    Await.result(future, LongTimeout.millis)
+
+  describe("Concurrent loads of a shared instance") {
+
+    it("must load the instance only once") {
+
+      val cacheKey = new InternalCacheKey("test", "once")
+      val loads    = new AtomicInteger
+      val started  = new CountDownLatch(1)
+      val release  = new CountDownLatch(1)
+      val document = newDocument
+
+      def loadOnce(load: ⇒ DocumentInfo) =
+        inThread(XFormsServerSharedInstancesCache.loadOnce(cacheKey, None, LongTimeout, Nil)(load))
+
+      val (_, first) =
+        loadOnce {
+          loads.incrementAndGet()
+          started.countDown()
+          release.await()
+          document
+        }
+
+      started.await()
+
+      val waiters =
+        for (_ ← 1 to Waiters)
+          yield loadOnce { loads.incrementAndGet(); newDocument }
+
+      waiters foreach { case (thread, _) ⇒ waitUntilWaiting(thread) }
+      release.countDown()
+
+      assert(result(first) eq document)
+      waiters foreach { case (_, future) ⇒ assert(result(future) eq document) }
+      assert(1 === loads.get)
+    }
+
+    it("must release waiters when the load fails") {
+
+      val cacheKey = new InternalCacheKey("test", "failure")
+      val loads    = new AtomicInteger
+      val started  = new CountDownLatch(1)
+      val release  = new CountDownLatch(1)
+
+      def loadOnce(load: ⇒ DocumentInfo) =
+        inThread(XFormsServerSharedInstancesCache.loadOnce(cacheKey, None, LongTimeout, Nil)(load))
+
+      val (_, first) =
+        loadOnce {
+          loads.incrementAndGet()
+          started.countDown()
+          release.await()
+          throw new IllegalStateException
+        }
+
+      started.await()
+
+      val waiters =
+        for (_ ← 1 to Waiters)
+          yield loadOnce { loads.incrementAndGet(); newDocument }
+
+      waiters foreach { case (thread, _) ⇒ waitUntilWaiting(thread) }
+
+      val failedAt = System.currentTimeMillis
+      release.countDown()
+
+      intercept[IllegalStateException](result(first))
+
+      // Waiters load the instance themselves right away instead of waiting for the timeout
+      waiters foreach { case (_, future) ⇒ assert(result(future) ne null) }
+      assert(System.currentTimeMillis - failedAt < LongTimeout / 2)
+      assert(1 + Waiters === loads.get)
+    }
+
+    it("must release waiters when the load times out") {
+
+      val cacheKey = new InternalCacheKey("test", "timeout")
+      val started  = new CountDownLatch(1)
+      val release  = new CountDownLatch(1)
+      val document = newDocument
+
+      val (_, first) =
+        inThread {
+          XFormsServerSharedInstancesCache.loadOnce(cacheKey, None, LongTimeout, Nil) {
+            started.countDown()
+            release.await()
+            newDocument
+          }
+        }
+
+      started.await()
+
+      // The first load is still blocked when this one gives up waiting and loads the instance itself
+      val (_, waiter) =
+        inThread(XFormsServerSharedInstancesCache.loadOnce(cacheKey, None, 100, Nil)(document))
+
+      assert(result(waiter) eq document)
+      assert(! first.isCompleted)
+
+      release.countDown()
+      assert(result(first) ne document)
+    }
+
+    it("must return stale content instead of waiting") {
+
+      val cacheKey = new InternalCacheKey("test", "stale")
+      val started  = new CountDownLatch(1)
+      val release  = new CountDownLatch(1)
+      val stale    = newDocument
+
+      val (_, first) =
+        inThread {
+          XFormsServerSharedInstancesCache.loadOnce(cacheKey, Some(stale), LongTimeout, Nil) {
+            started.countDown()
+            release.await()
+            newDocument
+          }
+        }
+
+      started.await()
+
+      assert(XFormsServerSharedInstancesCache.loadOnce(cacheKey, Some(stale), LongTimeout, Nil)(newDocument) eq stale)
+
+      release.countDown()
+      assert(result(first) ne stale)
+    }
+  }
+}
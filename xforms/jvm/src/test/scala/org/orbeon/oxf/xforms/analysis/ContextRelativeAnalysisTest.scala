@@ -0,0 +1,60 @@
+/**
+  * Copyright (C) 2017 Orbeon, Inc.
+  *
+  * This program is free software; you can redistribute it and/or modify it under the terms of the
+  * GNU Lesser General Public License as published by the Free Software Foundation; either version
+  * 2.1 of the License, or (at your option) any later version.
+  *
+  * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+  * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+  * See the GNU Lesser General Public License for more details.
+  *
+  * The full text of the license is available at http://www.gnu.org/copyleft/lesser.html
+  */
+package org.orbeon.oxf.xforms.analysis
+
+import org.junit.Test
+import org.orbeon.oxf.test.ResourceManagerTestBase
+import org.orbeon.oxf.util.XPath
+import org.orbeon.oxf.xforms.library.XFormsFunctionLibrary
+import org.orbeon.oxf.xml.NamespaceMapping
+import org.scalatest.junit.AssertionsForJUnit
+
+class ContextRelativeAnalysisTest extends ResourceManagerTestBase with AssertionsForJUnit {
+
+  private implicit val indentedLogger = ResourceManagerTestBase.newIndentedLogger
+
+  private def ancestorLevels(expression: String) =
+    ContextRelativeAnalysis.ancestorLevels(
+      XPath.compileExpression(
+        xpathString      = XPath.makeStringExpression(expression),
+        namespaceMapping = NamespaceMapping.EMPTY_MAPPING,
+        locationData     = null,
+        functionLibrary  = XFormsFunctionLibrary,
+        avt              = false
+      ).expression.getInternalExpression
+    )
+
+  @Test def relativeExpressions(): Unit = {
+    assert(Some(0) === ancestorLevels("."))
+    assert(Some(0) === ancestorLevels("42"))
+    assert(Some(0) === ancestorLevels("concat(a, @b, .//c)"))
+    assert(Some(1) === ancestorLevels("../price * ../quantity"))
+    assert(Some(1) === ancestorLevels("sum(following-sibling::item)"))
+    assert(Some(2) === ancestorLevels("for $i in ../../item return $i/value"))
+    assert(Some(2) === ancestorLevels("if (../a = '') then ../../b else ''"))
+    assert(Some(1) === ancestorLevels("../a[../b = 'x']"))
+    assert(Some(1) === ancestorLevels("../a/../b"))
+    assert(Some(2) === ancestorLevels("../a/../.."))
+  }
+
+  @Test def nonRelativeExpressions(): Unit = {
+    assert(None === ancestorLevels("/form/total"))
+    assert(None === ancestorLevels("instance('other')/value"))
+    assert(None === ancestorLevels("$price * 2"))
+    assert(None === ancestorLevels("ancestor::section/title"))
+    assert(None === ancestorLevels("preceding::item"))
+    assert(None === ancestorLevels("root(.)/a"))
+    assert(None === ancestorLevels("//total"))
+  }
+}
@@ -0,0 +1,124 @@
+/**
+ * Copyright (C) 2017 Orbeon, Inc.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU Lesser General Public License as published by the Free Software Foundation; either version
+ * 2.1 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The full text of the license is available at http://www.gnu.org/copyleft/lesser.html
+ */
+package org.orbeon.oxf.xforms.control.controls
+
+import org.junit.Test
+import org.orbeon.oxf.test.DocumentTestBase
+import org.orbeon.oxf.xforms.event.Dispatch
+import org.orbeon.oxf.xforms.event.events.XXFormsRepeatWindowEvent
+import org.orbeon.oxf.xml.Dom4j.elemToDocument
+import org.scalatest.junit.AssertionsForJUnit
+
+class XFormsRepeatControlTest extends DocumentTestBase with AssertionsForJUnit {
+
+  private val RowCount   = 10000
+  private val WindowSize = 50
+
+  private def setupWindowedRepeat() =
+    this setupDocument
+      <xh:html
+        xmlns:xh="http://www.w3.org/1999/xhtml"
+        xmlns:xf="http://www.w3.org/2002/xforms"
+        xmlns:xxf="http://orbeon.org/oxf/xml/xforms"
+        xmlns:ev="http://www.w3.org/2001/xml-events">
+
+        <xh:head>
+          <xf:model id="model">
+            <xf:instance id="instance">
+              <rows>{1 to RowCount map (i ⇒ <row>{i}</row>)}</rows>
+            </xf:instance>
+            <xf:setindex ev:event="set-index" repeat="repeat" index="5000"/>
+            <xf:insert   ev:event="insert-row" ref="row"/>
+          </xf:model>
+        </xh:head>
+        <xh:body>
+          <xf:repeat id="repeat" ref="row" xxf:window-size={WindowSize.toString}>
+            <xf:output id="output" value="."/>
+          </xf:repeat>
+          <xf:output id="index" value="index('repeat')"/>
+          <xf:output id="xxf-index" value="xxf:index('repeat')"/>
+        </xh:body>
+      </xh:html>
+
+  private def repeat = getObject("repeat").asInstanceOf[XFormsRepeatControl]
+
+  private def isBuilt(index: Int) = getObject("output⊙" + index) ne null
+
+  private def assertWindow(start: Int, index: Int, size: Int = RowCount): Unit = {
+    assert(size === repeat.getSize)
+    assert(start === repeat.getWindowStart)
+    assert(WindowSize === repeat.children.size)
+    assert(! isBuilt(start - 1))
+    assert(isBuilt(start))
+    assert(isBuilt(start + WindowSize - 1))
+    assert(! isBuilt(start + WindowSize))
+    assert(index.toString === getControlValue("index"))
+    assert(index.toString === getControlValue("xxf-index"))
+  }
+
+  @Test def onlyBuildIterationsWithinWindow(): Unit =
+    withTestExternalContext { _ ⇒
+      setupWindowedRepeat()
+
+      assertWindow(start = 1, index = 1)
+      assert("50" === getControlValue("output⊙50"))
+    }
+
+  @Test def windowFollowsIndex(): Unit =
+    withTestExternalContext { _ ⇒
+      setupWindowedRepeat()
+
+      withAction {
+        dispatch("set-index", "model")
+      }
+
+      assertWindow(start = 5000 - WindowSize + 1, index = 5000)
+      assert("5000" === getControlValue("output⊙5000"))
+      assert(repeat.getIndexIteration eq getObject("repeat~iteration⊙5000"))
+    }
+
+  @Test def moveWindowWithoutChangingIndex(): Unit =
+    withTestExternalContext { _ ⇒
+      setupWindowedRepeat()
+
+      withAction {
+        Dispatch.dispatchEvent(new XXFormsRepeatWindowEvent(repeat, 2000))
+      }
+
+      assertWindow(start = 2000, index = 1)
+      assert("2000" === getControlValue("output⊙2000"))
+      assert(repeat.getIndexIteration eq null)
+
+      // The window doesn't go past the last iteration
+      withAction {
+        Dispatch.dispatchEvent(new XXFormsRepeatWindowEvent(repeat, RowCount))
+      }
+
+      assertWindow(start = RowCount - WindowSize + 1, index = 1)
+    }
+
+  @Test def insertMovesWindowToNewIteration(): Unit =
+    withTestExternalContext { _ ⇒
+      setupWindowedRepeat()
+
+      withAction {
+        dispatch("insert-row", "model")
+      }
+
+      val newSize = RowCount + 1
+
+      assertWindow(start = newSize - WindowSize + 1, index = newSize, size = newSize)
+      assert(RowCount.toString === getControlValue("output⊙" + newSize))
+    }
+}
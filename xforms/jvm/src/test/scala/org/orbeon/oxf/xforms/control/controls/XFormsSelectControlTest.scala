@@ -114,4 +114,76 @@ class XFormsSelectControlTest extends DocumentTestBase with AssertionsForJUnit{
     setControlValue("select", "true")
     assert("true" === getControlValue("select"))
   }
+
+  @Test def shareItemsetAcrossIterations(): Unit =
+    withTestExternalContext { _ ⇒
+
+      this setupDocument
+        <xh:html
+          xmlns:xh="http://www.w3.org/1999/xhtml"
+          xmlns:xf="http://www.w3.org/2002/xforms"
+          xmlns:xxf="http://orbeon.org/oxf/xml/xforms"
+          xmlns:ev="http://www.w3.org/2001/xml-events">
+
+          <xh:head>
+            <xf:model id="model" xxf:encrypt-item-values="false">
+              <xf:instance id="instance">
+                <rows>
+                  <row><value/><code>x</code></row>
+                  <row><value/><code>y</code></row>
+                </rows>
+              </xf:instance>
+              <xf:instance id="codes">
+                <codes>
+                  <code>a</code>
+                  <code>b</code>
+                </codes>
+              </xf:instance>
+              <xf:setvalue ev:event="change-code" ref="instance('codes')/code[1]" value="'c'"/>
+            </xf:model>
+          </xh:head>
+          <xh:body>
+            <xf:repeat id="repeat" ref="row">
+              <xf:select1 id="shared" ref="value">
+                <xf:itemset ref="instance('codes')/code" class="code-{.}">
+                  <xf:label value="upper-case(.)"/>
+                  <xf:value value="."/>
+                </xf:itemset>
+              </xf:select1>
+              <xf:select1 id="relative" ref="value">
+                <xf:itemset ref="../code">
+                  <xf:label ref="."/>
+                  <xf:value ref="."/>
+                </xf:itemset>
+              </xf:select1>
+              <xf:var name="code" value="code"/>
+              <xf:select1 id="variable" ref="value">
+                <xf:itemset ref="instance('codes')/code[. != $code]">
+                  <xf:label ref="."/>
+                  <xf:value ref="."/>
+                </xf:itemset>
+              </xf:select1>
+            </xf:repeat>
+          </xh:body>
+        </xh:html>
+
+      def select1(effectiveId: String) = getObject(effectiveId).asInstanceOf[XFormsSelect1Control]
+
+      assert(select1("shared⊙1").staticControl.isItemsetSharedByIterations)
+      assert(! select1("relative⊙1").staticControl.isItemsetSharedByIterations)
+      assert(! select1("variable⊙1").staticControl.isItemsetSharedByIterations)
+
+      assert(select1("shared⊙1").getItemset eq select1("shared⊙2").getItemset)
+      assert(getItemset("shared⊙2") === """[{"label":"A","value":"a","attributes":{"class":"code-a"}},{"label":"B","value":"b","attributes":{"class":"code-b"}}]""")
+
+      assert(getItemset("relative⊙1") === """[{"label":"x","value":"x"}]""")
+      assert(getItemset("relative⊙2") === """[{"label":"y","value":"y"}]""")
+
+      withAction {
+        dispatch("change-code", "model")
+      }
+
+      assert(select1("shared⊙1").getItemset eq select1("shared⊙2").getItemset)
+      assert(getItemset("shared⊙1") === """[{"label":"C","value":"c","attributes":{"class":"code-c"}},{"label":"B","value":"b","attributes":{"class":"code-b"}}]""")
+    }
 }
@@ -0,0 +1,111 @@
+/**
+ * Copyright (C) 2017 Orbeon, Inc.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU Lesser General Public License as published by the Free Software Foundation; either version
+ * 2.1 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The full text of the license is available at http://www.gnu.org/copyleft/lesser.html
+ */
+package org.orbeon.oxf.xforms.model
+
+import org.junit.Test
+import org.orbeon.oxf.test.{DocumentTestBase, XFormsSupport}
+import org.orbeon.oxf.xforms.action.XFormsAPI._
+import org.orbeon.oxf.xml.Dom4j.elemToDocument
+import org.orbeon.scaxon.Implicits._
+import org.orbeon.scaxon.SimplePath._
+import org.scalatest.junit.AssertionsForJUnit
+
+import scala.language.postfixOps
+
+// Test for the `xxf:analysis.rebuild` attribute, which updates only the affected binds after `xf:insert` and `xf:delete`.
+class PartialRebuildTest extends DocumentTestBase with XFormsSupport with AssertionsForJUnit {
+
+  @Test def insertAndDeleteIterations(): Unit = {
+
+    val doc = this setupDocument
+      <xh:html
+        xmlns:xh="http://www.w3.org/1999/xhtml"
+        xmlns:xf="http://www.w3.org/2002/xforms"
+        xmlns:xxf="http://orbeon.org/oxf/xml/xforms">
+        <xh:head>
+          <xf:model id="my-model" xxf:analysis.rebuild="true">
+            <xf:instance id="my-instance">
+              <data>
+                <item>
+                  <price>2</price>
+                  <quantity>3</quantity>
+                  <total/>
+                </item>
+                <count/>
+              </data>
+            </xf:instance>
+            <xf:bind ref="item">
+              <xf:bind ref="price" required="true()"/>
+              <xf:bind ref="total" calculate="../price * ../quantity"/>
+            </xf:bind>
+            <xf:bind ref="count" calculate="count(../item)"/>
+          </xf:model>
+        </xh:head>
+        <xh:body/>
+      </xh:html>
+
+    withActionAndDoc(doc) {
+
+      val instance = doc.getDefaultModel.defaultInstanceOpt.get
+
+      def items = instance.rootElement / "item"
+
+      def totals = items / "total" map (_.stringValue)
+      def count  = (instance.rootElement / "count").stringValue
+
+      def assertRequired() =
+        items / "price" foreach (price ⇒ assert(InstanceData.getRequired(price)))
+
+      assert(List("6") === totals)
+      assert("1" === count)
+
+      // New iterations get bind nodes and MIPs
+      withAction {
+        insert(after = items, origin = items)
+        insert(after = items, origin = items)
+      }
+
+      withAction {
+        setvalue(items(1) / "price", "5")
+        setvalue(items(2) / "quantity", "4")
+      }
+
+      assert(List("6", "15", "8") === totals)
+      assert("3" === count)
+      assertRequired()
+
+      // Remaining iterations keep their bind nodes
+      withAction {
+        delete(items take 1)
+      }
+
+      withAction {
+        setvalue(items.head / "quantity", "1")
+      }
+
+      assert(List("5", "8") === totals)
+      assert("2" === count)
+      assertRequired()
+
+      // An explicit rebuild yields the same result
+      withAction {
+        rebuild(instance.model.getId)
+        recalculate(instance.model.getId)
+      }
+
+      assert(List("5", "8") === totals)
+      assert("2" === count)
+    }
+  }
+}
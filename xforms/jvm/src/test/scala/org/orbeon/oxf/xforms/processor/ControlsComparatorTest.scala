@@ -0,0 +1,199 @@
+/**
+ * Copyright (C) 2017 Orbeon, Inc.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU Lesser General Public License as published by the Free Software Foundation; either version
+ * 2.1 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The full text of the license is available at http://www.gnu.org/copyleft/lesser.html
+ */
+package org.orbeon.oxf.xforms.processor
+
+import org.junit.Test
+import org.orbeon.oxf.test.DocumentTestBase
+import org.orbeon.oxf.xforms.XFormsConstants.REPEAT_SEPARATOR
+import org.orbeon.oxf.xforms.action.XFormsAPI._
+import org.orbeon.oxf.xforms.control.XFormsControl
+import org.orbeon.oxf.xml.Dom4j.elemToDocument
+import org.orbeon.oxf.xml.ForwardingXMLReceiver
+import org.orbeon.scaxon.SimplePath._
+import org.scalatest.junit.AssertionsForJUnit
+import org.xml.sax.Attributes
+
+class ControlsComparatorTest extends DocumentTestBase with AssertionsForJUnit {
+
+  private def form =
+    <xh:html xmlns:xf="http://www.w3.org/2002/xforms"
+         xmlns:xh="http://www.w3.org/1999/xhtml"
+         xmlns:xxf="http://orbeon.org/oxf/xml/xforms">
+      <xh:head>
+        <xf:model xxf:xpath-analysis="true">
+          <xf:instance id="instance">
+            <instance>
+              <items>{1 to 20 map (i ⇒ <item><quantity>{i}</quantity></item>)}</items>
+              <other>other</other>
+            </instance>
+          </xf:instance>
+          <xf:bind ref="items/item/quantity" type="xf:integer" constraint=". le 100"/>
+        </xf:model>
+      </xh:head>
+      <xh:body>
+        <xf:input id="other-input" ref="other"/>
+        <xf:repeat id="item-repeat" ref="items/item">
+          <xf:input id="quantity-input" ref="quantity">
+            <xf:label>Quantity</xf:label>
+            <xf:alert>Too large</xf:alert>
+          </xf:input>
+        </xf:repeat>
+        <xf:output id="total-output" value="sum(items/item/quantity)"/>
+      </xh:body>
+    </xh:html>
+
+  // Controls depending on the instance in different ways: relevance, read-only-ness, labels and itemsets
+  private def formWithDependencies =
+    <xh:html xmlns:xf="http://www.w3.org/2002/xforms"
+         xmlns:xh="http://www.w3.org/1999/xhtml"
+         xmlns:xxf="http://orbeon.org/oxf/xml/xforms">
+      <xh:head>
+        <xf:model xxf:xpath-analysis="true">
+          <xf:instance id="instance">
+            <instance>
+              <show>yes</show>
+              <lock>no</lock>
+              <label>First label</label>
+              <choice/>
+              <choices>
+                <choice>a</choice>
+                <choice>b</choice>
+              </choices>
+              <rows>
+                <row>1</row>
+                <row>2</row>
+              </rows>
+              <other>other</other>
+            </instance>
+          </xf:instance>
+          <xf:bind ref="label" relevant="../show = 'yes'" readonly="../lock = 'yes'"/>
+        </xf:model>
+      </xh:head>
+      <xh:body>
+        <xf:input id="label-input" ref="label">
+          <xf:label ref="../label"/>
+        </xf:input>
+        <xf:select1 id="choice-select" ref="choice">
+          <xf:itemset ref="../choices/choice">
+            <xf:label ref="."/>
+            <xf:value ref="."/>
+          </xf:itemset>
+        </xf:select1>
+        <xf:repeat id="row-repeat" ref="rows/row">
+          <xf:output id="row-output" ref="."/>
+        </xf:repeat>
+        <xf:input id="other-input" ref="other"/>
+      </xh:body>
+    </xh:html>
+
+  // Output of the comparator as a string
+  private def diff(isIncremental: Boolean) = {
+
+    val builder = new java.lang.StringBuilder
+
+    val receiver = new ForwardingXMLReceiver {
+      override def startElement(uri: String, localname: String, qName: String, attributes: Attributes): Unit = {
+        builder.append('<').append(qName)
+        for (i ← 0 until attributes.getLength)
+          builder.append(' ').append(attributes.getQName(i)).append("=\"").append(attributes.getValue(i)).append('"')
+        builder.append('>')
+      }
+      override def endElement(uri: String, localname: String, qName: String): Unit =
+        builder.append("</").append(qName).append('>')
+      override def characters(ch: Array[Char], start: Int, length: Int): Unit =
+        builder.append(ch, start, length)
+    }
+
+    val controls = document.getControls
+
+    new ControlsComparator(document, Map.empty, isTestMode = false, isIncremental = isIncremental).diffChildren(
+      left             = controls.getInitialControlTree.children,
+      right            = controls.getCurrentControlTree.children,
+      fullUpdateBuffer = None)(
+      receiver         = receiver
+    )
+
+    builder.toString
+  }
+
+  private def startNewRequest() = {
+    document.afterExternalEvents()
+    document.afterUpdateResponse()
+    document.beforeExternalEvents(null)
+  }
+
+  private def node(path: String) =
+    instance("instance").get.rootElement child path
+
+  @Test def incrementalDiffMatchesFullDiff(): Unit =
+    withTestExternalContext { _ ⇒
+      withActionAndDoc(setupDocument(form)) {
+
+        startNewRequest()
+
+        // Value, validity and alert change for one iteration, as well as the total
+        setControlValue(s"quantity-input${REPEAT_SEPARATOR}3", "1000")
+
+        val incremental = diff(isIncremental = true)
+
+        assert(incremental contains "1000")
+        assert(incremental === diff(isIncremental = false))
+
+        // Unrelated controls are skipped
+        assert(! getObject("other-input").asInstanceOf[XFormsControl].changedOrDescendantChanged)
+
+        startNewRequest()
+
+        // Nothing changed since the last update response
+        assert(diff(isIncremental = true) === "")
+      }
+    }
+
+  @Test def incrementalDiffMatchesFullDiffForEachKindOfChange(): Unit =
+    withTestExternalContext { _ ⇒
+      withActionAndDoc(setupDocument(formWithDependencies)) {
+
+        def assertSameDiff(change: ⇒ Any) = {
+          startNewRequest()
+          // Includes the refresh which follows the actions
+          withAction(change)
+
+          val incremental = diff(isIncremental = true)
+
+          assert(incremental.nonEmpty)
+          assert(incremental === diff(isIncremental = false))
+        }
+
+        // Read-only-ness
+        assertSameDiff(setvalue(node("lock"), "yes"))
+
+        // Label, through a value change of the bound node
+        assertSameDiff(setvalue(node("label"), "Second label"))
+
+        // Itemset
+        assertSameDiff(setvalue(node("choices") child "choice" take 1, "c"))
+
+        // Relevance, both ways
+        assertSameDiff(setvalue(node("show"), "no"))
+        assertSameDiff(setvalue(node("show"), "yes"))
+
+        // Repeat iterations
+        assertSameDiff(insert(into = node("rows"), after = node("rows") child "row", origin = node("rows") child "row" take 1))
+        assertSameDiff(delete(node("rows") child "row" take 1))
+
+        // Unrelated controls are still skipped
+        assert(! getControl("other-input").changedOrDescendantChanged)
+      }
+    }
+}
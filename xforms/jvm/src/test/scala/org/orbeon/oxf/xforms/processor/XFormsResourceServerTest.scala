@@ -29,4 +29,28 @@ class XFormsResourceServerTest extends ResourceManagerTestBase with AssertionsFo
     assert("/xforms-server/dynamic/563ec01cad20b038a8109ba984daac278a350f72" ===
       XFormsResourceServer.proxyURI("http://example.org/foo/bar.png", None, None, -1, Map(), Set(), _ ⇒ None))
   }
-}
\ No newline at end of file
+
+  @Test def acceptsGzip(): Unit = {
+
+    def acceptsGzip(acceptEncodingOpt: Option[String]) = XFormsResourceServer.acceptsGzip(acceptEncodingOpt)
+
+    assert(acceptsGzip(Some("gzip, deflate, br")))
+    assert(acceptsGzip(Some("deflate, GZIP;q=0.5")))
+    assert(acceptsGzip(Some("*")))
+    assert(! acceptsGzip(Some("gzip;q=0, deflate")))
+    assert(! acceptsGzip(Some("gzip;q=0, *")))
+    assert(! acceptsGzip(Some("*;q=0")))
+    assert(! acceptsGzip(Some("identity")))
+    assert(! acceptsGzip(None))
+  }
+
+  @Test def etagMatches(): Unit = {
+
+    def etagMatches(ifNoneMatch: String, etag: String) = XFormsResourceServer.etagMatches(ifNoneMatch, etag)
+
+    assert(etagMatches("\"abc\"", "\"abc\""))
+    assert(etagMatches("\"xyz\", W/\"abc\"", "\"abc\""))
+    assert(etagMatches("*", "\"abc\""))
+    assert(! etagMatches("\"abc-gzip\"", "\"abc\""))
+  }
+}
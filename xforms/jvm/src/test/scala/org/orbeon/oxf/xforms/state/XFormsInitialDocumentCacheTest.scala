@@ -0,0 +1,86 @@
+/**
+ * Copyright (C) 2017 Orbeon, Inc.
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the
+ * GNU Lesser General Public License as published by the Free Software Foundation; either version
+ * 2.1 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The full text of the license is available at http://www.gnu.org/copyleft/lesser.html
+ */
+package org.orbeon.oxf.xforms.state
+
+import org.junit.Test
+import org.orbeon.dom
+import org.orbeon.oxf.test.DocumentTestBase
+import org.orbeon.oxf.xforms.XFormsStaticStateImpl
+import org.orbeon.oxf.xml.Dom4j.elemToDocument
+import org.scalatest.junit.AssertionsForJUnit
+
+class XFormsInitialDocumentCacheTest extends DocumentTestBase with AssertionsForJUnit {
+
+  private def form(calculate: String): dom.Document =
+    <xh:html xmlns:xf="http://www.w3.org/2002/xforms"
+         xmlns:xh="http://www.w3.org/1999/xhtml"
+         xmlns:xxf="http://orbeon.org/oxf/xml/xforms"
+         xmlns:ev="http://www.w3.org/2001/xml-events">
+      <xh:head>
+        <xf:model xxf:initial-document-cache="true">
+          <xf:instance id="instance">
+            <instance>
+              <initialized/>
+              <calculated/>
+            </instance>
+          </xf:instance>
+          <xf:bind ref="calculated" calculate={calculate}/>
+          <xf:setvalue ev:event="xforms-model-construct-done" ref="initialized" value="'true'"/>
+        </xf:model>
+      </xh:head>
+      <xh:body>
+        <xf:input id="calculated-input" ref="calculated"/>
+      </xh:body>
+    </xh:html>
+
+  // Create a new document from the static state, going through the cache
+  private def createDocument(xhtml: dom.Document) = {
+    val (_, staticState) = XFormsStaticStateImpl.createFromDocument(xhtml)
+    val doc = XFormsInitialDocumentCache.createDocument(staticState, null, null)
+    setupDocument(doc)
+    (staticState.digest, instanceToString(instance("instance").get))
+  }
+
+  @Test def restoreInitialState(): Unit =
+    withTestExternalContext { _ ⇒
+      val xhtml = form("concat('a', 'b')")
+
+      val (digest, initialInstance) = createDocument(xhtml)
+      assert(XFormsInitialDocumentCache.findDynamicState(digest).isDefined)
+      assert(initialInstance contains "ab")
+
+      // Same state as the document which was fully initialized
+      val (_, restoredInstance) = createDocument(xhtml)
+      assert(restoredInstance === initialInstance)
+    }
+
+  @Test def requestDependentInitialization(): Unit =
+    withTestExternalContext { _ ⇒
+      val (digest, _) = createDocument(form("string(current-dateTime())"))
+      assert(XFormsInitialDocumentCache.findDynamicState(digest).isEmpty)
+    }
+
+  @Test def pureFunctionsDuringInitialization(): Unit =
+    withTestExternalContext { _ ⇒
+      val (digest, _) = createDocument(form("if (xxf:is-blank(instance('instance')/initialized)) then 'a' else 'b'"))
+      assert(XFormsInitialDocumentCache.findDynamicState(digest).isDefined)
+    }
+
+  // `xxf:document-id()` doesn't depend on the request, but isn't the same for two documents
+  @Test def impureFunctionDuringInitialization(): Unit =
+    withTestExternalContext { _ ⇒
+      val (digest, _) = createDocument(form("xxf:document-id()"))
+      assert(XFormsInitialDocumentCache.findDynamicState(digest).isEmpty)
+    }
+}
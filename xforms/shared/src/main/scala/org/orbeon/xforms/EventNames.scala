@@ -22,4 +22,6 @@ object EventNames {
   val XXFormsUploadProgress = Prefix + "progress"
   val XXFormsUploadCancel   = Prefix + "cancel"
   val XXFormsUploadError    = Prefix + "error"
+
+  val XXFormsRepeatWindow   = "xxforms-repeat-window"
 }